@@ -266,6 +266,9 @@ public class ByteBitSet implements IBitSet {
 	public int getAndCardinality(ByteBitSet with) {
 		return getAndCardinality(this, with);
 	}
+	public boolean hasAndCardinalityAtLeast(IBitSet with, int threshold) {
+		return threshold <= 0 || getAndCardinality(with) >= threshold;
+	}
 	
     public void or(IBitSet with) {
     	or(with instanceof ByteBitSet ? (ByteBitSet)with : new ByteBitSet(with));
@@ -189,6 +189,9 @@ public class DefaultBitSet implements IBitSet {
 	public int getAndCardinality(DefaultBitSet with) {
 		return getAnd(with).cardinality();
 	}
+	public boolean hasAndCardinalityAtLeast(IBitSet with, int threshold) {
+		return threshold <= 0 || getAndCardinality(with) >= threshold;
+	}
 
     public void or(IBitSet with) {
     	or(with instanceof DefaultBitSet ? (DefaultBitSet)with : new DefaultBitSet(with));
@@ -0,0 +1,210 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.bitset;
+
+import java.util.BitSet;
+
+/**
+ * A <code>FixedBitSet</code> is a bit set with a fixed capacity of 1, 2, 4 or
+ * 8 long units, stored in inline fields instead of an array. The 
+ * implementations are final classes with unrolled operations. If all bit 
+ * patterns of a computation are instances of the same class, the bit set 
+ * call sites only see a single receiver type and the virtual machine can 
+ * inline the unrolled operations.
+ * <p>
+ * Use {@link #factory(int)} to get the factory for the smallest fixed bit 
+ * set class which can hold a given number of bits. Fixed bit sets cannot
+ * grow, an {@link IndexOutOfBoundsException} is thrown if a bit beyond the 
+ * capacity is set.
+ */
+abstract public class FixedBitSet implements IBitSet {
+	
+	/** The maximum capacity of fixed bit sets*/
+	public static final int MAX_CAPACITY = FixedBitSet512.CAPACITY;
+	
+	/**
+	 * <code>FixedBitSetFactory</code> is the {@link BitSetFactory} for fixed
+	 * bit sets. It additionally creates instances from packed long arrays.
+	 */
+	public static abstract class FixedBitSetFactory implements BitSetFactory {
+		/**
+		 * Creates a bit set with the units read from the given array, 
+		 * starting at {@code offset}. Missing units at the end of the array
+		 * are zero.
+		 */
+		abstract public FixedBitSet create(long[] units, int offset);
+		/**
+		 * Returns the number of bits which can be stored in the bit sets 
+		 * created by this factory
+		 */
+		abstract public int getCapacity();
+	}
+	
+	/**
+	 * Returns the factory for the smallest fixed bit set class which can hold
+	 * {@code bitCapacity} bits, or the {@link LongBitSet#FACTORY} if more 
+	 * than {@link #MAX_CAPACITY} bits are needed.
+	 * 
+	 * @param bitCapacity	the number of bits to store, usually the boolean
+	 * 						size of the columns
+	 */
+	public static BitSetFactory factory(int bitCapacity) {
+		if (bitCapacity <= FixedBitSet64.CAPACITY) return FixedBitSet64.FACTORY;
+		if (bitCapacity <= FixedBitSet128.CAPACITY) return FixedBitSet128.FACTORY;
+		if (bitCapacity <= FixedBitSet256.CAPACITY) return FixedBitSet256.FACTORY;
+		if (bitCapacity <= FixedBitSet512.CAPACITY) return FixedBitSet512.FACTORY;
+		return LongBitSet.FACTORY;
+	}
+	
+	//only the subclasses in this package
+	FixedBitSet() {
+		//nothing to do
+	}
+	
+	/**
+	 * Returns the number of long units of this bit set, 1, 2, 4 or 8
+	 */
+	abstract public int unitCount();
+	/**
+	 * Returns the number of bits which can be stored in this bit set
+	 */
+	public int capacity() {
+		return unitCount() * Long.SIZE;
+	}
+	/**
+	 * Returns the unit at the given index, or 0 if the index is out of range
+	 */
+	abstract long unit(int index);
+	
+	/**
+	 * Returns true if no bit is set
+	 */
+	abstract public boolean isEmpty();
+	
+	/**
+	 * Returns all units in a new array
+	 */
+	public long[] toLongArray() {
+		return toLongArray(null, 0);
+	}
+	/**
+	 * Writes all {@link #unitCount() units} to the given array, starting at
+	 * {@code offset}. A new array is created if {@code arr} is null or too
+	 * small. This method can be used to store bit sets inline in a packed
+	 * long array.
+	 * 
+	 * @return the array containing the units
+	 */
+	abstract public long[] toLongArray(long[] arr, int offset);
+	/**
+	 * Returns the rows of a packed bit pattern matrix which are subsets of
+	 * this bit set, see {@link LongBitSet#getSubSetMask(long[], int, long)}
+	 */
+	abstract public long getSubSetMask(long[] rows, int words, long rowMask);
+	
+	@Override
+	abstract public FixedBitSet clone();
+	
+	public int cardinality(int fromBit, int toBit) {
+		return toLongBitSet().cardinality(fromBit, toBit);
+	}
+	public int nextSetBit(int from) {
+		final int fromUnit = from / Long.SIZE;
+		for (int i = Math.max(0, fromUnit); i < unitCount(); i++) {
+			long unit = unit(i);
+			if (i == fromUnit) unit &= (0xffffffffffffffffL << from);
+			if (unit != 0L) return i * Long.SIZE + Long.numberOfTrailingZeros(unit);
+		}
+		return -1;
+	}
+	public int nextClearBit(int from) {
+		final int fromUnit = from / Long.SIZE;
+		for (int i = fromUnit; i < unitCount(); i++) {
+			long unit = ~unit(i);
+			if (i == fromUnit) unit &= (0xffffffffffffffffL << from);
+			if (unit != 0L) return i * Long.SIZE + Long.numberOfTrailingZeros(unit);
+		}
+		return Math.max(from, length());
+	}
+	public BitSet toBitSet() {
+		return BitSet.valueOf(toLongArray());
+	}
+	
+	/**
+	 * Returns a {@link LongBitSet} with the same bits, used for operations 
+	 * with other bit set implementations which cannot be performed on the
+	 * fixed units
+	 */
+	protected LongBitSet toLongBitSet() {
+		return new LongBitSet(toLongArray(), false);
+	}
+	
+	@Override
+	public String toString() {
+		return toLongBitSet().toString();
+	}
+	
+	/**
+	 * Returns the first {@code units} units of the given bit set, bits beyond
+	 * are ignored
+	 */
+	static long[] toUnits(IBitSet bits, int units) {
+		final long[] res = new long[units];
+		if (bits instanceof FixedBitSet) {
+			final FixedBitSet fixed = (FixedBitSet)bits;
+			for (int i = 0; i < units; i++) {
+				res[i] = fixed.unit(i);
+			}
+		}
+		else if (bits instanceof LongBitSet) {
+			final long[] all = ((LongBitSet)bits).toLongArray();
+			System.arraycopy(all, 0, res, 0, Math.min(units, all.length));
+		}
+		else {
+			final int capacity = units * Long.SIZE;
+			for (int bit = bits.nextSetBit(0); bit >= 0 && bit < capacity; bit = bits.nextSetBit(bit + 1)) {
+				res[bit / Long.SIZE] |= (1L << bit);
+			}
+		}
+		return res;
+	}
+	static long unitAt(long[] units, int index) {
+		return index < units.length ? units[index] : 0L;
+	}
+	static IndexOutOfBoundsException outOfCapacity(int bit, int capacity) {
+		if (bit < 0) return new IndexOutOfBoundsException("negative bit index: " + bit);
+		return new IndexOutOfBoundsException("bit index " + bit + " exceeds fixed bit set capacity " + capacity);
+	}
+	
+}
@@ -0,0 +1,401 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.bitset;
+
+import java.util.BitSet;
+
+/**
+ * A <code>FixedBitSet256</code> stores up to 256 bits in four inline long 
+ * fields, without array indirection. Bit operations with other 
+ * <code>FixedBitSet256</code> instances are unrolled. Operations with other bit set 
+ * implementations are supported, but slower. Bits beyond the capacity
+ * cannot be set.
+ * 
+ * @see FixedBitSet#factory(int)
+ */
+public final class FixedBitSet256 extends FixedBitSet {
+
+	/** The number of bits which can be stored*/
+	public static final int CAPACITY = 256;
+	
+	/**
+	 * Default static factory for {@link FixedBitSet256} instances.
+	 */
+	public static final FixedBitSet256Factory FACTORY = new FixedBitSet256Factory();
+	
+	/**
+	 * <code>FixedBitSet256Factory</code> is the {@link BitSetFactory} for 
+	 * {@code FixedBitSet256} instances. Bit sets which need more than 
+	 * {@link FixedBitSet256#CAPACITY} bits are created as {@link LongBitSet}.
+	 */
+	public static final class FixedBitSet256Factory extends FixedBitSetFactory {
+		public FixedBitSet256 create() {
+			return new FixedBitSet256();
+		}
+		public IBitSet create(int capacity) {
+			return capacity <= CAPACITY ? new FixedBitSet256() : new LongBitSet(capacity);
+		}
+		public IBitSet create(IBitSet bits) {
+			if (bits instanceof FixedBitSet256) return ((FixedBitSet256)bits).clone();
+			return bits.length() <= CAPACITY ? new FixedBitSet256(toUnits(bits, 4), 0) : new LongBitSet(bits);
+		}
+		public IBitSet convert(IBitSet bitSet) {
+			return bitSet instanceof FixedBitSet256 ? bitSet : create(bitSet);
+		}
+		public IBitSet create(BitSet bits) {
+			return bits.length() <= CAPACITY ? new FixedBitSet256(bits.toLongArray(), 0) : new LongBitSet(bits);
+		}
+		@Override
+		public FixedBitSet256 create(long[] units, int offset) {
+			return new FixedBitSet256(units, offset);
+		}
+		@Override
+		public int getCapacity() {
+			return CAPACITY;
+		}
+		public Class<FixedBitSet256> getBitSetClass() {
+			return FixedBitSet256.class;
+		}
+	};
+	
+	private long u0, u1, u2, u3;
+	
+	/**
+	 * Creates an empty bit set, all bits are initially false.
+	 */
+	public FixedBitSet256() {
+		//all units are zero
+	}
+	/**
+	 * Creates a bit set with the given units
+	 */
+	public FixedBitSet256(long u0, long u1, long u2, long u3) {
+		this.u0 = u0;
+		this.u1 = u1;
+		this.u2 = u2;
+		this.u3 = u3;
+	}
+	/**
+	 * Creates a bit set with 4 units read from the given array, starting at
+	 * {@code offset}. Missing units at the end of the array are zero.
+	 */
+	public FixedBitSet256(long[] units, int offset) {
+		u0 = unitAt(units, offset);
+		u1 = unitAt(units, offset + 1);
+		u2 = unitAt(units, offset + 2);
+		u3 = unitAt(units, offset + 3);
+	}
+	
+	/**
+	 * Returns the given bit set if it is a {@code FixedBitSet256}, and a new instance
+	 * with the bits of the given set otherwise. Bits beyond the capacity are
+	 * ignored.
+	 */
+	private static FixedBitSet256 truncate(IBitSet bits) {
+		return bits instanceof FixedBitSet256 ? (FixedBitSet256)bits : new FixedBitSet256(toUnits(bits, 4), 0);
+	}
+	/**
+	 * Returns the bit set as {@code FixedBitSet256}, throws an exception if bits beyond
+	 * the capacity are set
+	 */
+	private static FixedBitSet256 fit(IBitSet bits) {
+		if (bits instanceof FixedBitSet256) return (FixedBitSet256)bits;
+		final int len = bits.length();
+		if (len > CAPACITY) throw outOfCapacity(len - 1, CAPACITY);
+		return new FixedBitSet256(toUnits(bits, 4), 0);
+	}
+	
+	@Override
+	public int unitCount() {
+		return 4;
+	}
+	@Override
+	long unit(int index) {
+		switch (index) {
+			case 0: return u0;
+			case 1: return u1;
+			case 2: return u2;
+			case 3: return u3;
+			default: return 0L;
+		}
+	}
+
+	public void set(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 |= (1L << bit); break;
+			case 1: u1 |= (1L << bit); break;
+			case 2: u2 |= (1L << bit); break;
+			case 3: u3 |= (1L << bit); break;
+			default: throw outOfCapacity(bit, CAPACITY);
+		}
+	}
+	public void set(int bit, boolean value) {
+		if (value) set(bit);
+		else clear(bit);
+	}
+	public void clear(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 &= ~(1L << bit); break;
+			case 1: u1 &= ~(1L << bit); break;
+			case 2: u2 &= ~(1L << bit); break;
+			case 3: u3 &= ~(1L << bit); break;
+			default: if (bit < 0) throw new IndexOutOfBoundsException("negative bit index: " + bit);
+		}
+	}
+	public void clear() {
+		u0 = 0L;
+		u1 = 0L;
+		u2 = 0L;
+		u3 = 0L;
+	}
+	public void flip(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 ^= (1L << bit); break;
+			case 1: u1 ^= (1L << bit); break;
+			case 2: u2 ^= (1L << bit); break;
+			case 3: u3 ^= (1L << bit); break;
+			default: throw outOfCapacity(bit, CAPACITY);
+		}
+	}
+	public boolean get(int bit) {
+		if (bit < 0) throw new IndexOutOfBoundsException("negative bit index: " + bit);
+		return bit < CAPACITY && 0L != (unit(bit >>> 6) & (1L << bit));
+	}
+	
+	public boolean isSubSetOf(IBitSet of) {
+		return isSubSetOf(truncate(of));
+	}
+	public boolean isSubSetOf(FixedBitSet256 of) {
+		if (0L != ((u0 & ~of.u0) | (u1 & ~of.u1) | (u2 & ~of.u2) | (u3 & ~of.u3))) return false;
+		return true;
+	}
+	
+	public boolean isSuperSetOfIntersection(IBitSet interA, IBitSet interB) {
+		if (interA instanceof FixedBitSet256 && interB instanceof FixedBitSet256) {
+			return isSuperSetOfIntersection((FixedBitSet256)interA, (FixedBitSet256)interB);
+		}
+		return toLongBitSet().isSuperSetOfIntersection(interA, interB);
+	}
+	public boolean isSuperSetOfIntersection(FixedBitSet256 interA, FixedBitSet256 interB) {
+		if (0L != ((interA.u0 & interB.u0 & ~u0) | (interA.u1 & interB.u1 & ~u1) | (interA.u2 & interB.u2 & ~u2) | (interA.u3 & interB.u3 & ~u3))) return false;
+		return true;
+	}
+	
+	public void and(IBitSet with) {
+		and(truncate(with));
+	}
+	public void and(FixedBitSet256 with) {
+		u0 &= with.u0;
+		u1 &= with.u1;
+		u2 &= with.u2;
+		u3 &= with.u3;
+	}
+	public FixedBitSet256 getAnd(IBitSet with) {
+		return getAnd(truncate(with));
+	}
+	public FixedBitSet256 getAnd(FixedBitSet256 with) {
+		return new FixedBitSet256(u0 & with.u0, u1 & with.u1, u2 & with.u2, u3 & with.u3);
+	}
+	public int getAndCardinality(IBitSet with) {
+		return getAndCardinality(truncate(with));
+	}
+	public int getAndCardinality(FixedBitSet256 with) {
+		return Long.bitCount(u0 & with.u0) + Long.bitCount(u1 & with.u1) + Long.bitCount(u2 & with.u2) + Long.bitCount(u3 & with.u3);
+	}
+	public boolean hasAndCardinalityAtLeast(IBitSet with, int threshold) {
+		return hasAndCardinalityAtLeast(truncate(with), threshold);
+	}
+	public boolean hasAndCardinalityAtLeast(FixedBitSet256 with, int threshold) {
+		return Long.bitCount(u0 & with.u0) + Long.bitCount(u1 & with.u1) + Long.bitCount(u2 & with.u2) + Long.bitCount(u3 & with.u3) >= threshold;
+	}
+	
+	public void andNot(IBitSet with) {
+		andNot(truncate(with));
+	}
+	public void andNot(FixedBitSet256 with) {
+		u0 &= ~with.u0;
+		u1 &= ~with.u1;
+		u2 &= ~with.u2;
+		u3 &= ~with.u3;
+	}
+	public FixedBitSet256 getAndNot(IBitSet with) {
+		return getAndNot(truncate(with));
+	}
+	public FixedBitSet256 getAndNot(FixedBitSet256 with) {
+		return new FixedBitSet256(u0 & ~with.u0, u1 & ~with.u1, u2 & ~with.u2, u3 & ~with.u3);
+	}
+	
+	public void or(IBitSet with) {
+		or(fit(with));
+	}
+	public void or(FixedBitSet256 with) {
+		u0 |= with.u0;
+		u1 |= with.u1;
+		u2 |= with.u2;
+		u3 |= with.u3;
+	}
+	public IBitSet getOr(IBitSet with) {
+		if (with instanceof FixedBitSet256 || with.length() <= CAPACITY) {
+			return getOr(truncate(with));
+		}
+		return toLongBitSet().getOr(with);
+	}
+	public FixedBitSet256 getOr(FixedBitSet256 with) {
+		return new FixedBitSet256(u0 | with.u0, u1 | with.u1, u2 | with.u2, u3 | with.u3);
+	}
+	
+	public void xor(IBitSet with) {
+		xor(fit(with));
+	}
+	public void xor(FixedBitSet256 with) {
+		u0 ^= with.u0;
+		u1 ^= with.u1;
+		u2 ^= with.u2;
+		u3 ^= with.u3;
+	}
+	public IBitSet getXor(IBitSet with) {
+		if (with instanceof FixedBitSet256 || with.length() <= CAPACITY) {
+			return getXor(truncate(with));
+		}
+		return toLongBitSet().getXor(with);
+	}
+	public FixedBitSet256 getXor(FixedBitSet256 with) {
+		return new FixedBitSet256(u0 ^ with.u0, u1 ^ with.u1, u2 ^ with.u2, u3 ^ with.u3);
+	}
+	public int getXorCardinality(IBitSet with) {
+		if (with instanceof FixedBitSet256) {
+			return getXorCardinality((FixedBitSet256)with);
+		}
+		return toLongBitSet().getXorCardinality(with);
+	}
+	public int getXorCardinality(FixedBitSet256 with) {
+		return Long.bitCount(u0 ^ with.u0) + Long.bitCount(u1 ^ with.u1) + Long.bitCount(u2 ^ with.u2) + Long.bitCount(u3 ^ with.u3);
+	}
+	
+	public int length() {
+		if (u3 != 0L) return 256 - Long.numberOfLeadingZeros(u3);
+		if (u2 != 0L) return 192 - Long.numberOfLeadingZeros(u2);
+		if (u1 != 0L) return 128 - Long.numberOfLeadingZeros(u1);
+		if (u0 != 0L) return 64 - Long.numberOfLeadingZeros(u0);
+		return 0;
+	}
+	@Override
+	public boolean isEmpty() {
+		return 0L == (u0 | u1 | u2 | u3);
+	}
+	public int cardinality() {
+		return Long.bitCount(u0) + Long.bitCount(u1) + Long.bitCount(u2) + Long.bitCount(u3);
+	}
+	
+	public int compareTo(IBitSet o) {
+		if (o instanceof FixedBitSet256) {
+			return compareTo((FixedBitSet256)o);
+		}
+		return toLongBitSet().compareTo(o);
+	}
+	/**
+	 * Compares the units in the same way as {@link LongBitSet#compareTo(LongBitSet)}
+	 */
+	public int compareTo(FixedBitSet256 o) {
+		long cmp;
+		if ((1L & u0) != (1L & o.u0)) return (1L & u0) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u0) - Long.reverse(0xfffffffffffffffeL & o.u0);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u1) != (1L & o.u1)) return (1L & u1) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u1) - Long.reverse(0xfffffffffffffffeL & o.u1);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u2) != (1L & o.u2)) return (1L & u2) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u2) - Long.reverse(0xfffffffffffffffeL & o.u2);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u3) != (1L & o.u3)) return (1L & u3) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u3) - Long.reverse(0xfffffffffffffffeL & o.u3);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		return 0;
+	}
+	
+	@Override
+	public FixedBitSet256 clone() {
+		return new FixedBitSet256(u0, u1, u2, u3);
+	}
+	public BitSetFactory factory() {
+		return FACTORY;
+	}
+	
+	@Override
+	public long[] toLongArray(long[] arr, int offset) {
+		if (arr == null || arr.length < offset + 4) {
+			arr = new long[offset + 4];
+		}
+		arr[offset] = u0;
+		arr[offset + 1] = u1;
+		arr[offset + 2] = u2;
+		arr[offset + 3] = u3;
+		return arr;
+	}
+	
+	@Override
+	public long getSubSetMask(long[] rows, int words, long rowMask) {
+		if (words != 4) {
+			return LongBitSet.subSetMask(rows, words, rowMask, toLongArray(), 0, 4);
+		}
+		long res = 0;
+		for (long m = rowMask; m != 0; m &= m - 1) {
+			final int r = Long.numberOfTrailingZeros(m);
+			final int off = r * 4;
+			if (0L == ((rows[off] & ~u0) | (rows[off + 1] & ~u1) | (rows[off + 2] & ~u2) | (rows[off + 3] & ~u3))) {
+				res |= (1L << r);
+			}
+		}
+		return res;
+	}
+	
+	/**
+	 * The same hash code as {@link LongBitSet#hashCode()} for the same bits
+	 */
+	@Override
+	public int hashCode() {
+		final long x = u0 ^ u1 ^ u2 ^ u3;
+		return (int)(x ^ (x >>> 32));
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (obj instanceof FixedBitSet256) {
+			final FixedBitSet256 other = (FixedBitSet256)obj;
+			return u0 == other.u0 && u1 == other.u1 && u2 == other.u2 && u3 == other.u3;
+		}
+		return false;
+	}
+
+}
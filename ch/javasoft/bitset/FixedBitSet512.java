@@ -0,0 +1,469 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.bitset;
+
+import java.util.BitSet;
+
+/**
+ * A <code>FixedBitSet512</code> stores up to 512 bits in eight inline long 
+ * fields, without array indirection. Bit operations with other 
+ * <code>FixedBitSet512</code> instances are unrolled. Operations with other bit set 
+ * implementations are supported, but slower. Bits beyond the capacity
+ * cannot be set.
+ * 
+ * @see FixedBitSet#factory(int)
+ */
+public final class FixedBitSet512 extends FixedBitSet {
+
+	/** The number of bits which can be stored*/
+	public static final int CAPACITY = 512;
+	
+	/**
+	 * Default static factory for {@link FixedBitSet512} instances.
+	 */
+	public static final FixedBitSet512Factory FACTORY = new FixedBitSet512Factory();
+	
+	/**
+	 * <code>FixedBitSet512Factory</code> is the {@link BitSetFactory} for 
+	 * {@code FixedBitSet512} instances. Bit sets which need more than 
+	 * {@link FixedBitSet512#CAPACITY} bits are created as {@link LongBitSet}.
+	 */
+	public static final class FixedBitSet512Factory extends FixedBitSetFactory {
+		public FixedBitSet512 create() {
+			return new FixedBitSet512();
+		}
+		public IBitSet create(int capacity) {
+			return capacity <= CAPACITY ? new FixedBitSet512() : new LongBitSet(capacity);
+		}
+		public IBitSet create(IBitSet bits) {
+			if (bits instanceof FixedBitSet512) return ((FixedBitSet512)bits).clone();
+			return bits.length() <= CAPACITY ? new FixedBitSet512(toUnits(bits, 8), 0) : new LongBitSet(bits);
+		}
+		public IBitSet convert(IBitSet bitSet) {
+			return bitSet instanceof FixedBitSet512 ? bitSet : create(bitSet);
+		}
+		public IBitSet create(BitSet bits) {
+			return bits.length() <= CAPACITY ? new FixedBitSet512(bits.toLongArray(), 0) : new LongBitSet(bits);
+		}
+		@Override
+		public FixedBitSet512 create(long[] units, int offset) {
+			return new FixedBitSet512(units, offset);
+		}
+		@Override
+		public int getCapacity() {
+			return CAPACITY;
+		}
+		public Class<FixedBitSet512> getBitSetClass() {
+			return FixedBitSet512.class;
+		}
+	};
+	
+	private long u0, u1, u2, u3, u4, u5, u6, u7;
+	
+	/**
+	 * Creates an empty bit set, all bits are initially false.
+	 */
+	public FixedBitSet512() {
+		//all units are zero
+	}
+	/**
+	 * Creates a bit set with the given units
+	 */
+	public FixedBitSet512(long u0, long u1, long u2, long u3, long u4, long u5, long u6, long u7) {
+		this.u0 = u0;
+		this.u1 = u1;
+		this.u2 = u2;
+		this.u3 = u3;
+		this.u4 = u4;
+		this.u5 = u5;
+		this.u6 = u6;
+		this.u7 = u7;
+	}
+	/**
+	 * Creates a bit set with 8 units read from the given array, starting at
+	 * {@code offset}. Missing units at the end of the array are zero.
+	 */
+	public FixedBitSet512(long[] units, int offset) {
+		u0 = unitAt(units, offset);
+		u1 = unitAt(units, offset + 1);
+		u2 = unitAt(units, offset + 2);
+		u3 = unitAt(units, offset + 3);
+		u4 = unitAt(units, offset + 4);
+		u5 = unitAt(units, offset + 5);
+		u6 = unitAt(units, offset + 6);
+		u7 = unitAt(units, offset + 7);
+	}
+	
+	/**
+	 * Returns the given bit set if it is a {@code FixedBitSet512}, and a new instance
+	 * with the bits of the given set otherwise. Bits beyond the capacity are
+	 * ignored.
+	 */
+	private static FixedBitSet512 truncate(IBitSet bits) {
+		return bits instanceof FixedBitSet512 ? (FixedBitSet512)bits : new FixedBitSet512(toUnits(bits, 8), 0);
+	}
+	/**
+	 * Returns the bit set as {@code FixedBitSet512}, throws an exception if bits beyond
+	 * the capacity are set
+	 */
+	private static FixedBitSet512 fit(IBitSet bits) {
+		if (bits instanceof FixedBitSet512) return (FixedBitSet512)bits;
+		final int len = bits.length();
+		if (len > CAPACITY) throw outOfCapacity(len - 1, CAPACITY);
+		return new FixedBitSet512(toUnits(bits, 8), 0);
+	}
+	
+	@Override
+	public int unitCount() {
+		return 8;
+	}
+	@Override
+	long unit(int index) {
+		switch (index) {
+			case 0: return u0;
+			case 1: return u1;
+			case 2: return u2;
+			case 3: return u3;
+			case 4: return u4;
+			case 5: return u5;
+			case 6: return u6;
+			case 7: return u7;
+			default: return 0L;
+		}
+	}
+
+	public void set(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 |= (1L << bit); break;
+			case 1: u1 |= (1L << bit); break;
+			case 2: u2 |= (1L << bit); break;
+			case 3: u3 |= (1L << bit); break;
+			case 4: u4 |= (1L << bit); break;
+			case 5: u5 |= (1L << bit); break;
+			case 6: u6 |= (1L << bit); break;
+			case 7: u7 |= (1L << bit); break;
+			default: throw outOfCapacity(bit, CAPACITY);
+		}
+	}
+	public void set(int bit, boolean value) {
+		if (value) set(bit);
+		else clear(bit);
+	}
+	public void clear(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 &= ~(1L << bit); break;
+			case 1: u1 &= ~(1L << bit); break;
+			case 2: u2 &= ~(1L << bit); break;
+			case 3: u3 &= ~(1L << bit); break;
+			case 4: u4 &= ~(1L << bit); break;
+			case 5: u5 &= ~(1L << bit); break;
+			case 6: u6 &= ~(1L << bit); break;
+			case 7: u7 &= ~(1L << bit); break;
+			default: if (bit < 0) throw new IndexOutOfBoundsException("negative bit index: " + bit);
+		}
+	}
+	public void clear() {
+		u0 = 0L;
+		u1 = 0L;
+		u2 = 0L;
+		u3 = 0L;
+		u4 = 0L;
+		u5 = 0L;
+		u6 = 0L;
+		u7 = 0L;
+	}
+	public void flip(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 ^= (1L << bit); break;
+			case 1: u1 ^= (1L << bit); break;
+			case 2: u2 ^= (1L << bit); break;
+			case 3: u3 ^= (1L << bit); break;
+			case 4: u4 ^= (1L << bit); break;
+			case 5: u5 ^= (1L << bit); break;
+			case 6: u6 ^= (1L << bit); break;
+			case 7: u7 ^= (1L << bit); break;
+			default: throw outOfCapacity(bit, CAPACITY);
+		}
+	}
+	public boolean get(int bit) {
+		if (bit < 0) throw new IndexOutOfBoundsException("negative bit index: " + bit);
+		return bit < CAPACITY && 0L != (unit(bit >>> 6) & (1L << bit));
+	}
+	
+	public boolean isSubSetOf(IBitSet of) {
+		return isSubSetOf(truncate(of));
+	}
+	public boolean isSubSetOf(FixedBitSet512 of) {
+		if (0L != ((u0 & ~of.u0) | (u1 & ~of.u1) | (u2 & ~of.u2) | (u3 & ~of.u3))) return false;
+		if (0L != ((u4 & ~of.u4) | (u5 & ~of.u5) | (u6 & ~of.u6) | (u7 & ~of.u7))) return false;
+		return true;
+	}
+	
+	public boolean isSuperSetOfIntersection(IBitSet interA, IBitSet interB) {
+		if (interA instanceof FixedBitSet512 && interB instanceof FixedBitSet512) {
+			return isSuperSetOfIntersection((FixedBitSet512)interA, (FixedBitSet512)interB);
+		}
+		return toLongBitSet().isSuperSetOfIntersection(interA, interB);
+	}
+	public boolean isSuperSetOfIntersection(FixedBitSet512 interA, FixedBitSet512 interB) {
+		if (0L != ((interA.u0 & interB.u0 & ~u0) | (interA.u1 & interB.u1 & ~u1) | (interA.u2 & interB.u2 & ~u2) | (interA.u3 & interB.u3 & ~u3))) return false;
+		if (0L != ((interA.u4 & interB.u4 & ~u4) | (interA.u5 & interB.u5 & ~u5) | (interA.u6 & interB.u6 & ~u6) | (interA.u7 & interB.u7 & ~u7))) return false;
+		return true;
+	}
+	
+	public void and(IBitSet with) {
+		and(truncate(with));
+	}
+	public void and(FixedBitSet512 with) {
+		u0 &= with.u0;
+		u1 &= with.u1;
+		u2 &= with.u2;
+		u3 &= with.u3;
+		u4 &= with.u4;
+		u5 &= with.u5;
+		u6 &= with.u6;
+		u7 &= with.u7;
+	}
+	public FixedBitSet512 getAnd(IBitSet with) {
+		return getAnd(truncate(with));
+	}
+	public FixedBitSet512 getAnd(FixedBitSet512 with) {
+		return new FixedBitSet512(u0 & with.u0, u1 & with.u1, u2 & with.u2, u3 & with.u3, u4 & with.u4, u5 & with.u5, u6 & with.u6, u7 & with.u7);
+	}
+	public int getAndCardinality(IBitSet with) {
+		return getAndCardinality(truncate(with));
+	}
+	public int getAndCardinality(FixedBitSet512 with) {
+		return Long.bitCount(u0 & with.u0) + Long.bitCount(u1 & with.u1) + Long.bitCount(u2 & with.u2) + Long.bitCount(u3 & with.u3) + Long.bitCount(u4 & with.u4) + Long.bitCount(u5 & with.u5) + Long.bitCount(u6 & with.u6) + Long.bitCount(u7 & with.u7);
+	}
+	public boolean hasAndCardinalityAtLeast(IBitSet with, int threshold) {
+		return hasAndCardinalityAtLeast(truncate(with), threshold);
+	}
+	public boolean hasAndCardinalityAtLeast(FixedBitSet512 with, int threshold) {
+		final int card = Long.bitCount(u0 & with.u0) + Long.bitCount(u1 & with.u1) + Long.bitCount(u2 & with.u2) + Long.bitCount(u3 & with.u3);
+		if (card >= threshold) return true;
+		return card + Long.bitCount(u4 & with.u4) + Long.bitCount(u5 & with.u5) + Long.bitCount(u6 & with.u6) + Long.bitCount(u7 & with.u7) >= threshold;
+	}
+	
+	public void andNot(IBitSet with) {
+		andNot(truncate(with));
+	}
+	public void andNot(FixedBitSet512 with) {
+		u0 &= ~with.u0;
+		u1 &= ~with.u1;
+		u2 &= ~with.u2;
+		u3 &= ~with.u3;
+		u4 &= ~with.u4;
+		u5 &= ~with.u5;
+		u6 &= ~with.u6;
+		u7 &= ~with.u7;
+	}
+	public FixedBitSet512 getAndNot(IBitSet with) {
+		return getAndNot(truncate(with));
+	}
+	public FixedBitSet512 getAndNot(FixedBitSet512 with) {
+		return new FixedBitSet512(u0 & ~with.u0, u1 & ~with.u1, u2 & ~with.u2, u3 & ~with.u3, u4 & ~with.u4, u5 & ~with.u5, u6 & ~with.u6, u7 & ~with.u7);
+	}
+	
+	public void or(IBitSet with) {
+		or(fit(with));
+	}
+	public void or(FixedBitSet512 with) {
+		u0 |= with.u0;
+		u1 |= with.u1;
+		u2 |= with.u2;
+		u3 |= with.u3;
+		u4 |= with.u4;
+		u5 |= with.u5;
+		u6 |= with.u6;
+		u7 |= with.u7;
+	}
+	public IBitSet getOr(IBitSet with) {
+		if (with instanceof FixedBitSet512 || with.length() <= CAPACITY) {
+			return getOr(truncate(with));
+		}
+		return toLongBitSet().getOr(with);
+	}
+	public FixedBitSet512 getOr(FixedBitSet512 with) {
+		return new FixedBitSet512(u0 | with.u0, u1 | with.u1, u2 | with.u2, u3 | with.u3, u4 | with.u4, u5 | with.u5, u6 | with.u6, u7 | with.u7);
+	}
+	
+	public void xor(IBitSet with) {
+		xor(fit(with));
+	}
+	public void xor(FixedBitSet512 with) {
+		u0 ^= with.u0;
+		u1 ^= with.u1;
+		u2 ^= with.u2;
+		u3 ^= with.u3;
+		u4 ^= with.u4;
+		u5 ^= with.u5;
+		u6 ^= with.u6;
+		u7 ^= with.u7;
+	}
+	public IBitSet getXor(IBitSet with) {
+		if (with instanceof FixedBitSet512 || with.length() <= CAPACITY) {
+			return getXor(truncate(with));
+		}
+		return toLongBitSet().getXor(with);
+	}
+	public FixedBitSet512 getXor(FixedBitSet512 with) {
+		return new FixedBitSet512(u0 ^ with.u0, u1 ^ with.u1, u2 ^ with.u2, u3 ^ with.u3, u4 ^ with.u4, u5 ^ with.u5, u6 ^ with.u6, u7 ^ with.u7);
+	}
+	public int getXorCardinality(IBitSet with) {
+		if (with instanceof FixedBitSet512) {
+			return getXorCardinality((FixedBitSet512)with);
+		}
+		return toLongBitSet().getXorCardinality(with);
+	}
+	public int getXorCardinality(FixedBitSet512 with) {
+		return Long.bitCount(u0 ^ with.u0) + Long.bitCount(u1 ^ with.u1) + Long.bitCount(u2 ^ with.u2) + Long.bitCount(u3 ^ with.u3) + Long.bitCount(u4 ^ with.u4) + Long.bitCount(u5 ^ with.u5) + Long.bitCount(u6 ^ with.u6) + Long.bitCount(u7 ^ with.u7);
+	}
+	
+	public int length() {
+		if (u7 != 0L) return 512 - Long.numberOfLeadingZeros(u7);
+		if (u6 != 0L) return 448 - Long.numberOfLeadingZeros(u6);
+		if (u5 != 0L) return 384 - Long.numberOfLeadingZeros(u5);
+		if (u4 != 0L) return 320 - Long.numberOfLeadingZeros(u4);
+		if (u3 != 0L) return 256 - Long.numberOfLeadingZeros(u3);
+		if (u2 != 0L) return 192 - Long.numberOfLeadingZeros(u2);
+		if (u1 != 0L) return 128 - Long.numberOfLeadingZeros(u1);
+		if (u0 != 0L) return 64 - Long.numberOfLeadingZeros(u0);
+		return 0;
+	}
+	@Override
+	public boolean isEmpty() {
+		return 0L == (u0 | u1 | u2 | u3 | u4 | u5 | u6 | u7);
+	}
+	public int cardinality() {
+		return Long.bitCount(u0) + Long.bitCount(u1) + Long.bitCount(u2) + Long.bitCount(u3) + Long.bitCount(u4) + Long.bitCount(u5) + Long.bitCount(u6) + Long.bitCount(u7);
+	}
+	
+	public int compareTo(IBitSet o) {
+		if (o instanceof FixedBitSet512) {
+			return compareTo((FixedBitSet512)o);
+		}
+		return toLongBitSet().compareTo(o);
+	}
+	/**
+	 * Compares the units in the same way as {@link LongBitSet#compareTo(LongBitSet)}
+	 */
+	public int compareTo(FixedBitSet512 o) {
+		long cmp;
+		if ((1L & u0) != (1L & o.u0)) return (1L & u0) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u0) - Long.reverse(0xfffffffffffffffeL & o.u0);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u1) != (1L & o.u1)) return (1L & u1) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u1) - Long.reverse(0xfffffffffffffffeL & o.u1);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u2) != (1L & o.u2)) return (1L & u2) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u2) - Long.reverse(0xfffffffffffffffeL & o.u2);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u3) != (1L & o.u3)) return (1L & u3) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u3) - Long.reverse(0xfffffffffffffffeL & o.u3);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u4) != (1L & o.u4)) return (1L & u4) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u4) - Long.reverse(0xfffffffffffffffeL & o.u4);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u5) != (1L & o.u5)) return (1L & u5) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u5) - Long.reverse(0xfffffffffffffffeL & o.u5);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u6) != (1L & o.u6)) return (1L & u6) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u6) - Long.reverse(0xfffffffffffffffeL & o.u6);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		if ((1L & u7) != (1L & o.u7)) return (1L & u7) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u7) - Long.reverse(0xfffffffffffffffeL & o.u7);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		return 0;
+	}
+	
+	@Override
+	public FixedBitSet512 clone() {
+		return new FixedBitSet512(u0, u1, u2, u3, u4, u5, u6, u7);
+	}
+	public BitSetFactory factory() {
+		return FACTORY;
+	}
+	
+	@Override
+	public long[] toLongArray(long[] arr, int offset) {
+		if (arr == null || arr.length < offset + 8) {
+			arr = new long[offset + 8];
+		}
+		arr[offset] = u0;
+		arr[offset + 1] = u1;
+		arr[offset + 2] = u2;
+		arr[offset + 3] = u3;
+		arr[offset + 4] = u4;
+		arr[offset + 5] = u5;
+		arr[offset + 6] = u6;
+		arr[offset + 7] = u7;
+		return arr;
+	}
+	
+	@Override
+	public long getSubSetMask(long[] rows, int words, long rowMask) {
+		if (words != 8) {
+			return LongBitSet.subSetMask(rows, words, rowMask, toLongArray(), 0, 8);
+		}
+		long res = 0;
+		for (long m = rowMask; m != 0; m &= m - 1) {
+			final int r = Long.numberOfTrailingZeros(m);
+			final int off = r * 8;
+			if (0L == ((rows[off] & ~u0) | (rows[off + 1] & ~u1) | (rows[off + 2] & ~u2) | (rows[off + 3] & ~u3) | (rows[off + 4] & ~u4) | (rows[off + 5] & ~u5) | (rows[off + 6] & ~u6) | (rows[off + 7] & ~u7))) {
+				res |= (1L << r);
+			}
+		}
+		return res;
+	}
+	
+	/**
+	 * The same hash code as {@link LongBitSet#hashCode()} for the same bits
+	 */
+	@Override
+	public int hashCode() {
+		final long x = u0 ^ u1 ^ u2 ^ u3 ^ u4 ^ u5 ^ u6 ^ u7;
+		return (int)(x ^ (x >>> 32));
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (obj instanceof FixedBitSet512) {
+			final FixedBitSet512 other = (FixedBitSet512)obj;
+			return u0 == other.u0 && u1 == other.u1 && u2 == other.u2 && u3 == other.u3 && u4 == other.u4 && u5 == other.u5 && u6 == other.u6 && u7 == other.u7;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,353 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.bitset;
+
+import java.util.BitSet;
+
+/**
+ * A <code>FixedBitSet64</code> stores up to 64 bits in one inline long 
+ * field, without array indirection. Bit operations with other 
+ * <code>FixedBitSet64</code> instances are unrolled. Operations with other bit set 
+ * implementations are supported, but slower. Bits beyond the capacity
+ * cannot be set.
+ * 
+ * @see FixedBitSet#factory(int)
+ */
+public final class FixedBitSet64 extends FixedBitSet {
+
+	/** The number of bits which can be stored*/
+	public static final int CAPACITY = 64;
+	
+	/**
+	 * Default static factory for {@link FixedBitSet64} instances.
+	 */
+	public static final FixedBitSet64Factory FACTORY = new FixedBitSet64Factory();
+	
+	/**
+	 * <code>FixedBitSet64Factory</code> is the {@link BitSetFactory} for 
+	 * {@code FixedBitSet64} instances. Bit sets which need more than 
+	 * {@link FixedBitSet64#CAPACITY} bits are created as {@link LongBitSet}.
+	 */
+	public static final class FixedBitSet64Factory extends FixedBitSetFactory {
+		public FixedBitSet64 create() {
+			return new FixedBitSet64();
+		}
+		public IBitSet create(int capacity) {
+			return capacity <= CAPACITY ? new FixedBitSet64() : new LongBitSet(capacity);
+		}
+		public IBitSet create(IBitSet bits) {
+			if (bits instanceof FixedBitSet64) return ((FixedBitSet64)bits).clone();
+			return bits.length() <= CAPACITY ? new FixedBitSet64(toUnits(bits, 1), 0) : new LongBitSet(bits);
+		}
+		public IBitSet convert(IBitSet bitSet) {
+			return bitSet instanceof FixedBitSet64 ? bitSet : create(bitSet);
+		}
+		public IBitSet create(BitSet bits) {
+			return bits.length() <= CAPACITY ? new FixedBitSet64(bits.toLongArray(), 0) : new LongBitSet(bits);
+		}
+		@Override
+		public FixedBitSet64 create(long[] units, int offset) {
+			return new FixedBitSet64(units, offset);
+		}
+		@Override
+		public int getCapacity() {
+			return CAPACITY;
+		}
+		public Class<FixedBitSet64> getBitSetClass() {
+			return FixedBitSet64.class;
+		}
+	};
+	
+	private long u0;
+	
+	/**
+	 * Creates an empty bit set, all bits are initially false.
+	 */
+	public FixedBitSet64() {
+		//all units are zero
+	}
+	/**
+	 * Creates a bit set with the given units
+	 */
+	public FixedBitSet64(long u0) {
+		this.u0 = u0;
+	}
+	/**
+	 * Creates a bit set with 1 units read from the given array, starting at
+	 * {@code offset}. Missing units at the end of the array are zero.
+	 */
+	public FixedBitSet64(long[] units, int offset) {
+		u0 = unitAt(units, offset);
+	}
+	
+	/**
+	 * Returns the given bit set if it is a {@code FixedBitSet64}, and a new instance
+	 * with the bits of the given set otherwise. Bits beyond the capacity are
+	 * ignored.
+	 */
+	private static FixedBitSet64 truncate(IBitSet bits) {
+		return bits instanceof FixedBitSet64 ? (FixedBitSet64)bits : new FixedBitSet64(toUnits(bits, 1), 0);
+	}
+	/**
+	 * Returns the bit set as {@code FixedBitSet64}, throws an exception if bits beyond
+	 * the capacity are set
+	 */
+	private static FixedBitSet64 fit(IBitSet bits) {
+		if (bits instanceof FixedBitSet64) return (FixedBitSet64)bits;
+		final int len = bits.length();
+		if (len > CAPACITY) throw outOfCapacity(len - 1, CAPACITY);
+		return new FixedBitSet64(toUnits(bits, 1), 0);
+	}
+	
+	@Override
+	public int unitCount() {
+		return 1;
+	}
+	@Override
+	long unit(int index) {
+		switch (index) {
+			case 0: return u0;
+			default: return 0L;
+		}
+	}
+
+	public void set(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 |= (1L << bit); break;
+			default: throw outOfCapacity(bit, CAPACITY);
+		}
+	}
+	public void set(int bit, boolean value) {
+		if (value) set(bit);
+		else clear(bit);
+	}
+	public void clear(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 &= ~(1L << bit); break;
+			default: if (bit < 0) throw new IndexOutOfBoundsException("negative bit index: " + bit);
+		}
+	}
+	public void clear() {
+		u0 = 0L;
+	}
+	public void flip(int bit) {
+		switch (bit >>> 6) {
+			case 0: u0 ^= (1L << bit); break;
+			default: throw outOfCapacity(bit, CAPACITY);
+		}
+	}
+	public boolean get(int bit) {
+		if (bit < 0) throw new IndexOutOfBoundsException("negative bit index: " + bit);
+		return bit < CAPACITY && 0L != (unit(bit >>> 6) & (1L << bit));
+	}
+	
+	public boolean isSubSetOf(IBitSet of) {
+		return isSubSetOf(truncate(of));
+	}
+	public boolean isSubSetOf(FixedBitSet64 of) {
+		if (0L != ((u0 & ~of.u0))) return false;
+		return true;
+	}
+	
+	public boolean isSuperSetOfIntersection(IBitSet interA, IBitSet interB) {
+		if (interA instanceof FixedBitSet64 && interB instanceof FixedBitSet64) {
+			return isSuperSetOfIntersection((FixedBitSet64)interA, (FixedBitSet64)interB);
+		}
+		return toLongBitSet().isSuperSetOfIntersection(interA, interB);
+	}
+	public boolean isSuperSetOfIntersection(FixedBitSet64 interA, FixedBitSet64 interB) {
+		if (0L != ((interA.u0 & interB.u0 & ~u0))) return false;
+		return true;
+	}
+	
+	public void and(IBitSet with) {
+		and(truncate(with));
+	}
+	public void and(FixedBitSet64 with) {
+		u0 &= with.u0;
+	}
+	public FixedBitSet64 getAnd(IBitSet with) {
+		return getAnd(truncate(with));
+	}
+	public FixedBitSet64 getAnd(FixedBitSet64 with) {
+		return new FixedBitSet64(u0 & with.u0);
+	}
+	public int getAndCardinality(IBitSet with) {
+		return getAndCardinality(truncate(with));
+	}
+	public int getAndCardinality(FixedBitSet64 with) {
+		return Long.bitCount(u0 & with.u0);
+	}
+	public boolean hasAndCardinalityAtLeast(IBitSet with, int threshold) {
+		return hasAndCardinalityAtLeast(truncate(with), threshold);
+	}
+	public boolean hasAndCardinalityAtLeast(FixedBitSet64 with, int threshold) {
+		return Long.bitCount(u0 & with.u0) >= threshold;
+	}
+	
+	public void andNot(IBitSet with) {
+		andNot(truncate(with));
+	}
+	public void andNot(FixedBitSet64 with) {
+		u0 &= ~with.u0;
+	}
+	public FixedBitSet64 getAndNot(IBitSet with) {
+		return getAndNot(truncate(with));
+	}
+	public FixedBitSet64 getAndNot(FixedBitSet64 with) {
+		return new FixedBitSet64(u0 & ~with.u0);
+	}
+	
+	public void or(IBitSet with) {
+		or(fit(with));
+	}
+	public void or(FixedBitSet64 with) {
+		u0 |= with.u0;
+	}
+	public IBitSet getOr(IBitSet with) {
+		if (with instanceof FixedBitSet64 || with.length() <= CAPACITY) {
+			return getOr(truncate(with));
+		}
+		return toLongBitSet().getOr(with);
+	}
+	public FixedBitSet64 getOr(FixedBitSet64 with) {
+		return new FixedBitSet64(u0 | with.u0);
+	}
+	
+	public void xor(IBitSet with) {
+		xor(fit(with));
+	}
+	public void xor(FixedBitSet64 with) {
+		u0 ^= with.u0;
+	}
+	public IBitSet getXor(IBitSet with) {
+		if (with instanceof FixedBitSet64 || with.length() <= CAPACITY) {
+			return getXor(truncate(with));
+		}
+		return toLongBitSet().getXor(with);
+	}
+	public FixedBitSet64 getXor(FixedBitSet64 with) {
+		return new FixedBitSet64(u0 ^ with.u0);
+	}
+	public int getXorCardinality(IBitSet with) {
+		if (with instanceof FixedBitSet64) {
+			return getXorCardinality((FixedBitSet64)with);
+		}
+		return toLongBitSet().getXorCardinality(with);
+	}
+	public int getXorCardinality(FixedBitSet64 with) {
+		return Long.bitCount(u0 ^ with.u0);
+	}
+	
+	public int length() {
+		if (u0 != 0L) return 64 - Long.numberOfLeadingZeros(u0);
+		return 0;
+	}
+	@Override
+	public boolean isEmpty() {
+		return 0L == (u0);
+	}
+	public int cardinality() {
+		return Long.bitCount(u0);
+	}
+	
+	public int compareTo(IBitSet o) {
+		if (o instanceof FixedBitSet64) {
+			return compareTo((FixedBitSet64)o);
+		}
+		return toLongBitSet().compareTo(o);
+	}
+	/**
+	 * Compares the units in the same way as {@link LongBitSet#compareTo(LongBitSet)}
+	 */
+	public int compareTo(FixedBitSet64 o) {
+		long cmp;
+		if ((1L & u0) != (1L & o.u0)) return (1L & u0) != 0 ? 1 : -1;
+		cmp = Long.reverse(0xfffffffffffffffeL & u0) - Long.reverse(0xfffffffffffffffeL & o.u0);
+		if (cmp != 0) return cmp < 0 ? -1 : 1;
+		return 0;
+	}
+	
+	@Override
+	public FixedBitSet64 clone() {
+		return new FixedBitSet64(u0);
+	}
+	public BitSetFactory factory() {
+		return FACTORY;
+	}
+	
+	@Override
+	public long[] toLongArray(long[] arr, int offset) {
+		if (arr == null || arr.length < offset + 1) {
+			arr = new long[offset + 1];
+		}
+		arr[offset] = u0;
+		return arr;
+	}
+	
+	@Override
+	public long getSubSetMask(long[] rows, int words, long rowMask) {
+		if (words != 1) {
+			return LongBitSet.subSetMask(rows, words, rowMask, toLongArray(), 0, 1);
+		}
+		long res = 0;
+		for (long m = rowMask; m != 0; m &= m - 1) {
+			final int r = Long.numberOfTrailingZeros(m);
+			final int off = r * 1;
+			if (0L == ((rows[off] & ~u0))) {
+				res |= (1L << r);
+			}
+		}
+		return res;
+	}
+	
+	/**
+	 * The same hash code as {@link LongBitSet#hashCode()} for the same bits
+	 */
+	@Override
+	public int hashCode() {
+		final long x = u0;
+		return (int)(x ^ (x >>> 32));
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (obj instanceof FixedBitSet64) {
+			final FixedBitSet64 other = (FixedBitSet64)obj;
+			return u0 == other.u0;
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,167 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.bitset;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the {@link FixedBitSet fixed bit sets} with {@link LongBitSet} for 
+ * random bit sets, both for operations with the same class and for mixed
+ * operations with long bit sets.
+ */
+public class FixedBitSetTest extends TestCase {
+	
+	private static final int ROUNDS = 500;
+	
+	private final Random rnd = new Random(4711);
+	
+	public void testFactorySelection() {
+		assertSame(FixedBitSet64.FACTORY, FixedBitSet.factory(1));
+		assertSame(FixedBitSet64.FACTORY, FixedBitSet.factory(64));
+		assertSame(FixedBitSet128.FACTORY, FixedBitSet.factory(65));
+		assertSame(FixedBitSet256.FACTORY, FixedBitSet.factory(200));
+		assertSame(FixedBitSet512.FACTORY, FixedBitSet.factory(512));
+		assertSame(LongBitSet.FACTORY, FixedBitSet.factory(513));
+		assertTrue(FixedBitSet128.FACTORY.create(129) instanceof LongBitSet);
+	}
+	
+	public void testAgainstLongBitSet() {
+		for (final int capacity : new int[] {64, 128, 256, 512}) {
+			final BitSetFactory factory = FixedBitSet.factory(capacity);
+			for (int r = 0; r < ROUNDS; r++) {
+				final LongBitSet la = random(capacity), lb = random(capacity), lc = random(capacity);
+				final IBitSet fa = factory.convert(la), fb = factory.convert(lb), fc = factory.convert(lc);
+				assertSame(factory.getBitSetClass(), fa.getClass());
+				assertEquals(la, new LongBitSet(fa));
+				assertEquals(la.hashCode(), fa.hashCode());
+				assertEquals(la.length(), fa.length());
+				assertEquals(la.cardinality(), fa.cardinality());
+				assertEquals(la.toString(), fa.toString());
+				assertEquals(la.toBitSet(), fa.toBitSet());
+				assertEquals(la.equals(lb), fa.equals(fb));
+				assertEquals(sgn(la.compareTo(lb)), sgn(fa.compareTo(fb)));
+				final int from = rnd.nextInt(capacity);
+				assertEquals(la.nextSetBit(from), fa.nextSetBit(from));
+				assertEquals(la.nextClearBit(from), fa.nextClearBit(from));
+				for (final IBitSet other : new IBitSet[] {fb, lb}) {
+					//same class and mixed
+					final LongBitSet sub = la.getAnd(lb);
+					assertTrue(factory.convert(sub).isSubSetOf(other));
+					assertEquals(la.isSubSetOf(lb), fa.isSubSetOf(other));
+					assertEquals(lc.isSuperSetOfIntersection(la, lb), fc.isSuperSetOfIntersection(fa, other));
+					assertEquals(la.getAndCardinality(lb), fa.getAndCardinality(other));
+					assertEquals(la.getXorCardinality(lb), fa.getXorCardinality(other));
+					final int threshold = rnd.nextInt(capacity / 2 + 1);
+					assertEquals(la.getAndCardinality(lb) >= threshold, fa.hasAndCardinalityAtLeast(other, threshold));
+					assertEquals(la.getAnd(lb), new LongBitSet(fa.getAnd(other)));
+					assertEquals(la.getOr(lb), new LongBitSet(fa.getOr(other)));
+					assertEquals(la.getXor(lb), new LongBitSet(fa.getXor(other)));
+					final LongBitSet andNot = la.clone();
+					andNot.andNot(lb);
+					assertEquals(andNot, new LongBitSet(fa.getAndNot(other)));
+					final IBitSet mod = fa.clone();
+					mod.or(other);
+					mod.xor(other);
+					mod.and(other);
+					final LongBitSet lmod = la.clone();
+					lmod.or(lb);
+					lmod.xor(lb);
+					lmod.and(lb);
+					assertEquals(lmod, new LongBitSet(mod));
+				}
+			}
+		}
+	}
+	
+	public void testSetClearAndCapacity() {
+		final FixedBitSet128 bits = new FixedBitSet128();
+		bits.set(0);
+		bits.set(127);
+		bits.flip(64);
+		final LongBitSet expected = new LongBitSet(128);
+		expected.set(0);
+		expected.set(64);
+		expected.set(127);
+		assertEquals(expected, new LongBitSet(bits));
+		bits.flip(64);
+		bits.clear(127);
+		assertEquals(1, bits.cardinality());
+		assertFalse(bits.get(200));
+		bits.clear(200);
+		try {
+			bits.set(128);
+			fail("bit beyond capacity must not be settable");
+		}
+		catch (IndexOutOfBoundsException ex) {
+			//expected
+		}
+		final LongBitSet large = new LongBitSet(300);
+		large.set(299);
+		assertTrue(bits.getOr(large) instanceof LongBitSet);
+		assertEquals(2, bits.getOr(large).cardinality());
+		assertFalse(bits.isSuperSetOfIntersection(large, large));
+	}
+	
+	public void testSubSetMask() {
+		for (final int capacity : new int[] {64, 128, 256, 512}) {
+			final FixedBitSet.FixedBitSetFactory factory = (FixedBitSet.FixedBitSetFactory)FixedBitSet.factory(capacity);
+			for (int r = 0; r < ROUNDS / 10; r++) {
+				final LongBitSet sup = random(capacity);
+				final int words = capacity / Long.SIZE;
+				final long[] rows = new long[64 * words];
+				for (int i = 0; i < 64; i++) {
+					(rnd.nextBoolean() ? sup.getAnd(random(capacity)) : random(capacity)).toLongArray(rows, i * words);
+				}
+				final long rowMask = rnd.nextLong();
+				assertEquals(sup.getSubSetMask(rows, words, rowMask), factory.create(sup.toLongArray(), 0).getSubSetMask(rows, words, rowMask));
+			}
+		}
+	}
+	
+	private LongBitSet random(int capacity) {
+		final LongBitSet bits = new LongBitSet(capacity);
+		final int len = 1 + rnd.nextInt(capacity);
+		final double density = rnd.nextDouble();
+		for (int i = 0; i < len; i++) {
+			if (rnd.nextDouble() < density) bits.set(i);
+		}
+		return bits;
+	}
+	private static int sgn(int val) {
+		return val < 0 ? -1 : val > 0 ? 1 : 0;
+	}
+
+}
@@ -123,6 +123,21 @@ public interface IBitSet extends Comparable<IBitSet> {
      * @return the cardinality of the result
      */
     int getAndCardinality(IBitSet with);
+    
+    /**
+     * Returns true if the cardinality of the logical and of this bit set and
+     * the given bit set is at least {@code threshold}, without creating the
+     * and-ed bit set. Implementations may stop counting as soon as the 
+     * threshold is reached:<br>
+     * {@code result = |this.bit[i] AND with.bit[i]| >= threshold}
+     *  
+     * @param with  		The bit set with which this bit set is logically 
+     * 						and-ed
+     * @param threshold		The minimum cardinality of the and-ed bit set
+     * @return true if the cardinality of the and-ed bit set is at least the
+     * 			given threshold
+     */
+    boolean hasAndCardinalityAtLeast(IBitSet with, int threshold);
 
     /**
      * The current bit set is logically and-ed with the given bit set, and the 
@@ -266,6 +266,9 @@ public class IntBitSet implements IBitSet {
 	public int getAndCardinality(IntBitSet with) {
 		return getAndCardinality(this, with);
 	}
+	public boolean hasAndCardinalityAtLeast(IBitSet with, int threshold) {
+		return threshold <= 0 || getAndCardinality(with) >= threshold;
+	}
 	
     public void or(IBitSet with) {
     	or(with instanceof IntBitSet ? (IntBitSet)with : new IntBitSet(with));
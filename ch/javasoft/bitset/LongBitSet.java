@@ -202,20 +202,11 @@ public class LongBitSet implements IBitSet {
 	public boolean isSubSetOf(LongBitSet of) {
     	if (this == of) return true;
 
-    	int min = Math.min(mUnits.length, of.mUnits.length);
-		for (int ii = 0; ii < min; ii++) {
-			//classical
-			long and = mUnits[ii] & of.mUnits[ii];
-			if (and != mUnits[ii]) return false;
-			
-			//this -> of == not this OR of
-//			if (-1L != (~mUnits[ii] | of.mUnits[ii])) return false;
-			
-			//not (this -> of) == this AND not of
-//			if (0L != (mUnits[ii] & ~of.mUnits[ii])) return false;
-		}		
-		for (int i = min; i < mUnits.length; i++) {
-			if (mUnits[i] != 0L) return false;
+    	final long[] units = mUnits;
+    	final int min = Math.min(units.length, of.mUnits.length);
+    	if (!isSubSetOf(units, 0, of.mUnits, 0, min)) return false;
+		for (int i = min; i < units.length; i++) {
+			if (units[i] != 0L) return false;
 		}
 		return true;
 	}
@@ -228,18 +219,35 @@ public class LongBitSet implements IBitSet {
 	public boolean isSuperSetOfIntersection(LongBitSet interA, LongBitSet interB) {
 		if (this == interA || this == interB) return true;
 
-		int minInter = Math.min(interA.mUnits.length, interB.mUnits.length);
-		int minAll = Math.min(mUnits.length, minInter);
-		for (int ii = 0; ii < minAll; ii++) {
-			long inter = interA.mUnits[ii] & interB.mUnits[ii];
-			if (inter != (inter & mUnits[ii])) return false;
-		}		
+		final long[] unitsA = interA.mUnits;
+		final long[] unitsB = interB.mUnits;
+		final int minInter = Math.min(unitsA.length, unitsB.length);
+		final int minAll = Math.min(mUnits.length, minInter);
+		if (!isSuperSetOfIntersection(mUnits, 0, unitsA, 0, unitsB, 0, minAll)) return false;
 		for (int i = minAll; i < minInter; i++) {
-			if (0L != (interA.mUnits[i] & interB.mUnits[i])) return false;
+			if (0L != (unitsA[i] & unitsB[i])) return false;
 		}
 		return true;
 	}
 	
+	/**
+	 * Returns a mask with the rows of a packed bit pattern matrix which are
+	 * subsets of this bit set. Only rows selected by {@code rowMask} are 
+	 * tested, that is, row {@code r} is tested if bit {@code r} is set in 
+	 * {@code rowMask}. Row {@code r} occupies the units 
+	 * {@code rows[r*words]} to {@code rows[r*words + words - 1]}, as 
+	 * written by {@link #toLongArray(long[], int)}. No objects are created.
+	 * 
+	 * @param rows		the packed bit pattern matrix, row by row
+	 * @param words		the number of long units per row
+	 * @param rowMask	the rows to test, at most 64
+	 * @return the subset of {@code rowMask} with the rows which are subsets 
+	 * 			of this bit set
+	 */
+	public long getSubSetMask(long[] rows, int words, long rowMask) {
+		return subSetMask(rows, words, rowMask, mUnits, 0, mUnits.length);
+	}
+	
     public void and(IBitSet with) {
     	and(with instanceof LongBitSet ? (LongBitSet)with : new LongBitSet(with));
     }
@@ -266,6 +274,14 @@ public class LongBitSet implements IBitSet {
 	public int getAndCardinality(LongBitSet with) {
 		return getAndCardinality(this, with);
 	}
+	public boolean hasAndCardinalityAtLeast(IBitSet with, int threshold) {
+		return hasAndCardinalityAtLeast(with instanceof LongBitSet ? (LongBitSet)with : new LongBitSet(with), threshold);
+	}
+	public boolean hasAndCardinalityAtLeast(LongBitSet with, int threshold) {
+		if (threshold <= 0) return true;
+		final int minLen = Math.min(mUnits.length, with.mUnits.length);
+		return andCardinality(mUnits, 0, with.mUnits, 0, minLen, threshold) >= threshold;
+	}
 	
     public void or(IBitSet with) {
     	or(with instanceof LongBitSet ? (LongBitSet)with : new LongBitSet(with));
@@ -392,9 +408,9 @@ public class LongBitSet implements IBitSet {
     		larger	= setB;
     		smaller = setA;
     	}
-    	long[] units = new long[larger.mUnits.length];
+    	long[] units = larger.mUnits.clone();
     	for (int i = 0; i < smaller.mUnits.length; i++) {
-			units[i] = smaller.mUnits[i] | larger.mUnits[i];
+			units[i] |= smaller.mUnits[i];
 		}
     	return new LongBitSet(units, false);
     }
@@ -420,13 +436,121 @@ public class LongBitSet implements IBitSet {
      * number of bits which are common in the two sets
      */
     public static int getAndCardinality(LongBitSet setA, LongBitSet setB) {
-    	int card = 0;
     	final int minLen = Math.min(setA.mUnits.length, setB.mUnits.length);
-    	for (int i = 0; i < minLen; i++) {
-			card += Long.bitCount(setA.mUnits[i] & setB.mUnits[i]);
+    	return andCardinality(setA.mUnits, 0, setB.mUnits, 0, minLen, Integer.MAX_VALUE);
+    }
+    
+    /*
+     * Bulk kernels on long unit arrays, they create no objects. The counting
+     * loop is unrolled by four units with independent accumulators such that
+     * Long.bitCount can be executed as popcnt instruction in parallel, the
+     * threshold is tested once per block of four units. The subset tests are 
+     * plain loops exiting at the first violating unit, which is faster than 
+     * blockwise tests since most failing tests fail in the first unit.
+     */
+    
+    /**
+     * Returns the number of one bits in {@code a AND b} for the given unit 
+     * ranges. Counting stops as soon as the count reaches 
+     * {@code threshold}, the returned value is then at least 
+     * {@code threshold}, but not necessarily the exact cardinality. Use
+     * {@link Integer#MAX_VALUE} as threshold for the exact cardinality.
+     * 
+     * @param a			the units of the first bit set
+     * @param offA		the first unit to use from {@code a}
+     * @param b			the units of the second bit set
+     * @param offB		the first unit to use from {@code b}
+     * @param len		the number of units to and
+     * @param threshold	stop counting if this cardinality is reached
+     * @return the cardinality of the and, or a value at least 
+     * 			{@code threshold} if the threshold has been reached
+     */
+    public static int andCardinality(long[] a, int offA, long[] b, int offB, int len, int threshold) {
+    	int card = 0;
+    	int i = 0;
+    	for (; i + 3 < len; i += 4) {
+    		final int c0 = Long.bitCount(a[offA + i] & b[offB + i]);
+    		final int c1 = Long.bitCount(a[offA + i + 1] & b[offB + i + 1]);
+    		final int c2 = Long.bitCount(a[offA + i + 2] & b[offB + i + 2]);
+    		final int c3 = Long.bitCount(a[offA + i + 3] & b[offB + i + 3]);
+    		card += (c0 + c1) + (c2 + c3);
+    		if (card >= threshold) return card;
+    	}
+    	for (; i < len; i++) {
+    		card += Long.bitCount(a[offA + i] & b[offB + i]);
     	}
     	return card;
     }
+    /**
+     * Returns true if the unit range of {@code sub} is a subset of the unit
+     * range of {@code sup}, that is, if {@code sub AND NOT sup} is empty
+     * 
+     * @param sub		the units of the subset candidate
+     * @param offSub	the first unit to use from {@code sub}
+     * @param sup		the units of the superset candidate
+     * @param offSup	the first unit to use from {@code sup}
+     * @param len		the number of units to test
+     */
+    public static boolean isSubSetOf(long[] sub, int offSub, long[] sup, int offSup, int len) {
+    	for (int i = 0; i < len; i++) {
+    		if (0L != (sub[offSub + i] & ~sup[offSup + i])) return false;
+    	}
+    	return true;
+    }
+    /**
+     * Fused and-then-subset test: returns true if {@code a AND b} is a subset
+     * of {@code sup} for the given unit ranges, without creating the 
+     * intersection set
+     * 
+     * @param sup		the units of the superset candidate
+     * @param offSup	the first unit to use from {@code sup}
+     * @param a			the units of the first intersection set
+     * @param offA		the first unit to use from {@code a}
+     * @param b			the units of the second intersection set
+     * @param offB		the first unit to use from {@code b}
+     * @param len		the number of units to test
+     */
+    public static boolean isSuperSetOfIntersection(long[] sup, int offSup, long[] a, int offA, long[] b, int offB, int len) {
+    	for (int i = 0; i < len; i++) {
+    		if (0L != (a[offA + i] & b[offB + i] & ~sup[offSup + i])) return false;
+    	}
+    	return true;
+    }
+    /**
+     * Batched one-vs-many subset test. Returns the rows of the packed matrix
+     * {@code rows} which are subsets of the superset candidate {@code sup}.
+     * Only the rows selected by {@code rowMask} are tested. Row units beyond
+     * {@code supLen} must be zero for the row to be a subset.
+     * 
+     * @param rows		the packed bit pattern matrix, {@code words} units
+     * 					per row
+     * @param words		the number of units per row
+     * @param rowMask	bit {@code r} is set if row {@code r} is to be tested
+     * @param sup		the units of the superset candidate
+     * @param offSup	the first unit to use from {@code sup}
+     * @param supLen	the number of units of the superset candidate
+     * @return the subset of {@code rowMask} with the rows which are subsets
+     * 			of the superset candidate
+     * @see #getSubSetMask(long[], int, long)
+     */
+    public static long subSetMask(long[] rows, int words, long rowMask, long[] sup, int offSup, int supLen) {
+    	final int len = Math.min(words, supLen);
+    	long res = 0;
+    	for (long m = rowMask; m != 0; m &= m - 1) {
+    		final int r = Long.numberOfTrailingZeros(m);
+    		final int off = r * words;
+    		if (isSubSetOf(rows, off, sup, offSup, len) && isZero(rows, off + len, words - len)) {
+    			res |= (1L << r);
+    		}
+    	}
+    	return res;
+    }
+    private static boolean isZero(long[] units, int off, int len) {
+    	for (int i = 0; i < len; i++) {
+    		if (units[off + i] != 0L) return false;
+    	}
+    	return true;
+    }
     /**
      * Returns setA and not setB
      */
@@ -434,10 +558,11 @@ public class LongBitSet implements IBitSet {
     	//set b is always true in the large parts, and thus always larger
     	//thus, set a is always directing the new length
     	final long[] units = new long[setA.mUnits.length];
-    	for (int i = 0; i < setB.mUnits.length; i++) {
-			units[i] = setA.mUnits[i] & ~setA.mUnits[i];
+    	final int common = Math.min(setA.mUnits.length, setB.mUnits.length);
+    	for (int i = 0; i < common; i++) {
+			units[i] = setA.mUnits[i] & ~setB.mUnits[i];
 		}
-    	for (int i = setB.mUnits.length; i < setA.mUnits.length; i++) {
+    	for (int i = common; i < setA.mUnits.length; i++) {
 			units[i] = setA.mUnits[i];
 		}
     	return new LongBitSet(units, false);
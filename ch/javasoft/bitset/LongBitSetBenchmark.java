@@ -0,0 +1,237 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.bitset;
+
+import java.util.Random;
+
+/**
+ * Micro benchmark for the bulk kernels of {@link LongBitSet} at typical
+ * pattern widths. Each kernel is compared with the previous scalar loop, or
+ * with the allocating variant:
+ * <ul>
+ * <li>card: {@link LongBitSet#hasAndCardinalityAtLeast(LongBitSet, int)} 
+ * 	versus counting all bits of the and</li>
+ * <li>inter: {@link LongBitSet#isSuperSetOfIntersection(LongBitSet, LongBitSet)}
+ * 	versus {@code getAnd(b).isSubSetOf(c)}</li>
+ * <li>batch: {@link LongBitSet#getSubSetMask(long[], int, long)} for 64 
+ * 	packed queries versus 64 single subset tests</li>
+ * </ul>
+ * The time per test (per query for batch) is written to standard out.
+ * <p>
+ * Usage: {@code java ch.javasoft.bitset.LongBitSetBenchmark [rounds]} 
+ */
+public class LongBitSetBenchmark {
+	
+	private static final int[]	WIDTHS	= {64, 128, 256, 512};
+	private static final int	POOL	= 256;//number of bit sets per width
+	private static final int	QUERIES	= 64;
+	private static final int	WARMUP	= 200000;//tests before measuring
+	
+	private static volatile long sink;//prevents dead code elimination
+
+	public static void main(String[] args) {
+		final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		final Random rnd = new Random(4711);
+		System.out.println("width   card-scalar   card-kernel  inter-alloc  inter-kernel  batch-scalar  batch-kernel   [ns/test]");
+		for (final int width : WIDTHS) {
+			final LongBitSet[] sets = new LongBitSet[POOL];
+			for (int i = 0; i < POOL; i++) {
+				//zero sets of modes are dense, most bits are set
+				sets[i] = new LongBitSet(width);
+				for (int b = 0; b < width; b++) {
+					if (rnd.nextInt(8) != 0) sets[i].set(b);
+				}
+			}
+			//union patterns of tree nodes are even denser
+			final LongBitSet[] unions = new LongBitSet[POOL];
+			for (int i = 0; i < POOL; i++) {
+				unions[i] = sets[i].getOr(sets[(i + 1) % POOL]).getOr(sets[(i + 2) % POOL]);
+			}
+			final long[][] units = new long[POOL][];
+			for (int i = 0; i < POOL; i++) {
+				units[i] = sets[i].toLongArray();
+			}
+			final LongBitSet[] queries = new LongBitSet[QUERIES];
+			final long[] packed = new long[QUERIES * (width / Long.SIZE)];
+			for (int q = 0; q < QUERIES; q++) {
+				queries[q] = sets[q].getAnd(sets[q + QUERIES]);
+				queries[q].toLongArray(packed, q * (width / Long.SIZE));
+			}
+			final int threshold = width / 2;
+			final StringBuilder sb = new StringBuilder();
+			sb.append(pad(String.valueOf(width), 5));
+			sb.append(pad(format(cardScalar(units, threshold, rounds)), 14));
+			sb.append(pad(format(cardKernel(units, threshold, rounds)), 14));
+			sb.append(pad(format(interAlloc(sets, unions, rounds)), 13));
+			sb.append(pad(format(interKernel(sets, unions, rounds)), 14));
+			sb.append(pad(format(batchScalar(unions, queries, rounds / QUERIES)), 14));
+			sb.append(pad(format(batchKernel(unions, packed, width / Long.SIZE, rounds / QUERIES)), 14));
+			System.out.println(sb);
+		}
+	}
+	
+	private static double cardScalar(long[][] sets, int threshold, int rounds) {
+		runCardScalar(sets, threshold, WARMUP);
+		final long start = System.nanoTime();
+		runCardScalar(sets, threshold, rounds);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void runCardScalar(long[][] sets, int threshold, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			if (scalarAndCardinality(sets[r % POOL], sets[(r * 7 + 1) % POOL]) >= threshold) sum++;
+		}
+		sink = sum;
+	}
+	private static double cardKernel(long[][] sets, int threshold, int rounds) {
+		runCardKernel(sets, threshold, WARMUP);
+		final long start = System.nanoTime();
+		runCardKernel(sets, threshold, rounds);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void runCardKernel(long[][] sets, int threshold, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			final long[] a = sets[r % POOL];
+			final long[] b = sets[(r * 7 + 1) % POOL];
+			if (LongBitSet.andCardinality(a, 0, b, 0, Math.min(a.length, b.length), threshold) >= threshold) sum++;
+		}
+		sink = sum;
+	}
+	
+	private static double interAlloc(LongBitSet[] sets, LongBitSet[] unions, int rounds) {
+		runInterAlloc(sets, unions, WARMUP);
+		final long start = System.nanoTime();
+		runInterAlloc(sets, unions, rounds);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void runInterAlloc(LongBitSet[] sets, LongBitSet[] unions, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			final LongBitSet inter = sets[r % POOL].getAnd(sets[(r * 7 + 1) % POOL]);
+			if (inter.isSubSetOf(unions[(r * 13 + 2) % POOL])) sum++;
+		}
+		sink = sum;
+	}
+	private static double interKernel(LongBitSet[] sets, LongBitSet[] unions, int rounds) {
+		runInterKernel(sets, unions, WARMUP);
+		final long start = System.nanoTime();
+		runInterKernel(sets, unions, rounds);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void runInterKernel(LongBitSet[] sets, LongBitSet[] unions, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			if (unions[(r * 13 + 2) % POOL].isSuperSetOfIntersection(sets[r % POOL], sets[(r * 7 + 1) % POOL])) sum++;
+		}
+		sink = sum;
+	}
+	
+	private static double batchScalar(LongBitSet[] unions, LongBitSet[] queries, int rounds) {
+		final long[][] units = new long[QUERIES][];
+		for (int q = 0; q < QUERIES; q++) {
+			units[q] = queries[q].toLongArray();
+		}
+		final long[][] unionUnits = new long[POOL][];
+		for (int i = 0; i < POOL; i++) {
+			unionUnits[i] = unions[i].toLongArray();
+		}
+		runBatchScalar(unionUnits, units, WARMUP / QUERIES);
+		final long start = System.nanoTime();
+		runBatchScalar(unionUnits, units, rounds);
+		return (System.nanoTime() - start) / ((double)rounds * QUERIES);
+	}
+	private static void runBatchScalar(long[][] unions, long[][] queries, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			final long[] sup = unions[r % POOL];
+			long mask = 0;
+			for (int q = 0; q < QUERIES; q++) {
+				if (scalarIsSubSetOf(queries[q], sup)) mask |= (1L << q);
+			}
+			sum += mask;
+		}
+		sink = sum;
+	}
+	private static double batchKernel(LongBitSet[] unions, long[] packed, int words, int rounds) {
+		runBatchKernel(unions, packed, words, WARMUP / QUERIES);
+		final long start = System.nanoTime();
+		runBatchKernel(unions, packed, words, rounds);
+		return (System.nanoTime() - start) / ((double)rounds * QUERIES);
+	}
+	private static void runBatchKernel(LongBitSet[] unions, long[] packed, int words, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			sum += unions[r % POOL].getSubSetMask(packed, words, -1L);
+		}
+		sink = sum;
+	}
+	
+	/**
+	 * The scalar and cardinality loop as used before the bulk kernels
+	 */
+	private static int scalarAndCardinality(long[] a, long[] b) {
+		int card = 0;
+		final int minLen = Math.min(a.length, b.length);
+		for (int i = 0; i < minLen; i++) {
+			card += Long.bitCount(a[i] & b[i]);
+		}
+		return card;
+	}
+	/**
+	 * The scalar subset loop as used before the bulk kernels
+	 */
+	private static boolean scalarIsSubSetOf(long[] sub, long[] of) {
+		final int min = Math.min(sub.length, of.length);
+		for (int i = 0; i < min; i++) {
+			if ((sub[i] & of[i]) != sub[i]) return false;
+		}
+		for (int i = min; i < sub.length; i++) {
+			if (sub[i] != 0L) return false;
+		}
+		return true;
+	}
+	
+	private static String format(double nanos) {
+		return String.format("%.1f", Double.valueOf(nanos));
+	}
+	private static String pad(String str, int len) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = str.length(); i < len; i++) sb.append(' ');
+		return sb.append(str).toString();
+	}
+	
+	//no instances
+	private LongBitSetBenchmark() {}
+}
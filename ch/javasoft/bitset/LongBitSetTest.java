@@ -0,0 +1,122 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.bitset;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the bulk kernels of {@link LongBitSet} with {@link BitSet} for
+ * random bit sets of different lengths.
+ */
+public class LongBitSetTest extends TestCase {
+	
+	private static final int[]	LENGTHS	= {1, 63, 64, 65, 200, 256, 300, 512};
+	private static final int	ROUNDS	= 2000;
+	
+	private final Random rnd = new Random(4711);
+	
+	public void testSubSetAndIntersection() {
+		for (int r = 0; r < ROUNDS; r++) {
+			final BitSet a = random(), b = random(), c = random();
+			final BitSet sub = (BitSet)a.clone();
+			sub.and(b);
+			final LongBitSet la = new LongBitSet(a), lb = new LongBitSet(b), lc = new LongBitSet(c), lsub = new LongBitSet(sub);
+			assertTrue(lsub.isSubSetOf(la));
+			assertTrue(la.isSuperSetOfIntersection(la, lb));
+			assertEquals(isSubSet(a, c), la.isSubSetOf(lc));
+			final BitSet inter = (BitSet)a.clone();
+			inter.and(b);
+			assertEquals(isSubSet(inter, c), lc.isSuperSetOfIntersection(la, lb));
+		}
+	}
+	
+	public void testAndCardinality() {
+		for (int r = 0; r < ROUNDS; r++) {
+			final BitSet a = random(), b = random();
+			final BitSet and = (BitSet)a.clone();
+			and.and(b);
+			final int card = and.cardinality();
+			final LongBitSet la = new LongBitSet(a), lb = new LongBitSet(b);
+			assertEquals(card, la.getAndCardinality(lb));
+			final int threshold = rnd.nextInt(card + 3);
+			assertEquals(card >= threshold, la.hasAndCardinalityAtLeast(lb, threshold));
+			assertEquals(card >= threshold, la.hasAndCardinalityAtLeast((IBitSet)new IntBitSet(b), threshold));
+			assertEquals(card >= threshold, new IntBitSet(a).hasAndCardinalityAtLeast(new IntBitSet(b), threshold));
+		}
+	}
+	
+	public void testSubSetMask() {
+		for (int r = 0; r < ROUNDS / 10; r++) {
+			final int count = 1 + rnd.nextInt(64);
+			final LongBitSet sup = new LongBitSet(random());
+			final LongBitSet[] rows = new LongBitSet[count];
+			int words = 1;
+			for (int i = 0; i < count; i++) {
+				rows[i] = rnd.nextBoolean() ? sup.getAnd(new LongBitSet(random())) : new LongBitSet(random());
+				words = Math.max(words, (rows[i].length() + 63) / 64);
+			}
+			final long[] packed = new long[count * words];
+			for (int i = 0; i < count; i++) {
+				rows[i].toLongArray(packed, i * words);
+			}
+			final long rowMask = rnd.nextLong() & (count == 64 ? -1L : (1L << count) - 1);
+			long expected = 0;
+			for (int i = 0; i < count; i++) {
+				if ((rowMask & (1L << i)) != 0 && rows[i].isSubSetOf(sup)) {
+					expected |= (1L << i);
+				}
+			}
+			assertEquals(expected, sup.getSubSetMask(packed, words, rowMask));
+		}
+	}
+	
+	private BitSet random() {
+		final int len = LENGTHS[rnd.nextInt(LENGTHS.length)];
+		final double density = rnd.nextDouble();
+		final BitSet bits = new BitSet(len);
+		for (int i = 0; i < len; i++) {
+			if (rnd.nextDouble() < density) bits.set(i);
+		}
+		return bits;
+	}
+	private static boolean isSubSet(BitSet sub, BitSet of) {
+		final BitSet diff = (BitSet)sub.clone();
+		diff.andNot(of);
+		return diff.isEmpty();
+	}
+
+}
@@ -80,6 +80,11 @@ public class FixedWidthTable<E> implements Table<E>, Stateful {
         this.marshaller    = marshaller;
         this.size          = size;
         
+        if (raPersister instanceof MappedFilePersister) {
+        	//data is read directly from the mapping, buffering is not needed
+        	bufferingMarshaller = marshaller;
+        	return;
+        }
         bufferingMarshaller = new FixedWidthMarshaller<E>() {
         	final int byteWidth = marshaller.getByteWidth();
             private final ByteArray buffer = new ByteArray();
@@ -133,7 +138,11 @@ public class FixedWidthTable<E> implements Table<E>, Stateful {
         return open(new RandomAccessFilePersistor(file, new RandomAccessFile(file, "r")), marshaller);
     }
     /**
-     * Open the given table for read-only access, using caching
+     * Open the given table for read-only access, using caching. If 
+     * {@link MappedFilePersister#isEnabled() memory mapping} is enabled, the
+     * file is mapped into memory. Otherwise, if a 
+     * {@link PageCache#getShared() shared page cache} is installed, it is used
+     * instead of a cache for this table.
      * 
      * @param <En>				the entry type
      * @param file				the table file to open
@@ -148,7 +157,7 @@ public class FixedWidthTable<E> implements Table<E>, Stateful {
      */
     public static <En> FixedWidthTable<En> open(File file, FixedWidthMarshaller<En> marshaller, int cacheTableSize, int cacheEntrySize) throws IOException {
         return open(
-        	new RandomAccessFilePersistor(file, new RandomAccessFile(file, "r")),
+        	MappedFilePersister.createPersister(file, true /*readOnly*/),
 //        	new BufferedRandomAccessPersister(
 //        		new RandomAccessFilePersistor(file, new RandomAccessFile(file, "r")),
 //        		cacheTableSize, cacheEntrySize), 
@@ -185,7 +194,11 @@ public class FixedWidthTable<E> implements Table<E>, Stateful {
         return create(new RandomAccessFilePersistor(file), marshaller);
     }
     /**
-     * Creates the given table for read and write, using caching 
+     * Creates the given table for read and write, using caching. If 
+     * {@link MappedFilePersister#isEnabled() memory mapping} is enabled, the
+     * file is mapped into memory. Otherwise, if a 
+     * {@link PageCache#getShared() shared page cache} is installed, it is used
+     * instead of a cache for this table.
      * 
      * @param <En>			the entry type
      * @param file			the table file to create
@@ -199,7 +212,7 @@ public class FixedWidthTable<E> implements Table<E>, Stateful {
      * @throws IOException	if an i/o exception occurs
      */
     public static <En> FixedWidthTable<En> create(File file, FixedWidthMarshaller<En> marshaller, int cacheTableSize, int cacheEntrySize) throws IOException {
-        return create(new RandomAccessFilePersistor(file), marshaller);
+        return create(MappedFilePersister.createPersister(file, false /*readOnly*/), marshaller);
 //        return create(new BufferedRandomAccessPersister(file, cacheTableSize, cacheEntrySize), marshaller);
     }
     /**
@@ -0,0 +1,87 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.jbase;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <tt>IoStatistics</tt> count the bytes read from and written to files
+ * by {@link RandomAccessFilePersistor}s, that is, the real file i/o below any
+ * buffers or {@link PageCache page caches}. Memory mapped files, see
+ * {@link MappedFilePersister}, are paged by the operating system and are not
+ * included.
+ * <p>
+ * Counting is disabled by default. It can be enabled process wide with
+ * {@link #setEnabled(boolean)}, which affects persisters immediately.
+ */
+public class IoStatistics {
+	
+	private static volatile boolean enabled = false;
+	
+	private static final AtomicLong bytesRead		= new AtomicLong();
+	private static final AtomicLong bytesWritten	= new AtomicLong();
+	
+	//no instances
+	private IoStatistics() {}
+	
+	/** Returns true if file i/o is currently counted*/
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	/** Enables or disables counting of file i/o, counters are not reset*/
+	public static void setEnabled(boolean enable) {
+		enabled = enable;
+	}
+	/** Returns the number of bytes read from files since the last reset*/
+	public static long getBytesRead() {
+		return bytesRead.get();
+	}
+	/** Returns the number of bytes written to files since the last reset*/
+	public static long getBytesWritten() {
+		return bytesWritten.get();
+	}
+	/** Resets both counters to zero*/
+	public static void reset() {
+		bytesRead.set(0);
+		bytesWritten.set(0);
+	}
+	
+	static void addRead(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+	static void addWritten(long bytes) {
+		bytesWritten.addAndGet(bytes);
+	}
+
+}
@@ -0,0 +1,540 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.jbase;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import ch.javasoft.jbase.util.AbstractDataInput;
+import ch.javasoft.jbase.util.AbstractDataOutput;
+import ch.javasoft.jbase.util.BulkDataInput;
+import ch.javasoft.jbase.util.BulkDataOutput;
+import ch.javasoft.jbase.util.UnsupportedOperationException;
+
+/**
+ * The <tt>MappedFilePersister</tt> implements {@link RandomAccessPersister}
+ * using memory mapped files. The file is mapped in chunks of fixed size,
+ * new chunks are mapped when data is written beyond the currently mapped
+ * region. The logical length of the file is maintained separately, the file
+ * is truncated to this length when the persister is closed.
+ * <p>
+ * The data input and output objects implement {@link BulkDataInput} and
+ * {@link BulkDataOutput}, that is, arrays of long or double values are read
+ * and written directly from and to the mapping. Every thread has its own
+ * position, and read copies share the mapping with the original persister.
+ * Like for other persisters, the caller must guarantee that atomic read and
+ * write operations do not overlap.
+ * <p>
+ * Note that mapped regions are only released when the buffers are garbage
+ * collected, also if the file has been closed and deleted.
+ */
+public class MappedFilePersister implements RandomAccessPersister {
+
+	/** Default size of a mapped chunk in bytes, 16M*/
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 24;
+
+	private static volatile boolean enabled = false;
+
+	private final Mapping		mapping;
+	private final boolean		readCopy;
+	private final MappedInput	dataInput;
+	private final MappedOutput	dataOutput;//null for read-copy and read-only
+
+	private volatile boolean closed;
+
+	private final ThreadLocal<long[]> position = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {return new long[1];}
+	};
+
+	/**
+	 * Constructor for read/write access to the given file, using the default
+	 * chunk size
+	 */
+	public MappedFilePersister(File file) throws IOException {
+		this(file, false, DEFAULT_CHUNK_SIZE);
+	}
+	/**
+	 * Constructor for the given file, using the default chunk size
+	 *
+	 * @param file		the file to map
+	 * @param readOnly	true if the file is opened for read access only
+	 */
+	public MappedFilePersister(File file, boolean readOnly) throws IOException {
+		this(file, readOnly, DEFAULT_CHUNK_SIZE);
+	}
+	/**
+	 * Constructor with all arguments
+	 *
+	 * @param file		the file to map
+	 * @param readOnly	true if the file is opened for read access only
+	 * @param chunkSize	the size of a mapped chunk in bytes
+	 */
+	public MappedFilePersister(File file, boolean readOnly, int chunkSize) throws IOException {
+		this(new Mapping(file, readOnly, chunkSize), false);
+	}
+	private MappedFilePersister(Mapping mapping, boolean readCopy) {
+		this.mapping	= mapping;
+		this.readCopy	= readCopy;
+		this.dataInput	= new MappedInput();
+		this.dataOutput	= readCopy || mapping.readOnly ? null : new MappedOutput();
+	}
+
+	/**
+	 * Returns true if memory mapped persisters should be used for out-of-core
+	 * tables, see {@link #createPersister(File, boolean)}
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+	/**
+	 * Enables or disables memory mapped persisters for out-of-core tables
+	 * 
+	 * @param enable	true to use memory mapped persisters
+	 * @return the previous setting
+	 */
+	public static boolean setEnabled(boolean enable) {
+		final boolean prev = enabled;
+		enabled = enable;
+		return prev;
+	}
+	/**
+	 * Returns the persister to use for out-of-core tables. If memory mapping
+	 * is {@link #isEnabled() enabled}, a <tt>MappedFilePersister</tt> is
+	 * returned. Otherwise, the file is accessed through the
+	 * {@link PageCache#getShared() shared page cache} if available, or as
+	 * plain {@link RandomAccessFilePersistor} otherwise.
+	 *
+	 * @param file		the file to access
+	 * @param readOnly	true if the file is opened for read access only
+	 */
+	public static RandomAccessPersister createPersister(File file, boolean readOnly) throws IOException {
+		if (enabled) {
+			return new MappedFilePersister(file, readOnly);
+		}
+		if (readOnly) {
+			return PageCache.createSharedPersister(new RandomAccessFilePersistor(file, new RandomAccessFile(file, "r")));
+		}
+		return PageCache.createSharedPersister(file);
+	}
+
+	public DataInput getInput() throws IOException {
+		checkOpen();
+		return dataInput;
+	}
+
+	public DataOutput getOutput() throws IOException {
+		checkOpen();
+		if (dataOutput == null) {
+			throw new UnsupportedOperationException("read only, data output not supported");
+		}
+		return dataOutput;
+	}
+
+	public long getPosition() throws IOException {
+		checkOpen();
+		return position.get()[0];
+	}
+
+	public void setPosition(long bytePos) throws IOException {
+		checkOpen();
+		position.get()[0] = bytePos;
+	}
+
+	public void setLength(long byteLength) throws IOException {
+		checkOpen();
+		if (dataOutput == null) {
+			throw new UnsupportedOperationException("read only, setting length not supported");
+		}
+		mapping.setLength(byteLength);
+	}
+
+	public void flush() throws IOException {
+		checkOpen();
+		if (dataOutput == null) {
+			throw new UnsupportedOperationException("read only, flush not supported");
+		}
+		mapping.force();
+	}
+
+	public void close(boolean erase) throws IOException {
+		if (erase && readCopy) {
+			throw new UnsupportedOperationException("unmodifyable read copy");
+		}
+		if (!closed) {
+			closed = true;
+			if (!readCopy) {
+				mapping.close(erase);
+			}
+		}
+	}
+
+	public RandomAccessPersister createReadCopy(ReadWriteLock lock) throws IOException {
+		checkOpen();
+		final MappedFilePersister copy = new MappedFilePersister(mapping, true);
+		copy.setPosition(getPosition());
+		return copy;
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) throw new IOException("persister already closed");
+	}
+
+	/**
+	 * The mapping is shared by the persister and its read copies
+	 */
+	private static final class Mapping {
+		private final File				file;
+		private final RandomAccessFile	raf;
+		private final FileChannel		channel;
+		private final boolean			readOnly;
+		private final int				chunkSize;
+		private volatile MappedByteBuffer[]	chunks = new MappedByteBuffer[0];
+		private volatile long				length;
+
+		public Mapping(File file, boolean readOnly, int chunkSize) throws IOException {
+			if (chunkSize <= 0) {
+				throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+			}
+			this.file		= file;
+			this.raf		= new RandomAccessFile(file, readOnly ? "r" : "rw");
+			this.channel	= raf.getChannel();
+			this.readOnly	= readOnly;
+			this.chunkSize	= chunkSize;
+			this.length		= channel.size();
+			map(length);
+		}
+		/**
+		 * Returns the chunk containing the given byte position. The position
+		 * must be smaller than the length.
+		 */
+		public ByteBuffer chunk(long pos) {
+			return chunks[(int)(pos / chunkSize)];
+		}
+		/**
+		 * Ensures that the length is at least {@code end}, mapping additional
+		 * chunks if necessary
+		 */
+		public void extend(long end) throws IOException {
+			if (end > length) {
+				synchronized (this) {
+					if (end > length) {
+						map(end);
+						length = end;
+					}
+				}
+			}
+		}
+		public synchronized void setLength(long byteLength) throws IOException {
+			if (byteLength > length) {
+				extend(byteLength);
+			}
+			else {
+				length = byteLength;
+			}
+		}
+		private void map(long end) throws IOException {
+			final MappedByteBuffer[] cur = chunks;
+			final int cnt = (int)((end + chunkSize - 1) / chunkSize);
+			if (cnt > cur.length) {
+				final MappedByteBuffer[] res = new MappedByteBuffer[cnt];
+				System.arraycopy(cur, 0, res, 0, cur.length);
+				for (int i = cur.length; i < cnt; i++) {
+					final long start = (long)i * chunkSize;
+					if (readOnly) {
+						final long size = Math.min(chunkSize, end - start);
+						res[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+					}
+					else {
+						res[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, chunkSize);
+					}
+				}
+				chunks = res;
+			}
+		}
+		public void force() {
+			for (final MappedByteBuffer chunk : chunks) {
+				chunk.force();
+			}
+		}
+		public synchronized void close(boolean erase) throws IOException {
+			try {
+				if (!readOnly && !erase) {
+					try {
+						channel.truncate(length);
+					}
+					catch (IOException ex) {
+						//some platforms do not allow truncation of mapped
+						//files, the file is then longer than necessary
+					}
+				}
+			}
+			finally {
+				raf.close();
+				if (erase) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes which can be read or written in the chunk
+	 * at the given position
+	 */
+	private int remainingInChunk(ByteBuffer chunk, long pos) {
+		return chunk.limit() - (int)(pos % mapping.chunkSize);
+	}
+	private void checkAvailable(long pos, long len) throws IOException {
+		checkOpen();
+		if (pos + len > mapping.length) {
+			throw new EOFException("cannot read " + len + " bytes at position " + pos + ", length is " + mapping.length);
+		}
+	}
+
+	private class MappedInput extends AbstractDataInput implements BulkDataInput {
+		@Override
+		protected int peek() throws IOException {
+			checkOpen();
+			final long pos = position.get()[0];
+			if (pos >= mapping.length) return -1;
+			return 0xff & mapping.chunk(pos).get((int)(pos % mapping.chunkSize));
+		}
+		@Override
+		protected int read() throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			final long pos = st[0];
+			if (pos >= mapping.length) return -1;
+			st[0]++;
+			return 0xff & mapping.chunk(pos).get((int)(pos % mapping.chunkSize));
+		}
+		@Override
+		protected int read(byte[] b, int off, int len) throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			final long pos = st[0];
+			if (pos >= mapping.length) return -1;
+			final ByteBuffer chunk = mapping.chunk(pos).duplicate();
+			final int cnt = (int)Math.min(Math.min(len, mapping.length - pos), remainingInChunk(chunk, pos));
+			chunk.position((int)(pos % mapping.chunkSize));
+			chunk.get(b, off, cnt);
+			st[0] += cnt;
+			return cnt;
+		}
+		@Override
+		public int skipBytes(int n) throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			final int cnt = (int)Math.max(0, Math.min(n, mapping.length - st[0]));
+			st[0] += cnt;
+			return cnt;
+		}
+		@Override
+		public int readInt() throws IOException {
+			final long[] st = position.get();
+			final long pos = st[0];
+			checkAvailable(pos, 4);
+			final ByteBuffer chunk = mapping.chunk(pos);
+			if (remainingInChunk(chunk, pos) < 4) {
+				return super.readInt();
+			}
+			st[0] += 4;
+			return chunk.getInt((int)(pos % mapping.chunkSize));
+		}
+		@Override
+		public long readLong() throws IOException {
+			final long[] st = position.get();
+			final long pos = st[0];
+			checkAvailable(pos, 8);
+			final ByteBuffer chunk = mapping.chunk(pos);
+			if (remainingInChunk(chunk, pos) < 8) {
+				return super.readLong();
+			}
+			st[0] += 8;
+			return chunk.getLong((int)(pos % mapping.chunkSize));
+		}
+		public void readLongs(long[] dst, int off, int len) throws IOException {
+			final long[] st = position.get();
+			checkAvailable(st[0], 8L * len);
+			int done = 0;
+			while (done < len) {
+				final long pos = st[0];
+				final ByteBuffer chunk = mapping.chunk(pos).duplicate();
+				final int cnt = Math.min(len - done, remainingInChunk(chunk, pos) / 8);
+				if (cnt > 0) {
+					chunk.position((int)(pos % mapping.chunkSize));
+					chunk.asLongBuffer().get(dst, off + done, cnt);
+					st[0] += 8L * cnt;
+					done += cnt;
+				}
+				else {
+					//value crosses chunk boundary
+					dst[off + done] = readLong();
+					done++;
+				}
+			}
+		}
+		public void readDoubles(double[] dst, int off, int len) throws IOException {
+			final long[] st = position.get();
+			checkAvailable(st[0], 8L * len);
+			int done = 0;
+			while (done < len) {
+				final long pos = st[0];
+				final ByteBuffer chunk = mapping.chunk(pos).duplicate();
+				final int cnt = Math.min(len - done, remainingInChunk(chunk, pos) / 8);
+				if (cnt > 0) {
+					chunk.position((int)(pos % mapping.chunkSize));
+					chunk.asDoubleBuffer().get(dst, off + done, cnt);
+					st[0] += 8L * cnt;
+					done += cnt;
+				}
+				else {
+					//value crosses chunk boundary
+					dst[off + done] = readDouble();
+					done++;
+				}
+			}
+		}
+	}
+
+	private class MappedOutput extends AbstractDataOutput implements BulkDataOutput {
+		public void write(int b) throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			final long pos = st[0];
+			mapping.extend(pos + 1);
+			mapping.chunk(pos).put((int)(pos % mapping.chunkSize), (byte)b);
+			st[0]++;
+		}
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			mapping.extend(st[0] + len);
+			int done = 0;
+			while (done < len) {
+				final long pos = st[0];
+				final ByteBuffer chunk = mapping.chunk(pos).duplicate();
+				final int cnt = Math.min(len - done, remainingInChunk(chunk, pos));
+				chunk.position((int)(pos % mapping.chunkSize));
+				chunk.put(b, off + done, cnt);
+				st[0] += cnt;
+				done += cnt;
+			}
+		}
+		@Override
+		public void writeInt(int v) throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			final long pos = st[0];
+			mapping.extend(pos + 4);
+			final ByteBuffer chunk = mapping.chunk(pos);
+			if (remainingInChunk(chunk, pos) < 4) {
+				super.writeInt(v);
+			}
+			else {
+				chunk.putInt((int)(pos % mapping.chunkSize), v);
+				st[0] += 4;
+			}
+		}
+		@Override
+		public void writeLong(long v) throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			final long pos = st[0];
+			mapping.extend(pos + 8);
+			final ByteBuffer chunk = mapping.chunk(pos);
+			if (remainingInChunk(chunk, pos) < 8) {
+				super.writeLong(v);
+			}
+			else {
+				chunk.putLong((int)(pos % mapping.chunkSize), v);
+				st[0] += 8;
+			}
+		}
+		public void writeLongs(long[] src, int off, int len) throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			mapping.extend(st[0] + 8L * len);
+			int done = 0;
+			while (done < len) {
+				final long pos = st[0];
+				final ByteBuffer chunk = mapping.chunk(pos).duplicate();
+				final int cnt = Math.min(len - done, remainingInChunk(chunk, pos) / 8);
+				if (cnt > 0) {
+					chunk.position((int)(pos % mapping.chunkSize));
+					chunk.asLongBuffer().put(src, off + done, cnt);
+					st[0] += 8L * cnt;
+					done += cnt;
+				}
+				else {
+					//value crosses chunk boundary
+					writeLong(src[off + done]);
+					done++;
+				}
+			}
+		}
+		public void writeDoubles(double[] src, int off, int len) throws IOException {
+			checkOpen();
+			final long[] st = position.get();
+			mapping.extend(st[0] + 8L * len);
+			int done = 0;
+			while (done < len) {
+				final long pos = st[0];
+				final ByteBuffer chunk = mapping.chunk(pos).duplicate();
+				final int cnt = Math.min(len - done, remainingInChunk(chunk, pos) / 8);
+				if (cnt > 0) {
+					chunk.position((int)(pos % mapping.chunkSize));
+					chunk.asDoubleBuffer().put(src, off + done, cnt);
+					st[0] += 8L * cnt;
+					done += cnt;
+				}
+				else {
+					//value crosses chunk boundary
+					writeDouble(src[off + done]);
+					done++;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.jbase;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.javasoft.jbase.util.BulkDataInput;
+import ch.javasoft.jbase.util.BulkDataOutput;
+
+public class MappedFilePersisterTest extends TestCase {
+
+	private static final int CHUNK_SIZE	= 100;//not a multiple of 8 to test values crossing chunks
+	private static final int VALUES		= 1000;
+
+	private final Random rnd = new Random(4711);
+
+	public void testBulkReadWrite() throws IOException {
+		final File file = createTempFile();
+		final MappedFilePersister pers = new MappedFilePersister(file, false, CHUNK_SIZE);
+		final long[] longs		= new long[VALUES];
+		final double[] doubles	= new double[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			longs[i]	= rnd.nextLong();
+			doubles[i]	= rnd.nextGaussian();
+		}
+		pers.setPosition(3);
+		final DataOutput out = pers.getOutput();
+		((BulkDataOutput)out).writeLongs(longs, 0, VALUES);
+		for (int i = 0; i < VALUES; i++) {
+			out.writeDouble(doubles[i]);
+		}
+		final long len = 3 + 16 * VALUES;
+		assertEquals(len, pers.getPosition());
+
+		//read copy sees the data, singles written and bulk read and vice versa
+		final RandomAccessPersister copy = pers.createReadCopy(null);
+		copy.setPosition(3);
+		final DataInput in = copy.getInput();
+		for (int i = 0; i < VALUES; i++) {
+			assertEquals(longs[i], in.readLong());
+		}
+		final double[] dres = new double[VALUES];
+		((BulkDataInput)in).readDoubles(dres, 0, VALUES);
+		assertTrue(Arrays.equals(doubles, dres));
+		try {
+			in.readByte();
+			fail("end of file expected");
+		}
+		catch (EOFException ex) {
+			//expected
+		}
+		copy.close(false);
+		pers.close(false);
+		assertEquals(len, file.length());
+
+		//reopen read-only, compare with random access file content
+		final RandomAccessFilePersistor raf = new RandomAccessFilePersistor(file);
+		final MappedFilePersister ro = new MappedFilePersister(file, true, CHUNK_SIZE);
+		raf.setPosition(3);
+		ro.setPosition(3);
+		final long[] lres = new long[VALUES];
+		((BulkDataInput)ro.getInput()).readLongs(lres, 0, VALUES);
+		for (int i = 0; i < VALUES; i++) {
+			assertEquals(raf.getInput().readLong(), lres[i]);
+		}
+		ro.close(false);
+		raf.close(true);
+	}
+
+	public void testFixedWidthTable() throws IOException {
+		final File file = createTempFile();
+		final FixedWidthMarshaller<long[]> marshaller = new FixedWidthMarshaller<long[]>() {
+			public int getByteWidth() {
+				return 24;
+			}
+			public long[] readFrom(DataInput in) throws IOException {
+				final long[] res = new long[3];
+				((BulkDataInput)in).readLongs(res, 0, res.length);
+				return res;
+			}
+			public void writeTo(long[] entity, DataOutput out) throws IOException {
+				((BulkDataOutput)out).writeLongs(entity, 0, entity.length);
+			}
+		};
+		final FixedWidthTable<long[]> table = FixedWidthTable.create(new MappedFilePersister(file, false, CHUNK_SIZE), marshaller);
+		for (int i = 0; i < VALUES; i++) {
+			table.add(new long[] {i, -i, i * 31L});
+		}
+		table.swap(0, VALUES - 1);
+		table.close(false);
+		final FixedWidthTable<long[]> read = FixedWidthTable.open(new MappedFilePersister(file, true, CHUNK_SIZE), marshaller);
+		assertEquals(VALUES, read.size());
+		assertTrue(Arrays.equals(new long[] {VALUES - 1, 1 - VALUES, (VALUES - 1) * 31L}, read.get(0)));
+		assertTrue(Arrays.equals(new long[] {7, -7, 7 * 31L}, read.get(7)));
+		read.close(false);
+		file.delete();
+	}
+
+	private File createTempFile() throws IOException {
+		final File file = File.createTempFile("mapped-", ".tbl");
+		file.deleteOnExit();
+		return file;
+	}
+
+}
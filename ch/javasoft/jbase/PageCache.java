@@ -0,0 +1,802 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.jbase;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The <tt>PageCache</tt> is a size bounded page cache which can be shared by
+ * many {@link PageCachedPersister}s, for instance by all tables of a
+ * computation. In contrast to {@link BufferedRandomAccessPersister}, the
+ * memory budget is defined for all files together and not per file, thus,
+ * files which are heavily accessed get more pages than others.
+ * <p>
+ * Features:
+ * <ul>
+ * <li><b>CLOCK eviction:</b> pages are held in a ring, a page which was
+ * 		accessed since the last pass of the clock hand gets a second chance.
+ * 		Pages which are currently accessed (pinned) are never evicted.</li>
+ * <li><b>Read-ahead:</b> if a persister detects a sequential scan, the next
+ * 		pages are loaded asynchronously by a background thread.</li>
+ * <li><b>Write-behind:</b> if the number of dirty pages exceeds a quarter of
+ * 		the cache, dirty pages close to the clock hand are written
+ * 		asynchronously by a background thread. Eviction thus mostly finds
+ * 		clean pages.</li>
+ * <li><b>Statistics:</b> hits, misses, prefetch hits, evictions and writes
+ * 		are counted, see {@link #getStatistics()}.</li>
+ * </ul>
+ * <p>
+ * A process wide shared instance can be installed with
+ * {@link #setShared(PageCache)}. If such a cache is installed,
+ * {@link FixedWidthTable} and {@link VariableWidthTable} use it instead of
+ * a cache per file.
+ * <p>
+ * All methods are thread safe. Page data is accessed and written to disk 
+ * without holding the cache lock, dirty pages which are evicted are written
+ * back after the lock has been released. Thus, the same restrictions as for
+ * {@link BufferedRandomAccessPersister} apply: concurrent read operations may
+ * overlap, but read and write operations must not.
+ */
+public class PageCache {
+
+	/** Default page size in bytes*/
+	public static final int DEFAULT_PAGE_SIZE		= 4096;
+	/** Default number of pages to read ahead if a sequential scan is detected*/
+	public static final int DEFAULT_PREFETCH_PAGES	= 16;
+	/** Number of consecutive page accesses to detect a sequential scan*/
+	/*package*/ static final int SEQUENTIAL_THRESHOLD = 2;
+	/** Maximum number of pages written by one write-behind run*/
+	private static final int WRITE_BEHIND_BATCH	= 64;
+
+	private static volatile PageCache shared;
+
+	private final int				pageSize;
+	private final int				prefetchPages;
+	private final boolean			writeBehind;
+	private final int				writeBehindThreshold;
+	private final Page[]			ring;
+	private final ExecutorService	executor;//null if neither prefetch nor write-behind is used
+
+	//all fields below are guarded by this
+	private int		hand;
+	private int		dirtyPages;
+	private boolean	cleanerScheduled;
+	private boolean	closed;
+
+	private long hits, misses, prefetched, prefetchHits, evictions, writeBacks, writeBehinds;
+
+	/**
+	 * Per file data, holds the cached pages of a file and the writable
+	 * delegate persister which is used to write back dirty pages.
+	 */
+	/*package*/ static final class Segment {
+		final RandomAccessPersister	delegate;
+		final Map<Long, Page>		pages = new HashMap<Long, Page>();
+		long 						modifiedEvictions;
+		IOException					writeError;
+		boolean						closed;
+		Segment(RandomAccessPersister delegate) {
+			this.delegate = delegate;
+		}
+	}
+
+	/**
+	 * A cached page. Buffer, length and dirty flag are accessed without
+	 * holding the cache lock, all other fields are guarded by the cache.
+	 */
+	/*package*/ static final class Page {
+		final Segment			segment;
+		final long				index;
+		final long				start;
+		final byte[]			buffer;
+		volatile int 			length;
+		volatile boolean		dirty;
+		volatile boolean		discarded;
+		int						pins;
+		int						slot = -1;
+		boolean					referenced;
+		boolean					prefetched;
+		boolean					modified;
+		boolean					counted;//counted in dirtyPages
+		Page(Segment segment, long index, int pageSize) {
+			this.segment	= segment;
+			this.index		= index;
+			this.start		= index * pageSize;
+			this.buffer		= new byte[pageSize];
+			this.length		= pageSize;
+		}
+		@Override
+		public String toString() {
+			return getClass().getSimpleName() + "[" + start + ".." + (start + length - 1) + (dirty ? ", dirty" : "") + "]";
+		}
+	}
+
+	/**
+	 * Constructor for a page cache with default page size and read-ahead,
+	 * and write-behind enabled
+	 *
+	 * @param byteSize	the maximum cache size in bytes
+	 */
+	public PageCache(long byteSize) {
+		this(byteSize, DEFAULT_PAGE_SIZE, DEFAULT_PREFETCH_PAGES, true);
+	}
+	/**
+	 * Constructor for a page cache
+	 *
+	 * @param byteSize		the maximum cache size in bytes, the number of
+	 * 						cached pages is <tt>byteSize / pageSize</tt>, but at
+	 * 						least one
+	 * @param pageSize		the size of a single page in bytes
+	 * @param prefetchPages	the number of pages to read ahead if a sequential
+	 * 						scan is detected, 0 to disable read-ahead
+	 * @param writeBehind	true if dirty pages should be written
+	 * 						asynchronously by a background thread
+	 */
+	public PageCache(long byteSize, int pageSize, int prefetchPages, boolean writeBehind) {
+		if (byteSize <= 0) throw new IllegalArgumentException("cache size must be positive: " + byteSize);
+		if (pageSize <= 0) throw new IllegalArgumentException("page size must be positive: " + pageSize);
+		if (prefetchPages < 0) throw new IllegalArgumentException("prefetch pages must not be negative: " + prefetchPages);
+		final long pages = Math.max(1, Math.min(Integer.MAX_VALUE, byteSize / pageSize));
+		this.pageSize				= pageSize;
+		this.prefetchPages			= (int)Math.min(prefetchPages, pages / 2);
+		this.writeBehind			= writeBehind;
+		this.ring					= new Page[(int)pages];
+		this.writeBehindThreshold	= Math.max(1, ring.length / 4);
+		this.executor				= this.prefetchPages > 0 || writeBehind ? Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "page-cache-io");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}) : null;
+	}
+
+	/**
+	 * Returns the process wide shared page cache, or null if no shared cache
+	 * has been installed
+	 */
+	public static PageCache getShared() {
+		return shared;
+	}
+	/**
+	 * Installs the process wide shared page cache, or uninstalls it if
+	 * {@code cache} is null. Tables which are already open continue to use
+	 * the previous cache. The previous cache is returned, it is not closed.
+	 *
+	 * @param cache	the new shared cache, or null to uninstall the cache
+	 * @return the previously shared cache, or null if none
+	 */
+	public static PageCache setShared(PageCache cache) {
+		final PageCache prev = shared;
+		shared = cache;
+		return prev;
+	}
+	/**
+	 * Returns a persister using the {@link #getShared() shared cache} for the
+	 * given delegate, or the delegate itself if no shared cache is installed.
+	 *
+	 * @param delegate	the delegate persister, doing the real i/o
+	 * @return	a cached persister if a shared cache is available, the
+	 * 			delegate otherwise
+	 */
+	public static RandomAccessPersister createSharedPersister(RandomAccessPersister delegate) {
+		final PageCache cache = shared;
+		return cache == null ? delegate : new PageCachedPersister(delegate, cache);
+	}
+	/**
+	 * Returns a persister for the given file using the
+	 * {@link #getShared() shared cache}, or a plain
+	 * {@link RandomAccessFilePersistor} if no shared cache is installed. The
+	 * file is opened for read and write access.
+	 */
+	public static RandomAccessPersister createSharedPersister(File file) throws FileNotFoundException {
+		return createSharedPersister(new RandomAccessFilePersistor(file));
+	}
+
+	/** Returns the size of a single page in bytes*/
+	public int getPageSize() {
+		return pageSize;
+	}
+	/** Returns the maximum number of cached pages*/
+	public int getPageCount() {
+		return ring.length;
+	}
+	/** Returns the number of pages to read ahead for sequential scans*/
+	public int getPrefetchPages() {
+		return prefetchPages;
+	}
+	/** Returns true if dirty pages are written by a background thread*/
+	public boolean isWriteBehind() {
+		return writeBehind;
+	}
+
+	/**
+	 * Returns the cache statistics accumulated since creation or since the
+	 * last call to {@link #getAndResetStatistics()}
+	 */
+	public synchronized Statistics getStatistics() {
+		return new Statistics(hits, misses, prefetched, prefetchHits, evictions, writeBacks, writeBehinds);
+	}
+	/**
+	 * Returns the cache statistics accumulated since creation or since the
+	 * last call to this method, and resets all counters. Use this method to
+	 * report statistics per iteration.
+	 */
+	public synchronized Statistics getAndResetStatistics() {
+		final Statistics stats = getStatistics();
+		hits = misses = prefetched = prefetchHits = evictions = writeBacks = writeBehinds = 0;
+		return stats;
+	}
+
+	/**
+	 * Stops the background thread. The cache can still be used by open
+	 * persisters, but read-ahead and write-behind are disabled.
+	 */
+	public void close() {
+		synchronized(this) {
+			closed = true;
+		}
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	/*package*/ Segment createSegment(RandomAccessPersister delegate) {
+		return new Segment(delegate);
+	}
+
+	/**
+	 * Returns the pinned page with the given index, loading it using the given
+	 * loader if it is not in the cache. The page must be released by calling
+	 * {@link #unpin(Page, boolean)}.
+	 * <p>
+	 * An empty page (at or after the end of file) is only cached if it is
+	 * loaded for write access. Pages which are not cached, either since they
+	 * are empty or since all pages are pinned, are returned anyway, and are
+	 * written through when they are unpinned.
+	 */
+	/*package*/ Page pin(Segment segment, long index, RandomAccessPersister loader, boolean forWrite) throws IOException {
+		final Long key = Long.valueOf(index);
+		long modifiedEvictions;
+		synchronized(this) {
+			checkSegment(segment);
+			final Page page = segment.pages.get(key);
+			if (page != null) {
+				hit(page);
+				return page;
+			}
+			misses++;
+			modifiedEvictions = segment.modifiedEvictions;
+		}
+		while (true) {
+			final Page loaded = load(segment, index, loader);
+			final Page evicted;
+			synchronized(this) {
+				checkSegment(segment);
+				final Page page = segment.pages.get(key);
+				if (page != null) {
+					//loaded concurrently by someone else
+					page.pins++;
+					page.referenced = true;
+					return page;
+				}
+				if (modifiedEvictions != segment.modifiedEvictions) {
+					//a modified page was evicted while we were loading, our copy
+					//might be older than the one written back, load again
+					modifiedEvictions = segment.modifiedEvictions;
+					continue;
+				}
+				loaded.pins = 1;
+				evicted = loaded.length > 0 || forWrite ? install(loaded) : null;
+			}
+			writeBack(evicted);
+			return loaded;
+		}
+	}
+
+	/**
+	 * Releases a page pinned by {@link #pin(Segment, long, RandomAccessPersister, boolean) pin(..)}
+	 *
+	 * @param page		the page to release
+	 * @param modified	true if the page has been modified
+	 */
+	/*package*/ void unpin(Page page, boolean modified) throws IOException {
+		synchronized(this) {
+			if (modified) {
+				page.modified = true;
+			}
+			if (!modified || page.slot >= 0 || page.discarded) {
+				page.pins--;
+				if (modified && page.slot >= 0 && !page.counted) {
+					page.counted = true;
+					dirtyPages++;
+					scheduleWriteBehind();
+				}
+				releaseDetached(page);
+				return;
+			}
+		}
+		//not cached or detached for eviction, write through without holding
+		//the lock
+		try {
+			writePage(page);
+		}
+		finally {
+			synchronized(this) {
+				page.pins--;
+				releaseDetached(page);
+			}
+		}
+	}
+
+	/**
+	 * Loads the pages with the given indices asynchronously, if they are not
+	 * yet cached. Loading stops at the end of the file.
+	 */
+	/*package*/ void prefetch(final Segment segment, final long fromIndex, final long toIndex) {
+		if (executor == null || prefetchPages == 0 || fromIndex > toIndex) return;
+		synchronized(this) {
+			if (closed) return;
+		}
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						for (long index = fromIndex; index <= toIndex; index++) {
+							if (!prefetchPage(segment, index)) break;
+						}
+					}
+					catch (IOException ex) {
+						//ignore, read-ahead is best effort only, the error
+						//will occur again when the page is really accessed
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException ex) {
+			//cache has been closed concurrently, ignore
+		}
+	}
+	/**
+	 * Loads a single page for read-ahead, returns false if loading should
+	 * stop, for instance since the end of the file has been reached
+	 */
+	private boolean prefetchPage(Segment segment, long index) throws IOException {
+		final Long key = Long.valueOf(index);
+		final long modifiedEvictions;
+		synchronized(this) {
+			if (segment.closed || closed) return false;
+			if (segment.pages.containsKey(key)) return true;
+			modifiedEvictions = segment.modifiedEvictions;
+		}
+		final Page page = load(segment, index, segment.delegate);
+		Page evicted = null;
+		synchronized(this) {
+			if (segment.closed || page.length == 0) return false;
+			if (!segment.pages.containsKey(key) && modifiedEvictions == segment.modifiedEvictions) {
+				page.prefetched = true;
+				evicted = install(page);
+				if (page.slot >= 0) prefetched++;
+			}
+		}
+		writeBack(evicted);
+		return page.length == pageSize;
+	}
+
+	/**
+	 * Writes all dirty pages of the given segment to the segment's delegate.
+	 * The delegate itself is not flushed.
+	 */
+	/*package*/ void flush(Segment segment) throws IOException {
+		final List<Page> dirty = new ArrayList<Page>();
+		synchronized(this) {
+			if (segment.writeError != null) {
+				final IOException ex = segment.writeError;
+				segment.writeError = null;
+				throw ex;
+			}
+			for (final Page page : segment.pages.values()) {
+				if (page.dirty) {
+					page.pins++;
+					dirty.add(page);
+				}
+			}
+		}
+		try {
+			for (final Page page : dirty) {
+				writePage(page);
+			}
+		}
+		finally {
+			release(dirty, false);
+		}
+	}
+
+	/**
+	 * Truncates or removes cached pages of the given segment according to the
+	 * new byte length. The delegate length is not changed.
+	 */
+	/*package*/ synchronized void truncate(Segment segment, long byteLength) {
+		for (final Page page : new ArrayList<Page>(segment.pages.values())) {
+			if (page.start >= byteLength) {
+				remove(page);
+			}
+			else if (page.start + page.length > byteLength) {
+				page.length = (int)(byteLength - page.start);
+			}
+		}
+	}
+
+	/**
+	 * Closes the given segment, removing all its pages from the cache. If
+	 * {@code erase} is false, dirty pages are written back before.
+	 */
+	/*package*/ void close(Segment segment, boolean erase) throws IOException {
+		try {
+			if (!erase) {
+				flush(segment);
+			}
+		}
+		finally {
+			synchronized(this) {
+				for (final Page page : new ArrayList<Page>(segment.pages.values())) {
+					remove(page);
+				}
+				segment.closed = true;
+			}
+		}
+	}
+
+	/**
+	 * PRECONDITION: lock held
+	 */
+	private void checkSegment(Segment segment) throws IOException {
+		if (segment.closed) {
+			throw new IOException("persister already closed");
+		}
+	}
+	/**
+	 * PRECONDITION: lock held
+	 */
+	private void hit(Page page) {
+		page.pins++;
+		page.referenced = true;
+		hits++;
+		if (page.prefetched) {
+			page.prefetched = false;
+			prefetchHits++;
+		}
+	}
+
+	/**
+	 * Reads the page from the loader. No lock held, synchronizes on the loader
+	 */
+	private Page load(Segment segment, long index, RandomAccessPersister loader) throws IOException {
+		final Page page = new Page(segment, index, pageSize);
+		synchronized (loader) {
+			loader.setPosition(page.start);
+			try {
+				loader.getInput().readFully(page.buffer);
+			}
+			catch (EOFException ex) {
+				//end of stream, read byte by byte
+				loader.setPosition(page.start);
+				for (int i = 0; i < pageSize; i++) {
+					try {
+						page.buffer[i] = loader.getInput().readByte();
+					}
+					catch (EOFException ex2) {
+						page.length = i;
+						break;
+					}
+				}
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Writes the page to the segment's delegate. Synchronizes on the delegate.
+	 */
+	private void writePage(Page page) throws IOException {
+		final RandomAccessPersister delegate = page.segment.delegate;
+		synchronized (delegate) {
+			if (page.discarded) return;
+			page.dirty = false;//set before writing, concurrent modifications set it again
+			try {
+				delegate.setPosition(page.start);
+				delegate.getOutput().write(page.buffer, 0, page.length);
+			}
+			catch (IOException ex) {
+				page.dirty = true;
+				throw ex;
+			}
+		}
+	}
+
+	/**
+	 * Installs the page in the ring, evicting another page if necessary. If
+	 * all pages are pinned, the page is not installed.
+	 * <p>
+	 * A dirty victim is not written while holding the lock. It is detached
+	 * from the ring but remains accessible until it has been written, and is
+	 * returned pinned. The caller must pass it to {@link #writeBack(Page)}
+	 * after releasing the lock.
+	 * <p>
+	 * PRECONDITION: lock held
+	 * 
+	 * @return the detached dirty victim, or null if no dirty page was evicted
+	 */
+	private Page install(Page page) {
+		int victim = -1;
+		for (int i = 0; i < 2 * ring.length && victim < 0; i++) {
+			final int slot = hand;
+			hand = hand + 1 == ring.length ? 0 : hand + 1;
+			final Page cur = ring[slot];
+			if (cur == null) {
+				victim = slot;
+			}
+			else if (cur.pins == 0) {
+				if (cur.referenced) cur.referenced = false;
+				else victim = slot;
+			}
+		}
+		if (victim < 0) return null;//all pinned
+		final Page old = ring[victim];
+		Page detached = null;
+		if (old != null) {
+			evictions++;
+			if (old.dirty) {
+				writeBacks++;
+				old.pins++;
+				old.slot = -1;
+				detached = old;
+			}
+			else {
+				remove(old);
+			}
+		}
+		ring[victim]	= page;
+		page.slot		= victim;
+		page.segment.pages.put(Long.valueOf(page.index), page);
+		return detached;
+	}
+	
+	/**
+	 * Writes a dirty page detached by {@link #install(Page)} and removes it
+	 * from the cache if it is no longer used. Write errors are reported when
+	 * the page's segment is flushed, like for write-behind. Does nothing if
+	 * {@code page} is null.
+	 * <p>
+	 * PRECONDITION: lock NOT held
+	 */
+	private void writeBack(Page page) {
+		if (page == null) return;
+		try {
+			writePage(page);
+		}
+		catch (IOException ex) {
+			synchronized(this) {
+				if (!page.segment.closed) {
+					page.segment.writeError = ex;
+				}
+			}
+		}
+		finally {
+			synchronized(this) {
+				page.pins--;
+				releaseDetached(page);
+			}
+		}
+	}
+	/**
+	 * Removes a detached page from the cache if it is neither pinned nor 
+	 * dirty. Pages in the ring are not affected.
+	 * <p>
+	 * PRECONDITION: lock held
+	 */
+	private void releaseDetached(Page page) {
+		if (page.slot < 0 && page.pins == 0 && !page.dirty && !page.discarded && 
+				page.segment.pages.get(Long.valueOf(page.index)) == page) {
+			remove(page);
+		}
+	}
+
+	/**
+	 * Removes the page from the cache, without writing it
+	 * <p>
+	 * PRECONDITION: lock held
+	 */
+	private void remove(Page page) {
+		page.discarded = true;
+		if (page.counted) {
+			page.counted = false;
+			dirtyPages--;
+		}
+		if (page.modified) {
+			page.segment.modifiedEvictions++;
+		}
+		page.segment.pages.remove(Long.valueOf(page.index));
+		if (page.slot >= 0) {
+			ring[page.slot] = null;
+			page.slot = -1;
+		}
+	}
+
+	/**
+	 * Unpins the given pages which have been written, and updates the dirty
+	 * page count
+	 */
+	private synchronized void release(List<Page> written, boolean writeBehindRun) {
+		for (final Page page : written) {
+			page.pins--;
+			if (!page.dirty && page.counted) {
+				page.counted = false;
+				dirtyPages--;
+			}
+			releaseDetached(page);
+		}
+		if (writeBehindRun) {
+			writeBehinds += written.size();
+			cleanerScheduled = false;
+			if (!written.isEmpty()) {
+				scheduleWriteBehind();
+			}
+		}
+	}
+
+	/**
+	 * PRECONDITION: lock held
+	 */
+	private void scheduleWriteBehind() {
+		if (writeBehind && !closed && !cleanerScheduled && dirtyPages > writeBehindThreshold) {
+			cleanerScheduled = true;
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						writeBehind();
+					}
+				});
+			}
+			catch (RejectedExecutionException ex) {
+				cleanerScheduled = false;
+			}
+		}
+	}
+	/**
+	 * Writes a batch of dirty pages, starting at the clock hand, that is,
+	 * with the pages which are evicted next
+	 */
+	private void writeBehind() {
+		final List<Page> batch = new ArrayList<Page>(WRITE_BEHIND_BATCH);
+		synchronized(this) {
+			int slot = hand;
+			for (int i = 0; i < ring.length && batch.size() < WRITE_BEHIND_BATCH; i++) {
+				final Page page = ring[slot];
+				if (page != null && page.pins == 0 && page.dirty) {
+					page.pins++;
+					batch.add(page);
+				}
+				slot = slot + 1 == ring.length ? 0 : slot + 1;
+			}
+		}
+		try {
+			for (final Page page : batch) {
+				try {
+					writePage(page);
+				}
+				catch (IOException ex) {
+					synchronized(this) {
+						if (!page.segment.closed) {
+							page.segment.writeError = ex;
+						}
+					}
+				}
+			}
+		}
+		finally {
+			release(batch, true);
+		}
+	}
+
+	/**
+	 * Immutable snapshot of the cache statistics
+	 */
+	public static class Statistics {
+		private final long hits, misses, prefetched, prefetchHits, evictions, writeBacks, writeBehinds;
+		private Statistics(long hits, long misses, long prefetched, long prefetchHits, long evictions, long writeBacks, long writeBehinds) {
+			this.hits			= hits;
+			this.misses			= misses;
+			this.prefetched		= prefetched;
+			this.prefetchHits	= prefetchHits;
+			this.evictions		= evictions;
+			this.writeBacks		= writeBacks;
+			this.writeBehinds	= writeBehinds;
+		}
+		/** Number of page accesses served from the cache*/
+		public long getHits() {
+			return hits;
+		}
+		/** Number of page accesses which caused a synchronous page read*/
+		public long getMisses() {
+			return misses;
+		}
+		/** Ratio of hits to all page accesses, or 0 if no page was accessed*/
+		public double getHitRatio() {
+			final long total = hits + misses;
+			return total == 0 ? 0d : ((double)hits) / total;
+		}
+		/** Number of pages loaded by read-ahead*/
+		public long getPrefetched() {
+			return prefetched;
+		}
+		/** Number of hits on pages loaded by read-ahead*/
+		public long getPrefetchHits() {
+			return prefetchHits;
+		}
+		/** Number of evicted pages*/
+		public long getEvictions() {
+			return evictions;
+		}
+		/** Number of dirty pages written synchronously upon eviction*/
+		public long getWriteBacks() {
+			return writeBacks;
+		}
+		/** Number of dirty pages written asynchronously by write-behind*/
+		public long getWriteBehinds() {
+			return writeBehinds;
+		}
+		@Override
+		public String toString() {
+			return
+				"hits=" + hits + ", misses=" + misses +
+				", hit-ratio=" + Math.round(getHitRatio() * 1000) / 10d + "%" +
+				", prefetched=" + prefetched + ", prefetch-hits=" + prefetchHits +
+				", evictions=" + evictions + ", write-backs=" + writeBacks +
+				", write-behinds=" + writeBehinds;
+		}
+	}
+
+}
@@ -0,0 +1,256 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.jbase;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class PageCacheTest extends TestCase {
+
+	private static final int FILE_SIZE	= 20000;
+	private static final int PAGE_SIZE	= 64;
+	private static final int PAGES		= 8;
+
+	private final Random rnd = new Random(4711);
+
+	public void testRandomAccessSharedCache() throws IOException {
+		final PageCache cache = new PageCache(PAGES * PAGE_SIZE, PAGE_SIZE, 2, true);
+		try {
+			final File fileA = createTempFile();
+			final File fileB = createTempFile();
+			final RandomAccessPersister a = new PageCachedPersister(new RandomAccessFilePersistor(fileA), cache);
+			final RandomAccessPersister b = new PageCachedPersister(new RandomAccessFilePersistor(fileB), cache);
+			final byte[] modelA = new byte[FILE_SIZE];
+			final byte[] modelB = new byte[FILE_SIZE];
+			fill(a, modelA);
+			fill(b, modelB);
+			for (int i = 0; i < 2000; i++) {
+				final boolean useA = rnd.nextBoolean();
+				modify(useA ? a : b, useA ? modelA : modelB);
+			}
+			assertContent(a, modelA);
+			assertContent(b, modelB);
+
+			//read copy shares the dirty pages
+			final RandomAccessPersister copy = a.createReadCopy(null);
+			assertContent(copy, modelA);
+			copy.close(false);
+
+			//truncate and flush, content on disk must match
+			a.setLength(FILE_SIZE / 2);
+			a.close(false);
+			b.close(false);
+			assertEquals(FILE_SIZE / 2, fileA.length());
+			assertContent(new RandomAccessFilePersistor(fileA), Arrays.copyOf(modelA, FILE_SIZE / 2));
+			assertContent(new RandomAccessFilePersistor(fileB), modelB);
+
+			final PageCache.Statistics stats = cache.getAndResetStatistics();
+			assertTrue(stats.getEvictions() > 0);
+			assertTrue(stats.getHits() > 0);
+			assertEquals(0, cache.getStatistics().getHits());
+		}
+		finally {
+			cache.close();
+		}
+	}
+
+	public void testSequentialScanPrefetch() throws IOException {
+		final PageCache cache = new PageCache(64 * PAGE_SIZE, PAGE_SIZE, 8, false);
+		try {
+			final File file = createTempFile();
+			final RandomAccessPersister pers = new PageCachedPersister(new RandomAccessFilePersistor(file), cache);
+			final byte[] model = new byte[FILE_SIZE];
+			fill(pers, model);
+			pers.flush();
+			//read with a second persister, pages of the first are still cached
+			final RandomAccessPersister reader = new PageCachedPersister(new RandomAccessFilePersistor(file), cache);
+			cache.getAndResetStatistics();
+			//read a few pages sequentially, read-ahead happens asynchronously
+			final byte[] head = new byte[4 * PAGE_SIZE];
+			reader.setPosition(0);
+			reader.getInput().readFully(head);
+			for (int i = 0; i < 200 && cache.getStatistics().getPrefetched() == 0; i++) {
+				try {
+					Thread.sleep(10);
+				}
+				catch (InterruptedException ex) {
+					throw new IOException(ex);
+				}
+			}
+			assertTrue(cache.getStatistics().getPrefetched() > 0);
+			assertContent(reader, model);
+			reader.close(false);
+			pers.close(true);
+		}
+		finally {
+			cache.close();
+		}
+	}
+
+	public void testPrimitivesAcrossPages() throws IOException {
+		final PageCache cache = new PageCache(4 * PAGE_SIZE, PAGE_SIZE, 0, false);
+		try {
+			final File file = createTempFile();
+			final RandomAccessPersister pers = new PageCachedPersister(new RandomAccessFilePersistor(file), cache);
+			//odd record size, values cross page boundaries
+			final int records = 200;
+			pers.setPosition(0);
+			for (int i = 0; i < records; i++) {
+				pers.getOutput().writeShort(i - 100);
+				pers.getOutput().writeInt(i * 123456789);
+				pers.getOutput().writeLong(i * 1234567890123L - 7);
+				pers.getOutput().writeByte(i);
+			}
+			pers.close(false);
+			//read with and without cache
+			final RandomAccessPersister[] readers = {
+				new PageCachedPersister(new RandomAccessFilePersistor(file), cache),
+				new RandomAccessFilePersistor(file)
+			};
+			for (final RandomAccessPersister reader : readers) {
+				reader.setPosition(0);
+				for (int i = 0; i < records; i++) {
+					assertEquals(i - 100, reader.getInput().readShort());
+					assertEquals(i * 123456789, reader.getInput().readInt());
+					assertEquals(i * 1234567890123L - 7, reader.getInput().readLong());
+					assertEquals((byte)i, reader.getInput().readByte());
+				}
+				try {
+					reader.getInput().readInt();
+					fail("end of file expected");
+				}
+				catch (EOFException ex) {
+					//expected
+				}
+				reader.close(false);
+			}
+		}
+		finally {
+			cache.close();
+		}
+	}
+
+	public void testConcurrentDirtyEviction() throws Exception {
+		final PageCache cache = new PageCache(PAGES * PAGE_SIZE, PAGE_SIZE, 0, false);
+		try {
+			final int threads = 4;
+			final File[] files = new File[threads];
+			final byte[][] models = new byte[threads][FILE_SIZE];
+			final Exception[] errors = new Exception[threads];
+			final Thread[] workers = new Thread[threads];
+			for (int t = 0; t < threads; t++) {
+				final int index = t;
+				files[t] = createTempFile();
+				workers[t] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							final Random random = new Random(index);
+							final RandomAccessPersister pers = new PageCachedPersister(new RandomAccessFilePersistor(files[index]), cache);
+							random.nextBytes(models[index]);
+							pers.setPosition(0);
+							pers.getOutput().write(models[index]);
+							for (int i = 0; i < 2000; i++) {
+								final int pos = random.nextInt(FILE_SIZE / 8) * 8;
+								final long val = random.nextLong();
+								pers.setPosition(pos);
+								pers.getOutput().writeLong(val);
+								for (int b = 0; b < 8; b++) {
+									models[index][pos + b] = (byte)(val >>> (56 - 8 * b));
+								}
+							}
+							pers.close(false);
+						}
+						catch (Exception ex) {
+							errors[index] = ex;
+						}
+					}
+				};
+				workers[t].start();
+			}
+			for (int t = 0; t < threads; t++) {
+				workers[t].join();
+				if (errors[t] != null) throw errors[t];
+				assertContent(new RandomAccessFilePersistor(files[t]), models[t]);
+			}
+			assertTrue(cache.getStatistics().getEvictions() > 0);
+		}
+		finally {
+			cache.close();
+		}
+	}
+
+	private File createTempFile() throws IOException {
+		final File file = File.createTempFile("page-cache-", ".tbl");
+		file.deleteOnExit();
+		return file;
+	}
+
+	private void fill(RandomAccessPersister pers, byte[] model) throws IOException {
+		rnd.nextBytes(model);
+		pers.setPosition(0);
+		pers.getOutput().write(model);
+	}
+
+	private void modify(RandomAccessPersister pers, byte[] model) throws IOException {
+		final int pos = rnd.nextInt(model.length - 200);
+		final byte[] data = new byte[1 + rnd.nextInt(199)];
+		if (rnd.nextBoolean()) {
+			rnd.nextBytes(data);
+			System.arraycopy(data, 0, model, pos, data.length);
+			pers.setPosition(pos);
+			pers.getOutput().write(data);
+		}
+		else {
+			pers.setPosition(pos);
+			pers.getInput().readFully(data);
+			for (int i = 0; i < data.length; i++) {
+				assertEquals(model[pos + i], data[i]);
+			}
+		}
+	}
+
+	private void assertContent(RandomAccessPersister pers, byte[] model) throws IOException {
+		final byte[] data = new byte[model.length];
+		pers.setPosition(0);
+		pers.getInput().readFully(data);
+		assertTrue(Arrays.equals(model, data));
+	}
+
+}
@@ -0,0 +1,421 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.jbase;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import ch.javasoft.jbase.util.AbstractDataInput;
+import ch.javasoft.jbase.util.AbstractDataOutput;
+import ch.javasoft.jbase.util.UnsupportedOperationException;
+
+/**
+ * The <tt>PageCachedPersister</tt> caches data in pages of a {@link PageCache}
+ * which is usually shared with other persisters, and delegates the real i/o
+ * operations to an underlying delegate {@link RandomAccessPersister}.
+ * <p>
+ * Every thread has its own position. If a thread reads consecutive pages,
+ * a sequential scan is assumed and the following pages are loaded
+ * asynchronously by the cache.
+ * <p>
+ * Read copies share the cached pages with the original persister. Like for
+ * {@link BufferedRandomAccessPersister}, the class is thread-safe if the
+ * caller guarantees that atomic read and write operations do not overlap.
+ */
+public class PageCachedPersister implements RandomAccessPersister {
+
+	private static final int POS		= 0;//byte position
+	private static final int LAST		= 1;//last accessed page
+	private static final int RUN		= 2;//number of consecutive page accesses
+	private static final int AHEAD		= 3;//last page requested for read-ahead
+
+	private final PageCache				cache;
+	private final PageCache.Segment		segment;
+	private final RandomAccessPersister	delegate;//for a read copy, the delegate read copy
+	private final int					pageSize;
+	private final DataInput				dataInput;
+	private final DataOutput			dataOutput;//null for read-copy
+
+	private volatile boolean closed;
+
+	private final ThreadLocal<long[]> state = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {return new long[] {0, -2, 0, -1};}
+	};
+
+	/**
+	 * Constructor with delegate persistor and the cache to use
+	 *
+	 * @param delegate	delegate persistor, does the real i/o operations
+	 * @param cache		the page cache, usually shared with other persisters
+	 */
+	public PageCachedPersister(RandomAccessPersister delegate, PageCache cache) {
+		this(cache, cache.createSegment(delegate), delegate, false);
+	}
+	private PageCachedPersister(PageCache cache, PageCache.Segment segment, RandomAccessPersister delegate, boolean readCopy) {
+		if (delegate == null) throw new NullPointerException("delegate cannot be null");
+		this.cache		= cache;
+		this.segment	= segment;
+		this.delegate	= delegate;
+		this.pageSize	= cache.getPageSize();
+		this.dataInput	= new CachedDataInput();
+		this.dataOutput	= readCopy ? null : new CachedDataOutput();
+	}
+
+	/** Returns the page cache used by this persister*/
+	public PageCache getPageCache() {
+		return cache;
+	}
+
+	public DataInput getInput() throws IOException {
+		checkOpen();
+		return dataInput;
+	}
+
+	public DataOutput getOutput() throws IOException {
+		checkOpen();
+		if (dataOutput == null) {
+			throw new UnsupportedOperationException("read only copy, data output not supported");
+		}
+		return dataOutput;
+	}
+
+	public long getPosition() throws IOException {
+		checkOpen();
+		return state.get()[POS];
+	}
+
+	public void setPosition(long bytePos) throws IOException {
+		checkOpen();
+		state.get()[POS] = bytePos;
+	}
+
+	public void setLength(long byteLength) throws IOException {
+		checkOpen();
+		if (dataOutput == null) {
+			throw new UnsupportedOperationException("read only copy, setting length not supported");
+		}
+		cache.truncate(segment, byteLength);
+		synchronized (delegate) {
+			delegate.setLength(byteLength);
+		}
+	}
+
+	public void flush() throws IOException {
+		checkOpen();
+		if (dataOutput == null) {
+			throw new UnsupportedOperationException("read only copy, flush not supported");
+		}
+		cache.flush(segment);
+		synchronized (delegate) {
+			delegate.flush();
+		}
+	}
+
+	public void close(boolean erase) throws IOException {
+		if (erase && dataOutput == null) {
+			throw new UnsupportedOperationException("unmodifyable read copy");
+		}
+		if (!closed) {
+			closed = true;
+			try {
+				if (dataOutput != null) {
+					cache.close(segment, erase);
+				}
+			}
+			finally {
+				delegate.close(erase);
+			}
+		}
+	}
+
+	public RandomAccessPersister createReadCopy(ReadWriteLock lock) throws IOException {
+		checkOpen();
+		final PageCachedPersister copy = new PageCachedPersister(cache, segment, delegate.createReadCopy(lock), true);
+		copy.setPosition(getPosition());
+		return copy;
+	}
+
+	private void checkOpen() throws IOException {
+		if (closed) throw new IOException("persister already closed");
+	}
+
+	/**
+	 * Returns the pinned page for the current position. For read access,
+	 * sequential scans are detected and read-ahead is triggered.
+	 */
+	private PageCache.Page pin(long[] st, boolean forWrite) throws IOException {
+		final long index = st[POS] / pageSize;
+		if (index != st[LAST]) {
+			st[RUN]		= index == st[LAST] + 1 ? st[RUN] + 1 : 0;
+			st[LAST]	= index;
+			if (!forWrite && st[RUN] >= PageCache.SEQUENTIAL_THRESHOLD) {
+				final int prefetch = cache.getPrefetchPages();
+				if (prefetch > 0 && index + prefetch / 2 >= st[AHEAD]) {
+					final long from = Math.max(index + 1, st[AHEAD] + 1);
+					st[AHEAD] = index + prefetch;
+					cache.prefetch(segment, from, st[AHEAD]);
+				}
+			}
+		}
+		return cache.pin(segment, index, delegate, forWrite);
+	}
+
+	private int read(boolean inc) throws IOException {
+		checkOpen();
+		final long[] st = state.get();
+		final int pInd = (int)(st[POS] % pageSize);
+		final PageCache.Page page = pin(st, false);
+		try {
+			if (pInd < page.length) {
+				final int v = (0x000000ff & page.buffer[pInd]);
+				if (inc) st[POS]++;
+				return v;
+			}
+		}
+		finally {
+			cache.unpin(page, false);
+		}
+		//end of stream
+		return -1;
+	}
+	private int read(final byte[] buf, int off, int len) throws IOException {
+		checkOpen();
+		final long[] st = state.get();
+		final int pInd = (int)(st[POS] % pageSize);
+		final PageCache.Page page = pin(st, false);
+		try {
+			final int count = Math.min(page.length - pInd, len);
+			if (count > 0) {
+				System.arraycopy(page.buffer, pInd, buf, off, count);
+				st[POS] += count;
+				return count;
+			}
+		}
+		finally {
+			cache.unpin(page, false);
+		}
+		//end of stream
+		return -1;
+	}
+
+	/**
+	 * Reads a big-endian number with the given number of bytes. The page is
+	 * pinned only once if the bytes are on a single page.
+	 */
+	private long readNumber(int bytes) throws IOException {
+		checkOpen();
+		final long[] st = state.get();
+		final int pInd = (int)(st[POS] % pageSize);
+		if (pInd + bytes <= pageSize) {
+			final PageCache.Page page = pin(st, false);
+			try {
+				if (pInd + bytes <= page.length) {
+					long val = 0;
+					for (int i = 0; i < bytes; i++) {
+						val = (val << 8) | (0x000000ff & page.buffer[pInd + i]);
+					}
+					st[POS] += bytes;
+					return val;
+				}
+			}
+			finally {
+				cache.unpin(page, false);
+			}
+		}
+		//page boundary or end of stream, read byte by byte
+		long val = 0;
+		for (int i = 0; i < bytes; i++) {
+			final int b = read(true);
+			if (b < 0) throw new EOFException();
+			val = (val << 8) | b;
+		}
+		return val;
+	}
+
+	private int skip(int n) throws IOException {
+		checkOpen();
+		final long[] st = state.get();
+		int count = 0;
+		while (count < n) {
+			final int pInd = (int)(st[POS] % pageSize);
+			final PageCache.Page page = pin(st, false);
+			try {
+				final int skip = Math.min(page.length - pInd, n - count);
+				if (skip <= 0) break;//end of stream
+				st[POS] += skip;
+				count += skip;
+			}
+			finally {
+				cache.unpin(page, false);
+			}
+		}
+		return count;
+	}
+
+	private void write(int b) throws IOException {
+		checkOpen();
+		final long[] st = state.get();
+		final int pInd = (int)(st[POS] % pageSize);
+		final PageCache.Page page = pin(st, true);
+		try {
+			page.buffer[pInd]	= (byte)b;
+			page.length			= Math.max(page.length, pInd + 1);
+			page.dirty			= true;
+			st[POS]++;
+		}
+		finally {
+			cache.unpin(page, true);
+		}
+	}
+	/**
+	 * Writes a big-endian number with the given number of bytes. The page is
+	 * pinned only once if the bytes fit on a single page.
+	 */
+	private void writeNumber(long val, int bytes) throws IOException {
+		checkOpen();
+		final long[] st = state.get();
+		final int pInd = (int)(st[POS] % pageSize);
+		if (pInd + bytes <= pageSize) {
+			final PageCache.Page page = pin(st, true);
+			try {
+				for (int i = 0; i < bytes; i++) {
+					page.buffer[pInd + i] = (byte)(val >>> (8 * (bytes - 1 - i)));
+				}
+				page.length	= Math.max(page.length, pInd + bytes);
+				page.dirty	= true;
+				st[POS] += bytes;
+			}
+			finally {
+				cache.unpin(page, true);
+			}
+		}
+		else {
+			//page boundary, write byte by byte
+			for (int i = 0; i < bytes; i++) {
+				write((int)(val >>> (8 * (bytes - 1 - i))) & 0xff);
+			}
+		}
+	}
+	private int write(byte[] buf, int off, int len) throws IOException {
+		checkOpen();
+		final long[] st = state.get();
+		final int pInd = (int)(st[POS] % pageSize);
+		final PageCache.Page page = pin(st, true);
+		try {
+			final int count = Math.min(pageSize - pInd, len);
+			System.arraycopy(buf, off, page.buffer, pInd, count);
+			page.length	= Math.max(page.length, pInd + count);
+			page.dirty	= true;
+			st[POS] += count;
+			return count;
+		}
+		finally {
+			cache.unpin(page, true);
+		}
+	}
+
+	private class CachedDataInput extends AbstractDataInput {
+		@Override
+		protected int peek() throws IOException {
+			return PageCachedPersister.this.read(false);
+		}
+		@Override
+		protected int read() throws IOException {
+			return PageCachedPersister.this.read(true);
+		}
+		@Override
+		protected int read(byte[] b, int off, int len) throws IOException {
+			return PageCachedPersister.this.read(b, off, len);
+		}
+		@Override
+		public int skipBytes(int n) throws IOException {
+			return PageCachedPersister.this.skip(n);
+		}
+		@Override
+		public short readShort() throws IOException {
+			return (short)readNumber(2);
+		}
+		@Override
+		public int readUnsignedShort() throws IOException {
+			return (int)readNumber(2);
+		}
+		@Override
+		public char readChar() throws IOException {
+			return (char)readNumber(2);
+		}
+		@Override
+		public int readInt() throws IOException {
+			return (int)readNumber(4);
+		}
+		@Override
+		public long readLong() throws IOException {
+			return readNumber(8);
+		}
+	}
+
+	private class CachedDataOutput extends AbstractDataOutput {
+		public void write(int b) throws IOException {
+			PageCachedPersister.this.write(b);
+		}
+		public void write(byte[] b, int off, int len) throws IOException {
+			int n = 0;
+			while (n < len) {
+				final int count = PageCachedPersister.this.write(b, off + n, len - n);
+				if (count <= 0) throw new EOFException();
+				n += count;
+			}
+		}
+		@Override
+		public void writeShort(int v) throws IOException {
+			writeNumber(v, 2);
+		}
+		@Override
+		public void writeChar(int v) throws IOException {
+			writeNumber(v, 2);
+		}
+		@Override
+		public void writeInt(int v) throws IOException {
+			writeNumber(v, 4);
+		}
+		@Override
+		public void writeLong(long v) throws IOException {
+			writeNumber(v, 8);
+		}
+	}
+
+}
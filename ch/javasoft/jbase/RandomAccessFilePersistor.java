@@ -51,6 +51,7 @@ public class RandomAccessFilePersistor implements RandomAccessPersister {
     
 	private final File file;
     private final RandomAccessFile raf;
+    private CountingAccess counting;//lazily created if i/o is counted
     
     public RandomAccessFilePersistor(File folder, String fileName) throws FileNotFoundException {
         this(new File(folder, fileName));
@@ -86,11 +87,19 @@ public class RandomAccessFilePersistor implements RandomAccessPersister {
     }
     
     public DataInput getInput() throws IOException {
-        return raf;
+        return IoStatistics.isEnabled() ? getCountingAccess() : raf;
     }
     
     public DataOutput getOutput() throws IOException {
-        return raf;
+        return IoStatistics.isEnabled() ? getCountingAccess() : raf;
+    }
+    
+    private CountingAccess getCountingAccess() {
+    	CountingAccess access = counting;
+    	if (access == null) {
+    		counting = access = new CountingAccess();
+    	}
+    	return access;
     }
     
     /**
@@ -119,4 +128,141 @@ public class RandomAccessFilePersistor implements RandomAccessPersister {
     	return copy;
     }
 
+    /**
+     * Delegates to the random access file and adds the number of transferred 
+     * bytes to the {@link IoStatistics}
+     */
+    private class CountingAccess implements DataInput, DataOutput {
+		public void readFully(byte[] b) throws IOException {
+			raf.readFully(b);
+			IoStatistics.addRead(b.length);
+		}
+		public void readFully(byte[] b, int off, int len) throws IOException {
+			raf.readFully(b, off, len);
+			IoStatistics.addRead(len);
+		}
+		public int skipBytes(int n) throws IOException {
+			return raf.skipBytes(n);
+		}
+		public boolean readBoolean() throws IOException {
+			final boolean v = raf.readBoolean();
+			IoStatistics.addRead(1);
+			return v;
+		}
+		public byte readByte() throws IOException {
+			final byte v = raf.readByte();
+			IoStatistics.addRead(1);
+			return v;
+		}
+		public int readUnsignedByte() throws IOException {
+			final int v = raf.readUnsignedByte();
+			IoStatistics.addRead(1);
+			return v;
+		}
+		public short readShort() throws IOException {
+			final short v = raf.readShort();
+			IoStatistics.addRead(2);
+			return v;
+		}
+		public int readUnsignedShort() throws IOException {
+			final int v = raf.readUnsignedShort();
+			IoStatistics.addRead(2);
+			return v;
+		}
+		public char readChar() throws IOException {
+			final char v = raf.readChar();
+			IoStatistics.addRead(2);
+			return v;
+		}
+		public int readInt() throws IOException {
+			final int v = raf.readInt();
+			IoStatistics.addRead(4);
+			return v;
+		}
+		public long readLong() throws IOException {
+			final long v = raf.readLong();
+			IoStatistics.addRead(8);
+			return v;
+		}
+		public float readFloat() throws IOException {
+			final float v = raf.readFloat();
+			IoStatistics.addRead(4);
+			return v;
+		}
+		public double readDouble() throws IOException {
+			final double v = raf.readDouble();
+			IoStatistics.addRead(8);
+			return v;
+		}
+		public String readLine() throws IOException {
+			final long pos = raf.getFilePointer();
+			final String v = raf.readLine();
+			IoStatistics.addRead(raf.getFilePointer() - pos);
+			return v;
+		}
+		public String readUTF() throws IOException {
+			final long pos = raf.getFilePointer();
+			final String v = raf.readUTF();
+			IoStatistics.addRead(raf.getFilePointer() - pos);
+			return v;
+		}
+		public void write(int b) throws IOException {
+			raf.write(b);
+			IoStatistics.addWritten(1);
+		}
+		public void write(byte[] b) throws IOException {
+			raf.write(b);
+			IoStatistics.addWritten(b.length);
+		}
+		public void write(byte[] b, int off, int len) throws IOException {
+			raf.write(b, off, len);
+			IoStatistics.addWritten(len);
+		}
+		public void writeBoolean(boolean v) throws IOException {
+			raf.writeBoolean(v);
+			IoStatistics.addWritten(1);
+		}
+		public void writeByte(int v) throws IOException {
+			raf.writeByte(v);
+			IoStatistics.addWritten(1);
+		}
+		public void writeShort(int v) throws IOException {
+			raf.writeShort(v);
+			IoStatistics.addWritten(2);
+		}
+		public void writeChar(int v) throws IOException {
+			raf.writeChar(v);
+			IoStatistics.addWritten(2);
+		}
+		public void writeInt(int v) throws IOException {
+			raf.writeInt(v);
+			IoStatistics.addWritten(4);
+		}
+		public void writeLong(long v) throws IOException {
+			raf.writeLong(v);
+			IoStatistics.addWritten(8);
+		}
+		public void writeFloat(float v) throws IOException {
+			raf.writeFloat(v);
+			IoStatistics.addWritten(4);
+		}
+		public void writeDouble(double v) throws IOException {
+			raf.writeDouble(v);
+			IoStatistics.addWritten(8);
+		}
+		public void writeBytes(String s) throws IOException {
+			raf.writeBytes(s);
+			IoStatistics.addWritten(s.length());
+		}
+		public void writeChars(String s) throws IOException {
+			raf.writeChars(s);
+			IoStatistics.addWritten(2L * s.length());
+		}
+		public void writeUTF(String s) throws IOException {
+			final long pos = raf.getFilePointer();
+			raf.writeUTF(s);
+			IoStatistics.addWritten(raf.getFilePointer() - pos);
+		}
+    }
+
 }
@@ -35,7 +35,6 @@ package ch.javasoft.jbase;
 
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.Map;
@@ -179,7 +178,10 @@ public class VariableWidthTable<E> implements Table<E>, Stateful {
         }
         return tbl;
     }
-    private RandomAccessPersister createRandomAccessPersister(File file) throws FileNotFoundException {
+    private RandomAccessPersister createRandomAccessPersister(File file) throws IOException {
+    	if (MappedFilePersister.isEnabled() || PageCache.getShared() != null) {
+    		return MappedFilePersister.createPersister(file, false /*readOnly*/);
+    	}
     	if (cacheTableSize > 0 && cacheEntrySize > 0) {
     		return new BufferedRandomAccessPersister(file, cacheTableSize, cacheEntrySize);
     	}
@@ -0,0 +1,59 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.jbase.util;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * A <tt>BulkDataInput</tt> is a {@link DataInput} which can read arrays of
+ * primitive values at once. The byte representation of the values is the same
+ * as for {@link DataInput#readLong()} and {@link DataInput#readDouble()}, the
+ * bulk methods are simply faster, for instance if the data is read directly
+ * from a memory mapped file.
+ */
+public interface BulkDataInput extends DataInput {
+	/**
+	 * Reads {@code len} long values and stores them in {@code dst}, starting
+	 * at index {@code off}. Equivalent to calling {@link #readLong()} 
+	 * {@code len} times.
+	 */
+	void readLongs(long[] dst, int off, int len) throws IOException;
+	/**
+	 * Reads {@code len} double values and stores them in {@code dst}, starting
+	 * at index {@code off}. Equivalent to calling {@link #readDouble()} 
+	 * {@code len} times.
+	 */
+	void readDoubles(double[] dst, int off, int len) throws IOException;
+}
@@ -33,11 +33,13 @@
  */
 package ch.javasoft.jsmat;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
 import ch.javasoft.io.DataOutputOutputStream;
@@ -50,13 +52,20 @@ import com.jmatio.common.MatDataTypes;
  * This class is a memory efficient version of {@link MatOutputStreamWriter} 
  * optimized for file targets. A {@link RandomAccessFile} is used to write the
  * file.
+ * <p>
+ * Variables are written zlib-compressed (miCOMPRESSED) by default. The 
+ * compression level can be specified at construction time, where
+ * {@link Deflater#NO_COMPRESSION} causes variables to be written without 
+ * miCOMPRESSED tag, that is, uncompressed. 
  */
 public class MatFileWriter extends MatWriter<RandomAccessFile> {
 
-	private final RandomAccessFile mFile;
+	private final RandomAccessFile	mFile;
+	private final int				mCompressionLevel;
 	
 	/**
-	 * Constructor to write to the given file
+	 * Constructor to write to the given file, variables are compressed with
+	 * default compression level
 	 * 
 	 * @param file			the file to create
 	 * @throws IOException	if any io exception occurs
@@ -66,14 +75,59 @@ public class MatFileWriter extends MatWriter<RandomAccessFile> {
 	}
 
 	/**
-	 * Constructor to write to the given ras file
+	 * Constructor to write to the given file, variables are compressed with
+	 * the given compression level
+	 * 
+	 * @param file				the file to create
+	 * @param compressionLevel	the compression level, 
+	 * 							{@link Deflater#DEFAULT_COMPRESSION} or a value 
+	 * 							from 0 to 9, where 
+	 * 							{@link Deflater#NO_COMPRESSION} writes
+	 * 							uncompressed variables
+	 * @throws IOException	if any io exception occurs
+	 */
+	public MatFileWriter(File file, int compressionLevel) throws IOException {
+		this(new RandomAccessFile(file, "rw"), compressionLevel);
+	}
+
+	/**
+	 * Constructor to write to the given ras file, variables are compressed 
+	 * with default compression level
 	 * 
 	 * @param file			the ras file to create
 	 * @throws IOException	if any io exception occurs
 	 */
 	public MatFileWriter(RandomAccessFile file) throws IOException {
+		this(file, Deflater.DEFAULT_COMPRESSION);
+	}
+	
+	/**
+	 * Constructor to write to the given ras file, variables are compressed 
+	 * with the given compression level
+	 * 
+	 * @param file				the ras file to create
+	 * @param compressionLevel	the compression level, 
+	 * 							{@link Deflater#DEFAULT_COMPRESSION} or a value 
+	 * 							from 0 to 9, where 
+	 * 							{@link Deflater#NO_COMPRESSION} writes
+	 * 							uncompressed variables
+	 * @throws IOException	if any io exception occurs
+	 */
+	public MatFileWriter(RandomAccessFile file, int compressionLevel) throws IOException {
 		super(file);
-		mFile = file;
+		if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < 0 || compressionLevel > 9)) {
+			throw new IllegalArgumentException("invalid compression level: " + compressionLevel);
+		}
+		mFile				= file;
+		mCompressionLevel	= compressionLevel;
+	}
+	
+	/**
+	 * Returns the compression level, {@link Deflater#NO_COMPRESSION} if 
+	 * variables are written uncompressed
+	 */
+	public int getCompressionLevel() {
+		return mCompressionLevel;
 	}
 	
 	/**
@@ -88,8 +142,22 @@ public class MatFileWriter extends MatWriter<RandomAccessFile> {
 	//inherit javadoc comments
 	@Override
 	protected VariableWriter createVariableWriter() throws IOException {
+		if (mCompressionLevel == Deflater.NO_COMPRESSION) {
+			return new VariableWriter() {
+				private DataOutputStream dataOut;
+				public DataOutput open() throws IOException {
+					dataOut = new DataOutputStream(new BufferedOutputStream(new DataOutputOutputStream(mFile), 1 << 16));
+					return dataOut;
+				}
+				public void close() throws IOException {
+					dataOut.flush();
+					dataOut = null;
+				}
+			};
+		}
 		return new VariableWriter() {
 			private long posSize, posStart;
+			private Deflater def;
 			private DeflaterOutputStream deflater;
 			private DataOutputStream dataDefOut;
 			public DataOutput open() throws IOException {
@@ -100,7 +168,8 @@ public class MatFileWriter extends MatWriter<RandomAccessFile> {
 				mFile.writeInt(0);
 				posStart = mFile.getFilePointer();
 
-		        deflater	= new DeflaterOutputStream(new DataOutputOutputStream(mFile));
+				def			= new Deflater(mCompressionLevel);
+		        deflater	= new DeflaterOutputStream(new DataOutputOutputStream(mFile), def);
 				dataDefOut	= new DataOutputStream(deflater);
 				
 				return dataDefOut;
@@ -108,6 +177,7 @@ public class MatFileWriter extends MatWriter<RandomAccessFile> {
 			public void close() throws IOException {				
 				dataDefOut.flush();
 				deflater.finish();
+				def.end();
 
 				// now, write the real compressed size
 				long posEnd = mFile.getFilePointer();
@@ -117,6 +187,7 @@ public class MatFileWriter extends MatWriter<RandomAccessFile> {
 				
 				dataDefOut	= null;
 				deflater	= null;
+				def			= null;
 			}
 		};
 	}
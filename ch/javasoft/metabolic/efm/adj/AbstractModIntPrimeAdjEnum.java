@@ -99,7 +99,7 @@ abstract public class AbstractModIntPrimeAdjEnum extends TreeMemAdjEnum<RankUpda
 	protected <Col extends Column, N extends Number> TreePairTraverser<RankUpdateToken> createTreeTraverser(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, BitPatternTree posTree, BitPatternTree negTree, AdjacencyPrecondition<RankUpdateToken> precondition) {
 		AdjacencyPrecondition<RankUpdateToken> precond = new DefaultRankUpAdjacencyPrecondition<RankUpdateToken>(columnHome, getEfmModel());
 		if (precondition != null) {
-			precond = PreconditionUtil.and(precondition, precond);
+			precond = PreconditionUtil.and(precond, precondition);
 		}
 //		return new ConcurrentSubtreePairTraverser<RankUpdateToken>(
 //			getEfmModel(), precond,
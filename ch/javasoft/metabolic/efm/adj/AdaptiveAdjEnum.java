@@ -0,0 +1,452 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.adj;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.logging.Level;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.metabolic.efm.adj.incore.tree.search.PatternTreeMinZerosAdjacencyEnumerator;
+import ch.javasoft.metabolic.efm.adj.incore.tree.urank.modpi.ModIntPrimePatternTreeRankUpdateAdjacencyEnumerator;
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.metabolic.efm.config.Config;
+import ch.javasoft.metabolic.efm.dist.impl.adj.AbstractDistributedAdjEnum;
+import ch.javasoft.metabolic.efm.memory.SortableMemory;
+import ch.javasoft.metabolic.efm.model.AdjEnumModel;
+import ch.javasoft.metabolic.efm.model.EfmModel;
+
+/**
+ * The <tt>AdaptiveAdjEnum</tt> chooses the adjacency method for every 
+ * iteration separately. The methods to choose from are specified after the 
+ * colon, separated by comma, for instance 
+ * <tt>adaptive:pattern-tree-minzero,pattern-tree-rank-update-modpi</tt>. 
+ * If no methods are given, the {@link #DEFAULT_METHODS} are used.
+ * <p>
+ * Before each iteration, the partition sizes are measured and the 
+ * intersection cardinalities of {@link #SAMPLE_SIZE} random candidate pairs
+ * are sampled. From these {@link Stats statistics}, the cost of every method 
+ * is predicted according to its {@link Kind}, and the cheapest method is 
+ * used. The {@link CostModel cost model} is calibrated with the measured time
+ * of every iteration, the first run of every method is considered as warm-up 
+ * and not used for calibration. Methods which have not been calibrated yet 
+ * are probed if the iteration is predicted to be cheap, such that the early 
+ * iterations serve for calibration. Calibrated methods are probed again 
+ * periodically if their predicted cost is close to the cheapest method, and
+ * after predictions have missed the measured time by a large factor.
+ * <p>
+ * Note that distributed adjacency methods cannot be used as delegates since
+ * they depend on the configured adjacency method name.
+ */
+public class AdaptiveAdjEnum extends AbstractAdjEnum {
+	
+	public static final String NAME = "adaptive";
+	
+	/** The methods used if no methods are specified*/
+	public static final String[] DEFAULT_METHODS = {
+		PatternTreeMinZerosAdjacencyEnumerator.NAME,
+		ModIntPrimePatternTreeRankUpdateAdjacencyEnumerator.NAME
+	};
+	
+	/** Number of candidate pairs sampled to estimate intersection cardinalities*/
+	public static final int SAMPLE_SIZE = 256;
+	
+	/** Uncalibrated methods are probed if the best predicted cost is below this limit*/
+	public static final long PROBE_LIMIT_NS = 200L * 1000 * 1000;
+	
+	/** Iterations faster than this are not used for calibration, timing is dominated by overhead*/
+	public static final long MIN_CALIBRATION_NS = 5L * 1000 * 1000;
+	
+	/** Number of initial runs of every method which are not used for calibration (JIT and setup)*/
+	public static final int WARMUP_RUNS = 1;
+	
+	/** Calibrated methods not used for this many iterations are probed again if their cost is close to the best*/
+	public static final int REPROBE_INTERVAL = 5;
+	
+	/** Methods are probed again if their predicted cost is at most this factor above the best method*/
+	public static final double REPROBE_FACTOR = 4d;
+	
+	/** If a prediction misses the measured time by more than this factor, the other methods are probed again*/
+	public static final double MISS_FACTOR = 10d;
+	
+	/** Weight of older measurements, multiplied for every new measurement of a method*/
+	public static final double CALIBRATION_DECAY = 0.7;
+
+	/**
+	 * The cost kind of an adjacency method defines how its cost is predicted
+	 * from the iteration {@link Stats statistics}. The candidates passing the
+	 * combinatorial cardinality test must be tested by all methods, the 
+	 * kinds differ in the cost per candidate. 
+	 */
+	public static enum Kind {
+		/**
+		 * Combinatorial test by superset search in pattern trees of all modes,
+		 * the cost per candidate is assumed to grow with the square root of
+		 * the number of modes.
+		 */
+		Search {
+			@Override
+			public double getCostFeature(Stats stats, EfmModel efmModel) {
+				return stats.getCandidates() * Math.sqrt(stats.getModes());
+			}
+			@Override
+			public double getDefaultCoefficient() {
+				return 20d;
+			}
+		},
+		/**
+		 * Algebraic test by (updated) rank computation, the cost per candidate
+		 * grows with the size of the stoichiometric submatrix, that is, the 
+		 * stoichiometric rank times the number of reactions which are not in
+		 * the zero set intersection. Thus, large intersections are cheap.
+		 */
+		Rank {
+			@Override
+			public double getCostFeature(Stats stats, EfmModel efmModel) {
+				final int reactions = efmModel.getRequiredRank() + 2;
+				final double nonZeros = Math.max(1d, reactions - stats.getMeanCardinality());
+				return stats.getCandidates() * nonZeros * Math.max(1, efmModel.getStoichRank());
+			}
+			@Override
+			public double getDefaultCoefficient() {
+				return 2d;
+			}
+		};
+		/**
+		 * Returns the feature value which is multiplied with the calibrated 
+		 * coefficient to predict the cost in nanoseconds
+		 */
+		abstract public double getCostFeature(Stats stats, EfmModel efmModel);
+		/**
+		 * Returns the initial coefficient, nanoseconds per feature unit
+		 */
+		abstract public double getDefaultCoefficient();
+		/**
+		 * Returns the kind of the named adjacency method, {@link #Rank} for
+		 * methods with <tt>rank</tt> in their name, {@link #Search} otherwise
+		 */
+		public static Kind getKind(String adjMethod) {
+			return adjMethod.contains("rank") ? Rank : Search;
+		}
+	}
+	
+	/**
+	 * Statistics of an iteration, used to predict the cost of the adjacency
+	 * methods
+	 */
+	public static class Stats {
+		private final int		pos, zer, neg;
+		private final double	passFraction;
+		private final double	meanCardinality;
+		
+		public Stats(int pos, int zer, int neg, double passFraction, double meanCardinality) {
+			this.pos				= pos;
+			this.zer				= zer;
+			this.neg				= neg;
+			this.passFraction		= passFraction;
+			this.meanCardinality	= meanCardinality;
+		}
+		/**
+		 * Samples random candidate pairs and computes the fraction of pairs
+		 * with enough common zeros, and their mean intersection cardinality
+		 */
+		public static <Col extends Column> Stats sample(AdjEnumModel<Col> itModel, int requiredCardinality, int sampleSize) throws IOException {
+			final SortableMemory<Col> posMem = itModel.getMemoryPos();
+			final SortableMemory<Col> negMem = itModel.getMemoryNeg();
+			final int pos = posMem.getColumnCount();
+			final int neg = negMem.getColumnCount();
+			final Random rnd = new Random(itModel.getIterationIndex());
+			int passed = 0;
+			long cardSum = 0;
+			for (int i = 0; i < sampleSize; i++) {
+				final IBitSet bitsP = posMem.getBitValues(rnd.nextInt(pos));
+				final IBitSet bitsN = negMem.getBitValues(rnd.nextInt(neg));
+				final int card = bitsP.getAndCardinality(bitsN);
+				if (card >= requiredCardinality) {
+					passed++;
+					cardSum += card;
+				}
+			}
+			return new Stats(
+				pos, itModel.getMemoryZero().getColumnCount(), neg,
+				((double)passed) / sampleSize,
+				passed == 0 ? requiredCardinality : ((double)cardSum) / passed
+			);
+		}
+		public int getModes() {
+			return pos + zer + neg;
+		}
+		/** Estimated number of candidates passing the cardinality test, at least 1*/
+		public double getCandidates() {
+			return Math.max(1d, ((double)pos) * neg * passFraction);
+		}
+		/** Mean intersection cardinality of the candidates passing the cardinality test*/
+		public double getMeanCardinality() {
+			return meanCardinality;
+		}
+		@Override
+		public String toString() {
+			return "[+/0/-]=[" + pos + "/" + zer + "/" + neg + "], passing=" + 
+				Math.round(passFraction * 1000) / 10d + "%, mean-card=" + Math.round(meanCardinality * 10) / 10d;
+		}
+	}
+	
+	/**
+	 * The <tt>CostModel</tt> predicts and calibrates the cost of the adjacency
+	 * methods. The cost of a method is modeled as a power law of its 
+	 * {@link Kind#getCostFeature(Stats, EfmModel) cost feature}, fitted by 
+	 * weighted least squares on the logarithms of the measured times and 
+	 * features. Older measurements are decayed by {@link #CALIBRATION_DECAY}.
+	 * With a single measurement, the cost is assumed to be linear in the 
+	 * feature, without measurement, the {@link Kind#getDefaultCoefficient() 
+	 * default coefficient} is used.
+	 */
+	static class CostModel {
+		private final Kind[]	kinds;
+		private final int[]		runs;//all runs, including warm-up runs
+		private final int[]		lastRun;//iteration of last run
+		private final boolean[]	reprobe;//true if the method should be probed after a miss
+		private final double[]	sw, sx, sy, sxx, sxy;//weighted sums of log feature (x) and log time (y)
+		
+		public CostModel(Kind... kinds) {
+			this.kinds		= kinds;
+			this.runs		= new int[kinds.length];
+			this.lastRun	= new int[kinds.length];
+			this.reprobe	= new boolean[kinds.length];
+			this.sw			= new double[kinds.length];
+			this.sx			= new double[kinds.length];
+			this.sy			= new double[kinds.length];
+			this.sxx		= new double[kinds.length];
+			this.sxy		= new double[kinds.length];
+		}
+		
+		/**
+		 * Returns true if the given method has at least one measurement 
+		 * which is used for the prediction
+		 */
+		public boolean isCalibrated(int index) {
+			return sw[index] > 0d;
+		}
+		
+		/**
+		 * Returns the predicted cost in nanoseconds for the given method and
+		 * cost feature value
+		 */
+		public double predict(int index, double feature) {
+			if (!isCalibrated(index)) {
+				return kinds[index].getDefaultCoefficient() * feature;
+			}
+			final double w		= sw[index];
+			final double mx		= sx[index] / w;
+			final double my		= sy[index] / w;
+			final double var	= sxx[index] / w - mx * mx;
+			final double cov	= sxy[index] / w - mx * my;
+			//exponent 1 (linear) if all features are about the same
+			final double exp	= var > 1e-2 ? Math.max(0.25, Math.min(2d, cov / var)) : 1d;
+			return Math.exp(my + exp * (Math.log(Math.max(1d, feature)) - mx));
+		}
+		
+		/**
+		 * Returns the index of the method with the lowest predicted cost
+		 */
+		public int cheapest(double[] features) {
+			int best = 0;
+			for (int i = 1; i < features.length; i++) {
+				if (predict(i, features[i]) < predict(best, features[best])) {
+					best = i;
+				}
+			}
+			return best;
+		}
+		
+		/**
+		 * Returns the index of the method to use in the given iteration. This
+		 * is the {@link #cheapest(double[]) cheapest} method, unless another
+		 * method is probed:
+		 * <ul>
+		 * 	<li>uncalibrated methods and methods to probe after a prediction
+		 * 		miss, if the cheapest predicted cost is below 
+		 * 		{@link AdaptiveAdjEnum#PROBE_LIMIT_NS}</li>
+		 * 	<li>calibrated methods which have not been used for 
+		 * 		{@link AdaptiveAdjEnum#REPROBE_INTERVAL} iterations, if their 
+		 * 		predicted cost is at most {@link AdaptiveAdjEnum#REPROBE_FACTOR}
+		 * 		times the cheapest cost</li>
+		 * </ul>
+		 */
+		public int choose(double[] features, int iteration) {
+			final int best = cheapest(features);
+			final double bestCost = predict(best, features[best]);
+			int probe = -1;
+			for (int i = 0; i < features.length; i++) {
+				if (i != best) {
+					final double cost = predict(i, features[i]);
+					final boolean due;
+					if (!isCalibrated(i) || reprobe[i]) {
+						due = bestCost < PROBE_LIMIT_NS;
+					}
+					else {
+						due = iteration - lastRun[i] >= REPROBE_INTERVAL && cost <= REPROBE_FACTOR * bestCost;
+					}
+					if (due && (probe < 0 || cost < predict(probe, features[probe]))) {
+						probe = i;
+					}
+				}
+			}
+			return probe >= 0 ? probe : best;
+		}
+		
+		/**
+		 * Updates the cost model of the given method with the measured time.
+		 * Warm-up runs and runs faster than 
+		 * {@link AdaptiveAdjEnum#MIN_CALIBRATION_NS} are not used. If the 
+		 * prediction misses the measured time by more than 
+		 * {@link AdaptiveAdjEnum#MISS_FACTOR}, all other methods are marked 
+		 * to be probed again.
+		 * 
+		 * @return true if the measurement was used for calibration
+		 */
+		public boolean calibrate(int index, double feature, long elapsedNS, int iteration) {
+			runs[index]++;
+			lastRun[index]	= iteration;
+			reprobe[index]	= false;
+			if (runs[index] <= WARMUP_RUNS || elapsedNS < MIN_CALIBRATION_NS || feature <= 0d) {
+				return false;
+			}
+			if (isCalibrated(index)) {
+				final double miss = elapsedNS / predict(index, feature);
+				if (miss > MISS_FACTOR || miss < 1d / MISS_FACTOR) {
+					for (int i = 0; i < reprobe.length; i++) {
+						reprobe[i] = i != index;
+					}
+				}
+			}
+			final double x = Math.log(Math.max(1d, feature));
+			final double y = Math.log(elapsedNS);
+			sw[index]	= CALIBRATION_DECAY * sw[index] + 1d;
+			sx[index]	= CALIBRATION_DECAY * sx[index] + x;
+			sy[index]	= CALIBRATION_DECAY * sy[index] + y;
+			sxx[index]	= CALIBRATION_DECAY * sxx[index] + x * x;
+			sxy[index]	= CALIBRATION_DECAY * sxy[index] + x * y;
+			return true;
+		}
+	}
+	
+	private String[]	methods;
+	private AdjEnum[]	delegates;
+	private Kind[]		kinds;
+	private CostModel	costModel;
+	
+	public AdaptiveAdjEnum() {
+		super(NAME);
+	}
+	
+	/**
+	 * Returns the name to use for configuration, for an adaptive adj enum 
+	 * choosing among the given methods
+	 */
+	public static String name(String... methods) {
+		final StringBuilder sb = new StringBuilder(NAME).append(':');
+		for (int i = 0; i < methods.length; i++) {
+			if (i > 0) sb.append(',');
+			sb.append(methods[i]);
+		}
+		return sb.toString();
+	}
+	
+	@Override
+	public <Col extends Column, N extends Number> void initialize(ColumnHome<N, Col> columnHome, Config config, EfmModel efmModel) {
+		super.initialize(columnHome, config, efmModel);
+		final String adjMethod = config.getAdjMethod();
+		final int index = adjMethod.indexOf(':');
+		methods = index < 0 || index == adjMethod.length() - 1 ? 
+				DEFAULT_METHODS : adjMethod.substring(index + 1).split("\\s*,\\s*");
+		delegates		= new AdjEnum[methods.length];
+		kinds			= new Kind[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			delegates[i] = config.getAdjMethodFactory().createAdjEnum(methods[i]);
+			if (delegates[i] instanceof AdaptiveAdjEnum || delegates[i] instanceof AbstractDistributedAdjEnum) {
+				throw new IllegalArgumentException("adjacency method not supported by " + NAME + ": " + methods[i]);
+			}
+			delegates[i].initialize(columnHome, config, efmModel);
+			kinds[i]		= Kind.getKind(methods[i]);
+		}
+		costModel = new CostModel(kinds);
+	}
+
+	public <Col extends Column, N extends Number> void adjacentPairs(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> itModel) throws IOException {
+		if (itModel.getMemoryPos().getColumnCount() == 0 || itModel.getMemoryNeg().getColumnCount() == 0) {
+			LogPkg.LOGGER.info(
+				NAME + " adjacency, iteration " + itModel.getIterationIndex() + ": [+/0/-]=[" + 
+				itModel.getMemoryPos().getColumnCount() + "/" + itModel.getMemoryZero().getColumnCount() + "/" + 
+				itModel.getMemoryNeg().getColumnCount() + "], no candidates, skipped"
+			);
+			return;
+		}
+		final int iteration = itModel.getIterationIndex();
+		final Stats stats = Stats.sample(itModel, getEfmModel().getRequiredCardinality(), SAMPLE_SIZE);
+		final double[] features = new double[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			features[i] = kinds[i].getCostFeature(stats, getEfmModel());
+		}
+		final int best	= costModel.cheapest(features);
+		final int index	= costModel.choose(features, iteration);
+		final double[] predicted = new double[methods.length];
+		final boolean[] calibrated = new boolean[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			predicted[i]	= costModel.predict(i, features[i]);
+			calibrated[i]	= costModel.isCalibrated(i);
+		}
+		
+		final long start = System.nanoTime();
+		delegates[index].adjacentPairs(columnHome, itModel);
+		final long elapsed = System.nanoTime() - start;
+		
+		final boolean used = costModel.calibrate(index, features[index], elapsed, iteration);
+		if (LogPkg.LOGGER.isLoggable(Level.INFO)) {
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < methods.length; i++) {
+				if (i > 0) sb.append(", ");
+				sb.append(methods[i]).append('=').append(Math.round(predicted[i] / 1000000)).append("ms");
+				if (!calibrated[i]) sb.append('?');
+			}
+			LogPkg.LOGGER.info(
+				NAME + " adjacency, iteration " + iteration + ": " + stats + 
+				", predicted {" + sb + "}, used " + methods[index] + (index != best ? " (probe)" : "") + 
+				", actual " + elapsed / 1000000 + "ms" + (used ? "" : " (not calibrated)")
+			);
+		}
+	}
+	
+}
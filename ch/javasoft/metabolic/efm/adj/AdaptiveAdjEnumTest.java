@@ -0,0 +1,117 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.adj;
+
+import junit.framework.TestCase;
+import ch.javasoft.metabolic.efm.adj.AdaptiveAdjEnum.CostModel;
+import ch.javasoft.metabolic.efm.adj.AdaptiveAdjEnum.Kind;
+
+public class AdaptiveAdjEnumTest extends TestCase {
+	
+	/** synthetic cost of method 0, grows with the square root of the feature*/
+	private static long cost0(double feature) {
+		return (long)(2e4 * Math.sqrt(feature));
+	}
+	/** synthetic cost of method 1, linear in the feature*/
+	private static long cost1(double feature) {
+		return (long)(50 * feature);
+	}
+	
+	public void testWarmupAndPowerLaw() {
+		final CostModel model = new CostModel(Kind.Search);
+		//cold run is not used, although it is much slower
+		assertFalse(model.calibrate(0, 1e8, 100 * cost0(1e8), 1));
+		assertFalse(model.isCalibrated(0));
+		//too fast to be measured reliably
+		assertFalse(model.calibrate(0, 1e4, cost0(1e4), 2));
+		assertFalse(model.isCalibrated(0));
+		
+		assertTrue(model.calibrate(0, 1e8, cost0(1e8), 3));
+		assertTrue(model.isCalibrated(0));
+		assertEquals(cost0(1e8), model.predict(0, 1e8), 0.01 * cost0(1e8));
+		
+		//the exponent is fitted with measurements of different size
+		for (int it = 4; it < 10; it++) {
+			final double feature = Math.pow(10, it + 4);
+			model.calibrate(0, feature, cost0(feature), it);
+		}
+		assertEquals(cost0(1e16), model.predict(0, 1e16), 0.05 * cost0(1e16));
+	}
+	
+	public void testChooseCheapest() {
+		final CostModel model = new CostModel(Kind.Search, Kind.Rank);
+		final int[] used = new int[2];
+		int probes = 0;
+		for (int it = 1; it <= 40; it++) {
+			//method 1 is cheaper for small, method 0 for large features
+			final double feature = 1e5 * Math.pow(1.4, it);
+			final double[] features = {feature, feature};
+			final int index = model.choose(features, it);
+			if (index != model.cheapest(features)) probes++;
+			used[index]++;
+			model.calibrate(index, feature, index == 0 ? cost0(feature) : cost1(feature), it);
+			if (it > 20) {
+				final int best = cost0(feature) < cost1(feature) ? 0 : 1;
+				assertEquals("iteration " + it, best, model.cheapest(features));
+				assertEquals(best, index);
+			}
+		}
+		assertTrue(used[0] > 20);
+		assertTrue(used[1] > 2);//warm-up and calibration
+		assertTrue(probes > 0);
+	}
+	
+	public void testReprobe() {
+		final CostModel model = new CostModel(Kind.Search, Kind.Rank);
+		final double[] features = {1e6, 1e6};
+		//calibrate both methods, method 1 is cheaper
+		for (int it = 1; it <= 4; it++) {
+			final int index = it <= 2 ? 0 : 1;
+			model.calibrate(index, 1e6, index == 0 ? 3 * cost1(1e6) : cost1(1e6), it);
+		}
+		assertEquals(1, model.cheapest(features));
+		assertEquals(1, model.choose(features, 5));
+		model.calibrate(1, 1e6, cost1(1e6), 5);
+		
+		//method 0 is probed again periodically, it is within the reprobe factor
+		assertEquals(0, model.choose(features, 2 + AdaptiveAdjEnum.REPROBE_INTERVAL));
+		model.calibrate(0, 1e6, 3 * cost1(1e6), 2 + AdaptiveAdjEnum.REPROBE_INTERVAL);
+		assertEquals(1, model.choose(features, 3 + AdaptiveAdjEnum.REPROBE_INTERVAL));
+		
+		//a large miss of method 1 triggers a probe of method 0
+		model.calibrate(1, 1e6, 100 * cost1(1e6), 4 + AdaptiveAdjEnum.REPROBE_INTERVAL);
+		assertEquals(0, model.choose(features, 5 + AdaptiveAdjEnum.REPROBE_INTERVAL));
+	}
+
+}
@@ -51,13 +51,16 @@ import ch.javasoft.metabolic.efm.tree.BitPatternTree.Kind;
 import ch.javasoft.metabolic.efm.tree.concurrent.ConcurrentTreePairTraverser;
 import ch.javasoft.metabolic.efm.tree.impl.MinCardinalityAdjacencyPrecondition;
 import ch.javasoft.metabolic.efm.tree.incore.IncoreBitPatternTree;
+import ch.javasoft.metabolic.efm.tree.search.BatchSearchAdjacencyFilter;
 import ch.javasoft.metabolic.efm.tree.search.DefaultSearchAdjacencyFilter;
 import ch.javasoft.metabolic.efm.util.PreconditionUtil;
 
 /**
  * The <code>SearchInCoreAdjEnum</code> uses superset searching to perform the
  * combinatorial adjacency test. The pattern trees are kept in memory, that is, 
- * in-core.
+ * in-core. Candidates are tested in blocks using the 
+ * {@link BatchSearchAdjacencyFilter}, the unbatched version is the
+ * {@link DefaultSearchAdjacencyFilter}.
  */
 public class SearchInCoreAdjEnum extends TreeMemAdjEnum<ConcurrentToken> {
 
@@ -94,14 +97,14 @@ public class SearchInCoreAdjEnum extends TreeMemAdjEnum<ConcurrentToken> {
 	protected <Col extends Column, N extends Number> TreePairTraverser<ConcurrentToken> createTreeTraverser(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, BitPatternTree posTree, BitPatternTree negTree, AdjacencyPrecondition<ConcurrentToken> precondition) throws IOException {
 		AdjacencyPrecondition<ConcurrentToken> precond = new MinCardinalityAdjacencyPrecondition(getEfmModel());
 		if (precondition != null) {
-			precond = PreconditionUtil.and(precondition, precond);
+			precond = PreconditionUtil.and(precond, precondition);
 		}
 		final int[] selectiveBits = calculateBitOrder(iterationModel.getMemoryPos(), iterationModel.getMemoryNeg());
 		final BitPatternTree zerTree = createTree(Thread.currentThread(), columnHome, iterationModel, BitPatternTree.Kind.Zero, selectiveBits, iterationModel.getMemoryZero());
 		//TODO should close this tree somewhere when used for outcore stuff
 		return new ConcurrentTreePairTraverser<ConcurrentToken>(
 			getEfmModel(), precond,
-			new DefaultSearchAdjacencyFilter<ConcurrentToken>(posTree, negTree, zerTree),
+			new BatchSearchAdjacencyFilter<ConcurrentToken>(posTree, negTree, zerTree),
 			iterationModel, posTree, negTree
 		);
 //		return new ConcurrentSubtreePairTraverser<ConcurrentToken>(
@@ -45,6 +45,8 @@ import ch.javasoft.metabolic.efm.config.Config;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
 import ch.javasoft.metabolic.efm.model.AdjEnumModel;
 import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
+import ch.javasoft.metabolic.efm.tree.impl.EnforcedFluxAdjacencyPrecondition;
 
 abstract public class AbstractAdjacencyEnumerator implements AdjEnum {
 
@@ -69,12 +71,20 @@ abstract public class AbstractAdjacencyEnumerator implements AdjEnum {
         final SortableMemory<Column> memPos = (SortableMemory<Column>)adjModel.getMemoryPos();
         final SortableMemory<Column> memNeg = (SortableMemory<Column>)adjModel.getMemoryNeg();
 		adjacentPairs(adjacentPairs, memZer, memPos, memNeg);
+		//in the last iteration, drop modes without flux for enforced reactions
+		final EnforcedFluxAdjacencyPrecondition<?> enforced = EnforcedFluxAdjacencyPrecondition.createIfApplicable(mConfig, mModel, adjModel);
 		while (!adjacentPairs.isEmpty()) {
 			final ColumnPair pair = adjacentPairs.poll();
 			final Col colA = columnHome.castColumn(pair.getColumnA());
 			final Col colB = columnHome.castColumn(pair.getColumnB());
 			final Col colN = colA.mergeWith(columnHome, mModel, colB, adjModel);
-			adjModel.getMemoryForNewFromAdj().appendColumn(colN);
+			if (enforced == null || enforced.keepMerged(colN)) {
+				adjModel.getMemoryForNewFromAdj().appendColumn(colN);
+			}
+			Telemetry.countAdjacentsFound(1);
+		}
+		if (enforced != null) {
+			enforced.log();
 		}
 	}
 	abstract public void adjacentPairs(Queue<ColumnPair> adjacentPairs, SortableMemory<Column> zerCols, SortableMemory<Column> posCols, SortableMemory<Column> negCols) throws IOException;
@@ -36,6 +36,7 @@ package ch.javasoft.metabolic.efm.adj.incore;
 import java.io.IOException;
 import java.util.Queue;
 
+import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.metabolic.efm.column.AdjCandidates;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.column.ColumnPair;
@@ -54,10 +55,10 @@ abstract public class AbstractSearchAdjacencyEnumerator extends AbstractAdjacenc
 		final int posCnt = posCols.getColumnCount();
 		final int negCnt = negCols.getColumnCount();
 		for (int indP = 0; indP < posCnt; indP++) {
-			final Column colP = posCols.getColumn(indP);
+			final IBitSet bitsP = posCols.getBitValues(indP);
 			for (int indN = 0; indN < negCnt; indN++) {
-				final Column colN = negCols.getColumn(indN);
-				final int card = colP.bitValues().getAndCardinality(colN.bitValues());
+				final IBitSet bitsN = negCols.getBitValues(indN);
+				final int card = bitsP.getAndCardinality(bitsN);
 				if (card >= minCard) {
 					candidates.add(posCols, indP, negCols, indN);
 					filterAdjacentPairs(zerCols, posCols, negCols, candidates);
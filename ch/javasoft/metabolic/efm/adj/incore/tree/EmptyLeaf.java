@@ -52,7 +52,7 @@ public class EmptyLeaf<T /*traversing token*/> extends Node<T> {
 		return (EmptyLeaf<TT>)INSTANCE;
 	}
 	protected EmptyLeaf() {
-		super(BitSetUtil.factory().create());
+		super(BitSetUtil.patternFactory().create());
 	}
 	@Override
 	public void addAdjacentPairs(T token, Root<T> root, SortableMemory<Column> posCols, SortableMemory<Column> zeroCols, SortableMemory<Column> negCols, Node<T> partner, boolean thisIsPos, Queue<ColumnPair> adjacentPairs) throws IOException {
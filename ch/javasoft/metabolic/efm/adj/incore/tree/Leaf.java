@@ -41,6 +41,7 @@ import ch.javasoft.metabolic.efm.column.AdjCandidates;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.column.ColumnPair;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 
 public class Leaf<T /*traversing token*/> extends Node<T> {
 
@@ -77,6 +78,7 @@ public class Leaf<T /*traversing token*/> extends Node<T> {
 	private IBitSet addAdjacentPairs(T token, Root<T> root, SortableMemory<Column> thisCols, SortableMemory<Column> partnerCols, final Leaf partner, final AdjCandidates<Column> adjCandidates, Queue<ColumnPair> adjacentPairs) throws IOException {
                 System.out.println("in IBitSet Leaf.addAdjacentPairs()");
 		IBitSet pat = null;
+		Telemetry.countPairsTested((end - start) * (partner.end - partner.start));
 		for (int ii = start; ii < end; ii++) {
 			for (int jj = partner.start; jj < partner.end; jj++) {
 				final int index = adjCandidates.size(); 
@@ -86,8 +88,8 @@ public class Leaf<T /*traversing token*/> extends Node<T> {
 //					if (root.keepByColumnPairFilter(pair)) {
 
 						//adjacent if |Z(r1)\Z(r2)| = 1 or |Z(r2)\Z(r1)| = 1
-						if (adjCandidates.getColumnPos(index).bitValues().cardinality() - interCard == 1 ||
-							adjCandidates.getColumnNeg(index).bitValues().cardinality() - interCard == 1) {
+						if (adjCandidates.getBitValuesPos(index).cardinality() - interCard == 1 ||
+							adjCandidates.getBitValuesNeg(index).cardinality() - interCard == 1) {
 							
 							adjCandidates.appendPairTo(adjacentPairs, index);
 							adjCandidates.removeLast();
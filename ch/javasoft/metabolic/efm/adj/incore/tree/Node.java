@@ -53,9 +53,9 @@ abstract public class Node<T /*traversing token*/> {
 	protected static IBitSet calculateUnionPattern(final IndexableMemory<Column> columns, final int start, final int end) {
 		try {
 			final int bitCount = ColumnUtil.getBooleanSize(columns);
-			IBitSet pat = BitSetUtil.factory().create(bitCount);
+			IBitSet pat = BitSetUtil.patternFactory().create(bitCount);
 			for (int i = start; i < end; i++) {
-				IBitSet bits = columns.getColumn(i).bitValues();
+				IBitSet bits = columns.getBitValues(i);
 				pat.or(bits);
 			}
 			return pat;
@@ -43,6 +43,7 @@ import ch.javasoft.metabolic.efm.column.AdjCandidates;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.column.ColumnPair;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 
 public class UnaryLeaf<T /*traversing token*/> extends Node<T> {
 
@@ -55,7 +56,7 @@ public class UnaryLeaf<T /*traversing token*/> extends Node<T> {
 	protected final int columnIndex; 
 	protected UnaryLeaf(TreeFactory<T> treeFactory, SortableMemory<Column> cols, int columnIndex) throws IOException {
 //		super(Node.calculateUnionPattern(cols, columnIndex, columnIndex + 1));
-		super(cols.getColumn(columnIndex).bitValues());
+		super(cols.getBitValues(columnIndex));
 		this.columnIndex = columnIndex;
 		atomic_addAdjacentPairs_invocations = new AtomicLong();
 		atomic_adjacency_tests              = new AtomicLong();
@@ -72,6 +73,7 @@ public class UnaryLeaf<T /*traversing token*/> extends Node<T> {
 				// int cur_adjPairSize = adjacentPairs.size();
 
                                 atomic_adjacency_tests.incrementAndGet();
+                                Telemetry.countPairsTested(1);
                             	// System.out.println("leaf-leaf hit. adjacency_tests: " + adjacency_tests);
 				final UnaryLeaf<T> leafPartner = ((UnaryLeaf<T>)partner);    		
 				final AdjCandidates<Column> adjCandidates = new AdjCandidates<Column>(posCols, negCols, 1);
@@ -113,8 +115,8 @@ public class UnaryLeaf<T /*traversing token*/> extends Node<T> {
 //					if (root.keepByColumnPairFilter(pair)) {
 
 				//adjacent if |Z(r1)\Z(r2)| = 1 or |Z(r2)\Z(r1)| = 1
-				if (adjCandidates.getColumnPos(index).bitValues().cardinality() - interCard == 1 ||
-					adjCandidates.getColumnNeg(index).bitValues().cardinality() - interCard == 1) {
+				if (adjCandidates.getBitValuesPos(index).cardinality() - interCard == 1 ||
+					adjCandidates.getBitValuesNeg(index).cardinality() - interCard == 1) {
 					
 					atomic_found_adjacents.incrementAndGet();
                                         // System.out.println("Found adjacent rays!: found_adjacents: " + found_adjacents);
@@ -45,6 +45,7 @@ import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.config.Config;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
 import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 
 /**
  * The <tt>RankRoot</tt> uses the rank adjacency test.
@@ -69,12 +70,14 @@ public class RankRoot<T /*traversing token*/> extends AbstractRoot<T> {
 			for (int i = 1; i < len; i++) {
 				filterUnionPattern.or(adjCandidates.getIntersection(i));
 			}			
+			Telemetry.countRankTest();
 			if (!mRankEnum.hasRequiredRank(filterUnionPattern)) {
 				adjCandidates.removeAll();
 				return;
 			}
 		}
 		while (ind < len) {
+			Telemetry.countRankTest();
 			if (mRankEnum.hasRequiredRank(adjCandidates.getIntersection(ind))) {
 				ind++;
 			}
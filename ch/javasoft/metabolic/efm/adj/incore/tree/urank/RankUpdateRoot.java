@@ -44,6 +44,7 @@ import ch.javasoft.metabolic.efm.concurrent.RankUpdateToken;
 import ch.javasoft.metabolic.efm.config.Config;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
 import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 import ch.javasoft.metabolic.efm.rankup.PreprocessableMatrix;
 import ch.javasoft.metabolic.efm.rankup.PreprocessedMatrix;
 import ch.javasoft.metabolic.efm.rankup.PreprocessedMatrixFactory;
@@ -175,6 +176,7 @@ public class RankUpdateRoot extends AbstractRoot<RankUpdateToken> implements Ran
 	
 	protected boolean hasRequiredRank(RankUpdateToken token, IBitSet nodePattern, IBitSet intersectionSet) {
 		final PreprocessableMatrix mx = token.getRankMatrix();
+		Telemetry.countRankTest();
 		return mx.hasRequiredRank(token, this, this, intersectionSet);
 	}
 	
@@ -127,8 +127,10 @@ public class BornDieController<Col extends Column> {
 	 * queue has limited capacity.
 	 * 
 	 * @param job	the job to add to the queue
+	 * @throws IOException	if an i/o exception occurs, e.g. due to file-based 
+	 * 						memory
 	 */
-	public void addPairingJob(PairingJob<Col> job) {
+	public void addPairingJob(PairingJob<Col> job) throws IOException {
 		try {
 			jobManager.addJob(job);
 		}
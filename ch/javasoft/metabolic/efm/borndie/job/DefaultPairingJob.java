@@ -34,6 +34,9 @@
 package ch.javasoft.metabolic.efm.borndie.job;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ch.javasoft.metabolic.efm.adj.AdjEnum;
 import ch.javasoft.metabolic.efm.borndie.BornDieController;
@@ -137,16 +140,59 @@ public class DefaultPairingJob<Col extends Column> implements PairingJob<Col> {
 						getMemoryForAppending());
 				adjEnum.adjacentPairs(controller.getColumnHome(), adjModel);
 			}
-			controller.getMatrix().notifyPairingJobCompleted(this);
-			if (controller.getDebugger().doDebug()) {
-				controller.getDebugger().notifyPairingComplete(this);
-			}
+			notifyCompleted();
 		} 
 		catch (Exception e) {
 			controller.handleJobException(this, e);
 		}
 	}
 	
+	/**
+	 * Called after the adjacent pairs have been enumerated, notifies the
+	 * born/die matrix and the debugger that this job has completed
+	 * 
+	 * @throws IOException	if an i/o exception occurs, e.g. due to file-based 
+	 * 						memory
+	 */
+	protected void notifyCompleted() throws IOException {
+		controller.getMatrix().notifyPairingJobCompleted(this);
+		if (controller.getDebugger().doDebug()) {
+			controller.getDebugger().notifyPairingComplete(this);
+		}
+	}
+	
+	/**
+	 * Splits this job into sub-range jobs, each pairing all surviving modes
+	 * with a contiguous range of the dying modes. The sub-range jobs share the
+	 * memory for appending with this job, and the last completing sub-range
+	 * job notifies the completion of this job. This job itself must not be 
+	 * run if it has been split.
+	 * <p>
+	 * Splitting is only valid if the adjacency test of a pair does not depend
+	 * on the other dying modes, which is the case for the algebraic tests used
+	 * with the born/die algorithm.
+	 * 
+	 * @param parts	the desired number of parts, at most the number of dying
+	 * 				modes are returned
+	 * @return the sub-range jobs
+	 * @throws IOException	if an i/o exception occurs, e.g. due to file-based 
+	 * 						memory
+	 */
+	public List<PairingJob<Col>> split(int parts) throws IOException {
+		final int negCount	= getColumnCountNeg();
+		final int count		= Math.max(1, Math.min(parts, negCount));
+		final AtomicInteger pending = new AtomicInteger(count);
+		final List<PairingJob<Col>> jobs = new ArrayList<PairingJob<Col>>(count);
+		//initialize the shared memory before sub-jobs access it concurrently
+		getMemoryForAppending();
+		for (int i = 0; i < count; i++) {
+			final int from	= (int)(((long)negCount) * i / count);
+			final int to	= (int)(((long)negCount) * (i + 1) / count);
+			jobs.add(new SubRangePairingJob<Col>(controller, this, from, to, pending));
+		}
+		return jobs;
+	}
+	
 	@Override
 	public String toString() {
 		return getClass().getSimpleName() + "{neg=" + getCellRangeNeg() + "(" + 
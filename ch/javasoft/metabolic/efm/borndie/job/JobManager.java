@@ -33,24 +33,66 @@
  */
 package ch.javasoft.metabolic.efm.borndie.job;
 
+import java.io.IOException;
 import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import ch.javasoft.metabolic.efm.borndie.BornDieController;
+import ch.javasoft.metabolic.efm.borndie.matrix.BornDieMatrix;
+import ch.javasoft.metabolic.efm.borndie.range.CellRange;
 import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.model.NetworkEfmModel;
+import ch.javasoft.util.logging.Loggers;
 
 /**
  * The <code>JobManager</code> allows the queuing of pairing jobs and manages 
  * their multi-threaded execution.
+ * <p>
+ * Queued jobs are prioritized: commands are executed first, followed by 
+ * pairing jobs on the critical path, that is, jobs whose owner cell has the 
+ * lowest die row. The lowest die row must complete before the next column of
+ * the {@link ch.javasoft.metabolic.efm.borndie.range.LowerTriangularMatrix 
+ * born/die matrix} can start bearing. Within the same row, jobs with more 
+ * adjacency candidates are executed first, jobs with equal priority in the 
+ * order of their submission.
+ * <p>
+ * Pairing jobs with more adjacency candidates than the split threshold are
+ * {@link DefaultPairingJob#split(int) split} into sub-range jobs, one per 
+ * thread. The number of columns of the cells held open by running jobs is 
+ * limited by a column budget; a job exceeding the budget on its own is only 
+ * started if no other job is running.
  */
 public class JobManager<Col extends Column> {
+	
+	private final Logger LOG = LogPkg.LOGGER;
+	
+	/**
+	 * Default number of adjacency candidates (pos x neg modes) above which a 
+	 * pairing job is split into sub-range jobs
+	 */
+	public static final long DEFAULT_SPLIT_CANDIDATES = 1L << 22;
 
 	private final BornDieController<Col> 	controller;
 	private final ThreadPoolExecutor 		service;
+	private final int						threadCount;
+	private final int						queueCapacity;
+	private final long						splitCandidates;
+	private final long						columnBudget;
+	private final AtomicLong				sequence = new AtomicLong();
+	private final ThreadLocal<Boolean>		workerThread = new ThreadLocal<Boolean>();
+	
+	private int		queuedJobs;		//guarded by queueLock
+	private long	openColumns;	//guarded by budgetLock
+	private final Object queueLock	= new Object();
+	private final Object budgetLock	= new Object();
 	
 	/**
 	 * Constructor for <code>JobManager</code> with controller and job queue of
@@ -70,107 +112,144 @@ public class JobManager<Col extends Column> {
 	 * @param queueCapacity	the queue size to queue jobs, 0 for unlimited queue
 	 */
 	public JobManager(BornDieController<Col> controller, int queueCapacity) {
-		this.controller	= controller;
-		this.service	= createExecutorService(controller.getConfig().getMaxThreads(), queueCapacity);
+		this(controller, queueCapacity, DEFAULT_SPLIT_CANDIDATES, getDefaultColumnBudget(controller.getModel()));
+	}
+	/**
+	 * Constructor for <code>JobManager</code> with all settings
+	 * 
+	 * @param controller		the born/die controller
+	 * @param queueCapacity		the queue size to queue jobs, 0 for unlimited 
+	 * 							queue
+	 * @param splitCandidates	number of adjacency candidates above which a 
+	 * 							pairing job is split, 0 to never split jobs
+	 * @param columnBudget		maximum number of columns in cells held open
+	 * 							by concurrently running jobs, 0 for no limit
+	 */
+	public JobManager(BornDieController<Col> controller, int queueCapacity, long splitCandidates, long columnBudget) {
+		this.controller			= controller;
+		this.threadCount		= controller.getConfig().getMaxThreads();
+		this.queueCapacity		= queueCapacity;
+		this.splitCandidates	= splitCandidates;
+		this.columnBudget		= columnBudget;
+		this.service			= new ThreadPoolExecutor(threadCount, threadCount,
+                0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(64, JOB_PRIORITIZER));
 	}
 	
-	private static ThreadPoolExecutor createExecutorService(int threadCount, int queueCapacity) {
-//		return new ThreadPoolExecutor(threadCount, threadCount,
-//                0L, TimeUnit.MILLISECONDS,
-//                new PriorityBlockingQueue<Runnable>(1024, JOB_PRIORITIZER));		
-		return queueCapacity == 0 ?
-				new ThreadPoolExecutor(threadCount, threadCount,
-                        0L, TimeUnit.MILLISECONDS,
-                        new LinkedBlockingQueue<Runnable>())		
-				:
-				new ThreadPoolExecutor(threadCount, threadCount,
-                        0L, TimeUnit.MILLISECONDS,
-                        new LinkedBlockingQueue<Runnable>(queueCapacity));				
+	/**
+	 * Returns a column budget using half of the available heap, roughly
+	 * estimating the size of a column from the final column sizes
+	 */
+	private static long getDefaultColumnBudget(NetworkEfmModel model) {
+		final long colBytes = 64 + (model.getFinalBooleanSize() + 7) / 8 + 16L * model.getFinalNumericSize();
+		return Math.max(1, Runtime.getRuntime().maxMemory() / 2 / colBytes);
 	}
 	
 	/**
-	 * The job prioritizer executes large jobs first, that is, the job with more
-	 * adjacency candidates.
+	 * The job prioritizer executes commands first, then jobs on the critical
+	 * path (lowest owner die row), then large jobs, that is, the job with more
+	 * adjacency candidates. Jobs with equal priority are executed in the order
+	 * of their submission.
 	 */
-	@SuppressWarnings("unused")
 	private static Comparator<Runnable> JOB_PRIORITIZER = new Comparator<Runnable>() {
 		public int compare(Runnable o1, Runnable o2) {
-			final PairingJob<?> job1 = (PairingJob<?>)o1;
-			final PairingJob<?> job2 = (PairingJob<?>)o2;
-			long dCnt = 0;
-			try {
-				final long cnt1 = ((long)job1.getMemoryNeg().getColumnCount()) * job1.getMemoryPos().getColumnCount();
-				final long cnt2 = ((long)job2.getMemoryNeg().getColumnCount()) * job2.getMemoryPos().getColumnCount();
-				dCnt = cnt1 - cnt2;
-			}
-			catch (Exception e) {
-				//ignore
-			}
-			if (dCnt != 0) return dCnt < 0 ? 1 : -1;
-			
-//			final int drN = job1.getCellRangeNeg().getDieRow() - job2.getCellRangeNeg().getDieRow();
-//			if (drN != 0) return -drN;
-//			final int bcN = job1.getCellRangeNeg().getBornColumn() - job2.getCellRangeNeg().getBornColumn();
-//			if (bcN != 0) return -bcN;
-//			final int drP = job1.getCellRangePos().getDieRow() - job2.getCellRangePos().getDieRow();
-//			if (drP != 0) return -drP;
-//			final int bcP = job1.getCellRangePos().getBornColumn() - job2.getCellRangePos().getBornColumn();
-//			if (bcP != 0) return -bcP;
-			return 0;
+			final JobManager<?>.ScheduledJob job1 = (JobManager<?>.ScheduledJob)o1;
+			final JobManager<?>.ScheduledJob job2 = (JobManager<?>.ScheduledJob)o2;
+			if (job1.dieRow != job2.dieRow) return job1.dieRow < job2.dieRow ? -1 : 1;
+			if (job1.candidates != job2.candidates) return job1.candidates > job2.candidates ? -1 : 1;
+			return job1.sequence < job2.sequence ? -1 : job1.sequence == job2.sequence ? 0 : 1;
 		}
 	};
 	
 	/**
-	 * Adds the pairing job to the job queue
+	 * Adds the pairing job to the job queue. Might block the caller if the job
+	 * queue has limited capacity, unless the caller is a thread of this job 
+	 * manager (pairing jobs schedule follow-up jobs when they complete).
+	 * <p>
+	 * Large jobs are split into sub-range jobs which are queued instead of
+	 * the original job.
 	 * 
 	 * @param pairingJob	the job to add to the queue
+	 * @throws IOException	if an i/o exception occurs, e.g. due to file-based 
+	 * 						memory
 	 */
-	public void addJob(PairingJob<Col> pairingJob) throws InterruptedException {
-		schedule(pairingJob);
+	public void addJob(PairingJob<Col> pairingJob) throws InterruptedException, IOException {
+		final BornDieMatrix<Col> matrix = controller.getMatrix();
+		final CellRange neg = pairingJob.getCellRangeNeg();
+		final CellRange pos = pairingJob.getCellRangePos();
+		final long negCount = matrix.getColumnCount(neg.getBornColumn(), neg.getDieRow());
+		final long posCount = matrix.getColumnCount(pos.getBornColumn(), pos.getDieRow());
+		final long candidates = negCount * posCount;
 		if (controller.getDebugger().doDebug()) {
 			controller.getDebugger().notifyPairingQueued(pairingJob);
 		}
+		if (splitCandidates > 0 && threadCount > 1 && candidates > splitCandidates && pairingJob instanceof DefaultPairingJob) {
+			final int parts = (int)Math.min(threadCount, (candidates + splitCandidates - 1) / splitCandidates);
+			final List<PairingJob<Col>> subJobs = ((DefaultPairingJob<Col>)pairingJob).split(parts);
+			if (Loggers.isLoggable(LOG, Level.FINER)) {
+				LOG.finer("splitting pairing job " + pairingJob + " into " + subJobs.size() + " sub-range jobs");
+			}
+			for (final PairingJob<Col> subJob : subJobs) {
+				final long subNeg = subJob.getMemoryNeg().getColumnCount(); 
+				enqueue(new ScheduledJob(subJob, neg.getDieRow(), subNeg * posCount, subNeg + posCount));
+			}
+		}
+		else {
+			enqueue(new ScheduledJob(pairingJob, neg.getDieRow(), candidates, negCount + posCount));
+		}
+	}
+	
+	private void enqueue(ScheduledJob job) throws InterruptedException {
+		synchronized (queueLock) {
+			if (queueCapacity > 0 && workerThread.get() == null) {
+				while (queuedJobs >= queueCapacity) {
+					queueLock.wait();
+				}
+			}
+			queuedJobs++;
+		}
+		execute(job);
+	}
+	private void dequeued() {
+		synchronized (queueLock) {
+			queuedJobs--;
+			queueLock.notifyAll();
+		}
 	}
 	
-	private void schedule(final PairingJob<Col> pairingJob) {
-		schedule((Runnable)pairingJob);
-//		schedule(new Runnable() {
-//			public void run() {
-//				try {
-//					//init adjacency enum
-//					final SortableMemory<Col> memPos = pairingJob.getMemoryPos();
-//					if (memPos.getColumnCount() > 0) {
-//						final Config config = controller.getConfig();
-//						final NetworkEfmModel model = controller.getModel();
-//				        final AdjEnum adjEnum = config.getAdjMethodFactory().createAdjEnumFromConfig();
-//				        adjEnum.initialize(controller.getColumnHome(), config, model);
-//						final AdjEnumModel<Col> adjModel = new AdjEnumModel<Col>(
-//								model, pairingJob.getIteration(), 
-//								memPos, null /*job.getMemoryZero()*/, 
-//								pairingJob.getMemoryNeg(), 
-//								pairingJob.getMemoryForAppending());
-//						adjEnum.adjacentPairs(controller.getColumnHome(), adjModel);
-//					}
-//					pairingJob.getOwner().notifyPairingJobCompleted(pairingJob);
-//					if (controller.getDebugger().doDebug()) {
-//						controller.getDebugger().notifyPairingComplete(pairingJob);
-//					}
-//				} 
-//				catch (Exception e) {
-//					controller.handleJobException(pairingJob, e);
-//				}
-//			}
-//		});		
+	private void acquireColumns(long columns) throws InterruptedException {
+		if (columnBudget > 0) {
+			synchronized (budgetLock) {
+				while (openColumns > 0 && openColumns + columns > columnBudget) {
+					budgetLock.wait();
+				}
+				openColumns += columns;
+			}
+		}
+	}
+	private void releaseColumns(long columns) {
+		if (columnBudget > 0) {
+			synchronized (budgetLock) {
+				openColumns -= columns;
+				budgetLock.notifyAll();
+			}
+		}
 	}
+	
 	/**
 	 * Schedule the given command for execution in another thread. The command 
-	 * is expected to do its own exception handling.
+	 * is expected to do its own exception handling. Commands are executed
+	 * before queued pairing jobs.
 	 */
 	public void schedule(Runnable command) {
+		execute(new ScheduledJob(command));
+	}
+	private void execute(ScheduledJob job) {
 		try {
-			service.execute(command);
+			service.execute(job);
 		}
 		catch (RejectedExecutionException ex) {
+			if (job.job != null) dequeued();
 			if (controller.getException() != null) {
 				throw new RejectedExecutionException(controller.getException());
 			}
@@ -211,4 +290,52 @@ public class JobManager<Col extends Column> {
 			", active=" + service.getActiveCount() + ", total=" +
 			service.getTaskCount() + "}";
 	}
+	
+	/**
+	 * Wraps commands and pairing jobs with their priority, and accounts for 
+	 * the queue capacity and the column budget when the job is executed
+	 */
+	private class ScheduledJob implements Runnable {
+		private final Runnable			delegate;
+		private final PairingJob<Col>	job;//null for commands
+		private final int				dieRow;
+		private final long				candidates;
+		private final long				columns;
+		private final long				sequence;
+		public ScheduledJob(Runnable command) {
+			this(command, null, -1, 0, 0);
+		}
+		public ScheduledJob(PairingJob<Col> job, int dieRow, long candidates, long columns) {
+			this(job, job, dieRow, candidates, columns);
+		}
+		private ScheduledJob(Runnable delegate, PairingJob<Col> job, int dieRow, long candidates, long columns) {
+			this.delegate	= delegate;
+			this.job		= job;
+			this.dieRow		= dieRow;
+			this.candidates	= candidates;
+			this.columns	= columns;
+			this.sequence	= JobManager.this.sequence.getAndIncrement();
+		}
+		public void run() {
+			workerThread.set(Boolean.TRUE);
+			if (job == null) {
+				delegate.run();
+				return;
+			}
+			dequeued();
+			try {
+				acquireColumns(columns);
+			}
+			catch (InterruptedException e) {
+				controller.handleJobException(job, e);
+				return;
+			}
+			try {
+				delegate.run();
+			}
+			finally {
+				releaseColumns(columns);
+			}
+		}
+	}
 }
@@ -0,0 +1,110 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.borndie.job;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.javasoft.metabolic.efm.borndie.BornDieController;
+import ch.javasoft.metabolic.efm.borndie.memory.ColumnDemuxAppendableMemory;
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.memory.MappedSortableMemory;
+import ch.javasoft.metabolic.efm.memory.SortableMemory;
+
+/**
+ * A <code>SubRangePairingJob</code> pairs the surviving modes of the partner 
+ * cell with a contiguous range of the dying modes of the owner cell. It is
+ * created by {@link DefaultPairingJob#split(int) splitting} a large pairing
+ * job. New modes are appended to the memory of the parent job, and the last
+ * completing sub-range job notifies the completion of the parent job.
+ */
+public class SubRangePairingJob<Col extends Column> extends DefaultPairingJob<Col> {
+
+	private final DefaultPairingJob<Col>	parent;
+	private final int						negFrom;
+	private final int						negTo;
+	private final AtomicInteger				pending;
+	
+	private SortableMemory<Col> 			memNeg;
+	
+	SubRangePairingJob(BornDieController<Col> controller, DefaultPairingJob<Col> parent, int negFrom, int negTo, AtomicInteger pending) {
+		super(controller, parent.getCellRangeNeg(), parent.getCellRangePos());
+		this.parent		= parent;
+		this.negFrom	= negFrom;
+		this.negTo		= negTo;
+		this.pending	= pending;
+	}
+	
+	/**
+	 * Returns the job which has been split into this and other sub-range jobs
+	 */
+	public DefaultPairingJob<Col> getParent() {
+		return parent;
+	}
+	
+	@Override
+	public SortableMemory<Col> getMemoryNeg() throws IOException {
+		if (memNeg == null) {
+			memNeg = new MappedSortableMemory<Col>(super.getMemoryNeg(), negFrom, negTo);
+		}
+		return memNeg;
+	}
+	@Override
+	public ColumnDemuxAppendableMemory<Col> getMemoryForAppending() throws IOException {
+		return parent.getMemoryForAppending();
+	}
+	/**
+	 * Returns the number of new modes added by all sub-range jobs of the 
+	 * parent job
+	 */
+	@Override
+	public int getAppendedColumnCount() {
+		return parent.getAppendedColumnCount();
+	}
+	
+	@Override
+	protected void notifyCompleted() throws IOException {
+		if (0 == pending.decrementAndGet()) {
+			parent.notifyCompleted();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "{neg=" + getCellRangeNeg() + "[" + 
+			negFrom + ".." + negTo + "), pos=" + getCellRangePos() + "(" +
+			getColumnCountPos() + "), new=" + getAppendedColumnCount() + "}";
+	}
+
+}
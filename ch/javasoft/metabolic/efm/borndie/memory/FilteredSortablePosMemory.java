@@ -37,6 +37,7 @@ import java.io.IOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.metabolic.efm.borndie.BornDieController;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.memory.IndexableMemory;
@@ -98,6 +99,9 @@ public class FilteredSortablePosMemory<Col extends Column> implements SortableMe
 	public Col getColumn(int index) throws IOException {
 		return baseMemory.getColumn(mapping[index]);
 	}
+	public IBitSet getBitValues(int index) throws IOException {
+		return baseMemory.getBitValues(mapping[index]);
+	}
 
 	public Iterator<Col> iterator() {
 		return new Iterator<Col>() {
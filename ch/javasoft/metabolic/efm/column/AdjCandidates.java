@@ -40,6 +40,7 @@ import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.metabolic.efm.memory.IndexableMemory;
 import ch.javasoft.metabolic.efm.model.AdjEnumModel;
 import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 import ch.javasoft.util.IntArray;
 
 /**
@@ -95,6 +96,12 @@ public class AdjCandidates<Col extends Column> {
 	public Col getColumnNeg(int pairIndex) throws IOException {
 		return negMemory.getColumn(negIndices.get(pairIndex));
 	}
+	public IBitSet getBitValuesPos(int pairIndex) throws IOException {
+		return posMemory.getBitValues(posIndices.get(pairIndex));
+	}
+	public IBitSet getBitValuesNeg(int pairIndex) throws IOException {
+		return negMemory.getBitValues(negIndices.get(pairIndex));
+	}
 	public boolean isAncestor(int pairIndex, IndexableMemory<Col> ancestorMemory, int ancestorIndex) {
 		if (ancestorMemory == posMemory) {
 			return posIndices.get(pairIndex) == ancestorIndex;
@@ -106,14 +113,10 @@ public class AdjCandidates<Col extends Column> {
 	}
 	
 	public IBitSet getIntersection(int pairIndex) throws IOException {
-		final Col colPos = getColumnPos(pairIndex);
-		final Col colNeg = getColumnNeg(pairIndex);
-		return colPos.bitValues().getAnd(colNeg.bitValues());
+		return getBitValuesPos(pairIndex).getAnd(getBitValuesNeg(pairIndex));
 	}
 	public int getIntersectionCardinality(int pairIndex) throws IOException {
-		final Col colPos = getColumnPos(pairIndex);
-		final Col colNeg = getColumnNeg(pairIndex);
-		return colPos.bitValues().getAndCardinality(colNeg.bitValues());
+		return getBitValuesPos(pairIndex).getAndCardinality(getBitValuesNeg(pairIndex));
 	}
 	/**
 	 * Returns true if a superset of the specified column pair is found in the
@@ -126,13 +129,13 @@ public class AdjCandidates<Col extends Column> {
 	 */
 	// public boolean hasSuperSet(int pairIndex, IndexableMemory<Col> supMemory, int superIndexStart, int superIndexEnd) throws IOException {
 	public boolean hasSuperSet(int pairIndex, IndexableMemory<Col> supMemory, int superIndexStart, int superIndexEnd) throws IOException {
-		final IBitSet setP = getColumnPos(pairIndex).bitValues();
-		final IBitSet setN = getColumnNeg(pairIndex).bitValues();
+		final IBitSet setP = getBitValuesPos(pairIndex);
+		final IBitSet setN = getBitValuesNeg(pairIndex);
                 // System.out.println("in AdjCandidates.hasSuperSet.");
 		for (int i = superIndexStart; i < superIndexEnd; i++) {
 			if (!isAncestor(pairIndex, supMemory, i)) {
-				final Col colSup = supMemory.getColumn(i);
-				if (colSup.bitValues().isSuperSetOfIntersection(setP, setN)) {
+				final IBitSet sup = supMemory.getBitValues(i);
+				if (sup.isSuperSetOfIntersection(setP, setN)) {
 					return true;
 				}
 			}
@@ -161,6 +164,7 @@ public class AdjCandidates<Col extends Column> {
 		final Col colN = colA.mergeWith(columnHome, efmModel, colB, adjModel);
 		adjModel.getMemoryForNewFromAdj().appendColumn(colN);
 		removeLast();
+		Telemetry.countAdjacentsFound(1);
 	}
 	public <N extends Number> void appendNewColumns(ColumnHome<N, Col> columnHome, EfmModel efmModel, AdjEnumModel<Col> adjModel) throws IOException {
 		for (int i = 0; i < posIndices.length(); i++) {
@@ -169,6 +173,7 @@ public class AdjCandidates<Col extends Column> {
 			final Col colN = colA.mergeWith(columnHome, efmModel, colB, adjModel);
 			adjModel.getMemoryForNewFromAdj().appendColumn(colN);
 		}
+		Telemetry.countAdjacentsFound(posIndices.length());
 	}
 	public void appendPairsTo(Collection<ColumnPair> dst) throws IOException {
 		for (int i = 0; i < posIndices.length(); i++) {
@@ -77,7 +77,7 @@ public class BigIntegerColumn extends AbstractColumn {
 
 	public BigIntegerColumn(int boolSize) {
 		mBoolSize	= boolSize;
-		mBitSet		= BitSetUtil.factory().create(boolSize);
+		mBitSet		= BitSetUtil.patternFactory().create(boolSize);
 		mValues		= new BigInteger[0];
 	}
 	protected BigIntegerColumn(int boolSize, IBitSet bitSet, BigInteger[] values) {
@@ -207,7 +207,7 @@ public class BigIntegerColumn extends AbstractColumn {
 				for (int row = 0; row < rows; row++) {
                     vals[row] = matrix.getNumberValueAt(row, col); 
 				}
-                res[col] = new BigIntegerColumn(booleanSize, BitSetUtil.factory().create(rows), vals);
+                res[col] = new BigIntegerColumn(booleanSize, BitSetUtil.patternFactory().create(rows), vals);
 			}
 			return res;
 		}
@@ -220,6 +220,10 @@ public class BigIntegerColumn extends AbstractColumn {
 				
 				//read numeric
 				byteCnt = dataIn.readInt();
+				if (byteCnt == 0) {
+					//value not computed, see LazyNullspaceBigIntegerColumnInspectorModifier
+					continue;
+				}
                 numBytes = new byte[byteCnt];
 				for (int j = 0; j < numBytes.length; j++) {
                     numBytes[j] = dataIn.readByte();
@@ -236,7 +240,11 @@ public class BigIntegerColumn extends AbstractColumn {
 			for (int i = 0; i < column.mValues.length; i++) {
 				byte[] bytes;
 				
-				//write numeric (denominator is always one)
+				//write numeric (denominator is always one), 0 bytes for null
+				if (column.mValues[i] == null) {
+					dataOut.writeInt(0);
+					continue;
+				}
 				bytes = column.mValues[i].toByteArray();
 				dataOut.writeInt(bytes.length);
 				for (int j = 0; j < bytes.length; j++) {
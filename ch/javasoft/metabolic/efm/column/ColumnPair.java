@@ -69,13 +69,11 @@ public class ColumnPair<Col extends Column> {
 			colA.bitValues().isSubSetOf(superCandidate.bitValues());
 	}
 	public boolean existsSuperSet(Iterable<Col> superCandidates) {
-		IBitSet inter = null;
+		final IBitSet bitsA = colA.bitValues();
+		final IBitSet bitsB = colB.bitValues();
 		for (Col cand : superCandidates) {
 			if (!cand.equals(colA) && !cand.equals(colB)) {				
-				if (inter == null) {
-					inter = intersectBitValues(); 
-				}
-				if (inter.isSubSetOf(cand.bitValues())) {
+				if (cand.bitValues().isSuperSetOfIntersection(bitsA, bitsB)) {
 					return true;
 				}
 			}
@@ -42,6 +42,8 @@ import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.jbase.FixedWidthMarshaller;
 import ch.javasoft.jbase.FixedWidthTable;
 import ch.javasoft.jbase.concurrent.ConcurrentTable;
+import ch.javasoft.jbase.util.BulkDataInput;
+import ch.javasoft.jbase.util.BulkDataOutput;
 import ch.javasoft.math.ops.DoubleOperations;
 import ch.javasoft.metabolic.MetabolicNetwork;
 import ch.javasoft.metabolic.efm.config.Arithmetic;
@@ -73,7 +75,7 @@ public class DoubleColumn extends AbstractColumn {
     }
 	public DoubleColumn(int boolSize, int doubleSize) {
 		mBoolSize	= boolSize;
-		mBitSet		= BitSetUtil.factory().create(boolSize);
+		mBitSet		= BitSetUtil.patternFactory().create(boolSize);
 		mValues		= new double[doubleSize];
 	}
 	protected DoubleColumn(int boolSize, IBitSet bitSet, double[] values) {
@@ -206,15 +208,25 @@ public class DoubleColumn extends AbstractColumn {
 		public DoubleColumn readFrom(DataInput dataIn, int booleanSize, int numericSize) throws IOException {
 			IBitSet bitSet = readBinaryFrom(dataIn, booleanSize);
 			double[] dbls	= new double[numericSize];
-			for (int i = 0; i < numericSize; i++) {
-				dbls[i] = dataIn.readDouble();
+			if (dataIn instanceof BulkDataInput) {
+				((BulkDataInput)dataIn).readDoubles(dbls, 0, numericSize);
+			}
+			else {
+				for (int i = 0; i < numericSize; i++) {
+					dbls[i] = dataIn.readDouble();
+				}
 			}
 			return new DoubleColumn(booleanSize, bitSet, dbls);
 		}
 		public void writeTo(DoubleColumn column, DataOutput dataOut) throws IOException {
 			writeBinaryTo(column, dataOut);
-			for (int i = 0; i < column.mValues.length; i++) {
-				dataOut.writeDouble(column.mValues[i]);
+			if (dataOut instanceof BulkDataOutput) {
+				((BulkDataOutput)dataOut).writeDoubles(column.mValues, 0, column.mValues.length);
+			}
+			else {
+				for (int i = 0; i < column.mValues.length; i++) {
+					dataOut.writeDouble(column.mValues[i]);
+				}
 			}
 		}
 		public FixedWidthMarshaller<DoubleColumn> getEntityMarshaller(final int booleanSize, final int numericSize) throws IOException {
@@ -74,7 +74,7 @@ public class FractionalColumn extends AbstractColumn {
 
 	public FractionalColumn(int boolSize) {
 		mBoolSize	= boolSize;
-		mBitSet		= BitSetUtil.factory().create(boolSize);
+		mBitSet		= BitSetUtil.patternFactory().create(boolSize);
 		mValues		= new BigFraction[0];
 	}
 	protected FractionalColumn(int boolSize, IBitSet bitSet, BigFraction[] values) {
@@ -200,7 +200,7 @@ public class FractionalColumn extends AbstractColumn {
 				for (int row = 0; row < rows; row++) {
                     vals[row] = matrix.getNumberValueAt(row, col).reduce(); 
 				}
-                res[col] = new FractionalColumn(booleanSize, BitSetUtil.factory().create(rows), vals);
+                res[col] = new FractionalColumn(booleanSize, BitSetUtil.patternFactory().create(rows), vals);
 			}
 			return res;
 		}
@@ -0,0 +1,426 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.column;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.jbase.EntityMarshaller;
+import ch.javasoft.jbase.VariableWidthTable;
+import ch.javasoft.jbase.concurrent.ConcurrentTable;
+import ch.javasoft.jbase.util.BulkDataInput;
+import ch.javasoft.jbase.util.BulkDataOutput;
+import ch.javasoft.math.NumberOperations;
+import ch.javasoft.math.ops.BigIntegerOperations;
+import ch.javasoft.metabolic.FluxDistribution;
+import ch.javasoft.metabolic.MetabolicNetwork;
+import ch.javasoft.metabolic.efm.config.Arithmetic;
+import ch.javasoft.metabolic.efm.memory.outcore.Cache;
+import ch.javasoft.metabolic.efm.model.ColumnInspectorModifier;
+import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.model.IterationStateModel;
+import ch.javasoft.metabolic.efm.model.IterationStepModel;
+import ch.javasoft.metabolic.efm.util.BitSetUtil;
+import ch.javasoft.metabolic.impl.FractionNumberFluxDistribution;
+import ch.javasoft.smx.iface.BigIntegerMatrix;
+import ch.javasoft.smx.iface.ReadableBigIntegerMatrix;
+import ch.javasoft.smx.iface.ReadableBigIntegerRationalMatrix;
+import ch.javasoft.smx.iface.ReadableMatrix;
+import ch.javasoft.smx.ops.Gauss;
+import ch.javasoft.util.numeric.IntegerUtil;
+import ch.javasoft.util.numeric.Zero;
+
+/**
+ * A <tt>LongColumn</tt> implements the numeric part of the column with 
+ * primitive {@code long} values. Exact integer arithmetic is used, merging
+ * detects overflows. A column is promoted to {@link BigInteger} values only
+ * if its values do not fit into longs. A promoted column is demoted again if
+ * its values fit into longs after a merge or conversion, for instance after
+ * division by the greatest common divisor.
+ * <p>
+ * Numbers are exposed as {@link BigInteger}, that is, the column home uses 
+ * the same number type as {@link BigIntegerColumn#HOME}. For long values, 
+ * the model specific {@link ColumnInspectorModifier} for {@code long[]} 
+ * arrays is used, for promoted columns the one for {@code BigInteger[]}.
+ */
+public class LongColumn extends AbstractColumn {
+	
+	private int				mBoolSize;
+	private final IBitSet	mBitSet;
+	private long[]			mValues;	//null if promoted
+	private BigInteger[]	mBigValues;	//null if not promoted
+
+	public LongColumn(int boolSize) {
+		mBoolSize	= boolSize;
+		mBitSet		= BitSetUtil.patternFactory().create(boolSize);
+		mValues		= new long[0];
+	}
+	protected LongColumn(int boolSize, IBitSet bitSet, long[] values) {
+		mBoolSize	= boolSize;
+		mBitSet 	= bitSet;
+		mValues		= values;
+	}
+	/**
+	 * Constructor for big integer values, the values are stored as longs if
+	 * they fit, and in promoted form otherwise
+	 */
+	protected LongColumn(int boolSize, IBitSet bitSet, BigInteger[] values) {
+		mBoolSize	= boolSize;
+		mBitSet 	= bitSet;
+		setNumeric(values);
+	}
+	
+	private void setNumeric(BigInteger[] values) {
+		final long[] longs = toLongs(values);
+		mValues		= longs;
+		mBigValues	= longs == null ? values : null;
+	}
+	
+	/**
+	 * Returns the values as long array, or null if any of the values does 
+	 * not fit into a long
+	 */
+	private static long[] toLongs(BigInteger[] values) {
+		final long[] longs = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].bitLength() > 63) return null;
+			longs[i] = values[i].longValue();
+		}
+		return longs;
+	}
+	private BigInteger[] toBigIntegers() {
+		if (mBigValues != null) return mBigValues;
+		final BigInteger[] values = new BigInteger[mValues.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = BigInteger.valueOf(mValues[i]);
+		}
+		return values;
+	}
+	
+	/**
+	 * Returns true if the numeric values are stored as big integers since 
+	 * they do not fit into longs
+	 */
+	public boolean isPromoted() {
+		return mBigValues != null;
+	}
+	
+	public IBitSet bitValues() {
+		return mBitSet;
+	}
+	
+	public <N extends Number> N getNumeric(ColumnHome<N, ?> columnHome, int row) {
+		return columnHome.castNumber(mBigValues == null ? BigInteger.valueOf(mValues[row]) : mBigValues[row]);
+	}
+    
+	public int booleanSize() {
+		return mBoolSize;
+	}
+	public int numericSize() {
+		return mBigValues == null ? mValues.length : mBigValues.length;
+	}
+	public int size() {
+		return mBoolSize + numericSize();
+	}
+	
+	public int getNumericSignum(Zero zero, int row) {
+		return mBigValues == null ? IntegerUtil.signum(mValues[row]) : mBigValues[row].signum();
+	}
+	public int getHyperplaneSign(EfmModel model, IterationStateModel iteration) {
+		if (mBigValues == null) {
+			return getLongModifier(model).getHyperplaneSign(null, model, mBitSet, mBoolSize, mValues, iteration);
+		}
+		return getBigModifier(model).getHyperplaneSign(columnHome(), model, mBitSet, mBoolSize, mBigValues, iteration);
+	}
+	public <Col extends Column> Col convert(ColumnHome<?,Col> columnHome, EfmModel model, IterationStepModel iteration, boolean clone) {
+		final IBitSet newBin;
+		final long[] newNum;
+		final BigInteger[] newBig;
+		if (mBigValues == null) {
+			final ColumnInspectorModifier<Long, long[]> modifier = getLongModifier(model);
+			newBin = modifier.convertBinary(null, model, mBitSet, mBoolSize, mValues, iteration, clone);
+			newNum = modifier.convertNumeric(null, model, mBitSet, mBoolSize, mValues, iteration, clone);
+			newBig = null;
+		}
+		else {
+			final ColumnInspectorModifier<BigInteger, BigInteger[]> modifier = getBigModifier(model);
+			newBin = modifier.convertBinary(columnHome(), model, mBitSet, mBoolSize, mBigValues, iteration, clone);
+			newBig = modifier.convertNumeric(columnHome(), model, mBitSet, mBoolSize, mBigValues, iteration, clone);
+			newNum = null;
+		}
+
+		if (clone) {
+			final int boolSize = iteration.getNextState().getBooleanSize();
+			return columnHome.castColumn(newNum != null ? new LongColumn(boolSize, newBin, newNum) : new LongColumn(boolSize, newBin, newBig));
+		}
+		else {
+			mBoolSize = iteration.getNextState().getBooleanSize();
+			if (mBitSet != newBin) {
+				mBitSet.clear();
+				mBitSet.or(newBin);
+			}
+			if (newNum != null) {
+				mValues = newNum;
+			}
+			else {
+				setNumeric(newBig);
+			}
+			return columnHome.castColumn(this);
+		}
+	}
+	public <Col extends Column> Col mergeWith(ColumnHome<?,Col> columnHome, EfmModel model, Col other, IterationStepModel iteration) {
+		return columnHome.castColumn(mergeWith(model, (LongColumn)other, iteration));
+	}
+	/**
+	 * Merges this column with the other column. If both columns have long
+	 * values, the merge is performed with primitive long arithmetic. Big 
+	 * integer arithmetic is used if any of the columns is promoted, or if an
+	 * overflow occurs during the long merge.
+	 */
+	public LongColumn mergeWith(EfmModel model, LongColumn other, IterationStepModel iteration) {
+		final int boolSize = iteration.getNextState().getBooleanSize();
+		if (mBigValues == null && other.mBigValues == null) {
+			final ColumnInspectorModifier<Long, long[]> modifier = getLongModifier(model);
+			final IBitSet newBin = modifier.mergeBinary(null, model, mBitSet, mBoolSize, mValues, other.mBitSet, other.mBoolSize, other.mValues, iteration);
+			try {
+				final long[] newNum = modifier.mergeNumeric(null, model, mBitSet, mBoolSize, mValues, other.mBitSet, other.mBoolSize, other.mValues, iteration);
+				return new LongColumn(boolSize, newBin, newNum);
+			}
+			catch (ArithmeticException ex) {
+				//overflow, merge again with big integers
+				final BigInteger[] newBig = getBigModifier(model).mergeNumeric(columnHome(), model, mBitSet, mBoolSize, toBigIntegers(), other.mBitSet, other.mBoolSize, other.toBigIntegers(), iteration);
+				return new LongColumn(boolSize, newBin, newBig);
+			}
+		}
+		final ColumnInspectorModifier<BigInteger, BigInteger[]> modifier = getBigModifier(model);
+		final BigInteger[] myValues = toBigIntegers();
+		final BigInteger[] otValues = other.toBigIntegers();
+		final IBitSet newBin = modifier.mergeBinary(columnHome(), model, mBitSet, mBoolSize, myValues, other.mBitSet, other.mBoolSize, otValues, iteration);
+		final BigInteger[] newBig = modifier.mergeNumeric(columnHome(), model, mBitSet, mBoolSize, myValues, other.mBitSet, other.mBoolSize, otValues, iteration);
+		return new LongColumn(boolSize, newBin, newBig);
+	}
+	
+	private static ColumnInspectorModifier<Long, long[]> getLongModifier(EfmModel model) {
+		return getColumnInspectorModifier(model, Long.class, long[].class);
+	}
+	private static ColumnInspectorModifier<BigInteger, BigInteger[]> getBigModifier(EfmModel model) {
+		return getColumnInspectorModifier(model, BigInteger.class, BigInteger[].class);
+	}
+
+	public void writeTo(DataOutput dataOut) throws IOException {
+		columnHome().writeTo(this, dataOut);
+	}
+	
+	@Override
+	public LongColumn clone() {
+		if (mBigValues == null) {
+			return new LongColumn(mBoolSize, mBitSet.clone(), mValues.clone());
+		}
+		return new LongColumn(mBoolSize, mBitSet.clone(), mBigValues.clone());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (obj instanceof LongColumn) {
+			final LongColumn col = (LongColumn)obj;
+			if (mBoolSize != col.mBoolSize || !mBitSet.equals(col.mBitSet)) {
+				return false;
+			}
+			if (mBigValues == null && col.mBigValues == null) {
+				return java.util.Arrays.equals(mValues, col.mValues);
+			}
+			return java.util.Arrays.equals(toBigIntegers(), col.toBigIntegers());
+		}
+		return false;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append('{');
+		for (int ii = 0; ii < mBoolSize; ii++) {
+			sb.append(mBitSet.get(ii) ? '1' : '0');
+		}
+		final int numSize = numericSize();
+		for (int ii = 0; ii < numSize; ii++) {
+			if (mBoolSize > 0 || ii > 0) sb.append(", ");
+			if (mBigValues == null) sb.append(mValues[ii]);
+			else sb.append(mBigValues[ii]);
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+    
+	public Home columnHome() {
+		return HOME;
+	}
+	
+	public static abstract class Home
+		extends		AbstractHome<BigInteger, LongColumn> 
+		implements	ColumnHome<BigInteger, LongColumn> {}
+	
+	/**
+	 * The column home. Columns are marshalled with a flag byte indicating 
+	 * whether the values are stored as longs (8 bytes each) or as promoted
+	 * big integers (length and bytes, as for {@link BigIntegerColumn}).
+	 */
+	public static final Home HOME = new Home() {
+		public Arithmetic getArithmetic() {
+			return Arithmetic.long_;
+		}
+		public NumberOperations<BigInteger> getNumberOperations() {
+			return BigIntegerOperations.instance();
+		}
+		public LongColumn newInstance(int booleanSize, int numericSize) {
+            throw new RuntimeException("not implemented");
+		}
+		public LongColumn[] newInstances(ReadableMatrix<BigInteger> matrix, int booleanSize) {
+			final int rows = matrix.getRowCount();
+			final int cols = matrix.getColumnCount();
+			final LongColumn[] res = new LongColumn[cols];
+			for (int col = 0; col < cols; col++) {
+				final BigInteger[] vals = new BigInteger[rows];				
+				for (int row = 0; row < rows; row++) {
+                    vals[row] = matrix.getNumberValueAt(row, col); 
+				}
+                res[col] = new LongColumn(booleanSize, BitSetUtil.patternFactory().create(rows), vals);
+			}
+			return res;
+		}
+		public LongColumn readFrom(DataInput dataIn, int booleanSize, int numericSize) throws IOException {
+			final IBitSet bitSet = readBinaryFrom(dataIn, booleanSize);
+			final boolean promoted = dataIn.readBoolean();
+			if (promoted) {
+				final BigInteger[] values = new BigInteger[numericSize];
+				for (int i = 0; i < numericSize; i++) {
+					final byte[] numBytes = new byte[dataIn.readInt()];
+					dataIn.readFully(numBytes);
+					values[i] = new BigInteger(numBytes);
+				}
+				return new LongColumn(booleanSize, bitSet, values);
+			}
+			final long[] values = new long[numericSize];
+			if (dataIn instanceof BulkDataInput) {
+				((BulkDataInput)dataIn).readLongs(values, 0, numericSize);
+			}
+			else {
+				for (int i = 0; i < numericSize; i++) {
+					values[i] = dataIn.readLong();
+				}
+			}
+			return new LongColumn(booleanSize, bitSet, values);
+		}
+		public void writeTo(LongColumn column, DataOutput dataOut) throws IOException {
+			writeBinaryTo(column, dataOut);
+			if (column.mBigValues == null) {
+				dataOut.writeBoolean(false);
+				if (dataOut instanceof BulkDataOutput) {
+					((BulkDataOutput)dataOut).writeLongs(column.mValues, 0, column.mValues.length);
+				}
+				else {
+					for (int i = 0; i < column.mValues.length; i++) {
+						dataOut.writeLong(column.mValues[i]);
+					}
+				}
+			}
+			else {
+				dataOut.writeBoolean(true);
+				for (int i = 0; i < column.mBigValues.length; i++) {
+					final byte[] bytes = column.mBigValues[i].toByteArray();
+					dataOut.writeInt(bytes.length);
+					dataOut.write(bytes);
+				}
+			}
+		}
+		public EntityMarshaller<LongColumn> getEntityMarshaller(final int booleanSize, final int numericSize) throws IOException {
+			return new EntityMarshaller<LongColumn>() {
+                public LongColumn readFrom(DataInput in) throws IOException {
+                    return HOME.readFrom(in, booleanSize, numericSize);
+                }
+                public void writeTo(LongColumn entity, DataOutput out) throws IOException {
+                    HOME.writeTo(entity, out);
+                }
+            };
+		}
+        public ConcurrentTable<LongColumn> createTable(File folder, String fileName, final int booleanSize, final int numericSize) throws IOException {
+            final int boolByteLen 		= BitSetUtil.byteSize(booleanSize);
+            final int numericByteLen	= 1 + numericSize * 8;//1 for promoted flag, 8 for one long value
+            return new ConcurrentTable<LongColumn>(
+                VariableWidthTable.create(
+                	folder, fileName, boolByteLen + numericByteLen, 
+                	getEntityMarshaller(booleanSize, numericSize),
+                    Cache.LongMemoryTable.getCacheTableSize(),
+                    Cache.LongMemoryTable.getCacheEntrySize()
+                )
+            );
+        }
+        public ConcurrentTable<LongColumn> openTable(File folder, String fileName, final int booleanSize, final int numericSize) throws IOException {
+            return new ConcurrentTable<LongColumn>(
+                VariableWidthTable.open(
+                	folder, fileName, 
+                	getEntityMarshaller(booleanSize, numericSize),
+                    Cache.LongMemoryTable.getCacheTableSize(),
+                    Cache.LongMemoryTable.getCacheEntrySize()
+                )
+            );
+        }
+		public FluxDistribution createFluxDistribution(MetabolicNetwork net, BigInteger[] values) {
+			return new FractionNumberFluxDistribution(net, values);
+		}
+		public BigIntegerMatrix convertMatrix(ReadableMatrix matrix, boolean allowRowScaling, boolean allowColumnScaling) {
+			return BigIntegerColumn.HOME.convertMatrix(matrix, allowRowScaling, allowColumnScaling);
+		}
+		public ReadableMatrix<BigInteger> castMatrix(ReadableMatrix matrix) {
+			if (matrix instanceof ReadableBigIntegerMatrix) {
+				return ((ReadableBigIntegerMatrix)matrix).toBigIntegerMatrix(false /*enforceNewInstance*/);
+			}
+			throw new ClassCastException("not a ReadableBigIntegerMatrix: " + matrix.getClass().getName());
+		}
+		public LongColumn castColumn(Column column) {
+			return (LongColumn)column;
+		}
+		public BigInteger castNumber(Number number) {
+			return (BigInteger)number;
+		}
+		public int rank(ReadableMatrix matrix, Zero zero) {
+			return new Gauss(zero.mZeroPos).rank((ReadableBigIntegerRationalMatrix)matrix);
+		}		
+	};
+    
+}
@@ -86,7 +86,7 @@ public class RawBigIntegerColumn extends AbstractColumn {
 
 	public RawBigIntegerColumn(int boolSize) {
 		mBoolSize		= boolSize;
-		mBitSet			= BitSetUtil.factory().create(boolSize);
+		mBitSet			= BitSetUtil.patternFactory().create(boolSize);
 		mNumericBytes	= new byte[0];
 	}
 	protected RawBigIntegerColumn(int boolSize, int numericSize, IBitSet bitSet, byte[] numericBytes) {
@@ -314,7 +314,7 @@ public class RawBigIntegerColumn extends AbstractColumn {
 				for (int row = 0; row < rows; row++) {
                     vals[row] = matrix.getNumberValueAt(row, col); 
 				}
-                res[col] = new RawBigIntegerColumn(booleanSize, vals.length, BitSetUtil.factory().create(rows), fromBigIntegers(vals));
+                res[col] = new RawBigIntegerColumn(booleanSize, vals.length, BitSetUtil.patternFactory().create(rows), fromBigIntegers(vals));
 			}
 			return res;
 		}
@@ -81,7 +81,7 @@ public class VarIntColumn extends AbstractColumn {
 	public VarIntColumn(int boolSize) {
 		mBoolSize	= boolSize;
 		mNumeSize	= 0;
-		mBitSet		= BitSetUtil.factory().create(boolSize);
+		mBitSet		= BitSetUtil.patternFactory().create(boolSize);
 		mNumericRaw	= new byte[0];
 	}
 	protected VarIntColumn(int boolSize, int numSize, IBitSet bitSet, byte[] numericRaw) {
@@ -256,7 +256,7 @@ public class VarIntColumn extends AbstractColumn {
 				for (int row = 0; row < rows; row++) {
                     vals[row] = matrix.getNumberValueAt(row, col); 
 				}
-                res[col] = new VarIntColumn(booleanSize, vals.length, BitSetUtil.factory().create(rows), fromVarIntNumber(vals));
+                res[col] = new VarIntColumn(booleanSize, vals.length, BitSetUtil.patternFactory().create(rows), fromVarIntNumber(vals));
 			}
 			return res;
 		}
@@ -0,0 +1,247 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.column.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.config.Config;
+import ch.javasoft.metabolic.efm.util.ReactionMapping;
+import ch.javasoft.util.ints.DefaultIntList;
+import ch.javasoft.util.ints.IntList;
+
+/**
+ * The <code>CompiledColumnFilter</code> evaluates a {@link ColumnFilter} on
+ * the packed bit pattern of the columns. The filter is compiled once for a
+ * given boolean size:
+ * <ul>
+ * 	<li>{@link EnforcedFluxColumnFilter enforced reactions} with boolean
+ * 		index become a single mask of bits which must all be clear, i.e.
+ * 		nonzero. Enforced reactions with numeric index are checked by sign.
+ * 	</li>
+ * 	<li>{@link FutileCycleColumnFilter futile cycles} need at most two
+ * 		nonzero fluxes. The nonzero count of the boolean part is derived from
+ * 		the cardinality of the pattern, the original filter is only invoked
+ * 		for the rare columns with 2 or less boolean nonzeros.
+ * 	</li>
+ * 	<li>other filters are invoked for every column</li>
+ * </ul>
+ * The result is the same as for the original filter. Once compiled, the
+ * filter can be evaluated concurrently, see
+ * {@link #keepColumns(List, boolean[], ExecutorService)}.
+ */
+public class CompiledColumnFilter {
+	
+	private final Config			config;
+	private final ReactionMapping	rmap;
+	private final int				booleanSize;
+	private final boolean			rejectAll;
+	private final IBitSet			enforcedMask;//null if none
+	private final int[]				enforcedNumeric;
+	private final boolean[]			enforcedAllowNeg;
+	private final IBitSet			booleanMask;//null if no futile cycle filter
+	private final ColumnFilter		futileFilter;
+	private final ColumnFilter[]	scalarFilters;
+	
+	private CompiledColumnFilter(ColumnFilter filter, Config config, ReactionMapping rmap, Column template) {
+		this.config			= config;
+		this.rmap			= rmap;
+		this.booleanSize	= template.booleanSize();
+		
+		final List<ColumnFilter> flat = new ArrayList<ColumnFilter>();
+		flatten(filter, flat);
+		
+		final List<ColumnFilter> scalar = new ArrayList<ColumnFilter>();
+		final BitSet enforced = new BitSet(booleanSize);
+		final IntList numeric = new DefaultIntList();
+		final BitSet allowNeg = new BitSet();
+		FutileCycleColumnFilter futile = null;
+		boolean reject = false;
+		for (final ColumnFilter flt : flat) {
+			if (flt instanceof EnforcedFluxColumnFilter) {
+				for (final IntList sinds : ((EnforcedFluxColumnFilter)flt).getEnforceIndices(config, rmap).values()) {
+					//no index at all means that no flux can be found
+					reject |= sinds.isEmpty();
+					for (int j = 0; j < sinds.size(); j++) {
+						final int sind = sinds.getInt(j);
+						if (sind < booleanSize) {
+							enforced.set(sind);
+						}
+						else {
+							allowNeg.set(numeric.size(), EnforcedFluxColumnFilter.allowNegativeFlux(rmap, sind, booleanSize));
+							numeric.addInt(sind - booleanSize);
+						}
+					}
+				}
+			}
+			else if (flt instanceof FutileCycleColumnFilter && futile == null) {
+				futile = (FutileCycleColumnFilter)flt;
+			}
+			else {
+				scalar.add(flt);
+			}
+		}
+		this.rejectAll			= reject;
+		this.enforcedMask		= !enforced.isEmpty() ? template.bitValues().factory().create(enforced) : null;
+		this.enforcedNumeric	= numeric.toIntArray();
+		this.enforcedAllowNeg	= new boolean[enforcedNumeric.length];
+		for (int i = 0; i < enforcedAllowNeg.length; i++) {
+			enforcedAllowNeg[i] = allowNeg.get(i);
+		}
+		if (futile == null) {
+			this.booleanMask	= null;
+			this.futileFilter	= null;
+		}
+		else {
+			final BitSet all = new BitSet(booleanSize);
+			all.set(0, booleanSize);
+			this.booleanMask	= template.bitValues().factory().create(all);
+			this.futileFilter	= futile;
+		}
+		this.scalarFilters = scalar.toArray(new ColumnFilter[scalar.size()]);
+	}
+	
+	private static void flatten(ColumnFilter filter, List<ColumnFilter> flat) {
+		if (filter instanceof CompoundColumnFilter) {
+			for (final ColumnFilter flt : ((CompoundColumnFilter)filter).getFilters()) {
+				flatten(flt, flat);
+			}
+		}
+		else {
+			flat.add(filter);
+		}
+	}
+	
+	/**
+	 * Compiles the given filter for columns of the same boolean size and 
+	 * column type as <code>template</code>. Compilation is not thread safe,
+	 * evaluation of the compiled filter is.
+	 */
+	public static CompiledColumnFilter compile(ColumnFilter filter, Config config, ReactionMapping rmap, Column template) {
+		return new CompiledColumnFilter(filter, config, rmap, template);
+	}
+	
+	/**
+	 * Returns true if this filter has been compiled for columns with the 
+	 * given boolean size
+	 */
+	public boolean isCompiledFor(Column column) {
+		return column.booleanSize() == booleanSize;
+	}
+	
+	/**
+	 * Returns true if the column should be kept. The column must have the
+	 * boolean size this filter was {@link #isCompiledFor(Column) compiled for}.
+	 */
+	public boolean keepColumn(Column column) {
+		if (rejectAll) return false;
+		final IBitSet bits = column.bitValues();
+		if (enforcedMask != null && bits.getAndCardinality(enforcedMask) != 0) {
+			return false;
+		}
+		for (int i = 0; i < enforcedNumeric.length; i++) {
+			final int sgn = column.getNumericSignum(config.zero(), enforcedNumeric[i]);
+			if (sgn == 0 || (sgn < 0 && !enforcedAllowNeg[i])) return false;
+		}
+		if (futileFilter != null) {
+			final int boolNonzero = booleanSize - bits.getAndCardinality(booleanMask);
+			if (boolNonzero <= 2 && !futileFilter.keepColumn(column, config, rmap)) {
+				return false;
+			}
+		}
+		for (final ColumnFilter flt : scalarFilters) {
+			if (!flt.keepColumn(column, config, rmap)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Evaluates the filter for all given columns, and stores the result in
+	 * <code>keep</code>. The columns are split into one chunk per thread if 
+	 * an executor is given, and evaluated in the current thread otherwise. 
+	 * 
+	 * @param columns	the columns to filter, all with the boolean size this
+	 * 					filter has been compiled for
+	 * @param keep		output array, at least as long as <code>columns</code>
+	 * @param executor	the executor to use, or null for sequential evaluation
+	 * @param threads	the number of chunks to use if executing concurrently
+	 */
+	public void keepColumns(final List<? extends Column> columns, final boolean[] keep, ExecutorService executor, int threads) {
+		final int size = columns.size();
+		if (executor == null || threads <= 1 || size < 2 * threads) {
+			keepColumns(columns, keep, 0, size);
+			return;
+		}
+		final int chunk = (size + threads - 1) / threads;
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>(threads);
+		for (int start = 0; start < size; start += chunk) {
+			final int from	= start;
+			final int to	= Math.min(size, start + chunk);
+			futures.add(executor.submit(new Callable<Void>() {
+				public Void call() {
+					keepColumns(columns, keep, from, to);
+					return null;
+				}
+			}));
+		}
+		for (final Future<Void> future : futures) {
+			try {
+				future.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				if (cause instanceof Error) throw (Error)cause;
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+	private void keepColumns(List<? extends Column> columns, boolean[] keep, int from, int to) {
+		for (int i = from; i < to; i++) {
+			keep[i] = keepColumn(columns.get(i));
+		}
+	}
+	
+}
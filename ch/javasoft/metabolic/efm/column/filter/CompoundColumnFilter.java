@@ -60,4 +60,11 @@ public class CompoundColumnFilter implements ColumnFilter {
 		return true;
 	}
 	
+	/**
+	 * Returns the underlying filters, in the order they are applied
+	 */
+	List<ColumnFilter> getFilters() {
+		return filters;
+	}
+	
 }
\ No newline at end of file
@@ -76,7 +76,16 @@ public class EnforcedFluxColumnFilter implements ColumnFilter {
 		}
 		return keep;
 	}
-	private boolean allowNegativeFlux(ReactionMapping rmap, int sind, int booleanSize) {
+	/**
+	 * Returns the sorted reaction indices of the enforced reactions, keyed by
+	 * original reaction name. Used by {@link CompiledColumnFilter} to build
+	 * its masks.
+	 */
+	Map<String, IntList> getEnforceIndices(Config config, ReactionMapping rmap) {
+		ensureInitialized(config, rmap);
+		return enforceIndices;
+	}
+	static boolean allowNegativeFlux(ReactionMapping rmap, int sind, int booleanSize) {
 		return 
 			rmap.isReactionReversibleBySortedIndex(sind) &&
 			rmap.getSortedReactionIndexOfTwinPart(sind) >= booleanSize;		
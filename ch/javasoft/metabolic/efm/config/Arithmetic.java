@@ -45,6 +45,7 @@ import ch.javasoft.metabolic.efm.column.BigIntegerColumn;
 import ch.javasoft.metabolic.efm.column.ColumnHome;
 import ch.javasoft.metabolic.efm.column.DoubleColumn;
 import ch.javasoft.metabolic.efm.column.FractionalColumn;
+import ch.javasoft.metabolic.efm.column.LongColumn;
 import ch.javasoft.metabolic.efm.column.RawBigIntegerColumn;
 import ch.javasoft.metabolic.efm.column.VarIntColumn;
 import ch.javasoft.util.numeric.Zero;
@@ -103,6 +104,19 @@ public enum Arithmetic {
 		public boolean isExact() {
 			return true;
 		}
+	}, long_ {
+		@Override
+		public ColumnHome<BigInteger, LongColumn> getColumnHome() {
+			return LongColumn.HOME;
+		}		
+		@Override
+		public Zero getDefaultZero() {
+			return new Zero(0d);
+		}
+		@Override
+		public boolean isExact() {
+			return true;
+		}
 	}, varint {
 		@Override
 		public ColumnHome<VarIntNumber, VarIntColumn> getColumnHome() {
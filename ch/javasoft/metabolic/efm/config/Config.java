@@ -100,6 +100,9 @@ public class Config {
 	private final int 					mProgressPartition;//100 for 1%, 50 for 2%, 0 for off
 	private final ProgressType			mProgressType;//	none / file / swing
 	private final DistributedConfig		mDistributedConfig;
+	private final PageCacheConfig		mPageCacheConfig;
+	private final TelemetryConfig		mTelemetryConfig;
+	private final MemoryBudgetConfig	mMemoryBudgetConfig;
 	private final Generator				mGenerator;
 	private final TempDir				mTempDir;
 	private final Set<String>			mReactionsToSuppress;
@@ -141,6 +144,9 @@ public class Config {
         mXmlConfig					= xmlConfig;
         mFlag						= flag;
         mDistributedConfig			= distConfig == null ? getDistributedConfig(xmlConfig) : distConfig;
+        mPageCacheConfig			= getPageCacheConfig(xmlConfig);
+        mTelemetryConfig			= getTelemetryConfig(xmlConfig);
+        mMemoryBudgetConfig			= getMemoryBudgetConfig(xmlConfig);
 		mAdjFactory					= initAdjFactory(this);
 	}
 	private static AdjMethodFactory initAdjFactory(Config config) {
@@ -167,6 +173,54 @@ public class Config {
 			throw new RuntimeException(ex);
 		}
 	}
+	private static PageCacheConfig getPageCacheConfig(XmlConfig xmlConfig) {
+		try {
+			if (xmlConfig == null) {
+				return new PageCacheConfig();
+			}
+			Element efmImplConfig	= getConfigEfmImplConfig(xmlConfig);
+			Element efmCacheConfig	= XmlUtil.getOptionalSingleChildElement(efmImplConfig, XmlElement.page_cache);
+			if (efmCacheConfig == null) {
+				return new PageCacheConfig();				
+			}
+			return new PageCacheConfig(efmCacheConfig);
+		}
+		catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	private static TelemetryConfig getTelemetryConfig(XmlConfig xmlConfig) {
+		try {
+			if (xmlConfig == null) {
+				return new TelemetryConfig();
+			}
+			Element efmImplConfig	= getConfigEfmImplConfig(xmlConfig);
+			Element efmTelConfig	= XmlUtil.getOptionalSingleChildElement(efmImplConfig, XmlElement.telemetry);
+			if (efmTelConfig == null) {
+				return new TelemetryConfig();				
+			}
+			return new TelemetryConfig(efmTelConfig);
+		}
+		catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+	private static MemoryBudgetConfig getMemoryBudgetConfig(XmlConfig xmlConfig) {
+		try {
+			if (xmlConfig == null) {
+				return new MemoryBudgetConfig();
+			}
+			Element efmImplConfig	= getConfigEfmImplConfig(xmlConfig);
+			Element efmBudgetConfig	= XmlUtil.getOptionalSingleChildElement(efmImplConfig, XmlElement.memory_budget);
+			if (efmBudgetConfig == null) {
+				return new MemoryBudgetConfig();				
+			}
+			return new MemoryBudgetConfig(efmBudgetConfig);
+		}
+		catch (Exception ex) {
+			throw new RuntimeException(ex);
+		}
+	}
 	private static Set<String> toSet(String reacs) {
 		if (reacs == null || reacs.trim().length() == 0) {
 			return new LinkedHashSet<String>(0);
@@ -300,6 +354,25 @@ public class Config {
 	public DistributedConfig getDistributedConfig() {
 		return mDistributedConfig;
 	}
+	/**
+	 * Returns the configuration of the shared page cache for out-of-core 
+	 * tables, never null, but possibly disabled
+	 */
+	public PageCacheConfig getPageCacheConfig() {
+		return mPageCacheConfig;
+	}
+	/**
+	 * Returns the telemetry configuration, never null, but possibly disabled
+	 */
+	public TelemetryConfig getTelemetryConfig() {
+		return mTelemetryConfig;
+	}
+	/**
+	 * Returns the heap budget for the hybrid memory, never null
+	 */
+	public MemoryBudgetConfig getMemoryBudgetConfig() {
+		return mMemoryBudgetConfig;
+	}
 	
 	/**
 	 * Initializes elementary flux mode calculation for junit tests. If there is 
@@ -801,6 +874,9 @@ public class Config {
 			logger.log(level, "..enforce          : " + getReactionsToEnforce());
 			logger.log(level, "..nosplit          : " + getReactionsNoSplit());
 			logger.log(level, "..temp dir         : " + getTempDir());
+			getPageCacheConfig().log(logger, level);
+			getTelemetryConfig().log(logger, level);
+			getMemoryBudgetConfig().log(logger, level);
 			logger.log(level, "..flag             : " + (getFlag() == null ? "(none)" : getFlag()));
 		}
 		getDistributedConfig().log(logger, level);
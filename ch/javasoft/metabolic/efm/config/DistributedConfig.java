@@ -60,6 +60,9 @@ public class DistributedConfig {
 	
 	private final int			partition;
 	private final long			candidateThreashold;
+	private final boolean		compressAppend;
+	private final int			nodeRestarts;
+	private final long			checkpointInterval;
 	private final List<String> 	nodeNames;
 	private final List<String> 	vmArgs;
 	private final List<String> 	logLevels;
@@ -107,7 +110,7 @@ public class DistributedConfig {
 	 * Constructor for <code>DistributedConfig</code> with xml configuration.
 	 * The configuration element looks like this:
 	 * <pre>
-			<distribute partition="65536"><!--use power of 4-->
+			<distribute partition="65536" compress-append="false" node-restarts="0" checkpoint-interval="0"><!--use power of 4-->
 				<nodes vmargs = "-Xmx2500M" level="OFF">
 					<node name="node01.cluster.lan" vmargs="-Xmx1G" level="INFO"/>
 					<node name="node02.cluster.lan"/>
@@ -126,6 +129,9 @@ public class DistributedConfig {
 		final Element elCommand = XmlUtil.getRequiredSingleChildElement(elDistribute, XmlElement.command);
 		final String sPartition = XmlUtil.getRequiredAttributeValue(elDistribute, XmlAttribute.partition);
 		final String sThreshold = XmlUtil.getOptionalAttributeValue(elDistribute, XmlAttribute.candidate_threshold, "0");
+		final String sCompress	= XmlUtil.getOptionalAttributeValue(elDistribute, XmlAttribute.compress_append, "false");
+		final String sRestarts	= XmlUtil.getOptionalAttributeValue(elDistribute, XmlAttribute.node_restarts, "0");
+		final String sCheckpoint= XmlUtil.getOptionalAttributeValue(elDistribute, XmlAttribute.checkpoint_interval, "0");
 
 		final List<String> nodeNames 	= new ArrayList<String>();
 		final List<String> vmArgs		= new ArrayList<String>();
@@ -150,6 +156,7 @@ public class DistributedConfig {
 		this.vmArgs		= Collections.unmodifiableList(vmArgs);
 		this.logLevels	= Collections.unmodifiableList(logLevels);
 		this.command 	= XmlUtil.getRequiredAttributeValue(elCommand, XmlAttribute.value);
+		this.compressAppend	= Boolean.parseBoolean(sCompress.trim());
 		try {
 			this.partition = Integer.parseInt(sPartition);
 		}
@@ -162,6 +169,24 @@ public class DistributedConfig {
 		catch (Exception e) {
 			throw new XmlConfigException("cannot parse distribute attribute 'candidate-threshold': " + sThreshold + ", e=" + e, elDistribute, e);
 		}
+		try {
+			this.nodeRestarts = Integer.parseInt(sRestarts.trim());
+		}
+		catch (Exception e) {
+			throw new XmlConfigException("cannot parse distribute attribute 'node-restarts': " + sRestarts + ", e=" + e, elDistribute, e);
+		}
+		if (nodeRestarts < 0) {
+			throw new XmlConfigException("distribute attribute 'node-restarts' must not be negative: " + nodeRestarts, elDistribute);
+		}
+		try {
+			this.checkpointInterval = Long.parseLong(sCheckpoint.trim());
+		}
+		catch (Exception e) {
+			throw new XmlConfigException("cannot parse distribute attribute 'checkpoint-interval': " + sCheckpoint + ", e=" + e, elDistribute, e);
+		}
+		if (checkpointInterval < 0) {
+			throw new XmlConfigException("distribute attribute 'checkpoint-interval' must not be negative: " + checkpointInterval, elDistribute);
+		}
 		//check partition, must be power of 4
 		int cur = 1;
 		while (partition / cur > 1) {
@@ -218,6 +243,36 @@ public class DistributedConfig {
 	public long getCandidateThreashold() {
 		return candidateThreashold;
 	}
+	
+	/**
+	 * Returns true if batches of new columns sent from the cluster nodes to 
+	 * the server are compressed. Compression is useful for slow networks, 
+	 * but costs cpu time on both sides.
+	 */
+	public boolean isCompressAppend() {
+		return compressAppend;
+	}
+	
+	/**
+	 * Returns the number of times the job of a cluster node is restarted per
+	 * iteration if it fails. Parts of failed nodes are reassigned to other
+	 * nodes, a restarted node only processes parts which are not yet 
+	 * completed.
+	 */
+	public int getNodeRestarts() {
+		return nodeRestarts;
+	}
+	
+	/**
+	 * Returns the minimum time in seconds between two checkpoints written 
+	 * during a distributed iteration, or 0 if no checkpoints are written. 
+	 * Checkpoints record the completed parts and allow recovery of an 
+	 * interrupted iteration without recomputing these parts, see
+	 * {@link ch.javasoft.metabolic.efm.memory.outcore.IterationCheckpoint}.
+	 */
+	public long getCheckpointInterval() {
+		return checkpointInterval;
+	}
 
 	/**
 	 * Write all configuration settings to the log using the given log level
@@ -231,6 +286,9 @@ public class DistributedConfig {
 			logger.log(level, "..command          : " + getCommand());
 			logger.log(level, "..partition        : " + getPartition());
 			logger.log(level, "..cand. threshold  : " + getCandidateThreashold());
+			logger.log(level, "..compress append  : " + isCompressAppend());
+			logger.log(level, "..node restarts    : " + getNodeRestarts());
+			logger.log(level, "..checkpoint intv. : " + (getCheckpointInterval() == 0 ? "off" : getCheckpointInterval() + "s"));
 		}
 	}
 	
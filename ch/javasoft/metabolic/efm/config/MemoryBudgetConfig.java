@@ -0,0 +1,137 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.config;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.dom4j.Element;
+
+import ch.javasoft.util.logging.Loggers;
+import ch.javasoft.xml.config.XmlConfigException;
+import ch.javasoft.xml.config.XmlUtil;
+
+/**
+ * The <code>MemoryBudgetConfig</code> defines the heap budget for memory 
+ * parts of the {@link ch.javasoft.metabolic.efm.memory.outcore.HybridMemoryFactory hybrid memory}.
+ * Memory parts are kept in-core as long as their total estimated size fits 
+ * into the budget, and the largest parts are spilled to out-of-core memory 
+ * if the budget is exceeded. The budget is not used by other memory 
+ * factories.
+ */
+public class MemoryBudgetConfig {
+	
+	/** The default budget, relative to the maximum heap size*/
+	public static final String DEFAULT_SIZE = "50%";
+
+	private final String	size;
+	private final long		budget;
+
+	/**
+	 * Constructor for the {@link #DEFAULT_SIZE default} budget
+	 */
+	public MemoryBudgetConfig() {
+		this(DEFAULT_SIZE);
+	}
+	/**
+	 * Constructor with budget size
+	 *
+	 * @param size	the budget size in bytes, optionally with suffix K, M or 
+	 * 				G, or in percent of the maximum heap size, for instance
+	 * 				<tt>50%</tt>
+	 */
+	public MemoryBudgetConfig(String size) {
+		this.size	= size.trim();
+		this.budget	= parseBudget(this.size);
+		if (budget < 0) throw new IllegalArgumentException("memory budget must not be negative: " + size);
+	}
+	/**
+	 * Constructor for <code>MemoryBudgetConfig</code> with xml configuration.
+	 * The configuration element looks like this:
+	 * <pre>
+			<memory-budget size="50%"/>
+	 * </pre>
+	 * The size can be specified in bytes, with one of the suffixes 
+	 * <tt>K</tt>, <tt>M</tt> or <tt>G</tt>, or in percent of the maximum 
+	 * heap size.
+	 *
+	 * @param elMemoryBudget		the <tt>memory-budget</tt> xml element
+	 * @throws XmlConfigException	if an xml configuration exception occurs,
+	 * 								for instance due to invalid values
+	 */
+	public MemoryBudgetConfig(Element elMemoryBudget) throws XmlConfigException {
+		final String sSize = XmlUtil.getOptionalAttributeValue(elMemoryBudget, XmlAttribute.size, DEFAULT_SIZE);
+		this.size = sSize.trim();
+		try {
+			this.budget = parseBudget(size);
+		}
+		catch (Exception e) {
+			throw new XmlConfigException("cannot parse memory-budget attribute 'size': " + sSize + ", e=" + e, elMemoryBudget, e);
+		}
+		if (budget < 0) {
+			throw new XmlConfigException("invalid memory-budget size: " + sSize, elMemoryBudget);
+		}
+	}
+	
+	private static long parseBudget(String size) {
+		if (size.endsWith("%")) {
+			final double percent = Double.parseDouble(size.substring(0, size.length() - 1).trim());
+			return (long)(Runtime.getRuntime().maxMemory() * percent / 100);
+		}
+		return PageCacheConfig.parseSize(size);
+	}
+
+	/**
+	 * Returns the budget size as configured, in bytes or percent
+	 */
+	public String getSize() {
+		return size;
+	}
+	/**
+	 * Returns the budget in bytes
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Write all configuration settings to the log using the given log level
+	 */
+	public void log(Logger logger, Level level) {
+		if (Loggers.isLoggable(logger, level)) {
+			logger.log(level, "..memory budget    : " + getBudget() + " bytes (" + getSize() + ")");
+		}
+	}
+
+}
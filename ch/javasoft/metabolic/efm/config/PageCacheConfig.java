@@ -0,0 +1,194 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.config;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.dom4j.Element;
+
+import ch.javasoft.jbase.PageCache;
+import ch.javasoft.util.logging.Loggers;
+import ch.javasoft.xml.config.XmlConfigException;
+import ch.javasoft.xml.config.XmlUtil;
+
+/**
+ * The <code>PageCacheConfig</code> is configuration concerning the shared
+ * {@link PageCache page cache} used by out-of-core tables. The cache is
+ * disabled if the size is 0, tables then use their own small caches as
+ * specified by {@link ch.javasoft.metabolic.efm.memory.outcore.Cache Cache}.
+ */
+public class PageCacheConfig {
+
+	private final long		size;
+	private final int		pageSize;
+	private final int		prefetch;
+	private final boolean	writeBehind;
+
+	/**
+	 * Constructor for a disabled page cache
+	 */
+	public PageCacheConfig() {
+		this(0, PageCache.DEFAULT_PAGE_SIZE, PageCache.DEFAULT_PREFETCH_PAGES, true);
+	}
+	/**
+	 * Constructor with all values
+	 *
+	 * @param size			the cache size in bytes, 0 to disable the cache
+	 * @param pageSize		the page size in bytes
+	 * @param prefetch		number of pages to read ahead for sequential scans
+	 * @param writeBehind	true to write dirty pages asynchronously
+	 */
+	public PageCacheConfig(long size, int pageSize, int prefetch, boolean writeBehind) {
+		if (size < 0) throw new IllegalArgumentException("page cache size must not be negative: " + size);
+		if (pageSize <= 0) throw new IllegalArgumentException("page size must be positive: " + pageSize);
+		if (prefetch < 0) throw new IllegalArgumentException("prefetch pages must not be negative: " + prefetch);
+		this.size			= size;
+		this.pageSize		= pageSize;
+		this.prefetch		= prefetch;
+		this.writeBehind	= writeBehind;
+	}
+	/**
+	 * Constructor for <code>PageCacheConfig</code> with xml configuration.
+	 * The configuration element looks like this:
+	 * <pre>
+			<page-cache size="256M" page-size="4096" prefetch="16" write-behind="true"/>
+	 * </pre>
+	 * The size can be specified in bytes, or with one of the suffixes
+	 * <tt>K</tt>, <tt>M</tt> or <tt>G</tt>.
+	 *
+	 * @param elPageCache			the <tt>page-cache</tt> xml element
+	 * @throws XmlConfigException	if an xml configuration exception occurs,
+	 * 								for instance due to invalid values
+	 */
+	public PageCacheConfig(Element elPageCache) throws XmlConfigException {
+		final String sSize		= XmlUtil.getRequiredAttributeValue(elPageCache, XmlAttribute.size);
+		final String sPageSize	= XmlUtil.getOptionalAttributeValue(elPageCache, XmlAttribute.page_size, String.valueOf(PageCache.DEFAULT_PAGE_SIZE));
+		final String sPrefetch	= XmlUtil.getOptionalAttributeValue(elPageCache, XmlAttribute.prefetch, String.valueOf(PageCache.DEFAULT_PREFETCH_PAGES));
+		final String sWrBehind	= XmlUtil.getOptionalAttributeValue(elPageCache, XmlAttribute.write_behind, "true");
+		try {
+			this.size = parseSize(sSize);
+		}
+		catch (Exception e) {
+			throw new XmlConfigException("cannot parse page-cache attribute 'size': " + sSize + ", e=" + e, elPageCache, e);
+		}
+		try {
+			this.pageSize = (int)parseSize(sPageSize);
+		}
+		catch (Exception e) {
+			throw new XmlConfigException("cannot parse page-cache attribute 'page-size': " + sPageSize + ", e=" + e, elPageCache, e);
+		}
+		try {
+			this.prefetch = Integer.parseInt(sPrefetch.trim());
+		}
+		catch (Exception e) {
+			throw new XmlConfigException("cannot parse page-cache attribute 'prefetch': " + sPrefetch + ", e=" + e, elPageCache, e);
+		}
+		this.writeBehind = Boolean.parseBoolean(sWrBehind.trim());
+		if (size < 0 || pageSize <= 0 || prefetch < 0) {
+			throw new XmlConfigException("invalid page-cache settings, size=" + sSize + ", page-size=" + sPageSize + ", prefetch=" + sPrefetch, elPageCache);
+		}
+	}
+
+	/**
+	 * Parses a byte size, optionally with suffix K, M or G (case insensitive)
+	 */
+	static long parseSize(String str) {
+		final String s = str.trim().toUpperCase();
+		final long mul;
+		switch (s.length() == 0 ? ' ' : s.charAt(s.length() - 1)) {
+			case 'K': mul = 1L << 10; break;
+			case 'M': mul = 1L << 20; break;
+			case 'G': mul = 1L << 30; break;
+			default: return Long.parseLong(s);
+		}
+		return mul * Long.parseLong(s.substring(0, s.length() - 1).trim());
+	}
+
+	/**
+	 * Returns true if the page cache is enabled, that is, if the size is
+	 * positive
+	 */
+	public boolean isEnabled() {
+		return size > 0;
+	}
+	/**
+	 * Returns the cache size in bytes, 0 if the cache is disabled
+	 */
+	public long getSize() {
+		return size;
+	}
+	/**
+	 * Returns the size of a page in bytes
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+	/**
+	 * Returns the number of pages to read ahead if a sequential scan is
+	 * detected
+	 */
+	public int getPrefetch() {
+		return prefetch;
+	}
+	/**
+	 * Returns true if dirty pages are written asynchronously
+	 */
+	public boolean isWriteBehind() {
+		return writeBehind;
+	}
+
+	/**
+	 * Creates a new page cache according to this configuration, or returns
+	 * null if the cache is disabled
+	 */
+	public PageCache createPageCache() {
+		return isEnabled() ? new PageCache(size, pageSize, prefetch, writeBehind) : null;
+	}
+
+	/**
+	 * Write all configuration settings to the log using the given log level
+	 */
+	public void log(Logger logger, Level level) {
+		if (Loggers.isLoggable(logger, level)) {
+			if (isEnabled()) {
+				logger.log(level, "..page cache       : " + getSize() + " bytes, page-size=" + getPageSize() + ", prefetch=" + getPrefetch() + ", write-behind=" + (isWriteBehind() ? "on" : "off"));
+			}
+			else {
+				logger.log(level, "..page cache       : off");
+			}
+		}
+	}
+
+}
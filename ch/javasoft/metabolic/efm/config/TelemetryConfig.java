@@ -0,0 +1,184 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.config;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.dom4j.Element;
+
+import ch.javasoft.metabolic.efm.progress.TelemetryReporter;
+import ch.javasoft.util.logging.Loggers;
+import ch.javasoft.xml.config.XmlConfigException;
+import ch.javasoft.xml.config.XmlUtil;
+
+/**
+ * The <code>TelemetryConfig</code> is configuration concerning the live
+ * {@link ch.javasoft.metabolic.efm.progress.Telemetry telemetry} of a
+ * computation. Telemetry is disabled if none of json lines file, http
+ * endpoint or jmx registration is enabled.
+ */
+public class TelemetryConfig {
+	
+	/** Name of the json lines file written to the temp directory*/
+	public static final String FILE_NAME = "telemetry.jsonl";
+	
+	public static final int DEFAULT_INTERVAL = 10;//seconds
+
+	private final int		interval;
+	private final boolean	file;
+	private final int		httpPort;
+	private final boolean	jmx;
+
+	/**
+	 * Constructor for disabled telemetry
+	 */
+	public TelemetryConfig() {
+		this(DEFAULT_INTERVAL, false, -1, false);
+	}
+	/**
+	 * Constructor with all values
+	 *
+	 * @param interval	the sampling interval in seconds
+	 * @param file		true to write samples to a json lines file
+	 * @param httpPort	the port of the http endpoint, 0 for any free port,
+	 * 					negative for no http endpoint
+	 * @param jmx		true to register the telemetry mbean
+	 */
+	public TelemetryConfig(int interval, boolean file, int httpPort, boolean jmx) {
+		if (interval <= 0) throw new IllegalArgumentException("telemetry interval must be positive: " + interval);
+		this.interval	= interval;
+		this.file		= file;
+		this.httpPort	= httpPort;
+		this.jmx		= jmx;
+	}
+	/**
+	 * Constructor for <code>TelemetryConfig</code> with xml configuration.
+	 * The configuration element looks like this:
+	 * <pre>
+			<telemetry interval="10" file="true" http-port="-1" jmx="false"/>
+	 * </pre>
+	 * The interval is specified in seconds, a negative http port disables 
+	 * the http endpoint, 0 uses any free port.
+	 *
+	 * @param elTelemetry			the <tt>telemetry</tt> xml element
+	 * @throws XmlConfigException	if an xml configuration exception occurs,
+	 * 								for instance due to invalid values
+	 */
+	public TelemetryConfig(Element elTelemetry) throws XmlConfigException {
+		final String sInterval	= XmlUtil.getOptionalAttributeValue(elTelemetry, XmlAttribute.interval, String.valueOf(DEFAULT_INTERVAL));
+		final String sFile		= XmlUtil.getOptionalAttributeValue(elTelemetry, XmlAttribute.file, "false");
+		final String sHttpPort	= XmlUtil.getOptionalAttributeValue(elTelemetry, XmlAttribute.http_port, "-1");
+		final String sJmx		= XmlUtil.getOptionalAttributeValue(elTelemetry, XmlAttribute.jmx, "false");
+		try {
+			this.interval = Integer.parseInt(sInterval.trim());
+		}
+		catch (Exception e) {
+			throw new XmlConfigException("cannot parse telemetry attribute 'interval': " + sInterval + ", e=" + e, elTelemetry, e);
+		}
+		try {
+			this.httpPort = Integer.parseInt(sHttpPort.trim());
+		}
+		catch (Exception e) {
+			throw new XmlConfigException("cannot parse telemetry attribute 'http-port': " + sHttpPort + ", e=" + e, elTelemetry, e);
+		}
+		this.file	= Boolean.parseBoolean(sFile.trim());
+		this.jmx	= Boolean.parseBoolean(sJmx.trim());
+		if (interval <= 0 || httpPort > 0xffff) {
+			throw new XmlConfigException("invalid telemetry settings, interval=" + sInterval + ", http-port=" + sHttpPort, elTelemetry);
+		}
+	}
+
+	/**
+	 * Returns true if telemetry is enabled, that is, if at least one of json
+	 * lines file, http endpoint or jmx registration is enabled
+	 */
+	public boolean isEnabled() {
+		return file || httpPort >= 0 || jmx;
+	}
+	/**
+	 * Returns the sampling interval in seconds
+	 */
+	public int getInterval() {
+		return interval;
+	}
+	/**
+	 * Returns true if samples are written to a json lines file
+	 */
+	public boolean isFile() {
+		return file;
+	}
+	/**
+	 * Returns the http port, 0 for any free port, or a negative value if
+	 * no http endpoint is started
+	 */
+	public int getHttpPort() {
+		return httpPort;
+	}
+	/**
+	 * Returns true if the telemetry mbean is registered
+	 */
+	public boolean isJmx() {
+		return jmx;
+	}
+
+	/**
+	 * Creates and starts a telemetry reporter according to this 
+	 * configuration, or returns null if telemetry is disabled
+	 * 
+	 * @param folder	the folder for the json lines file
+	 * @throws IOException	if the reporter cannot be started
+	 */
+	public TelemetryReporter createReporter(File folder) throws IOException {
+		if (!isEnabled()) return null;
+		return new TelemetryReporter(file ? new File(folder, FILE_NAME) : null, interval * 1000L, httpPort, jmx);
+	}
+
+	/**
+	 * Write all configuration settings to the log using the given log level
+	 */
+	public void log(Logger logger, Level level) {
+		if (Loggers.isLoggable(logger, level)) {
+			if (isEnabled()) {
+				logger.log(level, "..telemetry        : interval=" + getInterval() + "s, file=" + (isFile() ? "on" : "off") + ", http-port=" + (getHttpPort() < 0 ? "off" : String.valueOf(getHttpPort())) + ", jmx=" + (isJmx() ? "on" : "off"));
+			}
+			else {
+				logger.log(level, "..telemetry        : off");
+			}
+		}
+	}
+
+}
@@ -37,7 +37,10 @@ import ch.javasoft.xml.config.XmlNode;
 
 public enum XmlAttribute implements XmlNode {
 	class_, name, type, value, factory, efms_per_file,
-	normalize, partition, candidate_threshold, vmargs, level;
+	normalize, partition, candidate_threshold, compress_append, node_restarts, checkpoint_interval, vmargs, level,
+	writer_threads, compression_level, manifest,
+	size, page_size, prefetch, write_behind,
+	interval, file, http_port, jmx;
 	public String getXmlName() {
 		return this == class_ ? "class" : name().replaceAll("_", "-");
 	}
@@ -40,11 +40,12 @@ import ch.javasoft.xml.config.XmlNode;
 
 public enum XmlElement implements XmlNode {
 	metabolic_compression, metabolic_efm, efm_impl, config, model, memory, 
-	efm_output, callback, stream, file, mode, uncompress,
+	efm_output, callback, stream, file, mode, uncompress, encoding,
 	row_ordering, adjacency_method, maxthreads,  self_test, parse_only, 
 	numeric, arithmetic, precision, zero, normalize, generator,
 	reactions_to_suppress, reactions_to_enforce, reactions_no_split, temp_dir,
-	progress, flag, distribute, nodes, node, command, factories, clazz;
+	progress, flag, distribute, nodes, node, command, factories, clazz,
+	page_cache, telemetry, memory_budget;
 	public String getXmlName() {
 		return this == clazz ? "class" : name().replaceAll("_", "-");
 	}
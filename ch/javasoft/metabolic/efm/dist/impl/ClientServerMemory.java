@@ -37,6 +37,7 @@ import java.io.IOException;
 import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.memory.PartId;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
@@ -97,6 +98,9 @@ public class ClientServerMemory<Col extends Column> implements SortableMemory<Co
 		cache.set(pos, n);
 		return n.column;
 	}
+	public IBitSet getBitValues(int index) throws IOException {
+		return getColumn(index).bitValues();
+	}
 
 	/**
 	 * Does actually nothing, that is, the call is silently ignored
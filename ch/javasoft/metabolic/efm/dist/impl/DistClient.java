@@ -33,15 +33,38 @@
  */
 package ch.javasoft.metabolic.efm.dist.impl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.concurrent.locks.Lock;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import ch.javasoft.jbase.EntityMarshaller;
 import ch.javasoft.metabolic.efm.column.Column;
@@ -56,15 +79,20 @@ import ch.javasoft.metabolic.efm.model.AdjEnumModel;
 import ch.javasoft.metabolic.efm.model.MemoryAccessor;
 import ch.javasoft.metabolic.efm.model.ModelPersister;
 import ch.javasoft.metabolic.efm.progress.ProgressAggregator;
+import ch.javasoft.util.ExceptionUtil;
 
 /**
  * The <code>DistClient</code> is the client side of distributed computation.
  * The client performs the following tasks:
  * <ul>
- * <li>{@link Command#NEXTJOB NEXTJOB}: requests next tree traversing job from
- * 		server, and starts the subtree traversal process</li>
- * <li>{@link Command#APPEND APPEND}: new-born modes from adjacent modes are
- * 		sent to the server</li>
+ * <li>{@link Command#NEXTJOB NEXTJOB}, {@link Command#PART_DONE PART_DONE}: 
+ * 		requests next tree traversing jobs from server, starts the subtree 
+ * 		traversal process and notifies the server about completed jobs</li>
+ * <li>{@link Command#GET_RANGE GET_RANGE}: columns of the current iteration
+ * 		are fetched in contiguous ranges and cached on client side</li>
+ * <li>{@link Command#APPEND_BATCH APPEND_BATCH}: new-born modes from adjacent
+ * 		modes are collected in batches per job, which are sent to the server 
+ * 		by a separate writer thread</li>
  * <li>{@link Command#PROGRESS PROGRESS}: pre-aggregated progress information
  * 		is sent to the server process</li>
  * </ul>
@@ -79,20 +107,110 @@ public class DistClient<Col extends Column> implements MemoryAccessor<Col>, Part
 	private final AdjEnumModel<Col> adjEnumModel;
 	private final EntityMarshaller<Col> writeMarshaller;
 	private final EntityMarshaller<Col> readMarshaller;
-	private final Lock lock = new ReentrantLock();
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	/**
+	 * Number of columns fetched with a single range request
+	 */
+	public static final int RANGE_SIZE = 64;
+	/**
+	 * Maximum number of blocks, each containing {@link #RANGE_SIZE} columns,
+	 * in the client side block cache
+	 */
+	public static final int CACHE_BLOCKS = 256;
+	
+	private final Map<Long, Col[]> blockCache = new LinkedHashMap<Long, Col[]>(16, 0.75f, true /*access order*/) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Col[]> eldest) {
+			return size() > CACHE_BLOCKS;
+		}
+	};
+	private final Map<Long, Future<Col[]>> pendingBlocks = new HashMap<Long, Future<Col[]>>();
+	private final int[] lastBlocks = new int[PartId.values().length];
+	
+	/**
+	 * Number of new columns sent to the server in a single batch
+	 */
+	public static final int BATCH_SIZE = 256;
+	/**
+	 * Maximum number of batches handed over to the writer thread but not yet
+	 * sent to the server; appending columns blocks if no credit is left
+	 */
+	public static final int BATCH_CREDITS = 4;
+	
+	private final boolean compressBatches;
+	private final Object batchLock = new Object();
+	private List<Col> batch = new ArrayList<Col>(BATCH_SIZE);
+	private final Semaphore batchCredits = new Semaphore(BATCH_CREDITS);
+	private final AtomicReference<IOException> batchException = new AtomicReference<IOException>();
+	private final ExecutorService batchWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, "dist-client-writer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, "dist-client-prefetch");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private final Deque<Integer> grantedParts = new ArrayDeque<Integer>();
+	private volatile int currentPart = -1;
 	
 	private final AppendableMemory<Col> memory;
 	private final ProgressAggregator	progress;
 	
 	public DistClient(ColumnHome<?, Col> columnHome, ModelPersister modelPersister, File adjEnumPropsFile, String host, int port) throws UnknownHostException, IOException {
+		this(columnHome, modelPersister, adjEnumPropsFile, host, port, false /*compressBatches*/);
+	}
+	/**
+	 * Constructor for <code>DistClient</code>
+	 * 
+	 * @param columnHome		the column home
+	 * @param modelPersister	persister to restore the adjacency enumeration
+	 * 							model
+	 * @param adjEnumPropsFile	the file with the adjacency enumeration model
+	 * @param host				the server host
+	 * @param port				the server port
+	 * @param compressBatches	true if batches of new columns are compressed
+	 * 							before they are sent to the server
+	 */
+	public DistClient(ColumnHome<?, Col> columnHome, ModelPersister modelPersister, File adjEnumPropsFile, String host, int port, boolean compressBatches) throws UnknownHostException, IOException {
+		this(columnHome, modelPersister, adjEnumPropsFile, host, port, -1 /*unknown node*/, compressBatches);
+	}
+	/**
+	 * Constructor for <code>DistClient</code>
+	 * 
+	 * @param columnHome		the column home
+	 * @param modelPersister	persister to restore the adjacency enumeration
+	 * 							model
+	 * @param adjEnumPropsFile	the file with the adjacency enumeration model
+	 * @param host				the server host
+	 * @param port				the server port
+	 * @param nodeIndex			the index of this node, used by the server to
+	 * 							track node failures, or -1 if unknown
+	 * @param compressBatches	true if batches of new columns are compressed
+	 * 							before they are sent to the server
+	 */
+	public DistClient(ColumnHome<?, Col> columnHome, ModelPersister modelPersister, File adjEnumPropsFile, String host, int port, int nodeIndex, boolean compressBatches) throws UnknownHostException, IOException {
+		this.compressBatches	= compressBatches;
 		this.socket 			= new Socket(host, port);
-		this.dataInput			= new DataInputStream(socket.getInputStream());
-		this.dataOutput			= new DataOutputStream(socket.getOutputStream());
+		this.dataInput			= new DataInputStream(new BufferedInputStream(socket.getInputStream(), DistServer.BUFFER_SIZE));
+		this.dataOutput			= new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), DistServer.BUFFER_SIZE));
+		dataOutput.writeByte(DistServer.Command.CONNECT.ordinal());
+		dataOutput.writeInt(nodeIndex);
+		dataOutput.flush();
 		this.memory				= new Memory();
 		this.progress 			= new Progress();
 		this.adjEnumModel		= modelPersister.readAdjEnumModel(columnHome, adjEnumPropsFile, this);
 		this.writeMarshaller	= columnHome.getEntityMarshaller(adjEnumModel.getNextState().getBooleanSize(), adjEnumModel.getNextState().getNumericSize());
 		this.readMarshaller		= columnHome.getEntityMarshaller(adjEnumModel.getCurrentState().getBooleanSize(), adjEnumModel.getCurrentState().getNumericSize());
+		Arrays.fill(lastBlocks, -2);
 		LogPkg.LOGGER.finest("CLIENT CONNECTED: " + socket);
 	}
 	
@@ -122,16 +240,20 @@ public class DistClient<Col extends Column> implements MemoryAccessor<Col>, Part
 	
 	private class Memory implements AppendableMemory<Col> { 
 
+		/**
+		 * Adds the column to the current batch. Full batches are sent to the
+		 * server asynchronously by the batch writer thread.
+		 */
 		public void appendColumn(Col column) throws IOException {
-			lock.lock();
-			try {
-				LogPkg.LOGGER.finest("CLIENT APPEND: " + column);
-				dataOutput.writeByte(DistServer.Command.APPEND.ordinal());
-				writeMarshaller.writeTo(column, dataOutput);
-			}
-			finally {
-				lock.unlock();
+			checkBatchException();
+			final List<Col> full;
+			synchronized (batchLock) {
+				batch.add(column);
+				if (batch.size() < BATCH_SIZE) return;
+				full	= batch;
+				batch	= new ArrayList<Col>(BATCH_SIZE);
 			}
+			submitBatch(currentPart, full);
 		}
 	
 		public void appendColumns(Iterable<? extends Col> columns) throws IOException {
@@ -142,15 +264,48 @@ public class DistClient<Col extends Column> implements MemoryAccessor<Col>, Part
 			appendColumns(memory);
 		}
 	
+		/**
+		 * Sends the current (partial) batch, waits until all batches have
+		 * been written and flushes the socket stream
+		 */
 		public void flush() throws IOException {
-			dataOutput.flush();
+			final List<Col> partial;
+			synchronized (batchLock) {
+				partial	= batch;
+				batch	= new ArrayList<Col>(BATCH_SIZE);
+			}
+			if (!partial.isEmpty()) {
+				submitBatch(currentPart, partial);
+			}
+			//all credits are available again if all batches are written
+			try {
+				batchCredits.acquire(BATCH_CREDITS);
+				batchCredits.release(BATCH_CREDITS);
+			}
+			catch (InterruptedException ex) {
+				throw new InterruptedIOException("interrupted while waiting for batch writer");
+			}
+			checkBatchException();
+			lock.lock();
+			try {
+				dataOutput.flush();
+			}
+			finally {
+				lock.unlock();
+			}
 		}
 
 		public void close(boolean erase) throws IOException {
 			if (erase) throw new IOException("erasing not supported");
+			if (!lock.isHeldByCurrentThread()) {
+				//the batch writer needs the lock, we cannot flush otherwise
+				flush();
+			}
 			lock.lock();
 			try {
 				LogPkg.LOGGER.finest("CLOSE CLIENT: " + socket);
+				prefetchExecutor.shutdown();
+				batchWriter.shutdown();
 				dataInput.close();
 				dataOutput.close();
 				socket.close();
@@ -178,6 +333,87 @@ public class DistClient<Col extends Column> implements MemoryAccessor<Col>, Part
 			throw new RuntimeException("not supported");
 		}
 	}
+	
+	/**
+	 * Hands the batch over to the batch writer thread. Blocks if all batch
+	 * credits are in use, that is, if the writer cannot keep up.
+	 */
+	private void submitBatch(final int part, final List<Col> cols) throws IOException {
+		try {
+			batchCredits.acquire();
+		}
+		catch (InterruptedException ex) {
+			throw new InterruptedIOException("interrupted while waiting for batch credit");
+		}
+		try {
+			batchWriter.execute(new Runnable() {
+				public void run() {
+					try {
+						writeBatch(part, cols);
+					}
+					catch (IOException ex) {
+						batchException.compareAndSet(null, ex);
+					}
+					catch (RuntimeException ex) {
+						batchException.compareAndSet(null, ExceptionUtil.toIOException(ex));
+					}
+					finally {
+						batchCredits.release();
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException ex) {
+			batchCredits.release();
+			throw new IOException("client already closed, cannot append columns");
+		}
+	}
+	/**
+	 * Encodes the columns and sends them as {@link Command#APPEND_BATCH 
+	 * APPEND_BATCH} frame to the server. Called by the batch writer thread.
+	 */
+	private void writeBatch(int part, List<Col> cols) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		for (final Col col : cols) {
+			writeMarshaller.writeTo(col, out);
+		}
+		out.flush();
+		final int rawLength = bytes.size();
+		final byte[] payload;
+		if (compressBatches) {
+			final ByteArrayOutputStream zbytes = new ByteArrayOutputStream(rawLength / 2 + 16);
+			final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			final DeflaterOutputStream zout = new DeflaterOutputStream(zbytes, deflater);
+			bytes.writeTo(zout);
+			zout.close();
+			deflater.end();
+			payload = zbytes.toByteArray();
+		}
+		else {
+			payload = bytes.toByteArray();
+		}
+		lock.lock();
+		try {
+			LogPkg.LOGGER.finest("CLIENT APPEND_BATCH: " + cols.size() + " columns, " + rawLength + "/" + payload.length + " bytes");
+			dataOutput.writeByte(DistServer.Command.APPEND_BATCH.ordinal());
+			dataOutput.writeInt(part);
+			dataOutput.writeInt(cols.size());
+			dataOutput.writeBoolean(compressBatches);
+			dataOutput.writeInt(rawLength);
+			dataOutput.writeInt(payload.length);
+			dataOutput.write(payload);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	private void checkBatchException() throws IOException {
+		final IOException ex = batchException.get();
+		if (ex != null) {
+			throw new IOException("sending columns to server failed, e=" + ex, ex);
+		}
+	}
 
 	private class Progress implements ProgressAggregator {
 		public void updateProgress(int e) throws IOException, IllegalArgumentException {
@@ -213,19 +449,126 @@ public class DistClient<Col extends Column> implements MemoryAccessor<Col>, Part
 	/**
 	 * Returns the column, specified by index, from the appropriate memory,
 	 * identified by the part identifier.
+	 * <p>
+	 * Columns are fetched in blocks of {@link #RANGE_SIZE} columns and kept in
+	 * a bounded block cache. If blocks of a part are accessed sequentially, 
+	 * the next block is fetched asynchronously.
 	 * 
 	 * @param	part	identifies the memory type
 	 * @param 	index	the index of the desired column
 	 */
 	public Col getColumn(PartId part, int index) throws IOException {
+		final int block = index / RANGE_SIZE;
+		final Long key = blockKey(part, block);
+		final FutureTask<Col[]> fetch;
+		final Future<Col[]> future;
+		synchronized (blockCache) {
+			final Col[] cols = blockCache.get(key);
+			if (cols != null) {
+				blockAccessed(part, block);
+				return getFromBlock(cols, part, index);
+			}
+			future = pendingBlocks.get(key);
+			if (future == null) {
+				fetch = createFetch(part, block, key);
+				pendingBlocks.put(key, fetch);
+			}
+			else {
+				fetch = null;
+			}
+			blockAccessed(part, block);
+		}
+		if (fetch != null) {
+			fetch.run();
+			return getFromBlock(waitFor(fetch), part, index);
+		}
+		return getFromBlock(waitFor(future), part, index);
+	}
+	private Col getFromBlock(Col[] cols, PartId part, int index) throws IOException {
+		final int offset = index % RANGE_SIZE;
+		if (offset >= cols.length) {
+			throw new IOException("no column with index " + index + " in memory " + part);
+		}
+		return cols[offset];
+	}
+	private static Long blockKey(PartId part, int block) {
+		return Long.valueOf((((long)part.ordinal()) << 32) | block);
+	}
+	/**
+	 * Tracks the last accessed block per part, and initiates the fetch of the
+	 * next block if the given block follows the last block. Called with the
+	 * block cache monitor held.
+	 */
+	private void blockAccessed(PartId part, int block) {
+		final int last = lastBlocks[part.ordinal()];
+		if (block != last) {
+			lastBlocks[part.ordinal()] = block;
+			if (block == last + 1) {
+				final int next = block + 1;
+				final Long key = blockKey(part, next);
+				if (!blockCache.containsKey(key) && !pendingBlocks.containsKey(key)) {
+					final FutureTask<Col[]> fetch = createFetch(part, next, key);
+					pendingBlocks.put(key, fetch);
+					try {
+						prefetchExecutor.execute(fetch);
+					}
+					catch (RejectedExecutionException ex) {
+						//client is closed, the fetch will never complete
+						pendingBlocks.remove(key);
+					}
+				}
+			}
+		}
+	}
+	private FutureTask<Col[]> createFetch(final PartId part, final int block, final Long key) {
+		return new FutureTask<Col[]>(new Callable<Col[]>() {
+			public Col[] call() throws IOException {
+				Col[] cols = null;
+				try {
+					cols = fetchRange(part, block * RANGE_SIZE, RANGE_SIZE);
+					return cols;
+				}
+				finally {
+					synchronized (blockCache) {
+						pendingBlocks.remove(key);
+						if (cols != null) blockCache.put(key, cols);
+					}
+				}
+			}
+		});
+	}
+	private Col[] waitFor(Future<Col[]> future) throws IOException {
+		try {
+			return future.get();
+		}
+		catch (ExecutionException ex) {
+			throw ExceptionUtil.toRuntimeExceptionOr(IOException.class, ex.getCause());
+		}
+		catch (InterruptedException ex) {
+			throw new IOException("interrupted while fetching columns", ex);
+		}
+	}
+	/**
+	 * Fetches a contiguous range of columns from the server using the
+	 * {@link Command#GET_RANGE GET_RANGE} command. The returned array is 
+	 * shorter than {@code count} at the end of the memory.
+	 */
+	private Col[] fetchRange(PartId part, int from, int count) throws IOException {
 		lock.lock();
 		try {
-			LogPkg.LOGGER.finest("CLIENT GET: " + socket);
-			dataOutput.writeByte(DistServer.Command.GET.ordinal());
+			LogPkg.LOGGER.finest("CLIENT GET_RANGE: " + socket);
+			dataOutput.writeByte(DistServer.Command.GET_RANGE.ordinal());
 			dataOutput.writeByte(part.ordinal());
-			dataOutput.writeInt(index);
+			dataOutput.writeInt(from);
+			dataOutput.writeInt(count);
 			dataOutput.flush();
-			return readMarshaller.readFrom(dataInput);
+			final int len = dataInput.readInt();
+			@SuppressWarnings("unchecked")
+			final Col[] cols = (Col[])new Column[len];
+			for (int i = 0; i < len; i++) {
+				cols[i] = readMarshaller.readFrom(dataInput);
+			}
+			return cols;
 		}
 		finally {
 			lock.unlock();
@@ -254,18 +597,44 @@ public class DistClient<Col extends Column> implements MemoryAccessor<Col>, Part
 	/**
 	 * Returns the next part index, or -1 if there is no next part. The client
 	 * resources are closed if no next part exists.
+	 * <p>
+	 * The server is notified that the current part is completed, and new 
+	 * parts are requested if all parts granted by the server have been 
+	 * processed.
 	 */
 	public int getNextPart() throws IOException {
+		//all new columns must be sent before the part is completed
+		memory.flush();
 		lock.lock();
 		try {
-			LogPkg.LOGGER.finest("CLIENT NEXTJOB: " + socket);
-			dataOutput.writeByte(DistServer.Command.NEXTJOB.ordinal());
-			dataOutput.flush();
-			final int next = dataInput.readInt();
-			if (next < 0) {
+			if (currentPart >= 0) {
+				LogPkg.LOGGER.finest("CLIENT PART_DONE: " + socket);
+				dataOutput.writeByte(DistServer.Command.PART_DONE.ordinal());
+				dataOutput.writeInt(currentPart);
+			}
+			if (grantedParts.isEmpty()) {
+				LogPkg.LOGGER.finest("CLIENT NEXTJOB: " + socket);
+				dataOutput.writeByte(DistServer.Command.NEXTJOB.ordinal());
+				dataOutput.flush();
+				final int cnt = dataInput.readInt();
+				for (int i = 0; i < cnt; i++) {
+					grantedParts.addLast(Integer.valueOf(dataInput.readInt()));
+				}
+			}
+			else {
+				dataOutput.flush();
+			}
+			synchronized (blockCache) {
+				//new part, no sequential block access so far
+				Arrays.fill(lastBlocks, -2);
+			}
+			if (grantedParts.isEmpty()) {
+				currentPart = -1;
 				close();
+				return -1;
 			}
-			return next;
+			currentPart = grantedParts.removeFirst().intValue();
+			return currentPart;
 		}
 		finally {
 			lock.unlock();
@@ -276,6 +645,8 @@ public class DistClient<Col extends Column> implements MemoryAccessor<Col>, Part
 	 * Closes the socket
 	 */
 	private void close() throws IOException {
+		prefetchExecutor.shutdown();
+		batchWriter.shutdown();
 		memory.close(false /*erase*/);
 		progress.close();
 		adjEnumModel.closeForThread();
@@ -61,11 +61,24 @@ public interface DistJobController {
 	 */
 	Executable<Void> createExecutable(int nodeIndex);
 	
+	/**
+	 * Notifies the controller that the job for the given node has failed. 
+	 * The work of the failed job is reassigned to other jobs. If the job is
+	 * restarted, the restarted job only processes work which is not yet 
+	 * completed.
+	 * 
+	 * @param nodeIndex		the node or thread index of the failed job
+	 * @param restart		true if a new job is started for the node
+	 */
+	void nodeFailed(int nodeIndex, boolean restart);
+	
 	/**
 	 * Blocks the current thread until all jobs are completed. Before returning,
 	 * all underlying resources should be released (closed). 
 	 * 
 	 * @throws InterruptedException	if waiting is interrupted
+	 * @throws RuntimeException		if the computation is incomplete, for 
+	 * 								instance because all jobs have failed
 	 */
 	void awaitCompletion() throws InterruptedException;
 	
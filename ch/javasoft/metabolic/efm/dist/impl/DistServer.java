@@ -33,18 +33,35 @@
  */
 package ch.javasoft.metabolic.efm.dist.impl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import ch.javasoft.jbase.EntityMarshaller;
 import ch.javasoft.metabolic.efm.column.Column;
@@ -53,30 +70,54 @@ import ch.javasoft.metabolic.efm.config.Config;
 import ch.javasoft.metabolic.efm.memory.AppendableMemory;
 import ch.javasoft.metabolic.efm.memory.IndexableMemory;
 import ch.javasoft.metabolic.efm.memory.PartId;
+import ch.javasoft.metabolic.efm.memory.outcore.IterationCheckpoint;
 import ch.javasoft.metabolic.efm.model.AdjEnumModel;
 import ch.javasoft.metabolic.efm.progress.FileProgressWriter;
 import ch.javasoft.metabolic.efm.progress.IntProgressAggregator;
 import ch.javasoft.metabolic.efm.progress.ProgressAggregator;
+import ch.javasoft.metabolic.efm.progress.ProgressNotifiable;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 import ch.javasoft.metabolic.efm.progress.AbstractStringProgressWriter.Mode;
+import ch.javasoft.util.ints.OpenIntIntMap;
 import ch.javasoft.util.logging.LogPrintWriter;
 
 /**
  * The <code>DistServer</code> is the server side of the distributed 
  * computation. The server handles the following tasks:
  * <ul>
- * <li>{@link Command#NEXTJOB NEXTJOB}: management of the tree traversing jobs,
- *  	the next available job is returned on client request</li>
- * <li>{@link Command#APPEND APPEND}: collecting of new-born modes from clients
- * 		and storage on disk</li>
+ * <li>{@link Command#NEXTJOB NEXTJOB}, {@link Command#PART_DONE PART_DONE}: 
+ * 		management of the tree traversing jobs, the next available jobs are 
+ * 		returned on client request, see {@link PartScheduler}</li>
+ * <li>{@link Command#GET GET}, {@link Command#GET_RANGE GET_RANGE}: serving
+ * 		single columns or contiguous ranges of columns to the clients</li>
+ * <li>{@link Command#APPEND APPEND}, {@link Command#APPEND_BATCH APPEND_BATCH}: 
+ * 		collecting of new-born modes from clients and storage on disk</li>
  * <li>{@link Command#PROGRESS PROGRESS}: gathering progress notifications from 
  * 		clients and writing aggregated progress information to progress file</li>
  * </ul>
+ * The server tracks the state of every node. If a node fails, the parts 
+ * which are not completed are handed out to the other nodes, and the node
+ * can be {@link #nodeFailed(int, boolean) restarted}. The new modes of a 
+ * part are only appended when the part is completed, thus, modes of failed
+ * nodes are discarded.
+ * <p>
+ * If the adjacency enumeration model has a {@link IterationCheckpoint 
+ * checkpoint}, the server periodically flushes the new modes and records the
+ * completed parts. Parts which were completed before resuming from a 
+ * checkpoint are not handed out again. A checkpoint is only written when no
+ * part has been appended partially, that is, when the new modes exactly 
+ * correspond to the completed parts.
  * 
  * @see DistClient
  */
 public class DistServer<Col extends Column> {
 	
 	public static enum Command {
+		/**
+		 * Command sent to the server process after connecting, followed by 
+		 * the node index, or <tt>-1</tt> if the node index is unknown.
+		 */
+		CONNECT,
 		/**
 		 * Command sent to the server process to request the number of columns, 
 		 * followed by the ordinal of the {@link PartId} of the desired memory.
@@ -88,22 +129,47 @@ public class DistServer<Col extends Column> {
 		 * index of the desired mode in the memory.
 		 */
 		GET,
+		/**
+		 * Command sent to the server process to request a contiguous range of
+		 * columns, followed by the ordinal of the {@link PartId} of the 
+		 * desired memory, the index of the first column and the number of 
+		 * columns. The server responds with the number of returned columns,
+		 * which is smaller than requested at the end of the memory, followed
+		 * by the columns.
+		 */
+		GET_RANGE,
 		/**
 		 * Command sent to the server process before a new mode, born from two
 		 * adjacent modes, is submitted to the server process
 		 */
 		APPEND, 
 		/**
-		 * Command sent to the server process if the current subtree has been
-		 * traversed, and a new subtree index is requested. The server returns
-		 * just the index, or <tt>-1</tt> if no subtrees, that is, no tasks, are 
-		 * left.
+		 * Command sent to the server process with a batch of new modes, 
+		 * followed by the index of the part which produced the modes, the 
+		 * number of modes, a boolean flag indicating whether the modes are 
+		 * compressed, the uncompressed and the transmitted byte length, and 
+		 * the (compressed) modes. The server appends the modes in a separate 
+		 * thread, after the part has been {@link #PART_DONE completed}, or 
+		 * earlier if many modes are produced for a single part.
+		 */
+		APPEND_BATCH, 
+		/**
+		 * Command sent to the server process if all granted subtrees have 
+		 * been traversed, and new subtree indices are requested. The server 
+		 * returns the number of indices, followed by the indices, or 
+		 * <tt>0</tt> if no subtrees, that is, no tasks, are left.
 		 * <p>
-		 * If <tt>-1</tt> is returned, the server also decrements the counter 
+		 * If <tt>0</tt> is returned, the server also decrements the counter 
 		 * for active cluster processes since the cluster process is expected to
-		 * terminate after receiving <tt>-1</tt>.
+		 * terminate after receiving <tt>0</tt>.
 		 */
 		NEXTJOB, 
+		/**
+		 * Command sent to the server process if a subtree has been traversed,
+		 * followed by the subtree index. All modes of the subtree must have
+		 * been sent before.
+		 */
+		PART_DONE, 
 		/**
 		 * Command sent to the server process notifying a progress increment.
 		 * The server collects all increments and updates and outputs the 
@@ -112,9 +178,39 @@ public class DistServer<Col extends Column> {
 		PROGRESS
 	}
 	
-	private final CountDownLatch activeNodeLatch;
+	/**
+	 * Size of the socket stream buffers, used by server and client
+	 */
+	static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * Maximum number of received but not yet appended column batches per 
+	 * client. If the queue is full, the socket thread waits, and the client 
+	 * is slowed down since no data is read from the socket in the meantime
+	 */
+	static final int BATCH_QUEUE_SIZE = 4;
+	/**
+	 * Maximum number of bytes of new modes which are held back per part until
+	 * the part is completed. If more bytes are received, the part is claimed
+	 * by the sending client, the modes are appended and copies of the part
+	 * from other clients are discarded
+	 */
+	static final int STAGE_LIMIT = 1 << 24;
+	
+	private static enum NodeState {
+		Pending, Connected, Lost, Done, Failed;
+		boolean isActive() {
+			return this == Pending || this == Connected || this == Lost;
+		}
+	}
+	
+	private final NodeState[] nodeStates;//guarded by nodeStates
+	private final Socket[] nodeSockets;
+	private final boolean[] restartOnDisconnect;
+	private final boolean[] failOnDisconnect;
+	private volatile boolean closed;
 	private final int partCount;
-	private final AtomicInteger partIndex = new AtomicInteger();
+	private final PartScheduler scheduler;
+	private final AtomicReference<Throwable> nodeException = new AtomicReference<Throwable>();
 	private final AtomicReference<IOException> exception = new AtomicReference<IOException>();
 	private final ServerSocket socket;
 	private final EntityMarshaller<Col> writeMarshaller;
@@ -123,21 +219,48 @@ public class DistServer<Col extends Column> {
 	
 	private final ProgressAggregator progress;
 	
+	private final IterationCheckpoint checkpoint;//null if no checkpoints are written
+	private final BitSet appendedParts;//guarded by checkpointLock
+	private int appendingParts;//guarded by checkpointLock
+	private boolean untrackedAppends;//guarded by checkpointLock
+	private final Object checkpointLock = new Object();
+	
 	public DistServer(ColumnHome<?, Col> columnHome, Config config, AdjEnumModel<Col> adjModel, int nodeCount) throws UnknownHostException, IOException {
 		this(columnHome, config, adjModel, nodeCount, 0);
 	}
 	public DistServer(ColumnHome<?, Col> columnHome, Config config, AdjEnumModel<Col> adjModel, final int nodeCount, int port) throws UnknownHostException, IOException {
-		this.activeNodeLatch	= new CountDownLatch(nodeCount);
+		this(columnHome, config, adjModel, nodeCount, port, null);
+	}
+	/**
+	 * Constructor for <code>DistServer</code>
+	 * 
+	 * @param columnHome	the column home
+	 * @param config		the configuration
+	 * @param adjModel		the adjacency enumeration model
+	 * @param nodeCount		the number of client nodes
+	 * @param port			the server port, 0 for any free port
+	 * @param partCosts		the estimated cost of every part, or null if 
+	 * 						unknown, see {@link PartScheduler}
+	 */
+	public DistServer(ColumnHome<?, Col> columnHome, Config config, AdjEnumModel<Col> adjModel, final int nodeCount, int port, double[] partCosts) throws UnknownHostException, IOException {
+		this.nodeStates				= new NodeState[nodeCount];
+		this.nodeSockets			= new Socket[nodeCount];
+		this.restartOnDisconnect	= new boolean[nodeCount];
+		this.failOnDisconnect		= new boolean[nodeCount];
+		Arrays.fill(nodeStates, NodeState.Pending);
 		this.partCount			= config.getDistributedConfig().getPartition();
+		this.checkpoint			= adjModel.getCheckpoint();
+		this.appendedParts		= checkpoint == null ? new BitSet() : checkpoint.start(partCount, 
+			IterationCheckpoint.digest(adjModel.getMemoryPos(), adjModel.getMemoryZero(), adjModel.getMemoryNeg()), 
+			adjModel.getMemoryForNewFromAdj()
+		);
+		this.scheduler			= new PartScheduler(partCount, partCosts, nodeCount, appendedParts);
 		this.socket 			= new ServerSocket(port);
 		this.writeMarshaller	= columnHome.getEntityMarshaller(adjModel.getNextState().getBooleanSize(), adjModel.getNextState().getNumericSize());
 		this.readMarshaller		= columnHome.getEntityMarshaller(adjModel.getCurrentState().getBooleanSize(), adjModel.getCurrentState().getNumericSize());
 		this.adjModel			= adjModel;
-		if (config.getProgressPartition() <= 0) {
-			progress = null;
-		}
-		else {			
-			progress = new IntProgressAggregator(
+		final ProgressNotifiable prog = Telemetry.monitorProgress(
+			config.getProgressPartition() <= 0 ? null : 
 				new FileProgressWriter(
 					new File(
 						config.getTempDir().getPersonalizedDir(), 
@@ -145,8 +268,8 @@ public class DistServer<Col extends Column> {
 					),
 					Mode.Partition, config.getProgressPartition()
 				)
-			);
-		}		
+		);
+		progress = prog == null ? null : new IntProgressAggregator(prog);
 	}
 	
 	public int getPartCount() {
@@ -154,23 +277,18 @@ public class DistServer<Col extends Column> {
 	}
 	
 	/**
-	 * Returns the index of the next part, or -1 if no part is left
+	 * Returns the number of parts completed so far
 	 */
-	public int getNextPart() {
-		final int ix = partIndex.getAndIncrement();
-		if (ix >= partCount) {
-			partIndex.set(partCount);
-			return -1;
-		}
-		return ix;
+	public int getCompletedPartCount() {
+		return scheduler.getCompletedCount();
 	}
 
 	public void start() {
-		final int nodeCount = (int)activeNodeLatch.getCount();
 		new Thread() {
 			@Override
 			public void run() {
-				for (int i = 0; i < nodeCount; i++) {
+				//nodes might reconnect after a restart
+				while (!closed) {
 					try {
 						final Socket client = socket.accept();
 						handleRequest(client);
@@ -191,20 +309,55 @@ public class DistServer<Col extends Column> {
 	
 	private void handleRequest(final Socket client) {
 		final Thread thread = new Thread() {
+			private ThreadPoolExecutor batchAppender;
+			private int node = -1;
+			private boolean done = false;
+			//batches held back until the part is completed
+			private final Map<Integer, List<Batch>> staged = new HashMap<Integer, List<Batch>>();
+			private final OpenIntIntMap stagedBytes = new OpenIntIntMap();
+			//claimed parts with modes being appended, not yet completed
+			private final Set<Integer> appending = new HashSet<Integer>();
 			@Override
 			public void run() {
 				try {
 //					LogPkg.LOGGER.finest("SERVER OPEN: " + client);
-					final DataInputStream  dataIn 	= new DataInputStream(client.getInputStream());
-					final DataOutputStream dataOut 	= new DataOutputStream(client.getOutputStream());
-					boolean stop = false;
-					while (!stop && activeNodeLatch.getCount() > 0) {
+					batchAppender = new ThreadPoolExecutor(
+						1, 1, 0L, TimeUnit.MILLISECONDS, 
+						new ArrayBlockingQueue<Runnable>(BATCH_QUEUE_SIZE), 
+						new RejectedExecutionHandler() {
+							//wait for the queue, batches and completion 
+							//notifications must be processed in order
+							public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+								try {
+									executor.getQueue().put(r);
+								}
+								catch (InterruptedException e) {
+									throw new RejectedExecutionException(e);
+								}
+							}
+						}
+					);
+					final DataInputStream  dataIn 	= new DataInputStream(new BufferedInputStream(client.getInputStream(), BUFFER_SIZE));
+					final DataOutputStream dataOut 	= new DataOutputStream(new BufferedOutputStream(client.getOutputStream(), BUFFER_SIZE));
+					while (!done && !closed) {
 						final int icommand = dataIn.readByte();
 						if (icommand < 0 || icommand >= Command.values().length) {
 							throw new IOException("invalid command: " + icommand);
 						}
 						final Command command = Command.values()[icommand];
+						if (node < 0 && command != Command.CONNECT) {
+							node = connect(-1, client);
+						}
 						switch (command) {
+							case CONNECT:
+								{
+									final int index = dataIn.readInt();
+									if (node >= 0) {
+										throw new IOException("node already connected: " + node);
+									}
+									node = connect(index, client);
+								}
+								break;
 							case COUNT: 
 								{
 									final PartId part	= PartId.values()[dataIn.readByte()];
@@ -231,28 +384,108 @@ public class DistServer<Col extends Column> {
 //								LogPkg.LOGGER.finest("SERVER GET: " + client);
 								}
 								break;
+							case GET_RANGE: 
+								{
+									final PartId part	= PartId.values()[dataIn.readByte()];
+									final int from	 	= dataIn.readInt();
+									final int count 	= dataIn.readInt();
+									final IndexableMemory<Col> memory = adjModel.getMemory(part);
+									final Object[] cols;
+									synchronized (memory) {
+										final int end = Math.min(memory.getColumnCount(), from + count);
+										cols = new Object[Math.max(0, end - from)];
+										for (int i = 0; i < cols.length; i++) {
+											cols[i] = memory.getColumn(from + i);
+										}
+									}
+									//stream the columns without holding the memory lock
+									dataOut.writeInt(cols.length);
+									for (int i = 0; i < cols.length; i++) {
+										@SuppressWarnings("unchecked")
+										final Col col = (Col)cols[i];
+										readMarshaller.writeTo(col, dataOut);
+									}
+									dataOut.flush();
+								}
+								break;
 							case APPEND:
 								{
 									final Col col = writeMarshaller.readFrom(dataIn);
+									untrackedAppend();
 									adjModel.getMemoryForNewFromAdj().appendColumn(col);
 //									LogPkg.LOGGER.finest("SERVER APPEND: " + client);
 								}
 								break;
+							case APPEND_BATCH:
+								{
+									final Integer part			= Integer.valueOf(dataIn.readInt());
+									final Batch batch			= new Batch(dataIn);
+									if (part.intValue() < 0) {
+										//not produced by a part
+										untrackedAppend();
+										append(batch);
+									}
+									else if (scheduler.isDiscarded(part.intValue(), node)) {
+										//another client delivered this part
+									}
+									else if (!staged.containsKey(part) && stagedBytes.containsKey(part.intValue())) {
+										//part claimed due to stage limit
+										append(batch);
+									}
+									else {
+										List<Batch> batches = staged.get(part);
+										if (batches == null) {
+											batches = new ArrayList<Batch>();
+											staged.put(part, batches);
+										}
+										batches.add(batch);
+										final int total = stagedBytes.getInt(part.intValue(), 0) + batch.payload.length;
+										stagedBytes.putInt(part.intValue(), total);
+										if (total > STAGE_LIMIT) {
+											commit(part, scheduler.claim(part.intValue(), node));
+										}
+									}
+								}
+								break;
 							case NEXTJOB:
 								{
 	//								LogPkg.LOGGER.finest("SERVER NEXTJOB: " + client);
-									final int nextPart = getNextPart();
-									dataOut.writeInt(nextPart);
+									final int[] parts;
+									try {
+										parts = scheduler.nextParts(node);
+									}
+									catch (InterruptedException e) {
+										throw new InterruptedIOException("interrupted while waiting for parts");
+									}
+									dataOut.writeInt(parts.length);
+									for (int i = 0; i < parts.length; i++) {
+										dataOut.writeInt(parts[i]);
+									}
 									dataOut.flush();
-									if (nextPart < 0) {
-										stop = true;
+									if (parts.length == 0) {
+										done = true;
+									}
+								}
+								break;
+							case PART_DONE:
+								{
+									final Integer part = Integer.valueOf(dataIn.readInt());
+									final boolean claimed = scheduler.complete(part.intValue(), node);
+									commit(part, claimed);
+									stagedBytes.removeInt(part.intValue());
+									if (claimed) {
+										appending.remove(part);
+										appended(part.intValue());
 									}
 								}
 								break;
 							case PROGRESS: 
 								{
 									final int inc = dataIn.readInt();
-									progress.updateProgress(inc);
+									//progress of part copies is counted twice otherwise
+									if (progress != null && !scheduler.isProcessingCopy(node)) {
+										progress.updateProgress(inc);
+									}
 								}
 								break;
 							default:
@@ -261,10 +494,27 @@ public class DistServer<Col extends Column> {
 					}
 				}
 				catch (IOException e) {
-					handleException(e);
+					//node failed, or server closed
+					if (!closed) {
+						LogPkg.LOGGER.warning("lost connection to node " + node + ", e=" + e);
+						nodeException.set(e);
+					}
 				}
 				finally {
-					activeNodeLatch.countDown();
+					//all batches of this client must be appended before we 
+					//signal completion
+					if (batchAppender != null) {
+						batchAppender.shutdown();
+						try {
+							batchAppender.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+						}
+						catch (InterruptedException e) {
+							handleException(new InterruptedIOException("interrupted while appending batches"));
+						}
+					}
+					if (node >= 0) {
+						disconnect(node, done);
+					}
 	                try {
 						client.close();
 					} 
@@ -274,43 +524,329 @@ public class DistServer<Col extends Column> {
 					}
 				}
 			}
+			/**
+			 * Appends or discards the batches held back for the given part
+			 */
+			private void commit(Integer part, boolean claimed) {
+				final List<Batch> batches = staged.remove(part);
+				if (claimed && appending.add(part)) {
+					partAppending();
+				}
+				if (claimed && batches != null) {
+					for (final Batch batch : batches) {
+						append(batch);
+					}
+				}
+			}
+			/**
+			 * Notifies completion of the part after its batches have been 
+			 * appended in the batch thread
+			 */
+			private void appended(final int part) {
+				batchAppender.execute(new Runnable() {
+					public void run() {
+						try {
+							partAppended(part);
+						}
+						catch (IOException e) {
+							handleException(e);
+						}
+					}
+				});
+			}
+			/**
+			 * Decodes and appends the batch in the batch thread, waits if the
+			 * queue is full
+			 */
+			private void append(final Batch batch) {
+				batchAppender.execute(new Runnable() {
+					public void run() {
+						try {
+							appendBatch(batch.count, batch.compressed, batch.rawLength, batch.payload);
+						}
+						catch (IOException e) {
+							handleException(e);
+						}
+					}
+				});
+			}
 		};
 		thread.start();
 	}
+	/**
+	 * A batch of new columns received with the 
+	 * {@link Command#APPEND_BATCH APPEND_BATCH} command, not yet decoded
+	 */
+	private static class Batch {
+		final int count;
+		final boolean compressed;
+		final int rawLength;
+		final byte[] payload;
+		Batch(DataInputStream dataIn) throws IOException {
+			count		= dataIn.readInt();
+			compressed	= dataIn.readBoolean();
+			rawLength	= dataIn.readInt();
+			payload		= new byte[dataIn.readInt()];
+			dataIn.readFully(payload);
+		}
+	}
+	/**
+	 * Decodes a batch of new columns sent with the 
+	 * {@link Command#APPEND_BATCH APPEND_BATCH} command, and appends them to
+	 * the memory for new columns
+	 */
+	private void appendBatch(int count, boolean compressed, int rawLength, byte[] payload) throws IOException {
+		final byte[] raw;
+		if (compressed) {
+			raw = new byte[rawLength];
+			final Inflater inflater = new Inflater();
+			try {
+				inflater.setInput(payload);
+				int len = 0;
+				while (len < rawLength && !inflater.finished()) {
+					final int cnt = inflater.inflate(raw, len, rawLength - len);
+					if (cnt == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+					len += cnt;
+				}
+				if (len != rawLength) {
+					throw new IOException("corrupt column batch, expected " + rawLength + " bytes but inflated " + len);
+				}
+			}
+			catch (DataFormatException e) {
+				throw new IOException("corrupt column batch, e=" + e, e);
+			}
+			finally {
+				inflater.end();
+			}
+		}
+		else {
+			raw = payload;
+		}
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+		final List<Col> cols = new ArrayList<Col>(count);
+		for (int i = 0; i < count; i++) {
+			cols.add(writeMarshaller.readFrom(in));
+		}
+		adjModel.getMemoryForNewFromAdj().appendColumns(cols);
+	}
+	/**
+	 * Called before the first modes of a part are appended
+	 */
+	private void partAppending() {
+		synchronized (checkpointLock) {
+			appendingParts++;
+		}
+	}
+	/**
+	 * Called after all modes of a completed part have been appended. Writes a 
+	 * checkpoint if it is due and no other part is being appended.
+	 */
+	private void partAppended(int part) throws IOException {
+		synchronized (checkpointLock) {
+			appendingParts--;
+			appendedParts.set(part);
+			if (checkpoint != null && !untrackedAppends && appendingParts == 0 && checkpoint.isDue()) {
+				final AppendableMemory<Col> memory = adjModel.getMemoryForNewFromAdj();
+				memory.flush();
+				checkpoint.write(appendedParts, memory.getColumnCount());
+				LogPkg.LOGGER.fine(
+					"checkpoint written for iteration " + checkpoint.getIteration() + ", " + 
+					appendedParts.cardinality() + " of " + partCount + " parts completed"
+				);
+			}
+		}
+	}
+	/**
+	 * Called if modes are appended which do not belong to a part, no more 
+	 * checkpoints are written since they would be inconsistent
+	 */
+	private void untrackedAppend() {
+		synchronized (checkpointLock) {
+			if (checkpoint != null && !untrackedAppends) {
+				LogPkg.LOGGER.warning("modes appended without part, no more checkpoints are written");
+			}
+			untrackedAppends = true;
+		}
+	}
+	
 	private void handleException(IOException e) {
 		exception.compareAndSet(null, e);
 	}
 
 	/**
-	 * Waits until all jobs are completed, that is, until a <i>no job</i> 
-	 * response has been sent to every client. Does not close the server.
+	 * Registers the connection of a node and returns the node index. If the
+	 * node index is unknown, the first pending node is used. If the previous
+	 * connection of a restarted node is still open, the method waits until
+	 * it is closed.
+	 */
+	private int connect(int index, Socket client) throws IOException {
+		synchronized (nodeStates) {
+			if (index < 0) {
+				for (int i = 0; i < nodeStates.length && index < 0; i++) {
+					if (nodeStates[i] == NodeState.Pending) index = i;
+				}
+				if (index < 0) {
+					throw new IOException("unexpected connection, no pending node");
+				}
+			}
+			if (index >= nodeStates.length) {
+				throw new IOException("invalid node index: " + index);
+			}
+			while (nodeStates[index] == NodeState.Connected && !closed) {
+				try {
+					nodeStates.wait();
+				}
+				catch (InterruptedException e) {
+					throw new InterruptedIOException("interrupted while waiting for node " + index + " to disconnect");
+				}
+			}
+			if (nodeStates[index] != NodeState.Pending) {
+				throw new IOException("unexpected connection for node " + index + ", node is " + nodeStates[index]);
+			}
+			nodeStates[index]	= NodeState.Connected;
+			nodeSockets[index]	= client;
+			return index;
+		}
+	}
+	/**
+	 * Registers the disconnection of a node. If the node has not terminated
+	 * regularly, its parts are released. The node is lost until the job 
+	 * failure is {@link #nodeFailed(int, boolean) notified}, or failed or
+	 * pending if the failure has been notified before.
+	 */
+	private void disconnect(int node, boolean regular) {
+		if (!regular) {
+			final int[] lost = scheduler.release(node);
+			if (lost.length > 0) {
+				handleException(new IOException(
+					"node " + node + " failed after appending modes of uncompleted parts " + Arrays.toString(lost)
+				));
+			}
+		}
+		synchronized (nodeStates) {
+			nodeSockets[node] = null;
+			if (regular) {
+				nodeStates[node] = NodeState.Done;
+			}
+			else if (restartOnDisconnect[node]) {
+				nodeStates[node] = NodeState.Pending;
+			}
+			else if (failOnDisconnect[node]) {
+				nodeStates[node] = NodeState.Failed;
+			}
+			else {
+				nodeStates[node] = NodeState.Lost;
+			}
+			restartOnDisconnect[node]	= false;
+			failOnDisconnect[node]		= false;
+			nodeStates.notifyAll();
+		}
+	}
+	/**
+	 * Notifies the server that the job of the given node has failed. The 
+	 * parts of the node which are not yet completed are handed out to other
+	 * nodes. If the node is restarted, the server accepts a new connection 
+	 * for the node, and the new job processes only parts which are not 
+	 * completed. Otherwise, the remaining nodes complete the computation.
+	 * 
+	 * @param nodeIndex	the index of the failed node
+	 * @param restart	true if the job for the node is restarted
+	 */
+	public void nodeFailed(int nodeIndex, boolean restart) {
+		Socket client = null;
+		synchronized (nodeStates) {
+			switch (nodeStates[nodeIndex]) {
+				case Connected:
+					//close the connection, the node is released on disconnect
+					restartOnDisconnect[nodeIndex]	= restart;
+					failOnDisconnect[nodeIndex]		= !restart;
+					client = nodeSockets[nodeIndex];
+					break;
+				case Done:
+					//all parts were completed
+					break;
+				default:
+					nodeStates[nodeIndex] = restart ? NodeState.Pending : NodeState.Failed;
+					break;
+			}
+			nodeStates.notifyAll();
+		}
+		if (client != null) {
+			try {
+				client.close();
+			}
+			catch (IOException e) {
+				LogPkg.LOGGER.warning("could not close client socket of node " + nodeIndex + ", e=" + e);
+			}
+		}
+	}
+	
+	/**
+	 * Waits until all nodes have terminated, that is, until a <i>no job</i> 
+	 * response has been sent to every client or the node has failed. Does 
+	 * not close the server.
 	 * 
 	 * @throws InterruptedException	if waiting is interrupted
 	 */
 	public void awaitCompletion() throws InterruptedException {
-		activeNodeLatch.await();
+		synchronized (nodeStates) {
+			while (!closed && hasActiveNode()) {
+				nodeStates.wait();
+			}
+		}
+	}
+	private boolean hasActiveNode() {
+		for (final NodeState state : nodeStates) {
+			if (state.isActive()) return true;
+		}
+		return false;
 	}
 	/**
 	 * Closes the server, and forces abortion if the clients did not complete
-	 * yet
+	 * yet. An exception is thrown if not all parts have been completed.
 	 */
 	public AppendableMemory<Col> close() throws IOException {
-		while (activeNodeLatch.getCount() > 0) {
-			activeNodeLatch.countDown();
+		final boolean wasClosed = closed;
+		closed = true;
+		scheduler.cancel();
+		final List<Socket> clients = new ArrayList<Socket>();
+		synchronized (nodeStates) {
+			for (final Socket client : nodeSockets) {
+				if (client != null) clients.add(client);
+			}
+			nodeStates.notifyAll();
 		}
-        try {
-    		socket.close();
-		} 
-        catch (IOException e) {
-			LogPkg.LOGGER.warning("could not close server sochet, e=" + e);
-			e.printStackTrace(new LogPrintWriter(LogPkg.LOGGER, Level.WARNING));
+		//abort clients which did not complete yet
+		for (final Socket client : clients) {
+			try {
+				client.close();
+			}
+			catch (IOException e) {
+				LogPkg.LOGGER.warning("could not close client socket, e=" + e);
+			}
 		}
-		if (progress != null) {
-			progress.close();
+		if (!wasClosed) {
+	        try {
+	    		socket.close();
+			} 
+	        catch (IOException e) {
+				LogPkg.LOGGER.warning("could not close server sochet, e=" + e);
+				e.printStackTrace(new LogPrintWriter(LogPkg.LOGGER, Level.WARNING));
+			}
+			if (progress != null) {
+				progress.close();
+			}
 		}
 		if (exception.get() != null) {
 			throw exception.get();
 		}
+		if (!scheduler.isCompleted()) {
+			final Throwable cause = nodeException.get();
+			throw new IOException(
+				"distributed computation incomplete, only " + scheduler.getCompletedCount() + 
+				" of " + partCount + " parts completed" + (cause == null ? "" : ", last node failure: " + cause), cause
+			);
+		}
 		final AppendableMemory<Col> memory = adjModel.getMemoryForNewFromAdj();
 		memory.flush();
 		return memory;
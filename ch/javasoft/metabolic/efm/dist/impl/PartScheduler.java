@@ -0,0 +1,372 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.dist.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>PartScheduler</code> hands out the parts of a distributed 
+ * computation to the nodes. It is used by the {@link DistServer}.
+ * <p>
+ * If part costs are known, the parts are handed out in order of decreasing
+ * cost, that is, expensive parts first. Parts are granted in chunks, the 
+ * chunk size depends on the remaining work (guided self-scheduling): at the 
+ * beginning, a node receives a single expensive part or a larger number of 
+ * cheap parts, towards the end, chunks get smaller. 
+ * <p>
+ * When all parts are handed out, idle nodes get speculative copies of parts 
+ * which are currently in progress on other nodes (stragglers). The results 
+ * for a part are only accepted from one node, the first node which 
+ * {@link #claim(int, int) claims} the part, results from other nodes for
+ * that part must be discarded.
+ * <p>
+ * If a node fails, its parts are {@link #release(int) released} and handed
+ * out again. Nodes without work wait for released parts until all parts are
+ * completed.
+ * <p>
+ * The class is thread safe.
+ */
+class PartScheduler {
+	
+	/**
+	 * The remaining work is divided by the number of nodes and by this
+	 * factor to get the chunk size
+	 */
+	private static final int GUIDED_FACTOR = 2;
+	
+	private final int nodeCount;
+	private final double[] costs;//null if unknown
+	private final int[] order;//parts in dispatch order
+	private int next;//next position in order
+	private final Deque<Integer> released = new ArrayDeque<Integer>();//parts of failed nodes
+	private boolean cancelled;
+	private double remainingCost;
+	
+	private final int[] owner;//node which got the part first, -1 if not yet handed out
+	private final int[] winner;//node whose results are used, -1 if not yet decided
+	private final boolean[] speculated;
+	private final boolean[] completed;
+	private int completedCount;
+	private final Map<Integer, Deque<Integer>> granted = new HashMap<Integer, Deque<Integer>>();
+	private final long[] started;//time when a part became the current part of a node
+	
+	/**
+	 * Constructor for <code>PartScheduler</code>
+	 * 
+	 * @param partCount	the number of parts
+	 * @param costs		the estimated relative costs of every part, or null
+	 * 					if unknown
+	 * @param nodeCount	the number of nodes
+	 */
+	public PartScheduler(int partCount, final double[] costs, int nodeCount) {
+		this(partCount, costs, nodeCount, null);
+	}
+	/**
+	 * Constructor for <code>PartScheduler</code> resuming a computation, the
+	 * given parts are already completed and never handed out
+	 * 
+	 * @param partCount	the number of parts
+	 * @param costs		the estimated relative costs of every part, or null
+	 * 					if unknown
+	 * @param nodeCount	the number of nodes
+	 * @param done		the parts which are already completed, or null if none
+	 */
+	public PartScheduler(int partCount, final double[] costs, int nodeCount, BitSet done) {
+		if (costs != null && costs.length != partCount) {
+			throw new IllegalArgumentException("expected " + partCount + " part costs, but found " + costs.length);
+		}
+		this.nodeCount	= Math.max(1, nodeCount);
+		this.costs		= costs;
+		this.owner		= new int[partCount];
+		this.winner		= new int[partCount];
+		this.speculated	= new boolean[partCount];
+		this.completed	= new boolean[partCount];
+		this.started	= new long[partCount];
+		Arrays.fill(owner, -1);
+		Arrays.fill(winner, -1);
+		final BitSet skip = done == null ? new BitSet() : done.get(0, partCount);
+		final Integer[] parts = new Integer[partCount - skip.cardinality()];
+		for (int i = 0, p = 0; i < partCount; i++) {
+			if (skip.get(i)) {
+				completed[i] = true;
+				completedCount++;
+				continue;
+			}
+			parts[p++] = Integer.valueOf(i);
+			if (costs != null) remainingCost += costs[i];
+		}
+		if (costs != null) {
+			//stable sort, parts with same cost keep natural order
+			Arrays.sort(parts, new Comparator<Integer>() {
+				public int compare(Integer o1, Integer o2) {
+					return Double.compare(costs[o2.intValue()], costs[o1.intValue()]);
+				}
+			});
+		}
+		this.order = new int[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			order[i] = parts[i].intValue();
+		}
+	}
+	
+	/**
+	 * Returns the next parts for the given node, an empty array if all parts
+	 * are completed. The node is expected to process the parts in the 
+	 * returned order, and to {@link #complete(int, int) complete} every part 
+	 * before requesting new parts.
+	 * <p>
+	 * If no part is available, the method blocks until a part of a failed 
+	 * node is {@link #release(int) released}, or until all parts are 
+	 * completed.
+	 * 
+	 * @param node	the requesting node
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public synchronized int[] nextParts(int node) throws InterruptedException {
+		int[] parts;
+		while ((parts = tryNextParts(node)) == null) {
+			wait();
+		}
+		return parts;
+	}
+	/**
+	 * Returns the next parts, an empty array if all parts are completed, or
+	 * null if the caller has to wait
+	 */
+	private int[] tryNextParts(int node) {
+		if (cancelled || completedCount == completed.length) {
+			return new int[0];
+		}
+		final Deque<Integer> queue = getQueue(node);
+		if (!released.isEmpty()) {
+			final int part = released.removeFirst().intValue();
+			owner[part] = node;
+			enqueue(queue, part);
+			return new int[] {part};
+		}
+		if (next < order.length) {
+			final int remaining = order.length - next;
+			int count;
+			if (costs == null) {
+				count = Math.max(1, remaining / (GUIDED_FACTOR * nodeCount));
+			}
+			else {
+				final double target = remainingCost / (GUIDED_FACTOR * nodeCount);
+				double chunkCost = costs[order[next]];
+				count = 1;
+				while (count < remaining && chunkCost + costs[order[next + count]] <= target) {
+					chunkCost += costs[order[next + count]];
+					count++;
+				}
+			}
+			final int[] parts = new int[count];
+			for (int i = 0; i < count; i++) {
+				final int part = order[next++];
+				if (costs != null) remainingCost -= costs[part];
+				owner[part] = node;
+				parts[i] = part;
+				enqueue(queue, part);
+			}
+			return parts;
+		}
+		//all parts handed out, copy the longest running straggler
+		int straggler = -1;
+		for (final Map.Entry<Integer, Deque<Integer>> entry : granted.entrySet()) {
+			if (entry.getKey().intValue() == node || entry.getValue().isEmpty()) continue;
+			final int part = entry.getValue().peekFirst().intValue();
+			if (!completed[part] && winner[part] < 0 && !speculated[part]) {
+				if (straggler < 0 || started[part] < started[straggler]) {
+					straggler = part;
+				}
+			}
+		}
+		if (straggler < 0) {
+			return null;
+		}
+		speculated[straggler] = true;
+		enqueue(queue, straggler);
+		return new int[] {straggler};
+	}
+	private Deque<Integer> getQueue(int node) {
+		Deque<Integer> queue = granted.get(Integer.valueOf(node));
+		if (queue == null) {
+			queue = new ArrayDeque<Integer>();
+			granted.put(Integer.valueOf(node), queue);
+		}
+		return queue;
+	}
+	private void enqueue(Deque<Integer> queue, int part) {
+		if (queue.isEmpty()) {
+			started[part] = System.currentTimeMillis();
+		}
+		queue.addLast(Integer.valueOf(part));
+	}
+	
+	/**
+	 * Claims the results of a part for the given node. Returns true if the
+	 * node is the first which claims the part, or if it has claimed it 
+	 * before. If false is returned, the results of the node for this part
+	 * must be discarded.
+	 */
+	public synchronized boolean claim(int part, int node) {
+		if (winner[part] < 0) {
+			winner[part] = node;
+		}
+		return winner[part] == node;
+	}
+	
+	/**
+	 * Returns true if results of the given node for the specified part are
+	 * to be discarded since another node has claimed the part
+	 */
+	public synchronized boolean isDiscarded(int part, int node) {
+		return winner[part] >= 0 && winner[part] != node;
+	}
+	
+	/**
+	 * Returns true if the part currently processed by the given node is a
+	 * speculative copy of a part owned by another node
+	 */
+	public synchronized boolean isProcessingCopy(int node) {
+		final Deque<Integer> queue = granted.get(Integer.valueOf(node));
+		if (queue == null || queue.isEmpty()) return false;
+		return owner[queue.peekFirst().intValue()] != node;
+	}
+	
+	/**
+	 * Marks the part as completed by the given node. Returns true if the
+	 * node has {@link #claim(int, int) claimed} the part, that is, if the 
+	 * results of the node are used, and false if they must be discarded.
+	 */
+	public synchronized boolean complete(int part, int node) {
+		final Deque<Integer> queue = getQueue(node);
+		queue.remove(Integer.valueOf(part));
+		if (!queue.isEmpty()) {
+			started[queue.peekFirst().intValue()] = System.currentTimeMillis();
+		}
+		final boolean claimed = claim(part, node);
+		if (claimed && !completed[part]) {
+			completed[part] = true;
+			completedCount++;
+			notifyAll();
+		}
+		return claimed;
+	}
+	
+	/**
+	 * Releases all parts of a failed node. Parts which are not completed are
+	 * handed out again, unless a copy of the part is processed by another 
+	 * node, which then becomes the owner of the part. Returns the parts which
+	 * have been claimed by the failed node, but are not completed. The 
+	 * results for these parts are incomplete and cannot be recovered.
+	 */
+	public synchronized int[] release(int node) {
+		final Deque<Integer> queue = granted.remove(Integer.valueOf(node));
+		if (queue == null) return new int[0];
+		final List<Integer> lost = new ArrayList<Integer>();
+		final List<Integer> requeue = new ArrayList<Integer>();
+		for (final Integer part : queue) {
+			final int p = part.intValue();
+			if (completed[p]) continue;
+			if (winner[p] == node) {
+				lost.add(part);
+			}
+			else if (owner[p] == node) {
+				final int copyNode = findNode(p);
+				if (copyNode >= 0) {
+					owner[p] = copyNode;
+				}
+				else {
+					owner[p] = -1;
+					requeue.add(part);
+				}
+				speculated[p] = false;
+			}
+			else {
+				//copy of a part owned by another node
+				speculated[p] = false;
+			}
+		}
+		//released parts are handed out before all other parts
+		for (int i = requeue.size() - 1; i >= 0; i--) {
+			released.addFirst(requeue.get(i));
+		}
+		notifyAll();
+		final int[] res = new int[lost.size()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = lost.get(i).intValue();
+		}
+		return res;
+	}
+	private int findNode(int part) {
+		for (final Map.Entry<Integer, Deque<Integer>> entry : granted.entrySet()) {
+			if (entry.getValue().contains(Integer.valueOf(part))) {
+				return entry.getKey().intValue();
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Cancels the scheduling, waiting nodes are released and no more parts 
+	 * are handed out
+	 */
+	public synchronized void cancel() {
+		cancelled = true;
+		notifyAll();
+	}
+	
+	/**
+	 * Returns true if all parts are completed
+	 */
+	public synchronized boolean isCompleted() {
+		return completedCount == completed.length;
+	}
+	
+	/**
+	 * Returns the number of completed parts
+	 */
+	public synchronized int getCompletedCount() {
+		return completedCount;
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.dist.impl;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+
+public class PartSchedulerTest extends TestCase {
+
+	public void testCostOrderAndChunks() throws InterruptedException {
+		final double[] costs = {1, 100, 1, 50, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+		final PartScheduler scheduler = new PartScheduler(costs.length, costs, 2);
+		//expensive parts first, alone
+		assertEquals(1, scheduler.nextParts(0)[0]);
+		assertEquals(3, scheduler.nextParts(1)[0]);
+		//cheap parts in chunks
+		final int[] chunk = scheduler.nextParts(1);
+		assertTrue(chunk.length > 1);
+		final boolean[] seen = new boolean[costs.length];
+		seen[1] = seen[3] = true;
+		for (final int part : chunk) seen[part] = true;
+		scheduler.complete(3, 1);
+		for (final int part : chunk) assertTrue(scheduler.complete(part, 1));
+		int[] parts;
+		while ((parts = scheduler.nextParts(1)).length > 0 && parts[0] != 1) {
+			for (final int part : parts) {
+				seen[part] = true;
+				assertTrue(scheduler.complete(part, 1));
+			}
+		}
+		for (int i = 0; i < seen.length; i++) {
+			assertTrue("part " + i, seen[i]);
+		}
+	}
+
+	public void testSpeculativeCopy() throws InterruptedException {
+		final PartScheduler scheduler = new PartScheduler(2, null, 2);
+		assertEquals(0, scheduler.nextParts(0)[0]);
+		assertEquals(1, scheduler.nextParts(1)[0]);
+		assertTrue(scheduler.complete(1, 1));
+		//node 1 is idle and gets a copy of part 0
+		final int[] copy = scheduler.nextParts(1);
+		assertEquals(1, copy.length);
+		assertEquals(0, copy[0]);
+		assertTrue(scheduler.isProcessingCopy(1));
+		assertFalse(scheduler.isProcessingCopy(0));
+		//copy finishes first, results of the original node are discarded
+		assertTrue(scheduler.complete(0, 1));
+		assertTrue(scheduler.isDiscarded(0, 0));
+		assertFalse(scheduler.complete(0, 0));
+		assertEquals(2, scheduler.getCompletedCount());
+		assertEquals(0, scheduler.nextParts(0).length);
+	}
+
+	public void testReleaseFailedNode() throws Exception {
+		final PartScheduler scheduler = new PartScheduler(2, null, 2);
+		assertEquals(0, scheduler.nextParts(0)[0]);
+		assertEquals(1, scheduler.nextParts(1)[0]);
+		scheduler.claim(1, 1);
+		assertTrue(scheduler.complete(1, 1));
+		assertTrue(scheduler.nextParts(1)[0] == 0);//copy of part 0
+		//node 1 fails while processing the copy, node 2 waits for work
+		final int[][] result = new int[1][];
+		final Thread waiting = new Thread() {
+			@Override
+			public void run() {
+				try {
+					result[0] = scheduler.nextParts(2);
+				}
+				catch (InterruptedException e) {
+					//result remains null
+				}
+			}
+		};
+		waiting.start();
+		assertEquals(0, scheduler.release(1).length);
+		//node 0 fails, part 0 is handed out again
+		assertEquals(0, scheduler.release(0).length);
+		waiting.join(2000);
+		assertNotNull(result[0]);
+		assertEquals(1, result[0].length);
+		assertEquals(0, result[0][0]);
+		assertFalse(scheduler.isCompleted());
+		assertTrue(scheduler.complete(0, 2));
+		assertTrue(scheduler.isCompleted());
+		assertEquals(0, scheduler.nextParts(2).length);
+	}
+
+	public void testResumeCompletedParts() throws InterruptedException {
+		final BitSet done = new BitSet();
+		done.set(0);
+		done.set(2);
+		final PartScheduler scheduler = new PartScheduler(4, null, 1, done);
+		assertEquals(2, scheduler.getCompletedCount());
+		final BitSet handedOut = new BitSet();
+		int[] parts;
+		while ((parts = scheduler.nextParts(0)).length > 0) {
+			for (final int part : parts) {
+				handedOut.set(part);
+				assertTrue(scheduler.complete(part, 0));
+			}
+		}
+		assertEquals("{1, 3}", handedOut.toString());
+		assertTrue(scheduler.isCompleted());
+	}
+
+}
@@ -36,7 +36,7 @@ package ch.javasoft.metabolic.efm.dist.impl.adj;
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Level;
 
 import ch.javasoft.job.Executable;
@@ -69,6 +69,11 @@ import ch.javasoft.util.logging.LogPrintStream;
  * 	<li>The distributed jobs are created using the {@link DistJobController}
  * 		returned by the initialize method of the previous step.</li>
  * </ol>
+ * If a job fails, the failure is {@link DistJobController#nodeFailed(int, boolean) notified}
+ * to the controller, and the remaining jobs complete the work of the failed
+ * job. A failed job is restarted if the number of 
+ * {@link DistributedConfig#getNodeRestarts() node restarts} for the node is
+ * not exhausted. The computation fails if all jobs fail.
  */
 abstract public class AbstractDistributedAdjEnum extends AbstractAdjEnum {
 	
@@ -97,24 +102,14 @@ abstract public class AbstractDistributedAdjEnum extends AbstractAdjEnum {
 			return;
 		}
 		final Map<Executable<Void>, JobMonitor<Void>> runningJobs = new ConcurrentHashMap<Executable<Void>, JobMonitor<Void>>();		
-		final AtomicReference<Throwable> exception = new AtomicReference<Throwable>();
-		final Thread mainThread = Thread.currentThread();
-		final JobTerminationHandler<Void> terminationHandler = new JobTerminationHandler<Void>() {
-			public void terminated(Job job, Void result) {
-//				LogPkg.LOGGER.fine("DONE(ok): " + job);
-				runningJobs.remove(job);
-			}
-			public void terminatedByException(Job job, Throwable t) {
-//				LogPkg.LOGGER.fine("DONE(err): " + t);
-				exception.compareAndSet(null, t);
-				runningJobs.remove(job);
-				mainThread.interrupt();
-			}
-		};
 		
 		final int nodeCnt = Math.min(distConfig.getNodeNames().size(), distConfig.getPartition());
 		final DistributableAdjEnum denum = new FileBasedDistributableAdjEnum();//FIXME make configurable		
 		final DistJobController controller = denum.initialize(columnHome, getConfig(), getEfmModel(), itModel, nodeCnt);
+		final AtomicIntegerArray restarts = new AtomicIntegerArray(nodeCnt);
+		for (int nodeIndex = 0; nodeIndex < nodeCnt; nodeIndex++) {
+			restarts.set(nodeIndex, distConfig.getNodeRestarts());
+		}
 		final Thread jobKiller = new Thread() {
 			@Override
 			public void run() {
@@ -132,11 +127,7 @@ abstract public class AbstractDistributedAdjEnum extends AbstractAdjEnum {
 		try {
 			//start jobs
 			for (int nodeIndex = 0; nodeIndex < nodeCnt; nodeIndex++) {
-				final RunningJob job = execJob(controller, terminationHandler, nodeIndex);
-				runningJobs.put(job.getExecutable(), job.getMonitor());
-				if (exception.get() != null) {
-					throw exception.get();
-				}
+				startJob(controller, runningJobs, restarts, nodeIndex);
 			}
 
 			//wait for all jobs to complete
@@ -144,10 +135,6 @@ abstract public class AbstractDistributedAdjEnum extends AbstractAdjEnum {
 		}
 		catch (Throwable th) {
 			LogPkg.LOGGER.warning("server caught exception, e=" + th);
-			if (exception.get() != null) {
-				th = exception.get();
-				LogPkg.LOGGER.warning("server detected probable causing exception, e=" + th);
-			}
 			try {
 				controller.abort();
 			}
@@ -162,6 +149,38 @@ abstract public class AbstractDistributedAdjEnum extends AbstractAdjEnum {
 		}
 	}
 	
+	/**
+	 * Starts the job for the given node. If the job fails, the failure is 
+	 * notified to the controller, and the job is restarted if restarts are
+	 * left for the node.
+	 */
+	private void startJob(final DistJobController controller, final Map<Executable<Void>, JobMonitor<Void>> runningJobs, final AtomicIntegerArray restarts, final int nodeIndex) {
+		final JobTerminationHandler<Void> terminationHandler = new JobTerminationHandler<Void>() {
+			public void terminated(Job job, Void result) {
+//				LogPkg.LOGGER.fine("DONE(ok): " + job);
+				runningJobs.remove(job);
+			}
+			public void terminatedByException(Job job, Throwable t) {
+//				LogPkg.LOGGER.fine("DONE(err): " + t);
+				runningJobs.remove(job);
+				final boolean restart = restarts.getAndDecrement(nodeIndex) > 0;
+				LogPkg.LOGGER.warning("job for node " + nodeIndex + " failed" + (restart ? ", restarting job" : "") + ", e=" + t);
+				controller.nodeFailed(nodeIndex, restart);
+				if (restart) {
+					try {
+						startJob(controller, runningJobs, restarts, nodeIndex);
+					}
+					catch (Throwable th) {
+						LogPkg.LOGGER.warning("could not restart job for node " + nodeIndex + ", e=" + th);
+						controller.nodeFailed(nodeIndex, false);
+					}
+				}
+			}
+		};
+		final RunningJob job = execJob(controller, terminationHandler, nodeIndex);
+		runningJobs.put(job.getExecutable(), job.getMonitor());
+	}
+	
 	abstract protected RunningJob execJob(DistJobController jobController, JobTerminationHandler<Void> terminationHandler, int nodeIndex);
 
 }
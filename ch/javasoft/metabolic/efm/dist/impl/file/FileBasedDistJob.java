@@ -137,7 +137,7 @@ public class FileBasedDistJob {
 			efmModel.getStoichRational().writeToMultiline(new LogWriter(logger, Level.FINEST));
 		}
 
-		final DistClient client = new DistClient(columnHome, persister, adjFile, strMasterHost, masterPort);
+		final DistClient client = new DistClient(columnHome, persister, adjFile, strMasterHost, masterPort, nodeIndex, efmModel.getConfig().getDistributedConfig().isCompressAppend());
 		final AdjEnumModel adjModel = client.getAdjEnumModel();
 		
 		final DistributedInfo distInfo = new DistributedInfo(efmModel.getConfig().getDistributedConfig(), nodeIndex);
@@ -33,6 +33,7 @@
  */
 package ch.javasoft.metabolic.efm.dist.impl.file;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
 import java.util.logging.Level;
@@ -45,6 +46,7 @@ import ch.javasoft.metabolic.efm.config.Config;
 import ch.javasoft.metabolic.efm.config.DistributedConfig;
 import ch.javasoft.metabolic.efm.dist.impl.DistJobController;
 import ch.javasoft.metabolic.efm.dist.impl.DistServer;
+import ch.javasoft.util.ExceptionUtil;
 import ch.javasoft.util.logging.LogPrintStream;
 import ch.javasoft.util.logging.Loggers;
 
@@ -164,10 +166,20 @@ public class FileBasedDistJobController implements DistJobController {
 		};
 	}
 	
+	//inherit javadoc
+	public void nodeFailed(int nodeIndex, boolean restart) {
+		server.nodeFailed(nodeIndex, restart);
+	}
+	
 	//inherit javadoc
 	public void awaitCompletion() throws InterruptedException {
 		server.awaitCompletion();
-		abort();
+		try {
+			server.close();
+		}
+		catch (IOException ex) {
+			throw ExceptionUtil.toRuntimeException(ex);
+		}
 	}
 	
 	//inherit javadoc
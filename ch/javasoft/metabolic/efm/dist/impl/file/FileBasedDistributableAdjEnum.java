@@ -42,6 +42,7 @@ import ch.javasoft.metabolic.efm.column.ColumnHome;
 import ch.javasoft.metabolic.efm.config.Config;
 import ch.javasoft.metabolic.efm.dist.DistributedAdjEnum;
 import ch.javasoft.metabolic.efm.dist.DistributedInfo;
+import ch.javasoft.metabolic.efm.dist.PartCostEstimator;
 import ch.javasoft.metabolic.efm.dist.PartIterator;
 import ch.javasoft.metabolic.efm.dist.impl.DistClient;
 import ch.javasoft.metabolic.efm.dist.impl.DistJobController;
@@ -80,7 +81,8 @@ import ch.javasoft.metabolic.efm.model.ModelPersister;
  * 		{@link #initialize(ColumnHome, Config, EfmModel, AdjEnumModel, int) initialization}
  * 		method in the previous step.</li>
  * 	<li>Termination: if all jobs are assigned to a client, the next job request 
- * 		causes the requesting client to terminate. The server terminates if he 
+ * 		causes the requesting client to terminate, unless the client can 
+ * 		process a copy of a job which is still running on another client. The server terminates if he 
  * 		has sent a <i>no job</i> answer to every client.</li>
  * </ol>
  */
@@ -124,7 +126,14 @@ public class FileBasedDistributableAdjEnum implements DistributableAdjEnum {
 			persister.writeEfmModel(columnHome, efmModel, getEfmModelFile(tmpDir));
 			persister.writeAdjEnumModel(columnHome, adjModel, getAdjModelFile(tmpDir));
 			
-			final DistServer<Col> server	= new DistServer<Col>(columnHome, config, adjModel, nodeCount);
+			final double[] partCosts;
+			if (delegate instanceof PartCostEstimator) {
+				partCosts = ((PartCostEstimator)delegate).estimatePartCosts(config.getDistributedConfig().getPartition());
+			}
+			else {
+				partCosts = null;
+			}
+			final DistServer<Col> server	= new DistServer<Col>(columnHome, config, adjModel, nodeCount, 0 /*any port*/, partCosts);
             final String configFileName     = getConfigFile(tmpDir).getName();
             final String stoichFileName     = getStoichFile(tmpDir).getName();
             final String efmModelFileName   = getEfmModelFile(tmpDir).getName();
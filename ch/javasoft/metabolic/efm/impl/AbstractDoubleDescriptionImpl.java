@@ -33,6 +33,7 @@
  */
 package ch.javasoft.metabolic.efm.impl;
 
+import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
@@ -42,14 +43,19 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import at.acib.thermodynamic.Thermodynamic;
 import at.acib.thermodynamic.ThermodynamicParameters;
+import ch.javasoft.jbase.PageCache;
 import ch.javasoft.lang.management.JVMTimer;
 import ch.javasoft.metabolic.MetabolicNetwork;
 import ch.javasoft.metabolic.Reaction;
@@ -58,6 +64,7 @@ import ch.javasoft.metabolic.compress.CompressionUtil;
 import ch.javasoft.metabolic.efm.ElementaryFluxModes;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.metabolic.efm.column.filter.CompiledColumnFilter;
 import ch.javasoft.metabolic.efm.config.Config;
 import ch.javasoft.metabolic.efm.memory.AppendableMemory;
 import ch.javasoft.metabolic.efm.memory.IterableMemory;
@@ -70,6 +77,8 @@ import ch.javasoft.metabolic.efm.model.NetworkEfmModel;
 import ch.javasoft.metabolic.efm.output.CallbackGranularity;
 import ch.javasoft.metabolic.efm.output.EfmOutputCallback;
 import ch.javasoft.metabolic.efm.output.EfmOutputEvent;
+import ch.javasoft.metabolic.efm.progress.TelemetryReporter;
+import ch.javasoft.metabolic.efm.util.BitSetUtil;
 import ch.javasoft.metabolic.efm.util.MatrixUtil;
 import ch.javasoft.metabolic.efm.util.ReactionMapping;
 import ch.javasoft.metabolic.impl.FractionNumberStoichMetabolicNetwork;
@@ -108,6 +117,9 @@ import ch.javasoft.util.numeric.Zero;
 abstract public class AbstractDoubleDescriptionImpl implements ElementaryFluxModes.Impl {
 
 	private static final Logger LOG = LogPkg.LOGGER;
+	
+	/** number of columns evaluated together when filtering the final modes */
+	private static final int FILTER_BATCH_SIZE = 4096;
 
 	private Config mConfig;
 	private EfmModelFactory mEfmModelFactory;
@@ -154,6 +166,18 @@ abstract public class AbstractDoubleDescriptionImpl implements ElementaryFluxMod
 
 		// preprocess
 		final NetworkEfmModel efmModel = preprocess(columnHome, metabolicNetwork, callback);
+		try {
+			calculateEfms(columnHome, efmModel, callback);
+		}
+		finally {
+			mMemoryFactory.release();
+		}
+
+		long tEnd = System.currentTimeMillis();
+		LOG.info("overall computation time: " + (tEnd - tStart) + "ms");
+	}
+	
+	private <N extends Number, Col extends Column> void calculateEfms(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, EfmOutputCallback callback) throws IOException {
 		final AppendableMemory<Col> memory = efmModel.createInitialMemory(columnHome, mMemoryFactory);
 
 		final IterableMemory<Col> results;
@@ -169,7 +193,15 @@ abstract public class AbstractDoubleDescriptionImpl implements ElementaryFluxMod
 			long tItStart = System.currentTimeMillis();
 
 			// iterations
-			results = iterate(columnHome, efmModel, memory);
+			final TelemetryReporter telemetry = mConfig.getTelemetryConfig().createReporter(getTelemetryDir());
+			try {
+				results = iterate(columnHome, efmModel, memory);
+			}
+			finally {
+				if (telemetry != null) {
+					telemetry.close();
+				}
+			}
 
 			// timing output
 			final long tEnd = System.currentTimeMillis();
@@ -187,9 +219,6 @@ abstract public class AbstractDoubleDescriptionImpl implements ElementaryFluxMod
 
 		// postprocess
 		postprocess(columnHome, efmModel, results, callback);
-
-		long tEnd = System.currentTimeMillis();
-		LOG.info("overall computation time: " + (tEnd - tStart) + "ms");
 	}
 
 	/**
@@ -230,11 +259,25 @@ abstract public class AbstractDoubleDescriptionImpl implements ElementaryFluxMod
 		}
 		final NetworkEfmModel efmModel = mEfmModelFactory.createEfmModel(columnHome, mConfig, metaNet);
 		efmModel.log(columnHome, LOG);
+		initBitPatternFactory(efmModel);
 		long tEnd = System.currentTimeMillis();
 		LOG.info("TIME preprocessing: " + (tEnd - tStart) + "ms");
 		return efmModel;
 	}
 
+	/**
+	 * Initializes the {@link BitSetUtil#patternFactory() bit pattern factory}
+	 * with the maximum boolean size of the columns, such that all column 
+	 * patterns of this computation have the same fixed size bit set class
+	 */
+	private static void initBitPatternFactory(NetworkEfmModel efmModel) {
+		int maxBooleanSize = efmModel.getFinalBooleanSize();
+		for (int i = 0; i <= efmModel.getIterationCount(); i++) {
+			maxBooleanSize = Math.max(maxBooleanSize, efmModel.getBooleanSize(i));
+		}
+		BitSetUtil.initPatternFactory(maxBooleanSize);
+	}
+
 	protected <N extends Number, Col extends Column> void postprocess(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, IterableMemory<Col> memory, EfmOutputCallback callback)
 			throws IOException {
 		LOG.info("efm count before postprocessing: " + memory.getColumnCount());
@@ -359,14 +402,48 @@ abstract public class AbstractDoubleDescriptionImpl implements ElementaryFluxMod
 		final ReactionMapping rmap = new ReactionMapping(mConfig, efmModel.getMetabolicNetwork(), efmModel.getReactionSorting());
 
 		final IterationStepModel itModel = DefaultIterationStepModel.getFinal(efmModel);
-		for (Col col : memory) {
-			if (efmModel.getColumnFilter().keepColumn(col, mConfig, rmap)) {
-				col = col.convert(columnHome, efmModel, itModel, false /* clone */);
-				filtered.appendColumn(col);
+		//evaluate the compiled filter on batches of columns, concurrently if
+		//multiple threads are configured, keeping the original column order
+		final int threads = Math.max(1, mConfig.getMaxThreads());
+		final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			final List<Col> batch = new ArrayList<Col>(FILTER_BATCH_SIZE);
+			final boolean[] keep = new boolean[FILTER_BATCH_SIZE];
+			final Iterator<Col> it = memory.iterator();
+			CompiledColumnFilter filter = null;
+			while (it.hasNext()) {
+				batch.clear();
+				while (batch.size() < FILTER_BATCH_SIZE && it.hasNext()) {
+					final Col col = it.next();
+					if (filter != null && !filter.isCompiledFor(col)) {
+						if (!batch.isEmpty()) {
+							appendFiltered(columnHome, efmModel, itModel, filter, batch, keep, executor, threads, filtered);
+							batch.clear();
+						}
+						filter = null;
+					}
+					if (filter == null) {
+						filter = CompiledColumnFilter.compile(efmModel.getColumnFilter(), mConfig, rmap, col);
+					}
+					batch.add(col);
+				}
+				appendFiltered(columnHome, efmModel, itModel, filter, batch, keep, executor, threads, filtered);
 			}
 		}
+		finally {
+			if (executor != null) executor.shutdown();
+		}
 		return filtered;
 	}
+	private <N extends Number, Col extends Column> void appendFiltered(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, IterationStepModel itModel, CompiledColumnFilter filter, List<Col> batch, boolean[] keep, ExecutorService executor, int threads, AppendableMemory<Col> filtered) throws IOException {
+		filter.keepColumns(batch, keep, executor, threads);
+		for (int i = 0; i < batch.size(); i++) {
+			if (keep[i]) {
+				final Col col = batch.get(i).convert(columnHome, efmModel, itModel, false /* clone */);
+				filtered.appendColumn(col);
+			}
+		}
+	}
 
 	public String getImplName() {
 		return getClass().getSimpleName();
@@ -425,6 +502,32 @@ abstract public class AbstractDoubleDescriptionImpl implements ElementaryFluxMod
 		return mConfig.zero();
 	}
 
+	/**
+	 * Returns the folder for the telemetry file, the personalized temp 
+	 * directory if it exists (out-of-core memory), or the base temp directory
+	 * otherwise
+	 */
+	private File getTelemetryDir() {
+		try {
+			return mConfig.getTempDir().getPersonalizedDir();
+		}
+		catch (IllegalStateException ex) {
+			return mConfig.getTempDir().getBaseDir();
+		}
+	}
+
+	/**
+	 * Logs the statistics of the shared page cache accumulated since the last
+	 * call and resets them. Does nothing if no shared page cache is in use, 
+	 * that is, for in-core memory or if the page cache is disabled.
+	 */
+	protected static void logPageCacheStatistics(String prefix) {
+		final PageCache pageCache = PageCache.getShared();
+		if (pageCache != null) {
+			LOG.info(prefix + "page cache: " + pageCache.getAndResetStatistics());
+		}
+	}
+
 	@SuppressWarnings("unused")
 	private void traceEfms(Iterable<?> efms) {
 		int i = 0;
@@ -48,6 +48,7 @@ import ch.javasoft.metabolic.efm.memory.AppendableMemory;
 import ch.javasoft.metabolic.efm.memory.IterableMemory;
 import ch.javasoft.metabolic.efm.memory.MemoryFactory;
 import ch.javasoft.metabolic.efm.memory.PartId;
+import ch.javasoft.metabolic.efm.memory.outcore.IterationCheckpoint;
 import ch.javasoft.metabolic.efm.memory.outcore.OutOfCoreMemory;
 import ch.javasoft.metabolic.efm.memory.outcore.OutOfCoreMemoryFactory;
 import ch.javasoft.metabolic.efm.memory.outcore.Recovery;
@@ -58,6 +59,7 @@ import ch.javasoft.metabolic.efm.model.DefaultIterationStepModel;
 import ch.javasoft.metabolic.efm.model.EfmModelFactory;
 import ch.javasoft.metabolic.efm.model.IterationStepModel;
 import ch.javasoft.metabolic.efm.model.NetworkEfmModel;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 import ch.javasoft.metabolic.efm.util.ColumnUtil;
 import ch.javasoft.util.ExceptionUtil;
 import ch.javasoft.util.logging.Loggers;
@@ -66,8 +68,18 @@ import ch.javasoft.util.logging.Loggers;
  * Similar to the {@link SequentialDoubleDescriptionImpl}, but adds functionality
  * especially suited for out-of-core computations. Incomplete computations can
  * be recovered from intermediary files.
- * 
- * TODO add description of recovery stuff
+ * <p>
+ * Recovery is triggered by a {@link Recovery} flag pointing to the temp folder
+ * of the crashed computation. The most advanced intermediary files found in
+ * this folder are used: the final filtered modes, the partitioned pos, zero 
+ * and neg modes of the last completed iteration, or the unpartitioned modes.
+ * <p>
+ * If {@link ch.javasoft.metabolic.efm.config.DistributedConfig#getCheckpointInterval() checkpoints}
+ * are enabled, a distributed iteration periodically records its completed 
+ * parts in an {@link IterationCheckpoint}. When recovering from partitioned 
+ * modes, the interrupted iteration is then resumed: the new modes of the 
+ * completed parts are copied from the crashed computation, and only the 
+ * remaining parts are enumerated.
  */
 public class RecoverableSequentialDoubleDescriptionImpl extends AbstractDoubleDescriptionImpl {
 
@@ -117,9 +129,15 @@ public class RecoverableSequentialDoubleDescriptionImpl extends AbstractDoubleDe
         final IterationStepModel itModel = new DefaultIterationStepModel(efmModel, 0);
         ColumnUtil.partition(columnHome, efmModel, memory, pos, zer, neg, itModel, false /*keep*/);
 
-        return iteratePartitioned(columnHome, efmModel, pos, zer, neg, iterationStart, tStart);
+        return iteratePartitioned(columnHome, efmModel, pos, zer, neg, iterationStart, tStart, null, null);
     }
-    private <N extends Number, Col extends Column> IterableMemory<Col> iteratePartitioned(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, AppendableMemory<Col> pos, AppendableMemory<Col> zer, AppendableMemory<Col> neg, int iterationStart, long tStart) throws IOException {
+    /**
+     * Iterates starting with partitioned modes. If resume is non-null, the 
+     * first iteration is resumed from the checkpoint, and the new modes of 
+     * the completed parts are copied from resumeOutput when the distributed
+     * enumeration starts.
+     */
+    private <N extends Number, Col extends Column> IterableMemory<Col> iteratePartitioned(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, AppendableMemory<Col> pos, AppendableMemory<Col> zer, AppendableMemory<Col> neg, int iterationStart, long tStart, IterationCheckpoint resume, OutOfCoreMemory<Col> resumeOutput) throws IOException {
         final AdjEnum adjEnum = getConfig().getAdjMethodFactory().createAdjEnumFromConfig();
         
         adjEnum.initialize(columnHome, getConfig(), efmModel);
@@ -136,6 +154,9 @@ public class RecoverableSequentialDoubleDescriptionImpl extends AbstractDoubleDe
         long timeEnd    = timeStart;
     	int colCount 	= cntPos + cntZer + cntNeg;
     	
+    	final File checkpointDir		= getConfig().getTempDir().getPersonalizedDir();
+    	final long checkpointInterval	= getConfig().getDistributedConfig().getCheckpointInterval() * 1000;
+    	
         while (colCount > 0 && iteration < itCount) {
         	
         	final String openFileCount = Loggers.isLoggable(LOG, Level.FINEST) ? getOpenFileCountString() : "" ;
@@ -144,21 +165,45 @@ public class RecoverableSequentialDoubleDescriptionImpl extends AbstractDoubleDe
                 "\t{ next " + (iteration+1) + "/" + itCount + ": " + ((long)cntPos) * ((long)cntNeg) + " adj candidates, " +
                 		"[+/0/-] = [" + cntPos + "/" + cntZer + "/" + cntNeg + "] }" + openFileCount
             );
+            logPageCacheStatistics("..");
             iteration++;
             timeStart = System.currentTimeMillis();
 
             memory = getMemoryFactory().createConcurrentAppendableMemory(columnHome, efmModel, iteration + 1, null);
+            
+            //checkpoint, resumed for the first iteration if recovering
+            final IterationCheckpoint checkpoint;
+            if (resume != null) {
+            	checkpoint = resume.resumeIn(checkpointDir, resumeOutput);
+            	resume = null;
+            }
+            else if (checkpointInterval > 0 && cntPos > 0 && cntNeg > 0) {
+            	checkpoint = new IterationCheckpoint(checkpointDir, iteration, getConfig().getDistributedConfig().getPartition(), checkpointInterval);
+            }
+            else {
+            	checkpoint = null;
+            }
 
             //generate new rays from adjacent ray pairs
-            final AdjEnumModel<Col> adjModel = new AdjEnumModel<Col>(efmModel, iteration, pos.toSortableMemory(), zer.toSortableMemory(), neg.toSortableMemory(), memory);
+            Telemetry.iterationStarted(iteration, itCount, cntPos, cntZer, cntNeg);
+            final AdjEnumModel<Col> adjModel = new AdjEnumModel<Col>(efmModel, iteration, pos.toSortableMemory(), zer.toSortableMemory(), neg.toSortableMemory(), memory, checkpoint);
             if (cntPos > 0 && cntNeg > 0) {
             	adjEnum.adjacentPairs(columnHome, adjModel);
             }
+            if (resumeOutput != null) {
+            	if (!checkpoint.isStarted()) {
+            		//not distributed, all modes have been generated again
+            		LOG.info("checkpoint not used by adjacency enumerator, iteration " + iteration + " restarted");
+            	}
+            	resumeOutput.close(false);
+            	resumeOutput = null;
+            }
             
             if (iteration < itCount) {
-                final AppendableMemory<Col> npos = getMemoryFactory().createConcurrentAppendableMemory(columnHome, efmModel, iteration, PartId.POS);
-                final AppendableMemory<Col> nzer = getMemoryFactory().createConcurrentAppendableMemory(columnHome, efmModel, iteration, PartId.ZER);
-                final AppendableMemory<Col> nneg = getMemoryFactory().createConcurrentAppendableMemory(columnHome, efmModel, iteration, PartId.NEG);
+                //input of the next iteration, index must differ from pos/zer/neg
+                final AppendableMemory<Col> npos = getMemoryFactory().createConcurrentAppendableMemory(columnHome, efmModel, iteration + 1, PartId.POS);
+                final AppendableMemory<Col> nzer = getMemoryFactory().createConcurrentAppendableMemory(columnHome, efmModel, iteration + 1, PartId.ZER);
+                final AppendableMemory<Col> nneg = getMemoryFactory().createConcurrentAppendableMemory(columnHome, efmModel, iteration + 1, PartId.NEG);
                 
                 ColumnUtil.partitionOrClose(columnHome, efmModel, NetworkEfmModel.Partition.Positive, pos, npos, nzer, nneg, adjModel, true /*keep*/);
                 ColumnUtil.partitionOrClose(columnHome, efmModel, NetworkEfmModel.Partition.Negative, neg, npos, nzer, nneg, adjModel, true /*keep*/);
@@ -177,6 +222,9 @@ public class RecoverableSequentialDoubleDescriptionImpl extends AbstractDoubleDe
             	ColumnUtil.moveToOrClose(columnHome, efmModel, NetworkEfmModel.Partition.Zero, zer, memory, adjModel, true /*keep*/);
             	ColumnUtil.moveToOrClose(columnHome, efmModel, NetworkEfmModel.Partition.Negative, neg, memory, adjModel, true /*keep*/);
             }
+            if (checkpoint != null) {
+            	checkpoint.delete();
+            }
             
         	colCount = cntPos + cntZer + cntNeg;
             timeEnd = System.currentTimeMillis();
@@ -186,6 +234,7 @@ public class RecoverableSequentialDoubleDescriptionImpl extends AbstractDoubleDe
         }
         else {
             LOG.info("iteration " + iteration + "/" + itCount + ": " + memory.getColumnCount() + " modes, dt=" + (timeEnd - timeStart) + "ms.");            
+            logPageCacheStatistics("..");
         }
         final long tEnd = System.currentTimeMillis();
         LOG.info("TIME iterate " + (tEnd - tStart) + "ms");
@@ -278,10 +327,24 @@ public class RecoverableSequentialDoubleDescriptionImpl extends AbstractDoubleDe
 			if (pos.mNumericSize != zer.mNumericSize || pos.mNumericSize != neg.mNumericSize) {
 				throw new IOException("recovery error: pos/zer/neg numeric sizes not matching");
 			}
-			LOG.info("..last completed iteration             : " + pos.mIteration);
-			if (pos.mIteration < itCount) {
-				LOG.info("restarting iteration at step " + (pos.mIteration + 1));
-				return iteratePartitioned(columnHome, efmModel, pos, zer, neg, pos.mIteration, System.currentTimeMillis());
+			//the partitioned memories are the input of iteration pos.mIteration
+			final int completed = pos.mIteration - 1;
+			LOG.info("..last completed iteration             : " + completed);
+			if (completed < itCount) {
+				//copy, recovered files are read-only, but might be sorted in place
+				final AppendableMemory<Col> cpos = copyRecoveredMemory(columnHome, efmModel, pos, PartId.POS);
+				final AppendableMemory<Col> czer = copyRecoveredMemory(columnHome, efmModel, zer, PartId.ZER);
+				final AppendableMemory<Col> cneg = copyRecoveredMemory(columnHome, efmModel, neg, PartId.NEG);
+				final IterationCheckpoint checkpoint = recoverCheckpoint(dataFolder, pos.mIteration);
+				if (checkpoint != null) {
+					LOG.info("..recovered checkpoint                 : " + checkpoint.getFile().getAbsolutePath());
+					LOG.info("..completed parts                      : " + checkpoint.getResumedPartCount() + "/" + checkpoint.getPartCount());
+					LOG.info("resuming iteration at step " + pos.mIteration);
+					final OutOfCoreMemory<Col> out = recoverCheckpointOutput(columnHome, efmModel, dataFolder, pos.mIteration, checkpoint);
+					return iteratePartitioned(columnHome, efmModel, cpos, czer, cneg, completed, System.currentTimeMillis(), checkpoint, out);
+				}
+				LOG.info("restarting iteration at step " + pos.mIteration);
+				return iteratePartitioned(columnHome, efmModel, cpos, czer, cneg, completed, System.currentTimeMillis(), null, null);
 			}
 			else {
 				throw new IOException("iteration phase complete, but partitioned memories found");
@@ -337,6 +400,57 @@ public class RecoverableSequentialDoubleDescriptionImpl extends AbstractDoubleDe
 		return mem;
 	}
 	
+	/**
+	 * Copies a recovered partitioned memory to a new memory created by the
+	 * memory factory, and closes the recovered memory
+	 */
+	private <N extends Number, Col extends Column> AppendableMemory<Col> copyRecoveredMemory(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, OutOfCoreMemory<Col> recovered, PartId partId) throws IOException {
+		final AppendableMemory<Col> copy = getMemoryFactory().createConcurrentAppendableMemory(columnHome, efmModel, recovered.mIteration, partId);
+		copy.appendColumns(recovered);
+		copy.flush();
+		recovered.close(false);
+		return copy;
+	}
+	/**
+	 * Returns the checkpoint of the given iteration, or null if no usable
+	 * checkpoint exists. The modes are verified when the enumeration starts
+	 * with the checkpoint, the whole iteration is restarted if they differ 
+	 * from the time when the checkpoint was written.
+	 */
+	private IterationCheckpoint recoverCheckpoint(File dataFolder, int iteration) {
+		final long interval = getConfig().getDistributedConfig().getCheckpointInterval() * 1000;
+		final IterationCheckpoint checkpoint;
+		try {
+			checkpoint = IterationCheckpoint.read(dataFolder, iteration, interval);
+		}
+		catch (IOException e) {
+			LOG.warning("ignoring checkpoint, e=" + e);
+			return null;
+		}
+		if (checkpoint == null) {
+			return null;
+		}
+		if (checkpoint.getPartCount() != getConfig().getDistributedConfig().getPartition()) {
+			LOG.warning("ignoring " + checkpoint + ", partition is " + getConfig().getDistributedConfig().getPartition());
+			return null;
+		}
+		return checkpoint;
+	}
+	/**
+	 * Returns the memory with the new modes of the checkpoint iteration
+	 */
+	private static <Col extends Column> OutOfCoreMemory<Col> recoverCheckpointOutput(ColumnHome<?, Col> columnHome, NetworkEfmModel efmModel, File dataFolder, int iteration, IterationCheckpoint checkpoint) throws IOException {
+		final FileId<Col> fileId = FileName.NORMAL.getFileId(columnHome, dataFolder, iteration + 1, efmModel.getNumericSize(iteration + 1), efmModel.getBooleanSize(iteration + 1), true);
+		final OutOfCoreMemory<Col> out = new OutOfCoreMemory<Col>(fileId);
+		if (out.getColumnCount() < checkpoint.getResumedColumnCount()) {
+			throw new IOException(
+				"recovery error: " + checkpoint + " needs " + checkpoint.getResumedColumnCount() + 
+				" modes, but only " + out.getColumnCount() + " found in " + out.mFile.getAbsolutePath()
+			);
+		}
+		return out;
+	}
+	
 	@Override
 	protected <N extends Number, Col extends Column> IterableMemory<Col> filterModes(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, IterableMemory<Col> memory) throws IOException {
 		if (skipModeFiltering.get().booleanValue()) {
@@ -55,6 +55,7 @@ import ch.javasoft.metabolic.efm.model.DefaultIterationStepModel;
 import ch.javasoft.metabolic.efm.model.EfmModelFactory;
 import ch.javasoft.metabolic.efm.model.IterationStepModel;
 import ch.javasoft.metabolic.efm.model.NetworkEfmModel;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 import ch.javasoft.metabolic.efm.util.ColumnUtil;
 
 /**
@@ -151,6 +152,7 @@ public class SequentialDoubleDescriptionImpl extends AbstractDoubleDescriptionIm
 
 			LOG.info(dateFormat.format(cal.getTime()) + "\titeration " + iteration + "/" + itCount + ": " + colCount + " modes, dt=" + (timeEnd - timeStart) + "ms." + "\t{ next " + (iteration + 1)
 					+ "/" + itCount + ": " + ((long) cntPos) * ((long) cntNeg) + " adj candidates, " + "[+/0/-] = [" + cntPos + "/" + cntZer + "/" + cntNeg + "] }");
+			logPageCacheStatistics(dateFormat.format(cal.getTime()) + "\t   ");
 			if (LOG.isLoggable(Level.ALL)) {
 				traceCols("col:+", 0, pos);
 				traceCols("col:0", cntPos, zer);
@@ -220,6 +222,7 @@ public class SequentialDoubleDescriptionImpl extends AbstractDoubleDescriptionIm
 			}
 
 			// generate new rays from adjacent ray pairs
+			Telemetry.iterationStarted(iteration, itCount, cntPos, cntZer, cntNeg);
 			final AdjEnumModel<Col> adjModel = new AdjEnumModel<Col>(efmModel, iteration, pos.toSortableMemory(), zer.toSortableMemory(), neg.toSortableMemory(), memory);
 
 			if (cntPos > 0 && cntNeg > 0) {
@@ -289,6 +292,7 @@ public class SequentialDoubleDescriptionImpl extends AbstractDoubleDescriptionIm
 			LOG.info(dateFormat.format(cal.getTime()) + "\titeration " + iteration + "/" + itCount + ": discontinued since no modes left.");
 		} else {
 			LOG.info(dateFormat.format(cal.getTime()) + "\titeration " + iteration + "/" + itCount + ": " + memory.getColumnCount() + " modes, dt=" + (timeEnd - timeStart) + "ms.");
+			logPageCacheStatistics(dateFormat.format(cal.getTime()) + "\t   ");
 			if (LOG.isLoggable(Level.ALL)) {
 				traceCols("cols:", 0, memory);
 			}
@@ -40,6 +40,7 @@ import java.lang.reflect.Constructor;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 
 import org.dom4j.Element;
@@ -54,6 +55,8 @@ import ch.javasoft.metabolic.efm.output.EfmOutputCallback;
 import ch.javasoft.metabolic.efm.output.NullOutputCallback;
 import ch.javasoft.metabolic.efm.output.OutputMode;
 import ch.javasoft.metabolic.efm.output.RandomAccessFileOutputCallback;
+import ch.javasoft.metabolic.efm.output.columnar.ColumnarOutputCallback;
+import ch.javasoft.metabolic.efm.output.columnar.ValueEncoding;
 import ch.javasoft.metabolic.efm.output.mat.MatFileOutputCallback;
 import ch.javasoft.metabolic.parse.ConfiguredParser;
 import ch.javasoft.util.logging.LogPrintStream;
@@ -273,7 +276,21 @@ public class CalculateFluxModes {
 					throw new XmlConfigException("unable to parse '" + XmlAttribute.efms_per_file.getXmlName() + "' attribute, e=" + e, elFile);
 				}
 				
-				if (efmsPerFile > 0) {
+				final int writerThreads;
+				final int compressionLevel;
+				try {
+					writerThreads		= Integer.parseInt(XmlUtil.getOptionalAttributeValue(elFile, XmlAttribute.writer_threads, "1"));
+					compressionLevel	= Integer.parseInt(XmlUtil.getOptionalAttributeValue(elFile, XmlAttribute.compression_level, String.valueOf(Deflater.DEFAULT_COMPRESSION)));
+				}
+				catch (NumberFormatException e) {
+					throw new XmlConfigException("unable to parse '" + XmlAttribute.writer_threads.getXmlName() + "' or '" + XmlAttribute.compression_level.getXmlName() + "' attribute, e=" + e, elFile);
+				}
+				final boolean manifest = Boolean.parseBoolean(XmlUtil.getOptionalAttributeValue(elFile, XmlAttribute.manifest, "false"));
+				
+				if (writerThreads != 1 || compressionLevel != Deflater.DEFAULT_COMPRESSION || manifest) {
+					return new MatFileOutputCallback(mode, net, folder, fileName, efmsPerFile, writerThreads, compressionLevel, manifest);
+				}
+				else if (efmsPerFile > 0) {
 					return new MatFileOutputCallback(mode, net, folder, fileName, efmsPerFile);
 				}
 				else {
@@ -287,6 +304,22 @@ public class CalculateFluxModes {
                                 System.out.println("INFO: 3: output written by RandomAccessFileOutputCallback() to file '" + file + "'\n");
 				return new RandomAccessFileOutputCallback(net, mode, file);
 			}
+			else if (clazz == ColumnarOutputCallback.class) {
+				Element elFile	= XmlUtil.getRequiredSingleChildElement(elCallback, XmlElement.file);
+				File file 		= FileConfigParser.parseFile(elFile);
+				OutputMode mode	= parseOutputMode(elCallback);
+				Element elEnc	= XmlUtil.getOptionalSingleChildElement(elCallback, XmlElement.encoding);
+				if (elEnc == null) {
+					return new ColumnarOutputCallback(net, mode, file);
+				}
+				String strEnc	= XmlUtil.getRequiredAttributeValue(elEnc, XmlAttribute.value);
+				try {
+					return new ColumnarOutputCallback(net, mode, file, ValueEncoding.valueOf(strEnc));
+				}
+				catch (IllegalArgumentException e) {
+					throw new XmlConfigException("invalid value encoding '" + strEnc + "', e=" + e, elEnc, e);
+				}
+			}
 			else {
                                 System.out.println("INFO: 4: output written by OutputStream()\n");
 				Element elStream	= XmlUtil.getRequiredSingleChildElement(elCallback, XmlElement.stream);
@@ -35,6 +35,7 @@ package ch.javasoft.metabolic.efm.memory;
 
 import java.io.IOException;
 
+import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.metabolic.efm.column.Column;
 
 /**
@@ -48,4 +49,12 @@ public interface IndexableMemory<Col extends Column> extends IterableMemory<Col>
 	 * Returns the column specified by index
 	 */
 	Col getColumn(int index) throws IOException;
+	/**
+	 * Returns the bit pattern of the column specified by index, the same as
+	 * {@code getColumn(index).bitValues()}. Implementations might avoid 
+	 * reading the numeric values, thus, this method should be preferred by
+	 * adjacency tests only needing the zero patterns. The returned bit set
+	 * must not be modified.
+	 */
+	IBitSet getBitValues(int index) throws IOException;
 }
@@ -37,6 +37,7 @@ import java.io.IOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.util.MappingUtil;
 import ch.javasoft.util.IntArray;
@@ -55,6 +56,25 @@ public class MappedSortableMemory<Col extends Column> implements SortableMemory<
 		this.baseMemory	= baseMemory;
 		this.mapping 	= MappingUtil.getInitialMapping(baseMemory.getColumnCount());
 	}
+	/**
+	 * Constructor for a mapped memory exposing only the columns 
+	 * <code>from</code> (inclusive) to <code>to</code> (exclusive) of the base
+	 * memory
+	 * 
+	 * @param baseMemory	the underlying memory
+	 * @param from			the first column index of the base memory, inclusive
+	 * @param to			the last column index of the base memory, exclusive
+	 */
+	public MappedSortableMemory(IndexableMemory<Col> baseMemory, int from, int to) throws IOException {
+		if (from < 0 || to < from || to > baseMemory.getColumnCount()) {
+			throw new IndexOutOfBoundsException("invalid range [" + from + ", " + to + ") for memory with " + baseMemory.getColumnCount() + " columns");
+		}
+		this.baseMemory	= baseMemory;
+		this.mapping 	= new int[to - from];
+		for (int i = 0; i < mapping.length; i++) {
+			mapping[i] = from + i;
+		}
+	}
 
 	public String fileId() throws IOException {
 		return baseMemory.fileId();
@@ -67,6 +87,9 @@ public class MappedSortableMemory<Col extends Column> implements SortableMemory<
 	public Col getColumn(int index) throws IOException {
 		return baseMemory.getColumn(mapping[index]);
 	}
+	public IBitSet getBitValues(int index) throws IOException {
+		return baseMemory.getBitValues(mapping[index]);
+	}
 
 	public Iterator<Col> iterator() {
 		return new Iterator<Col>() {
@@ -101,4 +101,11 @@ public interface MemoryFactory {
 	 * 						stored on disk
 	 */
 	<N extends Number, Col extends Column> ReadWriteMemory<Col> createReadWriteMemory(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, int iteration, MemoryPart part) throws IOException;
+	/**
+	 * Called when the computation ends. Process wide settings installed for
+	 * the memories of the computation are restored, for instance a shared 
+	 * page cache. Memories created by this factory can still be read, and
+	 * the factory can be used for another computation.
+	 */
+	void release();
 }
@@ -40,6 +40,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.memory.IndexableMemory;
 import ch.javasoft.metabolic.efm.memory.ReadWriteMemory;
@@ -83,6 +84,9 @@ public class InCoreMemory<Col extends Column> implements ReadWriteMemory<Col> {
 	public Col getColumn(int index) {
 		return mColumns.get(index);
 	}
+	public IBitSet getBitValues(int index) {
+		return mColumns.get(index).bitValues();
+	}
 	public void swapColumns(int indexA, int indexB) throws IOException {
 		final Col colA = mColumns.get(indexA);
 		mColumns.set(indexA, mColumns.get(indexB));
@@ -54,4 +54,7 @@ public class InCoreMemoryFactory implements MemoryFactory {
 	public <N extends Number, Col extends Column> ReadWriteMemory<Col> createReadWriteMemory(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, int iteration, MemoryPart part) throws IOException {
 		return new InCoreMemory<Col>();
 	}
+	public void release() {
+		// nothing to restore
+	}
 }
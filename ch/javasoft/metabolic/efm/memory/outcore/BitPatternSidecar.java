@@ -0,0 +1,207 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.jbase.MappedFilePersister;
+import ch.javasoft.jbase.RandomAccessPersister;
+import ch.javasoft.jbase.util.BulkDataInput;
+import ch.javasoft.metabolic.efm.util.BitSetUtil;
+
+/**
+ * The <code>BitPatternSidecar</code> stores the bit patterns of the columns
+ * of an {@link OutOfCoreMemory} in a separate file, next to the table file.
+ * Every pattern uses a fixed number of long words, the file is memory mapped.
+ * Adjacency tests only need the patterns, they can thus be read without 
+ * deserializing the numeric values. The sidecar file is small compared to 
+ * the table, and it usually stays in the operating system's file cache even 
+ * if the table does not.
+ * <p>
+ * Modifications are synchronized. Like for the table, reads must not overlap
+ * with modifications. Every reading thread uses its own read copy of the
+ * mapped file. Like for {@link ch.javasoft.jbase.concurrent.ConcurrentTable},
+ * closing the sidecar only closes the read copy of the current thread, unless
+ * it is closed by the owner (the thread which created the sidecar) or erased.
+ */
+/*package*/ class BitPatternSidecar {
+	
+	/** Suffix appended to the table file name*/
+	public static final String SUFFIX = ".bits";
+	
+	private static final int CHUNK_SIZE = 1 << 20;//1M
+	
+	private final File					file;
+	private final int					words;
+	private final MappedFilePersister	persister;
+	private final Thread				owner;
+	private volatile int				count;
+	
+	private final ThreadLocal<RandomAccessPersister> readCopy = new ThreadLocal<RandomAccessPersister>();
+
+	private BitPatternSidecar(File file, int booleanSize, boolean readOnly, int count) throws IOException {
+		this.file		= file;
+		this.words		= BitSetUtil.longSize(booleanSize);
+		this.persister	= new MappedFilePersister(file, readOnly, CHUNK_SIZE);
+		this.owner		= Thread.currentThread();
+		this.count		= count;
+	}
+	
+	/**
+	 * Creates a new, empty sidecar for the given table file. An existing 
+	 * sidecar file is replaced.
+	 */
+	public static BitPatternSidecar create(File tableFile, int booleanSize) throws IOException {
+		final File file = getFile(tableFile);
+		if (file.exists() && !file.delete()) {
+			throw new IOException("cannot delete bit pattern file: " + file.getAbsolutePath());
+		}
+		return new BitPatternSidecar(file, booleanSize, false, 0);
+	}
+	/**
+	 * Opens the sidecar for an existing table file, or returns null if no 
+	 * sidecar exists or if its size does not match the table.
+	 */
+	public static BitPatternSidecar open(File tableFile, int booleanSize, int columnCount) throws IOException {
+		final File file = getFile(tableFile);
+		final long expected = 8L * BitSetUtil.longSize(booleanSize) * columnCount;
+		if (!file.exists() || file.length() != expected) {
+			return null;
+		}
+		return new BitPatternSidecar(file, booleanSize, false, columnCount);
+	}
+	private static File getFile(File tableFile) {
+		return new File(tableFile.getParentFile(), tableFile.getName() + SUFFIX);
+	}
+	
+	/** Returns the number of patterns in this sidecar*/
+	public int size() {
+		return count;
+	}
+
+	public synchronized void add(IBitSet bitValues) throws IOException {
+		write(count, BitSetUtil.toLongArray(bitValues));
+		count++;
+	}
+	public synchronized void set(int index, IBitSet bitValues) throws IOException {
+		checkIndex(index);
+		write(index, BitSetUtil.toLongArray(bitValues));
+	}
+	public synchronized void swap(int indexA, int indexB) throws IOException {
+		checkIndex(indexA);
+		checkIndex(indexB);
+		final long[] a = read(persister, indexA);
+		final long[] b = read(persister, indexB);
+		write(indexA, b);
+		write(indexB, a);
+	}
+	public synchronized void clear() throws IOException {
+		persister.setLength(0);
+		count = 0;
+	}
+	
+	/**
+	 * Returns the bit pattern at the given index, the bit set type is defined
+	 * by {@link BitSetUtil#patternFactory()}
+	 */
+	public IBitSet get(int index) throws IOException {
+		checkIndex(index);
+		return BitSetUtil.fromLongArray(read(getReadCopy(), index), false /*cloneArray*/);
+	}
+	private RandomAccessPersister getReadCopy() throws IOException {
+		RandomAccessPersister copy = readCopy.get();
+		if (copy == null) {
+			copy = persister.createReadCopy(null /*lock*/);
+			readCopy.set(copy);
+		}
+		return copy;
+	}
+	
+	public void flush() throws IOException {
+		persister.flush();
+	}
+	/**
+	 * Closes the read copy of the current thread. If called by the owner or 
+	 * if {@code erase} is true, the sidecar file itself is closed, and 
+	 * subsequent accesses fail also for other threads.
+	 */
+	public void close(boolean erase) throws IOException {
+		final RandomAccessPersister copy = readCopy.get();
+		if (copy != null) {
+			readCopy.remove();
+			copy.close(false);
+		}
+		if (erase || owner == Thread.currentThread()) {
+			persister.close(erase);
+			if (erase) {
+				file.delete();
+			}
+		}
+	}
+	
+	private void checkIndex(int index) throws IOException {
+		if (index < 0 || index >= count) {
+			throw new IOException("index out of bounds: " + index + " not in [0, " + count + ")");
+		}
+	}
+	private long[] read(RandomAccessPersister pers, int index) throws IOException {
+		final long[] longs = new long[words];
+		pers.setPosition(8L * words * index);
+		final DataInput in = pers.getInput();
+		if (in instanceof BulkDataInput) {
+			((BulkDataInput)in).readLongs(longs, 0, words);
+		}
+		else {
+			for (int i = 0; i < words; i++) {
+				longs[i] = in.readLong();
+			}
+		}
+		return longs;
+	}
+	private void write(int index, long[] longs) throws IOException {
+		persister.setPosition(8L * words * index);
+		final DataOutput out = persister.getOutput();
+		final int len = Math.min(words, longs.length);
+		for (int i = 0; i < len; i++) {
+			out.writeLong(longs[i]);
+		}
+		for (int i = len; i < words; i++) {
+			out.writeLong(0L);
+		}
+	}
+}
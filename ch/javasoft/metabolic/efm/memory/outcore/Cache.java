@@ -40,6 +40,7 @@ import ch.javasoft.jbase.VariableWidthTable;
 import ch.javasoft.metabolic.efm.column.BigIntegerColumn;
 import ch.javasoft.metabolic.efm.column.DoubleColumn;
 import ch.javasoft.metabolic.efm.column.FractionalColumn;
+import ch.javasoft.metabolic.efm.column.LongColumn;
 
 /**
  * Cache settings for {@link Table} use for different persisted objects.
@@ -69,6 +70,11 @@ public enum Cache {
 	 * for {@link BigIntegerColumn}
 	 */
 	VarIntMemoryTable(16, 1024), 
+	/**
+	 * The cache specification for tables used by {@link OutOfCoreMemory}
+	 * for {@link LongColumn}
+	 */
+	LongMemoryTable(16, 2048), 
 	/**
 	 * The cache specification for tables used by 
 	 * {@link ch.javasoft.metabolic.efm.tree.outcore.PersistentBitPatternTree PersistentBitPatternTree}
@@ -0,0 +1,259 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.util.ExceptionUtil;
+
+/**
+ * The <code>ExternalMergeSort</code> sorts the columns of an 
+ * {@link OutOfCoreMemory} by a key of selective bits, as used by bit pattern
+ * trees. If a memory is sorted by the selective bits before the tree is 
+ * constructed, partitioning the memory for the tree nodes needs no swaps at 
+ * all, and the tree is built with sequential reads only.
+ * <p>
+ * The columns are split into runs which are read sequentially, sorted 
+ * in-core and written to temporary run files by multiple threads. The runs 
+ * are then merged with a k-way merge using large sequential buffers, and the
+ * merged columns are written back to the memory in index order. If all 
+ * columns fit into a single run, no run files are needed.
+ * <p>
+ * Note that writing back is not atomic, a memory might be inconsistent if the
+ * computation is aborted while sorting.
+ */
+public class ExternalMergeSort {
+	
+	/** Estimated heap bytes for the columns of a single run*/
+	public static final long RUN_BYTES		= 32L * 1024 * 1024;
+	/** Total bytes of the input buffers during merging*/
+	public static final int MERGE_BYTES		= 64 * 1024 * 1024;
+	/** Minimum and maximum buffer bytes per run file*/
+	public static final int MIN_BUFFER_BYTES	= 64 * 1024;
+	public static final int MAX_BUFFER_BYTES	= 4 * 1024 * 1024;
+
+	/**
+	 * Compares columns lexicographically by the given key bits, a cleared 
+	 * bit comes before a set bit
+	 */
+	public static class KeyComparator<Col extends Column> implements Comparator<Col> {
+		private final int[] keyBits;
+		public KeyComparator(int[] keyBits) {
+			this.keyBits = keyBits;
+		}
+		public int compare(Col colA, Col colB) {
+			final IBitSet bitsA = colA.bitValues();
+			final IBitSet bitsB = colB.bitValues();
+			for (int i = 0; i < keyBits.length; i++) {
+				final boolean bitA = bitsA.get(keyBits[i]);
+				if (bitA != bitsB.get(keyBits[i])) {
+					return bitA ? 1 : -1;
+				}
+			}
+			return 0;
+		}
+	}
+	
+	/**
+	 * Sorts the columns of the given memory by the key bits.
+	 * 
+	 * @param columnHome	column home to read and write run files
+	 * @param memory		the memory to sort
+	 * @param keyBits		the bit indices defining the sort key, the first 
+	 * 						bit being most significant
+	 * @param threads		the number of threads to sort runs
+	 * @throws IOException	if an i/o exception occurs
+	 */
+	public static <Col extends Column> void sort(ColumnHome<?, Col> columnHome, OutOfCoreMemory<Col> memory, int[] keyBits, int threads) throws IOException {
+		final long colBytes = 64 + memory.mBooleanSize / 8 + 16L * memory.mNumericSize;
+		sort(columnHome, memory, keyBits, threads, (int)Math.max(1024, RUN_BYTES / colBytes));
+	}
+	/*package*/ static <Col extends Column> void sort(final ColumnHome<?, Col> columnHome, final OutOfCoreMemory<Col> memory, int[] keyBits, int threads, final int runSize) throws IOException {
+		final int cols = memory.getColumnCount();
+		if (cols <= 1) return;
+		
+		final long start = System.currentTimeMillis();
+		final Comparator<Col> comparator = new KeyComparator<Col>(keyBits);
+		if (cols <= runSize) {
+			final List<Col> run = readRun(memory, 0, cols, comparator);
+			for (int i = 0; i < cols; i++) {
+				memory.setColumn(i, run.get(i));
+			}
+			memory.flush();
+			return;
+		}
+		
+		final int runs = (cols + runSize - 1) / runSize;
+		final File[] runFiles = new File[runs];
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, runs)), new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				final Thread thread = new Thread(r, "external-sort");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			final List<Future<File>> futures = new ArrayList<Future<File>>(runs);
+			for (int i = 0; i < runs; i++) {
+				final int index = i;
+				futures.add(executor.submit(new Callable<File>() {
+					public File call() throws IOException {
+						return writeRun(columnHome, memory, index, index * runSize, Math.min(cols, (index + 1) * runSize), comparator);
+					}
+				}));
+			}
+			for (int i = 0; i < runs; i++) {
+				runFiles[i] = futures.get(i).get();
+			}
+			merge(columnHome, memory, runFiles, runSize, comparator);
+		}
+		catch (InterruptedException ex) {
+			throw ExceptionUtil.toRuntimeExceptionOr(IOException.class, ex);
+		}
+		catch (ExecutionException ex) {
+			throw ExceptionUtil.toRuntimeExceptionOr(IOException.class, ex.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+			for (final File file : runFiles) {
+				if (file != null) file.delete();
+			}
+		}
+		LogPkg.LOGGER.fine("external sort of " + cols + " columns in " + runs + " runs: " + (System.currentTimeMillis() - start) + "ms");
+	}
+	
+	private static <Col extends Column> List<Col> readRun(OutOfCoreMemory<Col> memory, int start, int end, Comparator<Col> comparator) throws IOException {
+		final List<Col> run = new ArrayList<Col>(end - start);
+		for (int i = start; i < end; i++) {
+			run.add(memory.getColumn(i));
+		}
+		Collections.sort(run, comparator);
+		return run;
+	}
+	
+	private static <Col extends Column> File writeRun(ColumnHome<?, Col> columnHome, OutOfCoreMemory<Col> memory, int index, int start, int end, Comparator<Col> comparator) throws IOException {
+		final List<Col> run = readRun(memory, start, end, comparator);
+		final File file = new File(memory.mFile.getParentFile(), memory.mFile.getName() + ".run" + index);
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), MAX_BUFFER_BYTES));
+		try {
+			for (final Col col : run) {
+				columnHome.writeTo(col, out);
+			}
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+	
+	/**
+	 * A sorted run file being merged, with its current head column
+	 */
+	private static class RunReader<Col extends Column> {
+		final DataInputStream	in;
+		int						remaining;
+		Col						head;
+		RunReader(File file, int columns, int bufferSize) throws IOException {
+			in			= new DataInputStream(new BufferedInputStream(new FileInputStream(file), bufferSize));
+			remaining	= columns;
+		}
+		boolean next(ColumnHome<?, Col> columnHome, int booleanSize, int numericSize) throws IOException {
+			if (remaining == 0) {
+				head = null;
+				return false;
+			}
+			head = columnHome.readFrom(in, booleanSize, numericSize);
+			remaining--;
+			return true;
+		}
+	}
+	
+	private static <Col extends Column> void merge(ColumnHome<?, Col> columnHome, OutOfCoreMemory<Col> memory, File[] runFiles, int runSize, final Comparator<Col> comparator) throws IOException {
+		final int cols		= memory.getColumnCount();
+		final int bufSize	= Math.max(MIN_BUFFER_BYTES, Math.min(MAX_BUFFER_BYTES, MERGE_BYTES / runFiles.length));
+		final PriorityQueue<RunReader<Col>> queue = new PriorityQueue<RunReader<Col>>(runFiles.length, new Comparator<RunReader<Col>>() {
+			public int compare(RunReader<Col> r1, RunReader<Col> r2) {
+				return comparator.compare(r1.head, r2.head);
+			}
+		});
+		final List<RunReader<Col>> readers = new ArrayList<RunReader<Col>>(runFiles.length);
+		try {
+			int remaining = cols;
+			for (int i = 0; i < runFiles.length; i++) {
+				final RunReader<Col> reader = new RunReader<Col>(runFiles[i], Math.min(runSize, remaining), bufSize);
+				remaining -= reader.remaining;
+				readers.add(reader);
+				if (reader.next(columnHome, memory.mBooleanSize, memory.mNumericSize)) {
+					queue.add(reader);
+				}
+			}
+			int index = 0;
+			while (!queue.isEmpty()) {
+				final RunReader<Col> reader = queue.poll();
+				memory.setColumn(index++, reader.head);
+				if (reader.next(columnHome, memory.mBooleanSize, memory.mNumericSize)) {
+					queue.add(reader);
+				}
+			}
+			memory.flush();
+		}
+		finally {
+			for (final RunReader<Col> reader : readers) {
+				reader.in.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.javasoft.metabolic.efm.column.DoubleColumn;
+import ch.javasoft.metabolic.efm.util.ColumnUtil;
+import ch.javasoft.metabolic.efm.util.MappingUtil;
+
+public class ExternalMergeSortTest extends TestCase {
+	
+	private static final int BITS		= 40;
+	private static final int COLUMNS	= 1000;
+	
+	public void testSortMultipleRuns() throws IOException {
+		testSort(37, 3);
+	}
+	public void testSortSingleRun() throws IOException {
+		testSort(COLUMNS, 1);
+	}
+	
+	private void testSort(int runSize, int threads) throws IOException {
+		final File folder = File.createTempFile("external-sort-", "");
+		assertTrue(folder.delete() && folder.mkdir());
+		final Random rnd = new Random(4711);
+		final OutOfCoreMemory<DoubleColumn> mem = new OutOfCoreMemory<DoubleColumn>(folder, 1, BITS, 1, false, DoubleColumn.HOME);
+		try {
+			final List<String> expected = new ArrayList<String>();
+			for (int i = 0; i < COLUMNS; i++) {
+				final DoubleColumn col = new DoubleColumn(BITS, 1);
+				for (int b = 0; b < BITS; b++) {
+					if (rnd.nextBoolean()) col.bitValues().set(b);
+				}
+				mem.appendColumn(col);
+				expected.add(col.toString());
+			}
+			final int[] keyBits = MappingUtil.getInitialMapping(BITS);
+			for (int i = BITS - 1; i > 0; i--) {
+				final int j = rnd.nextInt(i + 1);
+				final int tmp = keyBits[i];
+				keyBits[i] = keyBits[j];
+				keyBits[j] = tmp;
+			}
+			
+			ExternalMergeSort.sort(DoubleColumn.HOME, mem, keyBits, threads, runSize);
+			
+			//all columns still there, and sorted
+			final List<String> actual = new ArrayList<String>();
+			final ExternalMergeSort.KeyComparator<DoubleColumn> cmp = new ExternalMergeSort.KeyComparator<DoubleColumn>(keyBits);
+			for (int i = 0; i < COLUMNS; i++) {
+				actual.add(mem.getColumn(i).toString());
+				if (i > 0) {
+					assertTrue(cmp.compare(mem.getColumn(i - 1), mem.getColumn(i)) <= 0);
+				}
+			}
+			//partitioning by the first key bits needs no swap
+			final int median = ColumnUtil.partitionColumns(mem, keyBits[0], 0, COLUMNS).getMedian();
+			ColumnUtil.partitionColumns(mem, keyBits[1], 0, median);
+			ColumnUtil.partitionColumns(mem, keyBits[1], median, COLUMNS);
+			for (int i = 0; i < COLUMNS; i++) {
+				assertEquals(actual.get(i), mem.getColumn(i).toString());
+				//bit pattern sidecar follows sorting and swapping
+				assertEquals(mem.getColumn(i).bitValues(), mem.getBitValues(i));
+			}
+
+			Collections.sort(expected);
+			Collections.sort(actual);
+			assertEquals(expected, actual);
+			assertEquals(2, folder.list().length);//table and bit pattern sidecar, run files deleted
+		}
+		finally {
+			mem.close(true);
+			folder.delete();
+		}
+	}
+
+}
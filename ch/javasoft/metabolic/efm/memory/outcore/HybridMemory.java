@@ -0,0 +1,266 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.memory.IndexableMemory;
+import ch.javasoft.metabolic.efm.memory.ReadWriteMemory;
+import ch.javasoft.metabolic.efm.memory.SortableMemory;
+import ch.javasoft.metabolic.efm.memory.incore.InCoreMemory;
+
+/**
+ * The <code>HybridMemory</code> stores columns in-core until the 
+ * {@link MemoryBudget memory budget} is exceeded and this memory is chosen 
+ * to be spilled. All columns are then copied to an out-of-core memory, and 
+ * all further operations are delegated to the out-of-core memory.
+ * <p>
+ * Appending is thread safe. Reading, sorting and appending should not occur
+ * concurrently, as for the in-core memory. Iterators created before this 
+ * memory is spilled continue to iterate over the in-core columns.
+ */
+public class HybridMemory<Col extends Column> implements ReadWriteMemory<Col> {
+	
+	/**
+	 * Creates the out-of-core memory when a hybrid memory is spilled
+	 */
+	public static interface SpillTarget<Col extends Column> {
+		ReadWriteMemory<Col> createSpillMemory() throws IOException;
+	}
+	
+	private final String				name;
+	private final MemoryBudget			budget;
+	private final MemoryBudget.Ref		budgetRef;
+	private final SpillTarget<Col>		spillTarget;
+	private final long					columnBytes;
+	private final ReadWriteLock			lock = new ReentrantReadWriteLock();
+	
+	private volatile InCoreMemory<Col>		inCore = new InCoreMemory<Col>();//null if spilled
+	private volatile ReadWriteMemory<Col>	outCore;//null if not spilled
+	private volatile boolean				closed;
+
+	/**
+	 * Constructor for hybrid memory
+	 * 
+	 * @param name			a name for logging, e.g. part and iteration
+	 * @param budget		the budget accounting for the memory in use
+	 * @param spillTarget	creates the out-of-core memory if this memory is
+	 * 						spilled
+	 * @param columnBytes	estimated size of a single column in bytes
+	 */
+	public HybridMemory(String name, MemoryBudget budget, SpillTarget<Col> spillTarget, long columnBytes) {
+		this.name			= name;
+		this.budget			= budget;
+		this.budgetRef		= budget.register(this);
+		this.spillTarget	= spillTarget;
+		this.columnBytes	= columnBytes;
+	}
+	
+	/**
+	 * Returns true if this memory has been spilled to out-of-core memory
+	 */
+	public boolean isSpilled() {
+		return outCore != null;
+	}
+	
+	/**
+	 * Copies all columns to out-of-core memory and releases the in-core 
+	 * columns. Returns the bytes released from the budget, or 0 if this 
+	 * memory has already been spilled or closed.
+	 */
+	/*package*/ long spill() throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (inCore == null || closed) return 0;
+			final ReadWriteMemory<Col> mem = spillTarget.createSpillMemory();
+			mem.appendFrom(inCore);
+			outCore	= mem;
+			inCore	= null;
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		return budget.release(budgetRef);
+	}
+	
+	private ReadWriteMemory<Col> current() {
+		final InCoreMemory<Col> mem = inCore;
+		return mem != null ? mem : outCore;
+	}
+
+	public String fileId() throws IOException {
+		lock.readLock().lock();
+		try {
+			return current().fileId();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public void appendColumn(Col column) throws IOException {
+		final boolean appendedInCore;
+		lock.readLock().lock();
+		try {
+			final InCoreMemory<Col> mem = inCore;
+			if (appendedInCore = (mem != null)) {
+				synchronized (mem) {
+					mem.appendColumn(column);
+				}
+			}
+			else {
+				current().appendColumn(column);
+			}
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+		if (appendedInCore && !closed) {
+			budget.allocate(budgetRef, columnBytes);
+		}
+	}
+
+	public void appendColumns(Iterable<? extends Col> columns) throws IOException {
+		for (final Col col : columns) {
+			appendColumn(col);
+		}
+	}
+
+	public void appendFrom(IndexableMemory<? extends Col> memory) throws IOException {
+		appendColumns(memory);
+	}
+
+	public int getColumnCount() throws IOException {
+		lock.readLock().lock();
+		try {
+			return current().getColumnCount();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public Col getColumn(int index) throws IOException {
+		lock.readLock().lock();
+		try {
+			return current().getColumn(index);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public IBitSet getBitValues(int index) throws IOException {
+		lock.readLock().lock();
+		try {
+			return current().getBitValues(index);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public void swapColumns(int indexA, int indexB) throws IOException {
+		lock.readLock().lock();
+		try {
+			current().swapColumns(indexA, indexB);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public Iterator<Col> iterator() {
+		lock.readLock().lock();
+		try {
+			return current().iterator();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns this memory if it is in-core, and the sortable memory of the
+	 * out-of-core memory if it has been spilled
+	 */
+	public SortableMemory<Col> toSortableMemory() throws IOException {
+		lock.readLock().lock();
+		try {
+			return outCore == null ? this : outCore.toSortableMemory();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public void flush() throws IOException {
+		lock.readLock().lock();
+		try {
+			current().flush();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Closes the out-of-core memory if this memory has been spilled, and 
+	 * releases the bytes from the budget. Like for the in-core memory, 
+	 * in-core columns are not cleared.
+	 */
+	public void close(boolean erase) throws IOException {
+		lock.writeLock().lock();
+		try {
+			closed = true;
+			if (outCore != null) {
+				outCore.close(erase);
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+		budget.release(budgetRef);
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.IOException;
+
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.metabolic.efm.config.MemoryBudgetConfig;
+import ch.javasoft.metabolic.efm.memory.AppendableMemory;
+import ch.javasoft.metabolic.efm.memory.MemoryFactory;
+import ch.javasoft.metabolic.efm.memory.MemoryPart;
+import ch.javasoft.metabolic.efm.memory.ReadWriteMemory;
+import ch.javasoft.metabolic.efm.model.NetworkEfmModel;
+
+/**
+ * The <code>HybridMemoryFactory</code> creates {@link HybridMemory hybrid 
+ * memories}, which are kept in-core as long as the estimated size of all live
+ * memories fits into the {@link MemoryBudgetConfig memory budget}. If the 
+ * budget is exceeded, the largest memories are spilled to out-of-core 
+ * memory as created by the {@link SortInCoreOutOfCoreMemoryFactory}.
+ * <p>
+ * Thus, early iterations run completely in-core, and large partitions of 
+ * late iterations are stored in files.
+ */
+public class HybridMemoryFactory implements MemoryFactory {
+	
+	/** Estimated bytes per numeric value for exact arithmetic*/
+	private static final int EXACT_NUMBER_BYTES		= 48;
+	/** Estimated object overhead per column: column, bitset and arrays*/
+	private static final int COLUMN_OVERHEAD_BYTES	= 80;
+
+	private final OutOfCoreMemoryFactory outCoreFactory = new SortInCoreOutOfCoreMemoryFactory();
+	
+	private MemoryBudget budget;
+	
+	private synchronized MemoryBudget getBudget(NetworkEfmModel efmModel) {
+		if (budget == null) {
+			final MemoryBudgetConfig budgetConfig = efmModel.getConfig().getMemoryBudgetConfig();
+			budget = new MemoryBudget(budgetConfig.getBudget());
+			LogPkg.LOGGER.info("using hybrid memory with budget of " + budget.getBudget() + " bytes (" + budgetConfig.getSize() + ")");
+		}
+		return budget;
+	}
+	
+	/**
+	 * Estimates the heap size of a column in bytes
+	 */
+	private static long getColumnBytes(ColumnHome<?, ?> columnHome, NetworkEfmModel efmModel, int iteration) {
+		final int booleanSize	= efmModel.getBooleanSize(iteration);
+		final int numericSize	= efmModel.getNumericSize(iteration);
+		final int numberBytes	= columnHome.getArithmetic().isExact() ? EXACT_NUMBER_BYTES : 8;
+		return COLUMN_OVERHEAD_BYTES + 8L * ((booleanSize + 63) / 64) + ((long)numberBytes) * numericSize;
+	}
+
+	public <N extends Number, Col extends Column> AppendableMemory<Col> createConcurrentAppendableMemory(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, int iteration, MemoryPart part) throws IOException {
+		return createReadWriteMemory(columnHome, efmModel, iteration, part);
+	}
+	
+	public <N extends Number, Col extends Column> ReadWriteMemory<Col> createReadWriteMemory(final ColumnHome<N, Col> columnHome, final NetworkEfmModel efmModel, final int iteration, final MemoryPart part) throws IOException {
+		final HybridMemory.SpillTarget<Col> spillTarget = new HybridMemory.SpillTarget<Col>() {
+			public ReadWriteMemory<Col> createSpillMemory() throws IOException {
+				return outCoreFactory.createReadWriteMemory(columnHome, efmModel, iteration, part);
+			}
+		};
+		final String name = (part == null ? "memory" : "memory part " + part) + " of iteration " + iteration;
+		return new HybridMemory<Col>(name, getBudget(efmModel), spillTarget, getColumnBytes(columnHome, efmModel, iteration));
+	}
+	
+	/**
+	 * Releases the out-of-core factory for spilled memories, the budget of 
+	 * the next computation is taken from its config
+	 */
+	public synchronized void release() {
+		budget = null;
+		outCoreFactory.release();
+	}
+	
+}
@@ -0,0 +1,105 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+import ch.javasoft.metabolic.efm.column.DoubleColumn;
+import ch.javasoft.metabolic.efm.memory.ReadWriteMemory;
+import ch.javasoft.metabolic.efm.memory.incore.InCoreMemory;
+
+public class HybridMemoryTest extends TestCase {
+	
+	private static final int COLUMN_BYTES = 100;
+	
+	private static class CountingTarget implements HybridMemory.SpillTarget<DoubleColumn> {
+		int spills;
+		public ReadWriteMemory<DoubleColumn> createSpillMemory() throws IOException {
+			spills++;
+			return new InCoreMemory<DoubleColumn>();
+		}
+	}
+	
+	public void testSpillLargest() throws IOException {
+		final MemoryBudget budget = new MemoryBudget(25 * COLUMN_BYTES);
+		final CountingTarget smallTarget = new CountingTarget();
+		final CountingTarget largeTarget = new CountingTarget();
+		final HybridMemory<DoubleColumn> small = new HybridMemory<DoubleColumn>("small", budget, smallTarget, COLUMN_BYTES);
+		final HybridMemory<DoubleColumn> large = new HybridMemory<DoubleColumn>("large", budget, largeTarget, COLUMN_BYTES);
+		append(small, 5);
+		append(large, 20);
+		assertFalse(small.isSpilled());
+		assertFalse(large.isSpilled());
+		assertEquals(25 * COLUMN_BYTES, budget.getUsed());
+		
+		//exceeds the budget, the large memory is spilled
+		final Iterator<DoubleColumn> it = large.iterator();
+		append(small, 1);
+		assertFalse(small.isSpilled());
+		assertTrue(large.isSpilled());
+		assertEquals(1, largeTarget.spills);
+		assertEquals(0, smallTarget.spills);
+		assertEquals(6 * COLUMN_BYTES, budget.getUsed());
+		assertEquals(1, budget.getSpillCount());
+		
+		//spilled memory retains all columns, appends are not accounted
+		append(large, 10);
+		assertEquals(30, large.getColumnCount());
+		for (int i = 0; i < 30; i++) {
+			assertEquals(i % 20, large.getColumn(i).booleanSize());
+		}
+		assertEquals(6 * COLUMN_BYTES, budget.getUsed());
+
+		//iterator created before spilling still works
+		int cnt = 0;
+		while (it.hasNext()) {
+			it.next();
+			cnt++;
+		}
+		assertEquals(20, cnt);
+		
+		small.close(true);
+		large.close(true);
+		assertEquals(0, budget.getUsed());
+	}
+	
+	private static void append(HybridMemory<DoubleColumn> mem, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			mem.appendColumn(new DoubleColumn((mem.getColumnCount()) % 20, 1));
+		}
+	}
+
+}
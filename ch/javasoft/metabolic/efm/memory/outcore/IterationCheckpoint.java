@@ -0,0 +1,332 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.memory.AppendableMemory;
+import ch.javasoft.metabolic.efm.memory.IterableMemory;
+
+/**
+ * The <code>IterationCheckpoint</code> records the progress of the adjacency
+ * enumeration within an iteration, that is, the parts of a distributed 
+ * enumeration which have been completed, and the number of new modes which 
+ * have been appended by these parts. The parts are node pairs of the pos and
+ * neg pattern trees, see 
+ * {@link ch.javasoft.metabolic.efm.dist.PartCostEstimator}.
+ * <p>
+ * The checkpoint is written periodically by the server of the distributed 
+ * computation, after the appended modes have been flushed to disk. It is 
+ * written to a temporary file first, which is then renamed, such that a
+ * crash never leaves a corrupt checkpoint behind.
+ * <p>
+ * A crashed computation can resume the iteration from the checkpoint, see 
+ * {@link Recovery}. The checkpoint is only valid if the pos, zero and neg 
+ * modes are the same and in the same order as when the checkpoint was 
+ * written, which is verified with a {@link #digest(IterableMemory...) digest}
+ * when the enumeration {@link #start(int, long, AppendableMemory) starts}. 
+ * If the digest does not match, the iteration is restarted from scratch. 
+ * Sorting the modes again usually changes the order of modes with equal 
+ * selective bits, thus, checkpoints are typically only usable with tree 
+ * recovery, which reuses the sorted modes and the pattern trees of the 
+ * crashed computation.
+ */
+public class IterationCheckpoint {
+	
+	private static final int 	MAGIC 		= 0x4546434b;//EFCK
+	private static final String	PREFIX		= "checkpoint_";
+	private static final String	POSTFIX		= "i.chk";
+	
+	private final File		folder;
+	private final int		iteration;
+	private final int		partCount;
+	private final long		interval;
+	private final long		resumedDigest;
+	private final IterableMemory<?> resumedModes;//null if not resumed
+	
+	private BitSet	resumed;//parts completed before resuming
+	private long	resumedColumns;
+	private long	digest;
+	private long	lastWrite;	
+	private boolean	started;
+	
+	/**
+	 * Constructor for a new checkpoint
+	 * 
+	 * @param folder		the folder where the checkpoint file is written
+	 * @param iteration		the iteration index
+	 * @param partCount		the number of parts of the distributed enumeration
+	 * @param interval		minimum time between two checkpoints in millis
+	 */
+	public IterationCheckpoint(File folder, int iteration, int partCount, long interval) {
+		this(folder, iteration, partCount, interval, 0, new BitSet(), 0, null);
+	}
+	private IterationCheckpoint(File folder, int iteration, int partCount, long interval, long resumedDigest, BitSet resumed, long resumedColumns, IterableMemory<?> resumedModes) {
+		this.folder			= folder;
+		this.iteration		= iteration;
+		this.partCount		= partCount;
+		this.interval		= interval;
+		this.resumedDigest	= resumedDigest;
+		this.resumed		= resumed;
+		this.resumedColumns	= resumedColumns;
+		this.resumedModes	= resumedModes;
+		this.lastWrite		= System.currentTimeMillis();
+	}
+	
+	/**
+	 * Returns the checkpoint file for the given iteration
+	 */
+	public static File getFile(File folder, int iteration) {
+		return new File(folder, PREFIX + iteration + POSTFIX);
+	}
+	/**
+	 * Returns the checkpoint file
+	 */
+	public File getFile() {
+		return getFile(folder, iteration);
+	}
+	
+	/**
+	 * Reads the checkpoint for the given iteration, or returns null if no 
+	 * checkpoint file exists. The returned checkpoint resumes the completed 
+	 * parts, it is written to the same folder with the specified interval.
+	 * 
+	 * @param folder	the folder containing the checkpoint file
+	 * @param iteration	the iteration index
+	 * @param interval	minimum time between two checkpoints in millis
+	 * @throws IOException	if the file cannot be read or is corrupt
+	 */
+	public static IterationCheckpoint read(File folder, int iteration, long interval) throws IOException {
+		final File file = getFile(folder, iteration);
+		if (!file.exists()) return null;
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("not a checkpoint file: " + file.getAbsolutePath());
+			}
+			final int it = in.readInt();
+			if (it != iteration) {
+				throw new IOException("expected checkpoint for iteration " + iteration + " but found " + it + ": " + file.getAbsolutePath());
+			}
+			final int parts		= in.readInt();
+			final long dig		= in.readLong();
+			final long columns	= in.readLong();
+			final long[] words	= new long[in.readInt()];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = in.readLong();
+			}
+			return new IterationCheckpoint(folder, iteration, parts, interval, dig, BitSet.valueOf(words), columns, null);
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Returns a checkpoint continuing this checkpoint in another folder, for
+	 * instance the temp folder of the current computation. 
+	 * 
+	 * @param folder		the folder for new checkpoint files
+	 * @param resumedModes	the new modes of the crashed computation, at least 
+	 * 						the {@link #getResumedColumnCount() resumed} modes
+	 * 						are copied from here when the enumeration starts.
+	 * 						The caller closes the memory after the enumeration.
+	 */
+	public IterationCheckpoint resumeIn(File folder, IterableMemory<?> resumedModes) {
+		return new IterationCheckpoint(folder, iteration, partCount, interval, resumedDigest, (BitSet)resumed.clone(), resumedColumns, resumedModes);
+	}
+	
+	/**
+	 * Returns a digest of the given memories, depending on the columns and 
+	 * their order. The parts are subtrees of pattern trees built from the 
+	 * sorted columns, the same columns in another order might result in
+	 * different parts.
+	 */
+	public static long digest(IterableMemory<?>... memories) {
+		long digest = 17;
+		for (final IterableMemory<?> memory : memories) {
+			digest = 31 * digest + 7;
+			for (final Column col : memory) {
+				digest = 31 * digest + col.hashCode();
+			}
+		}
+		return digest;
+	}
+	
+	public int getIteration() {
+		return iteration;
+	}
+	public int getPartCount() {
+		return partCount;
+	}
+	/**
+	 * Returns the number of parts which were completed before resuming the
+	 * iteration
+	 */
+	public synchronized int getResumedPartCount() {
+		return resumed.cardinality();
+	}
+	/**
+	 * Returns the number of new modes appended by the parts which were 
+	 * completed before resuming the iteration
+	 */
+	public synchronized long getResumedColumnCount() {
+		return resumedColumns;
+	}
+	
+	/**
+	 * Called by the enumeration when it starts, returns the parts which are
+	 * already completed and must not be processed again. If the checkpoint is
+	 * resumed and valid, the new modes of these parts are appended to the 
+	 * given memory. If it is not valid, an empty set is returned, that is,
+	 * the iteration is restarted from scratch.
+	 * 
+	 * @param partCount	the number of parts of the enumeration
+	 * @param digest	the {@link #digest(IterableMemory...) digest} of the
+	 * 					pos, zero and neg modes in the order used to define
+	 * 					the parts
+	 * @param memory	the memory for the new modes, still empty
+	 * @throws IOException	if the number of parts does not match this 
+	 * 						checkpoint, or if copying the modes fails
+	 */
+	public synchronized <Col extends Column> BitSet start(int partCount, long digest, AppendableMemory<Col> memory) throws IOException {
+		if (partCount != this.partCount) {
+			throw new IOException("checkpoint expects " + this.partCount + " parts, but enumeration uses " + partCount + " parts");
+		}
+		this.digest = digest;
+		if (resumedModes != null) {
+			if (digest == resumedDigest) {
+				@SuppressWarnings("unchecked")
+				final IterableMemory<Col> modes = (IterableMemory<Col>)resumedModes;
+				long cnt = 0;
+				for (final Col col : modes) {
+					if (cnt >= resumedColumns) break;
+					memory.appendColumn(col);
+					cnt++;
+				}
+				if (cnt < resumedColumns) {
+					throw new IOException("checkpoint expects " + resumedColumns + " new modes, but only " + cnt + " found");
+				}
+				memory.flush();
+				LogPkg.LOGGER.info("resumed " + this);
+			}
+			else {
+				LogPkg.LOGGER.warning("modes have changed since " + this + " was written, restarting iteration");
+				resumed			= new BitSet();
+				resumedColumns	= 0;
+			}
+		}
+		started		= true;
+		lastWrite	= System.currentTimeMillis();
+		return (BitSet)resumed.clone();
+	}
+	/**
+	 * Returns true if the enumeration has {@link #start(int, long, AppendableMemory) started} using 
+	 * this checkpoint
+	 */
+	public synchronized boolean isStarted() {
+		return started;
+	}
+	/**
+	 * Returns true if the checkpoint interval has elapsed since the last 
+	 * checkpoint
+	 */
+	public synchronized boolean isDue() {
+		return System.currentTimeMillis() - lastWrite >= interval;
+	}
+	
+	/**
+	 * Writes the checkpoint. The caller must make sure that the new modes of
+	 * the completed parts have been flushed, and that no modes of other parts
+	 * have been appended.
+	 * 
+	 * @param completed		the completed parts
+	 * @param columnCount	the number of new modes appended by the completed
+	 * 						parts
+	 * @throws IOException	if writing the checkpoint fails
+	 */
+	public synchronized void write(BitSet completed, long columnCount) throws IOException {
+		final File file = getFile();
+		final File tmp	= new File(folder, file.getName() + ".tmp");
+		final FileOutputStream fileOut = new FileOutputStream(tmp);
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(iteration);
+			out.writeInt(partCount);
+			out.writeLong(digest);
+			out.writeLong(columnCount);
+			final long[] words = completed.toLongArray();
+			out.writeInt(words.length);
+			for (int i = 0; i < words.length; i++) {
+				out.writeLong(words[i]);
+			}
+			out.flush();
+			fileOut.getFD().sync();
+		}
+		finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file)) {
+			//some platforms do not replace existing files
+			if (!file.delete() || !tmp.renameTo(file)) {
+				throw new IOException("cannot rename " + tmp.getAbsolutePath() + " to " + file.getAbsolutePath());
+			}
+		}
+		lastWrite = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Deletes the checkpoint file, called when the iteration is complete
+	 */
+	public void delete() {
+		getFile().delete();
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "checkpoint[iteration=" + iteration + ", parts=" + partCount + 
+			", resumed=" + getResumedPartCount() + "/" + resumedColumns + "]";
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The <code>MemoryBudget</code> tracks the estimated bytes used by all live 
+ * in-core {@link HybridMemory hybrid memories} against a fixed budget. If 
+ * the budget is exceeded, the largest memories are spilled to out-of-core 
+ * memory until the used bytes fit into the budget again.
+ * <p>
+ * Memories are tracked through weak references, memories which are no 
+ * longer referenced release their bytes after garbage collection even if 
+ * they have not been closed.
+ * <p>
+ * This class is thread safe, only one thread is spilling at a time.
+ */
+public class MemoryBudget {
+	
+	private final long budget;
+	
+	private final AtomicLong used		= new AtomicLong();
+	private final AtomicLong spilled	= new AtomicLong();
+	private final AtomicLong spillCount	= new AtomicLong();
+	
+	private final ReferenceQueue<HybridMemory<?>>	queue	= new ReferenceQueue<HybridMemory<?>>();
+	private final Set<Ref>							live	= Collections.newSetFromMap(new ConcurrentHashMap<Ref, Boolean>());
+	
+	/**
+	 * Weak reference to a tracked memory, keeping the bytes accounted for it
+	 */
+	/*package*/ static class Ref extends WeakReference<HybridMemory<?>> {
+		private final AtomicLong bytes = new AtomicLong();
+		private Ref(HybridMemory<?> memory, ReferenceQueue<HybridMemory<?>> queue) {
+			super(memory, queue);
+		}
+	}
+	
+	/**
+	 * Constructor with budget in bytes
+	 */
+	public MemoryBudget(long budget) {
+		if (budget < 0) throw new IllegalArgumentException("budget must not be negative: " + budget);
+		this.budget = budget;
+	}
+
+	/** Returns the budget in bytes*/
+	public long getBudget() {
+		return budget;
+	}
+	/** Returns the estimated bytes currently used by in-core memories*/
+	public long getUsed() {
+		return used.get();
+	}
+	/** Returns the total estimated bytes spilled to out-of-core memory*/
+	public long getSpilled() {
+		return spilled.get();
+	}
+	/** Returns the number of memories spilled to out-of-core memory*/
+	public long getSpillCount() {
+		return spillCount.get();
+	}
+	
+	/**
+	 * Registers the given memory, called when the memory is created
+	 */
+	/*package*/ Ref register(HybridMemory<?> memory) {
+		final Ref ref = new Ref(memory, queue);
+		live.add(ref);
+		return ref;
+	}
+	
+	/**
+	 * Accounts the given bytes for the specified memory, and spills memories
+	 * if the budget is exceeded. Must be called without holding any memory
+	 * lock.
+	 */
+	/*package*/ void allocate(Ref ref, long bytes) throws IOException {
+		ref.bytes.addAndGet(bytes);
+		if (used.addAndGet(bytes) > budget) {
+			spill();
+		}
+	}
+	
+	/**
+	 * Releases all bytes accounted for the given memory and stops tracking 
+	 * it, called when the memory is spilled or closed. Returns the released
+	 * bytes.
+	 */
+	/*package*/ long release(Ref ref) {
+		live.remove(ref);
+		final long bytes = ref.bytes.getAndSet(0);
+		used.addAndGet(-bytes);
+		return bytes;
+	}
+	
+	/**
+	 * Releases the bytes of memories which have been garbage collected
+	 */
+	private void purge() {
+		Reference<? extends HybridMemory<?>> ref;
+		while ((ref = queue.poll()) != null) {
+			release((Ref)ref);
+		}
+	}
+	
+	/**
+	 * Spills the largest memories until the used bytes fit into the budget
+	 */
+	private synchronized void spill() throws IOException {
+		purge();
+		while (used.get() > budget) {
+			HybridMemory<?> largest = null;
+			long largestBytes = 0;
+			for (final Ref ref : live) {
+				final HybridMemory<?> mem = ref.get();
+				final long bytes = ref.bytes.get();
+				if (mem != null && bytes > largestBytes) {
+					largest			= mem;
+					largestBytes	= bytes;
+				}
+			}
+			if (largest == null) {
+				//nothing left to spill, only small memories
+				return;
+			}
+			final long bytes = largest.spill();
+			if (bytes > 0) {
+				spilled.addAndGet(bytes);
+				spillCount.incrementAndGet();
+				LogPkg.LOGGER.info(
+					"spilled " + largest + " with ~" + bytes + " bytes to out-of-core memory, " +
+					"budget used " + used.get() + " of " + budget + " bytes"
+				);
+			}
+		}
+	}
+
+}
@@ -38,6 +38,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 
+import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.jbase.Table;
 import ch.javasoft.jbase.util.CachedTableWeakReference;
 import ch.javasoft.jbase.util.Tables;
@@ -52,7 +53,10 @@ import ch.javasoft.metabolic.efm.memory.SortableMemory;
 
 /**
  * The <code>OutOfCoreMemory</code> stores columns out of the core memory. They 
- * are stored in files using appropriate {@link Table} implementations.  
+ * are stored in files using appropriate {@link Table} implementations. The
+ * bit patterns are additionally kept in a {@link BitPatternSidecar sidecar}
+ * file, allowing for {@link #getBitValues(int) pattern access} without 
+ * deserializing the numeric values.
  */
 public class OutOfCoreMemory<Col extends Column> implements ReadWriteMemory<Col> {
 	
@@ -64,6 +68,7 @@ public class OutOfCoreMemory<Col extends Column> implements ReadWriteMemory<Col>
 	
     private final ColumnHome<?, Col>	mColumnHome;
     private final Table<Col>			mTable;
+    private final BitPatternSidecar		mBits;//null if not available
     
     /**
      * Opens the file specified by file id for reading
@@ -85,6 +90,7 @@ public class OutOfCoreMemory<Col extends Column> implements ReadWriteMemory<Col>
         mColumnHome     = fileId.getColumnHome();
         mSortInCore		= fileId.sortInCore();
         mTable 			= getNestedTable(mColumnHome.openTable(fileId.getFolder(), fileId.getFileName(), mBooleanSize, mNumericSize));
+        mBits			= BitPatternSidecar.open(mFile, mBooleanSize, mTable.size());
     }
     /**
      * Creates a new non-partitioned memory, stored in one or multiple files.
@@ -116,6 +122,7 @@ public class OutOfCoreMemory<Col extends Column> implements ReadWriteMemory<Col>
         mColumnHome     = columnHome;
         mSortInCore		= sortInCore;
         mTable 			= getNestedTable(columnHome.createTable(folder, fileName, booleanSize, numericSize));
+        mBits			= BitPatternSidecar.create(mFile, booleanSize);
 	}
 	private static <C extends Column> Table<C> getNestedTable(Table<C> table) throws IOException {
 //		return table;
@@ -238,7 +245,16 @@ public class OutOfCoreMemory<Col extends Column> implements ReadWriteMemory<Col>
 //    	if (mBooleanSize != column.booleanSize() || mNumericSize != column.numericSize()) {
 //    		throw new IOException();
 //    	}
-        mTable.add(column);
+    	if (mBits == null) {
+    		mTable.add(column);
+    	}
+    	else {
+    		//keep table and sidecar in the same order
+    		synchronized (mBits) {
+    			mTable.add(column);
+    			mBits.add(column.bitValues());
+    		}
+    	}
     }
     public void appendColumns(Iterable<? extends Col> columns) throws IOException {
         for (final Col col : columns) {
@@ -252,14 +268,52 @@ public class OutOfCoreMemory<Col extends Column> implements ReadWriteMemory<Col>
         }
     }
 	public void swapColumns(int indexA, int indexB) throws IOException {
-		mTable.swap(indexA, indexB);
+		if (mBits == null) {
+			mTable.swap(indexA, indexB);
+		}
+		else {
+			synchronized (mBits) {
+				mTable.swap(indexA, indexB);
+				mBits.swap(indexA, indexB);
+			}
+		}
 	}
     public void clear() throws IOException {
-        mTable.removeAll();
+    	if (mBits == null) {
+    		mTable.removeAll();
+    	}
+    	else {
+    		synchronized (mBits) {
+    			mTable.removeAll();
+    			mBits.clear();
+    		}
+    	}
     }
     public Col getColumn(int index) throws IOException {
         return mTable.get(index);
     }
+    /**
+     * Returns the bit pattern of the specified column. The pattern is read 
+     * from the sidecar file if available, without deserializing the column.
+     */
+    public IBitSet getBitValues(int index) throws IOException {
+    	return mBits == null ? mTable.get(index).bitValues() : mBits.get(index);
+    }
+    /**
+     * Replaces the column at the given index, used to write back sorted 
+     * columns
+     */
+    public void setColumn(int index, Col column) throws IOException {
+    	if (mBits == null) {
+    		mTable.set(index, column);
+    	}
+    	else {
+    		synchronized (mBits) {
+    			mTable.set(index, column);
+    			mBits.set(index, column.bitValues());
+    		}
+    	}
+    }
     public int getColumnCount() throws IOException {
         return mTable.size();
     }
@@ -278,9 +332,19 @@ public class OutOfCoreMemory<Col extends Column> implements ReadWriteMemory<Col>
 	
     public void flush() throws IOException {
     	mTable.flush();
+    	if (mBits != null) {
+    		mBits.flush();
+    	}
     }
     public void close(boolean erase) throws IOException {
-    	mTable.close(erase);
+    	try {
+    		mTable.close(erase);
+    	}
+    	finally {
+    		if (mBits != null) {
+    			mBits.close(erase);
+    		}
+    	}
     }
 	@Override
 	protected void finalize() throws Throwable {
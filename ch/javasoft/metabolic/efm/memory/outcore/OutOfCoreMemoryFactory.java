@@ -37,9 +37,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
+import ch.javasoft.jbase.MappedFilePersister;
+import ch.javasoft.jbase.PageCache;
 import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.column.ColumnHome;
 import ch.javasoft.metabolic.efm.config.Config;
+import ch.javasoft.metabolic.efm.config.PageCacheConfig;
 import ch.javasoft.metabolic.efm.memory.MemoryFactory;
 import ch.javasoft.metabolic.efm.memory.MemoryPart;
 import ch.javasoft.metabolic.efm.memory.ReadWriteMemory;
@@ -55,14 +58,31 @@ public class OutOfCoreMemoryFactory implements MemoryFactory {
 	public static final String CONFIG_FILE_NAME	= "config.xml";
 	
 	private final boolean sortInCore;
+	private final boolean memoryMapped;
 	
 	public boolean isInitialized = false;
 	
+	private PageCache pageCache;//installed by this factory, or null
+	private PageCache prevPageCache;
+	private Boolean prevMapped;//setting before this factory enabled mapping, or null
+	
 	public OutOfCoreMemoryFactory() {
 		this(false);
 	}
 	public OutOfCoreMemoryFactory(boolean sortInCore) {
-		this.sortInCore = sortInCore;
+		this(sortInCore, false);
+	}
+	/**
+	 * Constructor with sorting and mapping options
+	 * 
+	 * @param sortInCore	true if sorting for tree construction is performed
+	 * 						in-core
+	 * @param memoryMapped	true if the table files are accessed through
+	 * 						{@link MappedFilePersister memory mapping}
+	 */
+	public OutOfCoreMemoryFactory(boolean sortInCore, boolean memoryMapped) {
+		this.sortInCore		= sortInCore;
+		this.memoryMapped	= memoryMapped;
 	}
 	
 	private synchronized <N extends Number, Col extends Column> void ensureInitialized(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel) throws IOException {
@@ -73,10 +93,36 @@ public class OutOfCoreMemoryFactory implements MemoryFactory {
 	        final FileWriter configWriter = new FileWriter(new File(config.getTempDir().getPersonalizedDir(), CONFIG_FILE_NAME));
 	        config.writeTo(configWriter);
 	        configWriter.close();
+	        
+	        if (memoryMapped) {
+	        	prevMapped = Boolean.valueOf(MappedFilePersister.setEnabled(true));
+	        	LogPkg.LOGGER.info("using memory mapped table files");
+	        }
+	        else {
+	        	initPageCache(config);
+	        }
 
 	        isInitialized = true;
 		}
 	}
+	
+	/**
+	 * Installs the shared page cache for all out-of-core tables if it is 
+	 * enabled in the config. The previously shared cache is restored by
+	 * {@link #release()}.
+	 */
+	private void initPageCache(Config config) {
+		final PageCacheConfig cacheConfig = config.getPageCacheConfig();
+		if (cacheConfig.isEnabled()) {
+			pageCache		= cacheConfig.createPageCache();
+			prevPageCache	= PageCache.setShared(pageCache);
+			LogPkg.LOGGER.info(
+				"using shared page cache with " + cacheConfig.getSize() + " bytes, page size " + 
+				cacheConfig.getPageSize() + ", prefetch " + cacheConfig.getPrefetch() + 
+				" pages, write-behind " + (cacheConfig.isWriteBehind() ? "on" : "off")
+			);
+		}
+	}
     
 	public <N extends Number, Col extends Column> OutOfCoreMemory<Col> createConcurrentAppendableMemory(ColumnHome<N, Col> columnHome, NetworkEfmModel efmModel, int iteration, MemoryPart part) throws IOException {
 		ensureInitialized(columnHome, efmModel);
@@ -106,5 +152,25 @@ public class OutOfCoreMemoryFactory implements MemoryFactory {
 		return createConcurrentAppendableMemory(columnHome, efmModel, iteration, part);
 	}
 	
+	/**
+	 * Restores the shared page cache and the memory mapping setting which 
+	 * were in place before the computation, and closes the cache of this 
+	 * computation. Open tables still use the closed cache, but without 
+	 * background i/o.
+	 */
+	public synchronized void release() {
+		if (prevMapped != null) {
+			MappedFilePersister.setEnabled(prevMapped.booleanValue());
+			prevMapped = null;
+		}
+		if (pageCache != null) {
+			PageCache.setShared(prevPageCache);
+			pageCache.close();
+			pageCache		= null;
+			prevPageCache	= null;
+		}
+		isInitialized = false;
+	}
+	
 	
 }
@@ -0,0 +1,109 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.memory.outcore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ch.javasoft.metabolic.efm.column.DoubleColumn;
+import ch.javasoft.metabolic.efm.memory.incore.InCoreMemory;
+import ch.javasoft.metabolic.efm.model.AdjEnumModel;
+import ch.javasoft.metabolic.efm.model.DefaultIterationStateModel;
+import ch.javasoft.metabolic.efm.model.DefaultIterationStepModel;
+import ch.javasoft.metabolic.efm.model.IterationStateModel;
+import ch.javasoft.metabolic.efm.tree.BitPatternTree;
+import ch.javasoft.metabolic.efm.tree.incore.IncoreBitPatternTree;
+import ch.javasoft.metabolic.efm.util.MappingUtil;
+
+public class OutOfCoreMemoryTest extends TestCase {
+	
+	private static final int BITS		= 40;
+	private static final int COLUMNS	= 500;
+	
+	/**
+	 * Builds a tree on an out-of-core memory from a second thread, which 
+	 * closes the memory afterwards like the tree jobs do. The memory must 
+	 * still be readable by the owner thread.
+	 */
+	public void testCloseFromTreeThread() throws Exception {
+		final File folder = File.createTempFile("out-of-core-", "");
+		assertTrue(folder.delete() && folder.mkdir());
+		final Random rnd = new Random(4711);
+		final OutOfCoreMemory<DoubleColumn> mem = new OutOfCoreMemory<DoubleColumn>(folder, 1, BITS, 1, false, DoubleColumn.HOME);
+		try {
+			for (int i = 0; i < COLUMNS; i++) {
+				final DoubleColumn col = new DoubleColumn(BITS, 1);
+				for (int b = 0; b < BITS; b++) {
+					if (rnd.nextBoolean()) col.bitValues().set(b);
+				}
+				mem.appendColumn(col);
+			}
+			final IterationStateModel state = new DefaultIterationStateModel(0, BITS, 1);
+			final AdjEnumModel<DoubleColumn> itModel = new AdjEnumModel<DoubleColumn>(
+				new DefaultIterationStepModel(1, state, state) {/*protected constructor*/}, 
+				mem, new InCoreMemory<DoubleColumn>(), new InCoreMemory<DoubleColumn>(), new InCoreMemory<DoubleColumn>()
+			);
+			final Thread owner = Thread.currentThread();
+			final Exception[] error = new Exception[1];
+			final Thread thread = new Thread() {
+				@Override
+				public void run() {
+					try {
+						new IncoreBitPatternTree(owner, DoubleColumn.HOME, null, itModel, BitPatternTree.Kind.Pos, MappingUtil.getInitialMapping(BITS), mem);
+						mem.close(false /*erase*/);
+					}
+					catch (Exception ex) {
+						error[0] = ex;
+					}
+				}
+			};
+			thread.start();
+			thread.join();
+			if (error[0] != null) throw error[0];
+			
+			//tree building partitions the columns, patterns must follow
+			assertEquals(COLUMNS, mem.getColumnCount());
+			for (int i = 0; i < COLUMNS; i++) {
+				assertEquals(mem.getColumn(i).bitValues(), mem.getBitValues(i));
+			}
+		}
+		finally {
+			mem.close(true);
+			folder.delete();
+		}
+	}
+
+}
@@ -39,6 +39,7 @@ import ch.javasoft.metabolic.efm.column.Column;
 import ch.javasoft.metabolic.efm.memory.AppendableMemory;
 import ch.javasoft.metabolic.efm.memory.PartId;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
+import ch.javasoft.metabolic.efm.memory.outcore.IterationCheckpoint;
 
 /**
  * The <code>AdjEnumModel</code> contains all state of the algorithm which is
@@ -54,6 +55,7 @@ public class AdjEnumModel<Col extends Column> extends DefaultIterationStepModel
 	
 	private final SortableMemory<Col>	pos, zero, neg;
 	private final AppendableMemory<Col>	out;
+	private final IterationCheckpoint	checkpoint;
 	
 	/**
 	 * Default constructor used by most implementations. Iteration state models
@@ -75,11 +77,23 @@ public class AdjEnumModel<Col extends Column> extends DefaultIterationStepModel
 	 * 				adjacent positive/negative pairs, must be thread-safe
 	 */
 	public AdjEnumModel(NetworkEfmModel efmModel, int iterationIndex, SortableMemory<Col> pos, SortableMemory<Col> zero, SortableMemory<Col> neg, AppendableMemory<Col> out) {
+		this(efmModel, iterationIndex, pos, zero, neg, out, null);
+	}
+	/**
+	 * Constructor with a checkpoint for the adjacency enumeration of this 
+	 * iteration. The other arguments are the same as for the 
+	 * {@link #AdjEnumModel(NetworkEfmModel, int, SortableMemory, SortableMemory, SortableMemory, AppendableMemory) default constructor}.
+	 * 
+	 * @param checkpoint	the checkpoint, written by enumerations supporting
+	 * 						checkpoints within an iteration, or null for none
+	 */
+	public AdjEnumModel(NetworkEfmModel efmModel, int iterationIndex, SortableMemory<Col> pos, SortableMemory<Col> zero, SortableMemory<Col> neg, AppendableMemory<Col> out, IterationCheckpoint checkpoint) {
 		super(efmModel, iterationIndex);
-		this.pos	= pos;
-		this.zero	= zero;
-		this.neg	= neg;
-		this.out	= out;
+		this.pos		= pos;
+		this.zero		= zero;
+		this.neg		= neg;
+		this.out		= out;
+		this.checkpoint	= checkpoint;
 	}
 	
 	/**
@@ -101,6 +115,7 @@ public class AdjEnumModel<Col extends Column> extends DefaultIterationStepModel
 		this.zero	= zero;
 		this.neg	= neg;
 		this.out	= out;
+		this.checkpoint	= null;
 	}
 
 	/** 
@@ -176,6 +191,14 @@ public class AdjEnumModel<Col extends Column> extends DefaultIterationStepModel
 	public AppendableMemory<Col> getMemoryForNewFromAdj() {
 		return out;
 	}
+	/**
+	 * The checkpoint for the adjacency enumeration of this iteration, or null
+	 * if no checkpoints are written. Only distributed enumerations support
+	 * checkpoints, other enumerations ignore it.
+	 */
+	public IterationCheckpoint getCheckpoint() {
+		return checkpoint;
+	}
 	
 	/**
 	 * Closes all tables for the current thread
@@ -0,0 +1,317 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.model.nullspace;
+
+import java.math.BigInteger;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.math.BigFraction;
+import ch.javasoft.metabolic.efm.column.BigIntegerColumn;
+import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.metabolic.efm.model.ColumnInspectorModifier;
+import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.model.IterationStateModel;
+import ch.javasoft.metabolic.efm.model.IterationStepModel;
+import ch.javasoft.metabolic.efm.model.NetworkEfmModel;
+import ch.javasoft.smx.iface.BigIntegerRationalMatrix;
+import ch.javasoft.smx.iface.ReadableMatrix;
+import ch.javasoft.smx.impl.DefaultBigIntegerRationalMatrix;
+import ch.javasoft.smx.ops.Gauss;
+import ch.javasoft.util.Arrays;
+
+/**
+ * Column {@link ColumnInspectorModifier inspector/modifier} for nullspace model
+ * and {@link BigIntegerColumn big integer columns} with lazy numeric values.
+ * <p>
+ * When two columns are merged, only the numeric values for the next 
+ * <tt>window</tt> hyperplanes are computed, all other values are left 
+ * <code>null</code>. If a column is converted and the value for the next
+ * hyperplane is unknown, or if it is converted or merged in the last 
+ * iteration, the missing values are reconstructed from the zero pattern of the column: the 
+ * kernel rows of the zero reactions define a one dimensional nullspace, which
+ * is multiplied with the kernel matrix to get the values of the remaining
+ * reactions.
+ * <p>
+ * Merging is cheaper since fewer values are multiplied, and intermediary
+ * columns use less memory. The price is a small gaussian elimination for each
+ * column exhausting its window.
+ */
+public class LazyNullspaceBigIntegerColumnInspectorModifier extends NullspaceBigIntegerColumnInspectorModifier {
+	
+	private final int window;
+
+	/**
+	 * Constructor with window size
+	 * 
+	 * @param convertNumericToBinaryOnMerge	true to remove the value of the 
+	 * 										current hyperplane on merge
+	 * @param window						the number of numeric values to 
+	 * 										compute when merging columns
+	 */
+	public LazyNullspaceBigIntegerColumnInspectorModifier(boolean convertNumericToBinaryOnMerge, int window) {
+		super(convertNumericToBinaryOnMerge);
+		if (window < 1) {
+			throw new IllegalArgumentException("window must be positive: " + window);
+		}
+		this.window = window;
+	}
+	
+	/**
+	 * Returns the number of numeric values computed when merging columns
+	 */
+	public int getWindow() {
+		return window;
+	}
+	
+	@Override
+	public int getHyperplaneSign(ColumnHome<BigInteger, ?> columnHome, EfmModel model, IBitSet binaryVals, int binarySize, BigInteger[] numericVals, IterationStateModel iteration) {
+		final int numericInd = getNumericIndex(model, binarySize, numericVals.length, iteration.getHyperplaneIndex());
+		return getValue(columnHome, model, binaryVals, binarySize, numericVals, numericInd).signum();
+	}
+
+	@Override
+	public IBitSet convertBinary(ColumnHome<BigInteger, ?> columnHome, EfmModel model, IBitSet binaryVals, int binarySize, BigInteger[] numericVals, IterationStepModel iteration, boolean clone) {
+		final int convertCount = getConvertSizeBinary(model, binarySize, numericVals.length, iteration);
+		for (int i = 0; i < convertCount && i < numericVals.length; i++) {
+			if (numericVals[i] == null) {
+				numericVals = reconstruct(columnHome, model, binaryVals, binarySize, numericVals.length);
+				break;
+			}
+		}
+		return super.convertBinary(columnHome, model, binaryVals, binarySize, numericVals, iteration, clone);
+	}
+
+	@Override
+	public BigInteger[] convertNumeric(ColumnHome<BigInteger, ?> columnHome, EfmModel model, IBitSet binaryVals, int binarySize, BigInteger[] numericVals, IterationStepModel iteration, boolean clone) {
+		final int convertCount = getConvertSizeNumeric(model, binarySize, numericVals.length, iteration);
+		if (!isComplete(numericVals, convertCount)) {
+			if (isFinal(model, iteration) || numericVals.length <= convertCount || numericVals[convertCount] == null) {
+				final BigInteger[] full = reconstruct(columnHome, model, binaryVals, binarySize, numericVals.length);
+				return Arrays.copyOfRange(full, convertCount, full.length);
+			}
+			if (convertCount == 0 && !clone) {
+				return numericVals;
+			}
+			return reducePartial(Arrays.copyOfRange(numericVals, convertCount, numericVals.length));
+		}
+		return super.convertNumeric(columnHome, model, binaryVals, binarySize, numericVals, iteration, clone);
+	}
+
+	@Override
+	public BigInteger[] mergeNumeric(ColumnHome<BigInteger, ?> columnHome, EfmModel model, IBitSet binaryValsCol1, int binarySizeCol1, BigInteger[] numericValsCol1, IBitSet binaryValsCol2, int binarySizeCol2, BigInteger[] numericValsCol2, IterationStepModel iteration) {
+		final int hyperInd = iteration.getCurrentState().getHyperplaneIndex();
+		final int numerInd1 = getNumericIndex(model, binarySizeCol1, numericValsCol1.length, hyperInd);
+		final int numerInd2 = getNumericIndex(model, binarySizeCol2, numericValsCol2.length, hyperInd);
+		if (numerInd1 != 0 || numerInd2 != 0 || numericValsCol1.length != numericValsCol2.length) {
+			//unexpected layout, use the eager version
+			return super.mergeNumeric(columnHome, model, 
+				binaryValsCol1, binarySizeCol1, complete(columnHome, model, binaryValsCol1, binarySizeCol1, numericValsCol1), 
+				binaryValsCol2, binarySizeCol2, complete(columnHome, model, binaryValsCol2, binarySizeCol2, numericValsCol2), iteration);
+		}
+		BigInteger val1 = getValue(columnHome, model, binaryValsCol1, binarySizeCol1, numericValsCol1, 0);
+		BigInteger val2 = getValue(columnHome, model, binaryValsCol2, binarySizeCol2, numericValsCol2, 0);
+		if (val1.signum() * val2.signum() >= 0) {
+			throw new IllegalArgumentException("multipliers must have opposite sign: " + val1 + " / " + val2);
+		}
+		//new = |val2| * col1 + |val1| * col2 
+		final BigInteger mul1 = val2.abs();
+		final BigInteger mul2 = val1.abs();
+		final int boolInc = convertNumericToBinaryOnMerge ? 1 : 0;
+		final BigInteger[] values = new BigInteger[numericValsCol1.length - boolInc];
+		final int end = Math.min(values.length, window);
+		for (int i = 0; i < end; i++) {
+			final BigInteger a = numericValsCol1[i + boolInc];
+			final BigInteger b = numericValsCol2[i + boolInc];
+			if (a != null && b != null) {
+				values[i] = a.multiply(mul1).add(b.multiply(mul2));
+			}
+		}
+		if (isFinal(model, iteration) && !isComplete(values, 0)) {
+			//final columns are not converted again before filtering, 
+			//reconstruct from the merged zero pattern
+			final IBitSet bits = binaryValsCol1.getAnd(binaryValsCol2);
+			if (boolInc != 0) bits.set(binarySizeCol1);
+			final ReadableMatrix<BigInteger> kernel = getKernel(columnHome, model);
+			final BigIntegerRationalMatrix nullspace = getZeroNullspace(kernel, bits, binarySizeCol1 + boolInc);
+			if (nullspace.getColumnCount() == 1) {
+				return reconstruct(columnHome, kernel, nullspace, bits, binarySizeCol1 + boolInc, values.length);
+			}
+			//not adjacent, e.g. merged by a precondition before the 
+			//adjacency test, combine the completed columns
+			return super.mergeNumeric(columnHome, model, 
+				binaryValsCol1, binarySizeCol1, complete(columnHome, model, binaryValsCol1, binarySizeCol1, numericValsCol1), 
+				binaryValsCol2, binarySizeCol2, complete(columnHome, model, binaryValsCol2, binarySizeCol2, numericValsCol2), iteration);
+		}
+		return reducePartial(values);
+	}
+	
+	/**
+	 * Returns true for the last iteration of the iteration loop and for the
+	 * final conversion after the loop, where all values must be known
+	 */
+	private static boolean isFinal(EfmModel model, IterationStepModel iteration) {
+		return model instanceof NetworkEfmModel && iteration.getIterationIndex() >= ((NetworkEfmModel)model).getIterationCount();
+	}
+	
+	/**
+	 * Returns the numeric value at the given index, reconstructs the value
+	 * if it is not known
+	 */
+	private BigInteger getValue(ColumnHome<BigInteger, ?> columnHome, EfmModel model, IBitSet binaryVals, int binarySize, BigInteger[] numericVals, int numericInd) {
+		final BigInteger val = numericVals[numericInd];
+		return val != null ? val : reconstruct(columnHome, model, binaryVals, binarySize, numericVals.length)[numericInd];
+	}
+	
+	private BigInteger[] complete(ColumnHome<BigInteger, ?> columnHome, EfmModel model, IBitSet binaryVals, int binarySize, BigInteger[] numericVals) {
+		return isComplete(numericVals, 0) ? numericVals : reconstruct(columnHome, model, binaryVals, binarySize, numericVals.length);
+	}
+	
+	private static boolean isComplete(BigInteger[] numericVals, int start) {
+		for (int i = start; i < numericVals.length; i++) {
+			if (numericVals[i] == null) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Divides the known values by their greatest common divisor, null values
+	 * are ignored.
+	 */
+	private static BigInteger[] reducePartial(BigInteger[] values) {
+		BigInteger gcd = BigInteger.ZERO;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				gcd = gcd.gcd(values[i]);
+				if (gcd.equals(BigInteger.ONE)) return values;
+			}
+		}
+		if (gcd.signum() != 0) {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) values[i] = values[i].divide(gcd);
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Reconstructs all numeric values of a column from its zero pattern. The
+	 * nullspace of the kernel rows belonging to zero reactions is one
+	 * dimensional for extreme rays, its basis vector multiplied with the
+	 * kernel matrix yields the column, up to scaling. The sign is chosen such
+	 * that values of already processed reactions are nonnegative, the 
+	 * returned values are reduced by their greatest common divisor.
+	 */
+	protected BigInteger[] reconstruct(ColumnHome<BigInteger, ?> columnHome, EfmModel model, IBitSet binaryVals, int binarySize, int numericSize) {
+		final ReadableMatrix<BigInteger> kernel = getKernel(columnHome, model);
+		final BigIntegerRationalMatrix nullspace = getZeroNullspace(kernel, binaryVals, binarySize);
+		if (nullspace.getColumnCount() != 1) {
+			throw new IllegalStateException("cannot reconstruct numeric values, nullspace of zero reactions has dimension " + nullspace.getColumnCount());
+		}
+		return reconstruct(columnHome, kernel, nullspace, binaryVals, binarySize, numericSize);
+	}
+	
+	private static ReadableMatrix<BigInteger> getKernel(ColumnHome<BigInteger, ?> columnHome, EfmModel model) {
+		if (!(model instanceof NullspaceEfmModel)) {
+			throw new IllegalArgumentException("lazy numeric values not supported for model " + model.getClass().getName());
+		}
+		return ((NullspaceEfmModel)model).getKernelMatrix(columnHome);
+	}
+	
+	/**
+	 * Returns the nullspace of the kernel rows belonging to zero reactions
+	 */
+	private static BigIntegerRationalMatrix getZeroNullspace(ReadableMatrix<BigInteger> kernel, IBitSet binaryVals, int binarySize) {
+		final int cols = kernel.getColumnCount();
+		
+		//kernel rows of zero reactions
+		int zeros = 0;
+		for (int bit = binaryVals.nextSetBit(0); bit >= 0 && bit < binarySize; bit = binaryVals.nextSetBit(bit + 1)) {
+			zeros++;
+		}
+		final DefaultBigIntegerRationalMatrix zeroRows = new DefaultBigIntegerRationalMatrix(zeros, cols);
+		int row = 0;
+		for (int bit = binaryVals.nextSetBit(0); bit >= 0 && bit < binarySize; bit = binaryVals.nextSetBit(bit + 1)) {
+			for (int col = 0; col < cols; col++) {
+				zeroRows.setValueAt(row, col, kernel.getNumberValueAt(bit, col), BigInteger.ONE);
+			}
+			row++;
+		}
+		return Gauss.getRationalInstance().nullspace(zeroRows);
+	}
+	
+	/**
+	 * Reconstructs the values from the one dimensional nullspace of the zero
+	 * reactions
+	 */
+	private static BigInteger[] reconstruct(ColumnHome<BigInteger, ?> columnHome, ReadableMatrix<BigInteger> kernel, BigIntegerRationalMatrix nullspace, IBitSet binaryVals, int binarySize, int numericSize) {
+		final int rows = kernel.getRowCount();
+		final int cols = kernel.getColumnCount();
+		
+		//integer multipliers for kernel columns
+		BigInteger lcm = BigInteger.ONE;
+		for (int col = 0; col < cols; col++) {
+			final BigInteger den = nullspace.getBigFractionValueAt(col, 0).getDenominator();
+			lcm = lcm.divide(lcm.gcd(den)).multiply(den);
+		}
+		final BigInteger[] lambda = new BigInteger[cols];
+		for (int col = 0; col < cols; col++) {
+			final BigFraction val = nullspace.getBigFractionValueAt(col, 0);
+			lambda[col] = val.getNumerator().multiply(lcm).divide(val.getDenominator());
+		}
+		
+		//sign from some nonzero processed reaction
+		int sign = 0;
+		for (int bit = binaryVals.nextClearBit(0); sign == 0 && bit < binarySize; bit = binaryVals.nextClearBit(bit + 1)) {
+			sign = multiply(kernel, bit, lambda).signum();
+		}
+		final BigInteger[] values = new BigInteger[numericSize];
+		for (int i = 0; i < numericSize; i++) {
+			final BigInteger val = multiply(kernel, rows - numericSize + i, lambda);
+			values[i] = sign < 0 ? val.negate() : val;
+		}
+		return columnHome.getNumberOperations().reduceVector(false /*cloneOnChange*/, values);
+	}
+	
+	private static BigInteger multiply(ReadableMatrix<BigInteger> kernel, int row, BigInteger[] lambda) {
+		BigInteger sum = BigInteger.ZERO;
+		for (int col = 0; col < lambda.length; col++) {
+			final BigInteger val = kernel.getNumberValueAt(row, col);
+			if (val.signum() != 0 && lambda[col].signum() != 0) {
+				sum = sum.add(val.multiply(lambda[col]));
+			}
+		}
+		return sum;
+	}
+
+}
@@ -0,0 +1,319 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.model.nullspace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+
+import junit.framework.TestCase;
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.metabolic.MetabolicNetwork;
+import ch.javasoft.metabolic.compress.CompressionMethod;
+import ch.javasoft.metabolic.efm.column.BigIntegerColumn;
+import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.metabolic.efm.config.Arithmetic;
+import ch.javasoft.metabolic.efm.config.Config;
+import ch.javasoft.metabolic.efm.config.Generator;
+import ch.javasoft.metabolic.efm.config.Normalize;
+import ch.javasoft.metabolic.efm.model.DefaultIterationStateModel;
+import ch.javasoft.metabolic.efm.model.DefaultIterationStepModel;
+import ch.javasoft.metabolic.efm.model.IterationStepModel;
+import ch.javasoft.metabolic.efm.progress.ProgressType;
+import ch.javasoft.metabolic.efm.sort.SortUtil;
+import ch.javasoft.metabolic.impl.DefaultMetabolicNetwork;
+import ch.javasoft.smx.iface.ReadableMatrix;
+import ch.javasoft.smx.impl.DefaultBigIntegerMatrix;
+
+/**
+ * Compares the values reconstructed by 
+ * {@link LazyNullspaceBigIntegerColumnInspectorModifier} with the values 
+ * computed by the eager {@link NullspaceBigIntegerColumnInspectorModifier}
+ * for the initial and merged columns of a small network.
+ */
+public class LazyNullspaceBigIntegerColumnInspectorModifierTest extends TestCase {
+	
+	private static final BigIntegerColumn.Home HOME = BigIntegerColumn.HOME;
+	
+	/**
+	 * A -> B, A -> C, B -> C, C -> D, B -> D with uptake of A and excretion 
+	 * of A, B, C and D, all reactions irreversible
+	 */
+	private static final double[][] STOICH = {
+		{1, -1, -1,  0,  0,  0, -1,  0,  0,  0},
+		{0,  1,  0, -1,  0, -1,  0,  0,  0, -1},
+		{0,  0,  1,  1, -1,  0,  0, -1,  0,  0},
+		{0,  0,  0,  0,  0,  0,  0,  1, -1,  1}
+	};
+	
+	private MetabolicNetwork net;
+	private Config config;
+	private NullspaceEfmModel model;
+	private BigIntegerColumn[] initial;
+	private final NullspaceBigIntegerColumnInspectorModifier eager = new NullspaceBigIntegerColumnInspectorModifier(true);
+	private final LazyNullspaceBigIntegerColumnInspectorModifier lazy = new LazyNullspaceBigIntegerColumnInspectorModifier(true, 1);
+
+	@Override
+	protected void setUp() throws Exception {
+		net = new DefaultMetabolicNetwork(STOICH, new boolean[STOICH[0].length]);
+		config = new Config(
+			Arithmetic.bigint.getDefaultZero(), null, SortUtil.DEFAULT_SORTER, CompressionMethod.NONE, 
+			false, false, false, 1, Arithmetic.bigint, -1, Generator.Efm, Normalize.min, 
+			(String)null, (String)null, (String)null, new File(System.getProperty("java.io.tmpdir")), 
+			100, ProgressType.None, null, null
+		);
+		model = new NullspaceEfmModelFactory().createEfmModel(HOME, config, net);
+		
+		//initial columns as in NullspaceEfmModel.createInitialMemory
+		initial = HOME.newInstances(model.getKernelMatrix(HOME), 0);
+		final IterationStepModel itModel = new DefaultIterationStepModel(model, 0);
+		for (int i = 0; i < initial.length; i++) {
+			initial[i] = initial[i].convert(HOME, model, itModel, false /*clone*/);
+		}
+		assertTrue("need at least two iterations", model.getIterationCount() >= 2);
+	}
+	
+	/**
+	 * The initial columns are extreme rays of a simplicial cone, their values
+	 * must be reconstructed from their zero pattern with the right sign
+	 */
+	public void testReconstructInitial() {
+		for (final BigIntegerColumn col : initial) {
+			final BigInteger[] values = lazy.reconstruct(HOME, model, col.bitValues(), col.booleanSize(), col.numericSize());
+			assertProportional(values(col), values);
+		}
+	}
+	
+	/**
+	 * The negated kernel has the same nullspace for every zero pattern, only
+	 * the sign taken from the processed reactions, which must be nonnegative,
+	 * yields the same columns as for the original kernel
+	 */
+	public void testSignFromProcessedReactions() {
+		final ReadableMatrix<BigInteger> kernel = model.getKernelMatrix(HOME);
+		final DefaultBigIntegerMatrix negated = new DefaultBigIntegerMatrix(kernel.getRowCount(), kernel.getColumnCount());
+		for (int row = 0; row < kernel.getRowCount(); row++) {
+			for (int col = 0; col < kernel.getColumnCount(); col++) {
+				negated.setValueAt(row, col, kernel.getNumberValueAt(row, col).negate());
+			}
+		}
+		final NullspaceEfmModel negModel = new NullspaceEfmModel(HOME, net, config, new NullspaceEfmModelFactory()) {
+			@Override
+			public <N extends Number> ReadableMatrix<N> getKernelMatrix(ColumnHome<N, ?> columnHome) {
+				return columnHome.castMatrix(negated);
+			}
+		};
+		for (final BigIntegerColumn col : initial) {
+			final BigInteger[] values = lazy.reconstruct(HOME, negModel, col.bitValues(), col.booleanSize(), col.numericSize());
+			assertProportional(values(col), values);
+		}
+	}
+	
+	/**
+	 * Merges all pairs of initial columns with opposite sign for the first
+	 * hyperplane that has such pairs. The initial cone is simplicial, all 
+	 * pairs are adjacent. The lazy merge computes only the first value, the 
+	 * others are reconstructed and must match the eager merge.
+	 */
+	public void testMergeAndReconstruct() {
+		final BigIntegerColumn[] cols = initial;
+		final int iteration = convertToFirstMerge(cols);
+		assertTrue("merge must not be in the last iteration", iteration < model.getIterationCount());
+		
+		final IterationStepModel itModel = new DefaultIterationStepModel(model, iteration);
+		int merged = 0;
+		for (int i = 0; i < cols.length; i++) {
+			for (int j = 0; j < cols.length; j++) {
+				final BigIntegerColumn pos = cols[i];
+				final BigIntegerColumn neg = cols[j];
+				if (values(pos)[0].signum() <= 0 || values(neg)[0].signum() >= 0) continue;
+				
+				final IBitSet bits = eager.mergeBinary(HOME, model, pos.bitValues(), pos.booleanSize(), values(pos), neg.bitValues(), neg.booleanSize(), values(neg), itModel);
+				final BigInteger[] eagerVals = eager.mergeNumeric(HOME, model, pos.bitValues(), pos.booleanSize(), values(pos), neg.bitValues(), neg.booleanSize(), values(neg), itModel);
+				final BigInteger[] lazyVals = lazy.mergeNumeric(HOME, model, pos.bitValues(), pos.booleanSize(), values(pos), neg.bitValues(), neg.booleanSize(), values(neg), itModel);
+				
+				assertEquals(eagerVals.length, lazyVals.length);
+				assertNotNull(lazyVals[0]);
+				for (int k = 1; k < lazyVals.length; k++) {
+					assertNull(lazyVals[k]);
+				}
+				assertEquals(eagerVals[0].signum(), lazyVals[0].signum());
+				
+				final int boolSize = pos.booleanSize() + 1;
+				final BigInteger[] values = lazy.reconstruct(HOME, model, bits, boolSize, eagerVals.length);
+				assertProportional(eagerVals, values);
+				merged++;
+			}
+		}
+		assertTrue("no column pair to merge", merged > 0);
+	}
+	
+	/**
+	 * In the last iteration, merged columns must be complete. Values of 
+	 * adjacent pairs are reconstructed, pairs with a non-extreme merged zero
+	 * pattern, e.g. merged by a precondition before the adjacency test, are 
+	 * combined like in the eager merge.
+	 */
+	public void testFinalMerge() {
+		final BigIntegerColumn[] cols = initial;
+		final int iteration = convertToFirstMerge(cols);
+		//last iteration with the column layout of the current one, as for 
+		//enforced reactions which are not processed in the iteration loop
+		final IterationStepModel itModel = new DefaultIterationStepModel(model.getIterationCount(), 
+			new DefaultIterationStateModel(model, iteration), new DefaultIterationStateModel(model, iteration + 1)) {};
+		int merged = 0;
+		for (final BigIntegerColumn pos : cols) {
+			for (final BigIntegerColumn neg : cols) {
+				if (values(pos)[0].signum() <= 0 || values(neg)[0].signum() >= 0) continue;
+				final BigInteger[] eagerVals = eager.mergeNumeric(HOME, model, pos.bitValues(), pos.booleanSize(), values(pos), neg.bitValues(), neg.booleanSize(), values(neg), itModel);
+				final BigInteger[] lazyVals = lazy.mergeNumeric(HOME, model, pos.bitValues(), pos.booleanSize(), values(pos), neg.bitValues(), neg.booleanSize(), values(neg), itModel);
+				assertNull("no unknown values, cannot test final merge", lazy.mergeNumeric(HOME, model, pos.bitValues(), pos.booleanSize(), values(pos), neg.bitValues(), neg.booleanSize(), values(neg), new DefaultIterationStepModel(model, iteration))[1]);
+				assertProportional(eagerVals, lazyVals);
+				
+				final IBitSet noZeros = pos.bitValues().clone();
+				noZeros.clear();
+				final BigInteger[] nonExtreme = lazy.mergeNumeric(HOME, model, noZeros, pos.booleanSize(), values(pos), neg.bitValues(), neg.booleanSize(), values(neg), itModel);
+				assertProportional(eagerVals, nonExtreme);
+				merged++;
+			}
+		}
+		assertTrue("no column pair to merge", merged > 0);
+	}
+	
+	/**
+	 * Non-extreme zero patterns have a nullspace with dimension other than 
+	 * one and cannot be reconstructed
+	 */
+	public void testNonExtremePattern() {
+		final BigIntegerColumn col = initial[0];
+		//too few zeros: the combination of all initial columns
+		final IBitSet none = col.bitValues().clone();
+		none.clear();
+		assertCannotReconstruct(none, col.booleanSize(), col.numericSize(), initial.length);
+		//too many zeros: only the zero vector
+		final IBitSet all = col.bitValues().clone();
+		for (int i = 0; i < col.booleanSize(); i++) all.set(i);
+		assertCannotReconstruct(all, col.booleanSize(), col.numericSize(), 0);
+	}
+	
+	/**
+	 * Unknown values are written with zero length and read back as null
+	 */
+	public void testSerializeNullValues() throws IOException {
+		final BigIntegerColumn col = initial[0];
+		final BigInteger[] vals = values(col);
+		final BigInteger[] partial = new BigInteger[vals.length];
+		partial[0] = vals[0];
+		partial[partial.length - 1] = BigInteger.valueOf(-7);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final BigIntegerColumn withNulls = new TestColumn(col.booleanSize(), col.bitValues().clone(), partial);
+		HOME.writeTo(withNulls, new DataOutputStream(out));
+		final BigIntegerColumn read = HOME.readFrom(new DataInputStream(new ByteArrayInputStream(out.toByteArray())), col.booleanSize(), partial.length);
+		assertEquals(col.bitValues(), read.bitValues());
+		for (int i = 0; i < partial.length; i++) {
+			assertEquals(partial[i], read.getNumeric(HOME, i));
+		}
+	}
+	
+	private static class TestColumn extends BigIntegerColumn {
+		public TestColumn(int boolSize, IBitSet bitSet, BigInteger[] values) {
+			super(boolSize, bitSet, values);
+		}
+	}
+	
+	private void assertCannotReconstruct(IBitSet bits, int boolSize, int numericSize, int dimension) {
+		try {
+			lazy.reconstruct(HOME, model, bits, boolSize, numericSize);
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException ex) {
+			assertTrue(ex.getMessage(), ex.getMessage().endsWith("dimension " + dimension));
+		}
+	}
+	
+	/**
+	 * Converts the columns for hyperplanes without negative values, like the
+	 * iteration loop, returns the iteration with the first merge
+	 */
+	private int convertToFirstMerge(BigIntegerColumn[] cols) {
+		int iteration = 1;
+		while (!hasOppositeSigns(cols)) {
+			final IterationStepModel itModel = new DefaultIterationStepModel(model, iteration);
+			for (int i = 0; i < cols.length; i++) {
+				cols[i] = cols[i].convert(HOME, model, itModel, true /*clone*/);
+			}
+			iteration++;
+		}
+		return iteration;
+	}
+	
+	private static boolean hasOppositeSigns(BigIntegerColumn[] cols) {
+		boolean pos = false, neg = false;
+		for (final BigIntegerColumn col : cols) {
+			final int sgn = col.getNumeric(HOME, 0).signum();
+			pos |= sgn > 0;
+			neg |= sgn < 0;
+		}
+		return pos && neg;
+	}
+	
+	private static BigInteger[] values(BigIntegerColumn col) {
+		final BigInteger[] values = new BigInteger[col.numericSize()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = col.getNumeric(HOME, i);
+		}
+		return values;
+	}
+	
+	/**
+	 * Asserts that actual is a positive multiple of expected
+	 */
+	private static void assertProportional(BigInteger[] expected, BigInteger[] actual) {
+		assertEquals(expected.length, actual.length);
+		int ref = -1;
+		for (int i = 0; i < expected.length; i++) {
+			if (expected[i].signum() != 0) ref = i;
+			assertEquals("sign of value " + i, expected[i].signum(), actual[i].signum());
+		}
+		assertTrue("zero column", ref >= 0);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals("value " + i, expected[i].multiply(actual[ref]), actual[i].multiply(expected[ref]));
+		}
+	}
+
+}
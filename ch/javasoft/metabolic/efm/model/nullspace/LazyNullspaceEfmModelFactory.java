@@ -0,0 +1,58 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.model.nullspace;
+
+import java.math.BigInteger;
+
+import ch.javasoft.metabolic.efm.util.DualKey;
+
+/**
+ * Factory for the nullspace model with lazy numeric values for 
+ * {@link ch.javasoft.metabolic.efm.column.BigIntegerColumn big integer columns}.
+ * Merged columns only carry the values of the next few hyperplanes, the
+ * others are reconstructed from the zero pattern when needed, see
+ * {@link LazyNullspaceBigIntegerColumnInspectorModifier}. Other number types 
+ * are treated as by the {@link NullspaceEfmModelFactory}.
+ */
+public class LazyNullspaceEfmModelFactory extends NullspaceEfmModelFactory {
+	
+	public static final int DEFAULT_WINDOW = 4;
+	
+	public LazyNullspaceEfmModelFactory() {
+		this(DEFAULT_WINDOW);
+	}
+	public LazyNullspaceEfmModelFactory(int window) {
+		columnInspectorsModifiers.put(new DualKey(BigInteger.class, BigInteger[].class), new LazyNullspaceBigIntegerColumnInspectorModifier(true, window));
+	}
+}
@@ -50,13 +50,14 @@ import ch.javasoft.metabolic.efm.util.DualKey;
 
 public class NullspaceEfmModelFactory implements EfmModelFactory, ColumnInspectorModifierFactory {
 	
-	private final Map<DualKey, ColumnInspectorModifier<?,?>> columnInspectorsModifiers = new HashMap<DualKey, ColumnInspectorModifier<?,?>>();
+	protected final Map<DualKey, ColumnInspectorModifier<?,?>> columnInspectorsModifiers = new HashMap<DualKey, ColumnInspectorModifier<?,?>>();
 	
 	public NullspaceEfmModelFactory() {
 		columnInspectorsModifiers.put(new DualKey(Double.class, double[].class), new NullspaceDoubleColumnInspectorModifier(true));
 		columnInspectorsModifiers.put(new DualKey(BigFraction.class, BigFraction[].class), new NullspaceFractionalColumnInspectorModifier(true));
 		columnInspectorsModifiers.put(new DualKey(BigInteger.class, BigInteger[].class), new NullspaceBigIntegerColumnInspectorModifier(true));
 		columnInspectorsModifiers.put(new DualKey(VarIntNumber.class, VarIntNumber[].class), new NullspaceVarIntColumnInspectorModifier(true));
+		columnInspectorsModifiers.put(new DualKey(Long.class, long[].class), new NullspaceLongColumnInspectorModifier(true));
 	}
 	public <N extends Number, Col extends Column> NullspaceEfmModel createEfmModel(ColumnHome<N, Col> columnHome, Config config, MetabolicNetwork network) {
 		return new NullspaceEfmModel(columnHome, network, config, this);
@@ -51,8 +51,8 @@ public class UnmappingEfmProcessor<W> implements EfmProcessor<W> {
 	private final EfmProcessor<W>	mDelegate;
 	private final MetabolicNetwork	mOriginalNetwork;
 	
-	private int[] mMetaboliteMapping;
-	private int[] mReactionMapping;
+	private volatile int[] mMetaboliteMapping;
+	private volatile int[] mReactionMapping;
 	
 	public UnmappingEfmProcessor(EfmProcessor<W> delegate, MetabolicNetwork originalNetwork) {
 		mOriginalNetwork	= originalNetwork;
@@ -68,28 +68,32 @@ public class UnmappingEfmProcessor<W> implements EfmProcessor<W> {
 		int mlen = net.getMetabolites().length();
 		int rlen = net.getReactions().length();
 		int olen = mOriginalNetwork.getReactions().length();
-		mMetaboliteMapping	= new int[mlen];
-		mReactionMapping	= new int[rlen];
+		final int[] metaboliteMapping	= new int[mlen];
+		final int[] reactionMapping		= new int[rlen];
 		BitSet usedReacts	= new BitSet(olen);
 		
 		// initialize mapping
 		for (int i = 0; i < mlen; i++) {
 			Metabolite meta = net.getMetabolites().get(i);
-			mMetaboliteMapping[i] = mOriginalNetwork.getMetaboliteIndex(meta.getName());
-//			if (mMetaboliteMapping[i] == -1) {
+			metaboliteMapping[i] = mOriginalNetwork.getMetaboliteIndex(meta.getName());
+//			if (metaboliteMapping[i] == -1) {
 //				throw new IOException("metabolite not found in original network: " + meta.getName());
 //			}
 		}
 		for (int i = 0; i < rlen; i++) {
 			Reaction reac = net.getReactions().get(i);
 			int index = mOriginalNetwork.getReactionIndex(reac.getName());
-			mReactionMapping[i] = index;
-			if (mReactionMapping[i] == -1) {
+			reactionMapping[i] = index;
+			if (reactionMapping[i] == -1) {
 				throw new IOException("reaction not found in original network: " + reac.getName());
 			}
 			usedReacts.set(index);
 		}
 		
+		//assign after initialization, parts might be processed concurrently
+		mMetaboliteMapping	= metaboliteMapping;
+		mReactionMapping	= reactionMapping;
+
 		// write removed reaction indices
 		int[] unused = new int[olen - usedReacts.cardinality()];
 		int index = 0;
@@ -101,11 +105,12 @@ public class UnmappingEfmProcessor<W> implements EfmProcessor<W> {
 	}
 
 	public int addEfm(EfmOutputCallback cb, W writer, EfmOutputEvent evt, long efmIndex) throws IOException {
+		final int[] reactionMapping = mReactionMapping;
 		final int curLen = evt.getEfm().getSize();
 		FluxDistribution fluxDist = evt.getEfm().create(mOriginalNetwork);
 		for (int i = 0; i < curLen; i++) {
 			Number value = evt.getEfm().getNumberRate(i);
-			fluxDist.setRate(mReactionMapping[i], value);
+			fluxDist.setRate(reactionMapping[i], value);
 		}
 		return mDelegate.addEfm(cb, writer, new EfmOutputEvent(mOriginalNetwork, fluxDist, evt.getEfmCount()), efmIndex);
 	}
@@ -0,0 +1,300 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.output.columnar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Package private helper class with the constants of the columnar efm file
+ * format and the static methods to encode and decode a single block.
+ * <p>
+ * File layout:
+ * <pre>
+ * int			-- magic number
+ * int			-- format version
+ * byte			-- requested value encoding (ordinal of {@link ValueEncoding})
+ * int			-- reaction count R
+ * {UTF}		-- R reaction names
+ * {block}		-- blocks, in index order
+ * int			-- block count B
+ * {long, int, int} -- B times: block offset, block length, efm count
+ * long			-- offset of the block count, i.e. start of the footer
+ * int			-- magic number
+ * </pre>
+ * Block layout (n efms, W = (n+63)/64 words):
+ * <pre>
+ * int			-- efm count n
+ * byte			-- value encoding of this block
+ * {int, double, double} -- R times: segment offset (relative to block start),
+ * 				   min and max value of the reaction within this block
+ * {segment}	-- R segments, one per reaction:
+ * 		int		-- non-zero count
+ * 		{long}	-- W words with the support bits, bit i for efm i
+ * 		{value}	-- non-zero values, encoded as specified by the block encoding
+ * </pre>
+ */
+/*package*/ class ColumnarBlock {
+
+	/** Magic number at file start and end: "EFMC"*/
+	static final int MAGIC 			= 0x45464d43;
+	static final int VERSION		= 1;
+	/** Size of the trailer, the footer offset and the magic number*/
+	static final int TRAILER_SIZE	= 12;
+	/** Size of the block header without the per-reaction entries*/
+	static final int BLOCK_HEADER_FIXED			= 5;
+	/** Size of a per-reaction entry in the block header*/
+	static final int BLOCK_HEADER_PER_REACTION	= 20;
+
+	/**
+	 * Encodes a block of efms given in column-major form, that is,
+	 * {@code columns[reaction][efm]}.
+	 *
+	 * @param columns	the values, one array per reaction, containing the
+	 * 					values for the efms of this block
+	 * @param efmCount	the number of valid efms in the column arrays
+	 * @param encoding	the requested value encoding, {@link ValueEncoding#VarInt}
+	 * 					falls back to {@link ValueEncoding#Float64} if the block
+	 * 					contains non-integral values
+	 * @return the encoded block
+	 */
+	static byte[] encode(double[][] columns, int efmCount, ValueEncoding encoding) throws IOException {
+		if (encoding == ValueEncoding.VarInt && !isIntegral(columns, efmCount)) {
+			encoding = ValueEncoding.Float64;
+		}
+		final int rcnt		= columns.length;
+		final int words		= (efmCount + 63) >>> 6;
+		final int hdrSize	= headerSize(rcnt);
+		final ByteArrayOutputStream hdr = new ByteArrayOutputStream(hdrSize);
+		final ByteArrayOutputStream seg = new ByteArrayOutputStream(rcnt * (4 + 8 * words));
+		final DataOutputStream hdrOut = new DataOutputStream(hdr);
+		final DataOutputStream segOut = new DataOutputStream(seg);
+
+		hdrOut.writeInt(efmCount);
+		hdrOut.writeByte(encoding.ordinal());
+		final long[] support = new long[words];
+		for (int r = 0; r < rcnt; r++) {
+			final double[] col = columns[r];
+			double min = efmCount == 0 ? 0d : Double.POSITIVE_INFINITY;
+			double max = efmCount == 0 ? 0d : Double.NEGATIVE_INFINITY;
+			int nonZero = 0;
+			Arrays.fill(support, 0L);
+			for (int i = 0; i < efmCount; i++) {
+				final double val = col[i];
+				if (val < min) min = val;
+				if (val > max) max = val;
+				if (val != 0d) {
+					support[i >>> 6] |= (1L << i);
+					nonZero++;
+				}
+			}
+			hdrOut.writeInt(hdrSize + seg.size());
+			hdrOut.writeDouble(min);
+			hdrOut.writeDouble(max);
+
+			segOut.writeInt(nonZero);
+			for (int w = 0; w < words; w++) {
+				segOut.writeLong(support[w]);
+			}
+			long prev = 0;
+			for (int i = 0; i < efmCount; i++) {
+				final double val = col[i];
+				if (val != 0d) {
+					switch (encoding) {
+						case Binary:
+							break;
+						case VarInt:
+							final long lval = (long)val;
+							writeVarLong(segOut, lval - prev);
+							prev = lval;
+							break;
+						case Float32:
+							segOut.writeFloat((float)val);
+							break;
+						case Float64:
+							segOut.writeDouble(val);
+							break;
+						default:
+							throw new RuntimeException("unknown encoding: " + encoding);
+					}
+				}
+			}
+		}
+		hdrOut.flush();
+		segOut.flush();
+		final byte[] block = new byte[hdr.size() + seg.size()];
+		System.arraycopy(hdr.toByteArray(), 0, block, 0, hdr.size());
+		System.arraycopy(seg.toByteArray(), 0, block, hdr.size(), seg.size());
+		return block;
+	}
+
+	/**
+	 * Returns the block header size for the given number of reactions
+	 */
+	static int headerSize(int reactionCount) {
+		return BLOCK_HEADER_FIXED + reactionCount * BLOCK_HEADER_PER_REACTION;
+	}
+
+	/**
+	 * Returns true if all values fit into a long without loss
+	 */
+	private static boolean isIntegral(double[][] columns, int efmCount) {
+		for (int r = 0; r < columns.length; r++) {
+			final double[] col = columns[r];
+			for (int i = 0; i < efmCount; i++) {
+				final double val = col[i];
+				if (val != Math.rint(val) || Math.abs(val) >= 0x1p53) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes the values of a single reaction segment, writing them to the
+	 * given target array. The segment is read from the given buffer, starting
+	 * at the buffer's current position.
+	 *
+	 * @param buf		the buffer positioned at the segment start
+	 * @param encoding	the encoding of the block
+	 * @param efmCount	the number of efms in the block
+	 * @param dst		the target array, values for zero entries are not
+	 * 					written
+	 * @param dstOffset	the target array index for the first efm of the block
+	 */
+	static void decodeSegment(ByteBuffer buf, ValueEncoding encoding, int efmCount, double[] dst, int dstOffset) {
+		buf.getInt();//non-zero count, not needed here
+		final int words = (efmCount + 63) >>> 6;
+		final long[] support = new long[words];
+		for (int w = 0; w < words; w++) {
+			support[w] = buf.getLong();
+		}
+		long prev = 0;
+		for (int w = 0; w < words; w++) {
+			long bits = support[w];
+			while (bits != 0) {
+				final int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= (bits - 1);
+				switch (encoding) {
+					case Binary:
+						dst[dstOffset + i] = 1d;
+						break;
+					case VarInt:
+						prev += readVarLong(buf);
+						dst[dstOffset + i] = prev;
+						break;
+					case Float32:
+						dst[dstOffset + i] = buf.getFloat();
+						break;
+					case Float64:
+						dst[dstOffset + i] = buf.getDouble();
+						break;
+					default:
+						throw new RuntimeException("unknown encoding: " + encoding);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Decodes the value of a single efm from a reaction segment. The segment
+	 * is read from the given buffer, starting at the buffer's current
+	 * position.
+	 */
+	static double decodeValue(ByteBuffer buf, ValueEncoding encoding, int efmCount, int efmIndex) {
+		buf.getInt();//non-zero count
+		final int words	= (efmCount + 63) >>> 6;
+		final int start	= buf.position();
+		final int word	= efmIndex >>> 6;
+		final long bit	= 1L << efmIndex;
+		final long unit	= buf.getLong(start + 8 * word);
+		if ((unit & bit) == 0) return 0d;
+		if (encoding == ValueEncoding.Binary) return 1d;
+		//rank of the bit, i.e. the index within the non-zero values
+		int rank = Long.bitCount(unit & (bit - 1));
+		for (int w = 0; w < word; w++) {
+			rank += Long.bitCount(buf.getLong(start + 8 * w));
+		}
+		buf.position(start + 8 * words);
+		switch (encoding) {
+			case Float32:
+				return buf.getFloat(buf.position() + 4 * rank);
+			case Float64:
+				return buf.getDouble(buf.position() + 8 * rank);
+			case VarInt:
+				long val = 0;
+				for (int i = 0; i <= rank; i++) {
+					val += readVarLong(buf);
+				}
+				return val;
+			default:
+				throw new RuntimeException("unknown encoding: " + encoding);
+		}
+	}
+
+	/**
+	 * Writes a zig-zag encoded variable length long value
+	 */
+	static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		long zz = (value << 1) ^ (value >> 63);
+		while ((zz & ~0x7fL) != 0) {
+			out.writeByte((int)((zz & 0x7f) | 0x80));
+			zz >>>= 7;
+		}
+		out.writeByte((int)zz);
+	}
+
+	/**
+	 * Reads a zig-zag encoded variable length long value
+	 */
+	static long readVarLong(ByteBuffer buf) {
+		long zz = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buf.get();
+			zz |= ((long)(b & 0x7f)) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0);
+		return (zz >>> 1) ^ -(zz & 1);
+	}
+
+	// no instances
+	private ColumnarBlock() {}
+}
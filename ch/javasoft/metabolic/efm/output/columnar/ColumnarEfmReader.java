@@ -0,0 +1,262 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.output.columnar;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The <tt>ColumnarEfmReader</tt> provides random access to efm files written
+ * by {@link ColumnarEfmWriter}. Only the header and the index footer are read
+ * when opening the file, blocks are read on demand. Single efms or
+ * projections of single reactions can be read without loading the whole file.
+ * <p>
+ * The block statistics (min/max values per reaction and block) are used to
+ * skip blocks without flux for a reaction when reading reaction projections.
+ * <p>
+ * Reading methods are synchronized, the most recently read block is cached.
+ */
+public class ColumnarEfmReader implements Closeable {
+
+	private final RandomAccessFile	raf;
+	private final FileChannel		channel;
+	private final ValueEncoding		encoding;
+	private final String[]			reactionNames;
+	private final long[]			blockOffset;
+	private final int[]				blockLength;
+	private final int[]				blockEfmCount;
+	private final long[]			blockFirstEfm;
+	private final long				efmCount;
+
+	private int			cachedBlock = -1;
+	private ByteBuffer	cachedBuffer;
+
+	/**
+	 * Opens the given file for reading, reads the header and the block index
+	 *
+	 * @param file	the file to read
+	 * @throws IOException	if an i/o exception occurs, or if the file is not
+	 * 						a valid columnar efm file
+	 */
+	public ColumnarEfmReader(File file) throws IOException {
+		raf		= new RandomAccessFile(file, "r");
+		channel	= raf.getChannel();
+		if (raf.length() < ColumnarBlock.TRAILER_SIZE) {
+			raf.close();
+			throw new IOException("not a columnar efm file: " + file);
+		}
+		if (raf.readInt() != ColumnarBlock.MAGIC) {
+			raf.close();
+			throw new IOException("not a columnar efm file, invalid magic number: " + file);
+		}
+		final int version = raf.readInt();
+		if (version != ColumnarBlock.VERSION) {
+			raf.close();
+			throw new IOException("unsupported columnar efm file version " + version + ": " + file);
+		}
+		encoding		= ValueEncoding.fromCode(raf.readByte());
+		reactionNames	= new String[raf.readInt()];
+		for (int i = 0; i < reactionNames.length; i++) {
+			reactionNames[i] = raf.readUTF();
+		}
+		raf.seek(raf.length() - ColumnarBlock.TRAILER_SIZE);
+		final long footer = raf.readLong();
+		if (raf.readInt() != ColumnarBlock.MAGIC) {
+			raf.close();
+			throw new IOException("columnar efm file is incomplete, no index footer found: " + file);
+		}
+		raf.seek(footer);
+		final int blocks = raf.readInt();
+		blockOffset		= new long[blocks];
+		blockLength		= new int[blocks];
+		blockEfmCount	= new int[blocks];
+		blockFirstEfm	= new long[blocks];
+		long cnt = 0;
+		for (int b = 0; b < blocks; b++) {
+			blockOffset[b]		= raf.readLong();
+			blockLength[b]		= raf.readInt();
+			blockEfmCount[b]	= raf.readInt();
+			blockFirstEfm[b]	= cnt;
+			cnt += blockEfmCount[b];
+		}
+		efmCount = cnt;
+	}
+
+	/** Returns the number of efms stored in the file*/
+	public long getEfmCount() {
+		return efmCount;
+	}
+	/** Returns the number of reactions, i.e. the length of an efm*/
+	public int getReactionCount() {
+		return reactionNames.length;
+	}
+	/** Returns a copy of the reaction names*/
+	public String[] getReactionNames() {
+		return reactionNames.clone();
+	}
+	/** Returns the value encoding which was requested when writing the file*/
+	public ValueEncoding getEncoding() {
+		return encoding;
+	}
+	/** Returns the number of blocks in the file*/
+	public int getBlockCount() {
+		return blockOffset.length;
+	}
+	/** Returns the number of efms in the given block*/
+	public int getBlockEfmCount(int block) {
+		return blockEfmCount[block];
+	}
+	/** Returns the index of the first efm in the given block*/
+	public long getBlockFirstEfm(int block) {
+		return blockFirstEfm[block];
+	}
+	/** Returns the minimum value of a reaction within the given block*/
+	public synchronized double getBlockMin(int block, int reaction) throws IOException {
+		final ByteBuffer buf = readBlock(block);
+		return buf.getDouble(headerEntry(reaction) + 4);
+	}
+	/** Returns the maximum value of a reaction within the given block*/
+	public synchronized double getBlockMax(int block, int reaction) throws IOException {
+		final ByteBuffer buf = readBlock(block);
+		return buf.getDouble(headerEntry(reaction) + 12);
+	}
+
+	/**
+	 * Reads the efm with the given index
+	 *
+	 * @param efmIndex	the efm index, 0 &le; index &lt; {@link #getEfmCount()}
+	 * @return the efm values, one per reaction
+	 * @throws IOException	if an i/o exception occurs
+	 */
+	public synchronized double[] readEfm(long efmIndex) throws IOException {
+		final int block		= getBlockForEfm(efmIndex);
+		final int inBlock	= (int)(efmIndex - blockFirstEfm[block]);
+		final ByteBuffer buf	= readBlock(block);
+		final ValueEncoding enc	= ValueEncoding.fromCode(buf.get(4));
+		final double[] efm = new double[reactionNames.length];
+		for (int r = 0; r < efm.length; r++) {
+			buf.position(buf.getInt(headerEntry(r)));
+			efm[r] = ColumnarBlock.decodeValue(buf, enc, blockEfmCount[block], inBlock);
+		}
+		return efm;
+	}
+
+	/**
+	 * Reads the values of a single reaction for a range of efms, i.e. a
+	 * projection of the efms to a single reaction. Blocks for which the
+	 * statistics indicate zero flux for the reaction are not decoded.
+	 *
+	 * @param reaction	the reaction index
+	 * @param start		the index of the first efm
+	 * @param count		the number of efms
+	 * @return the values of the given reaction, one per efm
+	 * @throws IOException	if an i/o exception occurs
+	 */
+	public synchronized double[] readReaction(int reaction, long start, int count) throws IOException {
+		if (reaction < 0 || reaction >= reactionNames.length) {
+			throw new IndexOutOfBoundsException("reaction index out of bounds: " + reaction);
+		}
+		if (start < 0 || count < 0 || start + count > efmCount) {
+			throw new IndexOutOfBoundsException("efm range out of bounds: [" + start + ", " + (start + count) + ")");
+		}
+		final double[] values = new double[count];
+		if (count == 0) return values;
+		double[] tmp = null;
+		for (int block = getBlockForEfm(start); block < blockOffset.length && blockFirstEfm[block] < start + count; block++) {
+			final ByteBuffer buf = readBlock(block);
+			final int hdr = headerEntry(reaction);
+			if (buf.getDouble(hdr + 4) == 0d && buf.getDouble(hdr + 12) == 0d) {
+				continue;
+			}
+			final int cnt = blockEfmCount[block];
+			if (tmp == null || tmp.length < cnt) tmp = new double[cnt];
+			else Arrays.fill(tmp, 0, cnt, 0d);
+			buf.position(buf.getInt(hdr));
+			ColumnarBlock.decodeSegment(buf, ValueEncoding.fromCode(buf.get(4)), cnt, tmp, 0);
+			final long first = blockFirstEfm[block];
+			final int from	= (int)Math.max(0, start - first);
+			final int to	= (int)Math.min(cnt, start + count - first);
+			System.arraycopy(tmp, from, values, (int)(first + from - start), to - from);
+		}
+		return values;
+	}
+
+	/**
+	 * Closes the underlying file
+	 */
+	public synchronized void close() throws IOException {
+		cachedBuffer	= null;
+		cachedBlock		= -1;
+		raf.close();
+	}
+
+	private int getBlockForEfm(long efmIndex) {
+		if (efmIndex < 0 || efmIndex >= efmCount) {
+			throw new IndexOutOfBoundsException("efm index out of bounds: " + efmIndex);
+		}
+		int index = Arrays.binarySearch(blockFirstEfm, efmIndex);
+		if (index < 0) index = -index - 2;
+		//skip empty blocks, if any
+		while (blockEfmCount[index] == 0) index++;
+		return index;
+	}
+
+	private static int headerEntry(int reaction) {
+		return ColumnarBlock.BLOCK_HEADER_FIXED + reaction * ColumnarBlock.BLOCK_HEADER_PER_REACTION;
+	}
+
+	private ByteBuffer readBlock(int block) throws IOException {
+		if (block != cachedBlock) {
+			final ByteBuffer buf = ByteBuffer.allocate(blockLength[block]);
+			long pos = blockOffset[block];
+			while (buf.hasRemaining()) {
+				final int read = channel.read(buf, pos);
+				if (read < 0) {
+					throw new IOException("unexpected end of file reading block " + block);
+				}
+				pos += read;
+			}
+			buf.flip();
+			cachedBuffer	= buf;
+			cachedBlock		= block;
+		}
+		return cachedBuffer;
+	}
+
+}
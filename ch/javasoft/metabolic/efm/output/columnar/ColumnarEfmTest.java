@@ -0,0 +1,193 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.output.columnar;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ColumnarEfmTest extends TestCase {
+
+	private final Random rnd = new Random(4711);
+
+	private static final int REACTIONS 	= 37;
+	private static final int EFMS		= 1000;
+	private static final int BLOCK_SIZE	= 100;
+
+	public void testFloat64() throws IOException {
+		doTest(ValueEncoding.Float64, createDoubles(), 0d);
+	}
+	public void testFloat32() throws IOException {
+		doTest(ValueEncoding.Float32, createDoubles(), 1e-6);
+	}
+	public void testVarInt() throws IOException {
+		doTest(ValueEncoding.VarInt, createIntegers(), 0d);
+	}
+	public void testVarIntFallback() throws IOException {
+		doTest(ValueEncoding.VarInt, createDoubles(), 0d);
+	}
+	public void testBinary() throws IOException {
+		final double[][] efms = createIntegers();
+		for (final double[] efm : efms) {
+			for (int i = 0; i < efm.length; i++) {
+				if (efm[i] != 0d) efm[i] = 1d;
+			}
+		}
+		doTest(ValueEncoding.Binary, efms, 0d);
+	}
+	public void testConcurrentWriters() throws Exception {
+		final File file = File.createTempFile("efm-columnar-", ".efmc");
+		file.deleteOnExit();
+		final ColumnarEfmWriter writer = new ColumnarEfmWriter(file, createNames(), ValueEncoding.VarInt, BLOCK_SIZE);
+		final Thread[] threads = new Thread[4];
+		final double[][] efms = createIntegers();
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = offset; i < efms.length; i += threads.length) {
+							writer.addEfm(efms[i]);
+						}
+					}
+					catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(EFMS, writer.close());
+		final ColumnarEfmReader reader = new ColumnarEfmReader(file);
+		try {
+			assertEquals(EFMS, reader.getEfmCount());
+			//the order is arbitrary, compare sums per reaction
+			for (int r = 0; r < REACTIONS; r++) {
+				double expected = 0d;
+				for (final double[] efm : efms) expected += efm[r];
+				double actual = 0d;
+				for (final double val : reader.readReaction(r, 0, EFMS)) actual += val;
+				assertEquals(expected, actual, 0d);
+			}
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private void doTest(ValueEncoding encoding, double[][] efms, double delta) throws IOException {
+		final File file = File.createTempFile("efm-columnar-", ".efmc");
+		file.deleteOnExit();
+		final String[] names = createNames();
+		final ColumnarEfmWriter writer = new ColumnarEfmWriter(file, names, encoding, BLOCK_SIZE);
+		for (final double[] efm : efms) {
+			writer.addEfm(efm);
+		}
+		assertEquals(efms.length, writer.close());
+
+		final ColumnarEfmReader reader = new ColumnarEfmReader(file);
+		try {
+			assertEquals(efms.length, reader.getEfmCount());
+			assertEquals(REACTIONS, reader.getReactionCount());
+			assertEquals(encoding, reader.getEncoding());
+			assertEquals((efms.length + BLOCK_SIZE - 1) / BLOCK_SIZE, reader.getBlockCount());
+			for (int i = 0; i < names.length; i++) {
+				assertEquals(names[i], reader.getReactionNames()[i]);
+			}
+			for (int i = efms.length - 1; i >= 0; i -= 7) {
+				final double[] efm = reader.readEfm(i);
+				for (int r = 0; r < REACTIONS; r++) {
+					assertEquals(efms[i][r], efm[r], Math.abs(efms[i][r]) * delta);
+				}
+			}
+			final int start = 123, count = 456;
+			for (int r = 0; r < REACTIONS; r++) {
+				final double[] vals = reader.readReaction(r, start, count);
+				for (int i = 0; i < count; i++) {
+					assertEquals(efms[start + i][r], vals[i], Math.abs(efms[start + i][r]) * delta);
+				}
+			}
+			for (int b = 0; b < reader.getBlockCount(); b++) {
+				final long first = reader.getBlockFirstEfm(b);
+				for (int r = 0; r < REACTIONS; r++) {
+					double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+					for (int i = 0; i < reader.getBlockEfmCount(b); i++) {
+						min = Math.min(min, efms[(int)first + i][r]);
+						max = Math.max(max, efms[(int)first + i][r]);
+					}
+					assertEquals(min, reader.getBlockMin(b, r), 0d);
+					assertEquals(max, reader.getBlockMax(b, r), 0d);
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private String[] createNames() {
+		final String[] names = new String[REACTIONS];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "R" + i;
+		}
+		return names;
+	}
+	private double[][] createDoubles() {
+		final double[][] efms = new double[EFMS][REACTIONS];
+		for (final double[] efm : efms) {
+			for (int r = 0; r < REACTIONS; r++) {
+				if (r == 5 || rnd.nextInt(3) == 0) continue;//reaction 5 has no flux
+				efm[r] = rnd.nextGaussian() * 100;
+			}
+		}
+		return efms;
+	}
+	private double[][] createIntegers() {
+		final double[][] efms = new double[EFMS][REACTIONS];
+		for (final double[] efm : efms) {
+			for (int r = 0; r < REACTIONS; r++) {
+				if (r == 5 || rnd.nextInt(3) == 0) continue;//reaction 5 has no flux
+				efm[r] = rnd.nextInt(2001) - 1000;
+			}
+		}
+		return efms;
+	}
+
+}
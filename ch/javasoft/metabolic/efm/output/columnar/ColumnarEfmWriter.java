@@ -0,0 +1,242 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.output.columnar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The <tt>ColumnarEfmWriter</tt> writes efms to a columnar efm file, see
+ * {@link ColumnarBlock} for the file format. Efms are collected in blocks, the
+ * values are stored column-major within a block, i.e. all values of a
+ * reaction are stored consecutively.
+ * <p>
+ * The writer is thread safe. Every writing thread collects efms in its own
+ * block buffer, and encodes the block without synchronization. Only the
+ * reservation of the file position for an encoded block is synchronized, the
+ * block itself is written using positional writes on the file channel. The
+ * efm indices are thus only defined by the block order in the file, the order
+ * of efms of different threads is arbitrary.
+ * <p>
+ * Use {@link ColumnarEfmReader} to read the file.
+ */
+public class ColumnarEfmWriter {
+
+	/** Default number of efms per block*/
+	public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+	private final RandomAccessFile			raf;
+	private final FileChannel				channel;
+	private final int						reactionCount;
+	private final int						blockSize;
+	private final ValueEncoding				encoding;
+
+	private final ThreadLocal<BlockBuffer>	threadBuffer;
+	private final List<BlockBuffer>			allBuffers	= new ArrayList<BlockBuffer>();
+	private final List<long[]>				index		= new ArrayList<long[]>();
+
+	private long position;
+	private long efmCount;
+	private boolean closed;
+
+	/**
+	 * Constructor for writer with given file, reaction names, encoding and
+	 * the default block size {@link #DEFAULT_BLOCK_SIZE}.
+	 *
+	 * @param file			the file to write to, an existing file is
+	 * 						overwritten
+	 * @param reactionNames	the reaction names, defining the efm length
+	 * @param encoding		the value encoding
+	 * @throws IOException	if an i/o exception occurs
+	 */
+	public ColumnarEfmWriter(File file, String[] reactionNames, ValueEncoding encoding) throws IOException {
+		this(file, reactionNames, encoding, DEFAULT_BLOCK_SIZE);
+	}
+	/**
+	 * Constructor for writer with given file, reaction names, encoding and
+	 * block size.
+	 *
+	 * @param file			the file to write to, an existing file is
+	 * 						overwritten
+	 * @param reactionNames	the reaction names, defining the efm length
+	 * @param encoding		the value encoding
+	 * @param blockSize		the number of efms per block
+	 * @throws IOException	if an i/o exception occurs
+	 */
+	public ColumnarEfmWriter(File file, String[] reactionNames, ValueEncoding encoding, int blockSize) throws IOException {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("block size must be positive: " + blockSize);
+		}
+		this.raf			= new RandomAccessFile(file, "rw");
+		this.raf.setLength(0);
+		this.channel		= raf.getChannel();
+		this.reactionCount	= reactionNames.length;
+		this.blockSize		= blockSize;
+		this.encoding		= encoding;
+		this.threadBuffer	= new ThreadLocal<BlockBuffer>() {
+			@Override
+			protected BlockBuffer initialValue() {
+				final BlockBuffer buf = new BlockBuffer();
+				synchronized(ColumnarEfmWriter.this) {
+					allBuffers.add(buf);
+				}
+				return buf;
+			}
+		};
+		final ByteArrayOutputStream header = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(header);
+		out.writeInt(ColumnarBlock.MAGIC);
+		out.writeInt(ColumnarBlock.VERSION);
+		out.writeByte(encoding.ordinal());
+		out.writeInt(reactionCount);
+		for (final String name : reactionNames) {
+			out.writeUTF(name);
+		}
+		out.flush();
+		writeFully(ByteBuffer.wrap(header.toByteArray()), 0);
+		position = header.size();
+	}
+
+	/**
+	 * Adds an efm. The values are copied, the array can be reused by the
+	 * caller. This method can be called concurrently by multiple threads.
+	 *
+	 * @param values		the efm values, one per reaction
+	 * @throws IOException	if an i/o exception occurs
+	 */
+	public void addEfm(double[] values) throws IOException {
+		if (values.length != reactionCount) {
+			throw new IllegalArgumentException("expected " + reactionCount + " values, but found " + values.length);
+		}
+		final BlockBuffer buf = threadBuffer.get();
+		buf.add(values);
+		if (buf.count == blockSize) {
+			buf.flush();
+		}
+	}
+
+	/**
+	 * Flushes all pending blocks, writes the index footer and closes the file.
+	 * Must be called after all writing threads have completed.
+	 *
+	 * @return the number of efms written
+	 * @throws IOException	if an i/o exception occurs
+	 */
+	public long close() throws IOException {
+		final List<BlockBuffer> buffers;
+		synchronized(this) {
+			if (closed) return efmCount;
+			buffers = new ArrayList<BlockBuffer>(allBuffers);
+		}
+		for (final BlockBuffer buf : buffers) {
+			buf.flush();
+		}
+		synchronized(this) {
+			final ByteArrayOutputStream footer = new ByteArrayOutputStream(4 + 16 * index.size() + ColumnarBlock.TRAILER_SIZE);
+			final DataOutputStream out = new DataOutputStream(footer);
+			out.writeInt(index.size());
+			for (final long[] entry : index) {
+				out.writeLong(entry[0]);
+				out.writeInt((int)entry[1]);
+				out.writeInt((int)entry[2]);
+			}
+			out.writeLong(position);
+			out.writeInt(ColumnarBlock.MAGIC);
+			out.flush();
+			writeFully(ByteBuffer.wrap(footer.toByteArray()), position);
+			position += footer.size();
+			channel.force(false);
+			raf.close();
+			closed = true;
+			return efmCount;
+		}
+	}
+
+	/**
+	 * Returns the number of efms in blocks already written to the file
+	 */
+	public synchronized long getWrittenEfmCount() {
+		return efmCount;
+	}
+
+	/**
+	 * Reserves the file region for a block and registers it in the index
+	 *
+	 * @return the file position where to write the block
+	 */
+	private synchronized long reserve(int length, int count) throws IOException {
+		if (closed) {
+			throw new IOException("writer already closed");
+		}
+		final long pos = position;
+		position += length;
+		efmCount += count;
+		index.add(new long[] {pos, length, count});
+		return pos;
+	}
+
+	private void writeFully(ByteBuffer buf, long pos) throws IOException {
+		while (buf.hasRemaining()) {
+			pos += channel.write(buf, pos);
+		}
+	}
+
+	/**
+	 * Per-thread block buffer, storing the values column-major.
+	 */
+	private class BlockBuffer {
+		final double[][] columns = new double[reactionCount][blockSize];
+		int count;
+		void add(double[] values) {
+			for (int r = 0; r < reactionCount; r++) {
+				columns[r][count] = values[r];
+			}
+			count++;
+		}
+		void flush() throws IOException {
+			if (count == 0) return;
+			final byte[] block = ColumnarBlock.encode(columns, count, encoding);
+			final long pos = reserve(block.length, count);
+			writeFully(ByteBuffer.wrap(block), pos);
+			count = 0;
+		}
+	}
+}
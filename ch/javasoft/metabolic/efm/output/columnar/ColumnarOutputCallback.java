@@ -0,0 +1,200 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.output.columnar;
+
+import java.io.File;
+import java.io.IOException;
+
+import ch.javasoft.metabolic.FluxDistribution;
+import ch.javasoft.metabolic.MetabolicNetwork;
+import ch.javasoft.metabolic.Reaction;
+import ch.javasoft.metabolic.compress.CompressedMetabolicNetwork;
+import ch.javasoft.metabolic.efm.output.AbstractOutputCallback;
+import ch.javasoft.metabolic.efm.output.CallbackGranularity;
+import ch.javasoft.metabolic.efm.output.EfmOutputEvent;
+import ch.javasoft.metabolic.efm.output.OutputMode;
+
+/**
+ * The <tt>ColumnarOutputCallback</tt> writes efms to a compressed columnar
+ * binary file using a {@link ColumnarEfmWriter}. Efms are stored in blocks,
+ * column-major within each block, with bit-packed support patterns, encoded
+ * values, per-block min/max statistics and an index footer. The file can be
+ * read with random access using {@link ColumnarEfmReader}.
+ * <p>
+ * The callback is thread safe, every output thread fills its own block. The
+ * reactions are unmapped to the original network, like it is done by the
+ * {@link ch.javasoft.metabolic.efm.output.UnmappingEfmOutputFormatter}.
+ */
+public class ColumnarOutputCallback extends AbstractOutputCallback {
+
+	private final OutputMode		mMode;
+	private final MetabolicNetwork	mOriginalNetwork;
+	private final File				mFile;
+	private final ValueEncoding		mEncoding;
+	private final int				mBlockSize;
+
+	private volatile ColumnarEfmWriter	mWriter;
+	private volatile int[]				mReactionMapping;
+	private volatile int				mReactionCount;
+
+	/**
+	 * Constructor with output mode and file, using the default encoding for
+	 * the given mode (see {@link #getDefaultEncoding(OutputMode)}) and the
+	 * default block size.
+	 *
+	 * @param originalNetwork	the original network for reaction unmapping
+	 * @param mode				the output mode
+	 * @param file				the file to write to
+	 */
+	public ColumnarOutputCallback(MetabolicNetwork originalNetwork, OutputMode mode, File file) {
+		this(originalNetwork, mode, file, getDefaultEncoding(mode));
+	}
+	/**
+	 * Constructor with output mode, file and value encoding, using the default
+	 * block size.
+	 *
+	 * @param originalNetwork	the original network for reaction unmapping
+	 * @param mode				the output mode
+	 * @param file				the file to write to
+	 * @param encoding			the value encoding
+	 */
+	public ColumnarOutputCallback(MetabolicNetwork originalNetwork, OutputMode mode, File file, ValueEncoding encoding) {
+		this(originalNetwork, mode, file, encoding, ColumnarEfmWriter.DEFAULT_BLOCK_SIZE);
+	}
+	/**
+	 * Constructor with output mode, file, value encoding and block size.
+	 *
+	 * @param originalNetwork	the original network for reaction unmapping
+	 * @param mode				the output mode
+	 * @param file				the file to write to
+	 * @param encoding			the value encoding
+	 * @param blockSize			the number of efms per block
+	 */
+	public ColumnarOutputCallback(MetabolicNetwork originalNetwork, OutputMode mode, File file, ValueEncoding encoding, int blockSize) {
+		if (mode.granularity.isBinarySufficient() && encoding != ValueEncoding.Binary && encoding != ValueEncoding.VarInt) {
+			LogPkg.LOGGER.warning("value encoding " + encoding + " used for output mode " + mode + ", consider using " + getDefaultEncoding(mode));
+		}
+		if (!mode.granularity.isBinarySufficient() && encoding == ValueEncoding.Binary) {
+			throw new IllegalArgumentException("binary encoding not supported for output mode " + mode);
+		}
+		mMode				= mode;
+		mOriginalNetwork	= originalNetwork;
+		mFile				= file;
+		mEncoding			= encoding;
+		mBlockSize			= blockSize;
+	}
+
+	/**
+	 * Returns the default encoding for the given output mode, that is,
+	 * {@link ValueEncoding#Binary} for binary modes,
+	 * {@link ValueEncoding#VarInt} for sign values and
+	 * {@link ValueEncoding#Float64} for doubles.
+	 */
+	public static ValueEncoding getDefaultEncoding(OutputMode mode) {
+		switch (mode) {
+			case BinaryCompressed:
+			case BinaryUncompressed:
+				return ValueEncoding.Binary;
+			case SignUncompressed:
+				return ValueEncoding.VarInt;
+			default:
+				return ValueEncoding.Float64;
+		}
+	}
+
+	//inherit javadoc comments
+	@Override
+	protected void callbackPre(EfmOutputEvent evt) throws IOException {
+		MetabolicNetwork net = evt.getMetabolicNetwork();
+		if (net instanceof CompressedMetabolicNetwork && getGranularity().isUncompressionNeeded()) {
+			net = ((CompressedMetabolicNetwork)net).getRootNetwork();
+		}
+		final MetabolicNetwork outNet = mMode == OutputMode.BinaryCompressed ? net : mOriginalNetwork;
+		final int rlen		= net.getReactions().length();
+		final int[] mapping	= new int[rlen];
+		for (int i = 0; i < rlen; i++) {
+			final Reaction reac = net.getReactions().get(i);
+			mapping[i] = outNet.getReactionIndex(reac.getName());
+			if (mapping[i] == -1) {
+				throw new IOException("reaction not found in original network: " + reac.getName());
+			}
+		}
+		final String[] names = new String[outNet.getReactions().length()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = outNet.getReactions().get(i).getName();
+		}
+		mReactionMapping	= mapping;
+		mReactionCount		= names.length;
+		mWriter				= new ColumnarEfmWriter(mFile, names, mEncoding, mBlockSize);
+	}
+
+	//inherit javadoc comments
+	@Override
+	protected void callbackEfmOut(EfmOutputEvent evt) throws IOException {
+		final int[] mapping		= mReactionMapping;
+		final FluxDistribution efm	= evt.getEfm();
+		final double[] values	= new double[mReactionCount];
+		final int len = Math.min(efm.getSize(), mapping.length);
+		for (int i = 0; i < len; i++) {
+			values[mapping[i]] = efm.getNumberRate(i).doubleValue();
+		}
+		mWriter.addEfm(values);
+	}
+
+	//inherit javadoc comments
+	@Override
+	protected void callbackPost(EfmOutputEvent evt) throws IOException {
+		final long cnt = mWriter.close();
+		LogPkg.LOGGER.info(cnt + " efms written to columnar file " + mFile.getAbsolutePath());
+		mWriter				= null;
+		mReactionMapping	= null;
+	}
+
+	//inherit javadoc comments
+	public CallbackGranularity getGranularity() {
+		return mMode.granularity;
+	}
+
+	public boolean allowLoggingDuringOutput() {
+		return true;
+	}
+
+	/**
+	 * Returns {@code true}, every thread writes to its own block
+	 * @see ch.javasoft.metabolic.efm.output.EfmOutputCallback#isThreadSafe()
+	 */
+	public boolean isThreadSafe() {
+		return true;
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.output.columnar;
+
+/**
+ * The <tt>ValueEncoding</tt> defines how the non-zero flux values of a 
+ * reaction column are stored within a block of a columnar efm file. The 
+ * support pattern is always stored as packed bits, the encoding only affects
+ * the values at the positions of the set bits.
+ */
+public enum ValueEncoding {
+	/** 
+	 * No values are stored, the support pattern is sufficient. Reading a value
+	 * returns 1 for set bits and 0 otherwise.
+	 */
+	Binary,
+	/**
+	 * Integral values, delta encoded against the previous non-zero value of 
+	 * the same reaction within the block and stored as zig-zag varint. Blocks 
+	 * containing non-integral values are automatically stored as 
+	 * {@link #Float64}.
+	 */
+	VarInt,
+	/** Values are stored as 32 bit floats, which is lossy for doubles*/
+	Float32,
+	/** Values are stored as 64 bit doubles*/
+	Float64;
+	
+	/**
+	 * Returns the encoding with the given code, i.e. the encoding with the
+	 * given ordinal.
+	 * 
+	 * @throws IllegalArgumentException if no such encoding exists
+	 */
+	public static ValueEncoding fromCode(int code) {
+		final ValueEncoding[] values = values();
+		if (code < 0 || code >= values.length) {
+			throw new IllegalArgumentException("no such value encoding: " + code);
+		}
+		return values[code];
+	}
+}
@@ -34,31 +34,102 @@
 package ch.javasoft.metabolic.efm.output.mat;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 import ch.javasoft.metabolic.MetabolicNetwork;
 import ch.javasoft.metabolic.efm.output.EfmOutputCallback;
 import ch.javasoft.metabolic.efm.output.EfmOutputEvent;
 import ch.javasoft.metabolic.efm.output.EfmProcessor;
 
+/**
+ * The <tt>DefaultPartitionedMatFileWriter</tt> splits the efms into parts of
+ * a maximum number of efms, each part is written to its own .mat file.
+ * <p>
+ * With a single writer thread (the default), efms are written sequentially by
+ * the calling thread, part by part. If more writer threads are specified, up
+ * to that number of parts are open simultaneously. Every open part is owned by
+ * its own thread with its own {@link MatFileWriter} and reserved matrix 
+ * writer, efms are handed over to the part threads through bounded queues,
+ * such that the zlib compression of the parts is performed concurrently. The
+ * efms are distributed round-robin among the open parts, that is, the order 
+ * of the efms within the parts does not correspond to the efm index any more.
+ * <p>
+ * Optionally, a manifest file is written after the last part, listing the 
+ * part files and the number of efms per part.
+ */
 public class DefaultPartitionedMatFileWriter implements PartitionedMatFileWriter {
 	
+	/** Ending of the manifest file, appended to the file name without ending*/
+	public static final String MANIFEST_ENDING = "_manifest.txt";
+	
+	/** Capacity of the efm queue of a part writer thread*/
+	private static final int QUEUE_CAPACITY = 1024;
+	
 	private final File 		mFolder;
 	private final String	mFileName;
 	private final String	mFileEnding;
 	private final long		mMaxEfmCountPerPart;
+	private final int		mWriterThreads;
+	private final int		mCompressionLevel;
+	private final boolean	mWriteManifest;
 	
+	//sequential mode
 	private MatFileWriter	mWriter			= null;
 	private long			mLastEfmIndex	= -1;
 	
+	//concurrent mode
+	private PartWriter[]			mOpenParts		= null;
+	private final List<PartWriter>	mAllParts		= new ArrayList<PartWriter>();
+	private int						mNextSlot		= 0;
+	private volatile Throwable		mAsyncError		= null;
+	
 	public DefaultPartitionedMatFileWriter(File folder, String fileName, long maxEfmCountPerPart) {
 		this(folder, fileName, ".mat", maxEfmCountPerPart);
 	}
 	public DefaultPartitionedMatFileWriter(File folder, String fileName, String fileEnding, long maxEfmCountPerPart) {
+		this(folder, fileName, fileEnding, maxEfmCountPerPart, 1, Deflater.DEFAULT_COMPRESSION, false);
+	}
+	/**
+	 * Constructor with all options
+	 * 
+	 * @param folder				the output folder
+	 * @param fileName				the file name, the part index is appended
+	 * @param fileEnding			the file ending, usually .mat
+	 * @param maxEfmCountPerPart	the maximum number of efms per part file
+	 * @param writerThreads			the number of parts written concurrently,
+	 * 								each by its own thread. If 1, the parts 
+	 * 								are written sequentially by the calling 
+	 * 								thread
+	 * @param compressionLevel		the zlib compression level for the mat 
+	 * 								variables, 0-9 or 
+	 * 								{@link Deflater#DEFAULT_COMPRESSION}, 
+	 * 								{@link Deflater#NO_COMPRESSION} writes
+	 * 								uncompressed variables
+	 * @param writeManifest			true if a manifest file should be written 
+	 * 								after the last part file
+	 */
+	public DefaultPartitionedMatFileWriter(File folder, String fileName, String fileEnding, long maxEfmCountPerPart, int writerThreads, int compressionLevel, boolean writeManifest) {
+		if (writerThreads < 1) {
+			throw new IllegalArgumentException("writer threads must be positive: " + writerThreads);
+		}
+		if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < 0 || compressionLevel > 9)) {
+			throw new IllegalArgumentException("invalid compression level: " + compressionLevel);
+		}
 		mFolder				= folder;
 		mFileName			= fileName;
 		mFileEnding			= fileEnding;
 		mMaxEfmCountPerPart	= maxEfmCountPerPart;
+		mWriterThreads		= writerThreads;
+		mCompressionLevel	= compressionLevel;
+		mWriteManifest		= writeManifest;
 	}
 
 	public long getEfmCountForPart(EfmOutputCallback cb, EfmOutputEvent evt, int partIndex) {
@@ -67,8 +138,22 @@ public class DefaultPartitionedMatFileWriter implements PartitionedMatFileWriter
 		long efmsLeft	= efmCount - efmsSoFar;
 		return efmsLeft > mMaxEfmCountPerPart ? mMaxEfmCountPerPart : efmsLeft;
 	}
+	
+	private int getPartCount(EfmOutputEvent evt) {
+		return 1 + (int)(Math.max(0, evt.getEfmCount() - 1) / mMaxEfmCountPerPart);
+	}
 
+	/**
+	 * Returns the writer for the part of the given efm index. In concurrent
+	 * mode, i.e. if more than one writer thread is used, the part writers are
+	 * owned by the part threads. The initial parts are opened and null is 
+	 * returned.
+	 */
 	public MatFileWriter getPartMatFileWriter(EfmOutputCallback cb, EfmOutputEvent evt, long efmIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) throws IOException {
+		if (mWriterThreads > 1) {
+			openInitialParts(cb, evt, originalNetwork, efmProcessor);
+			return null;
+		}
 		if (efmIndex != mLastEfmIndex) {
 			if (efmIndex % mMaxEfmCountPerPart == 0L) {
 				if (mWriter != null) {
@@ -81,21 +166,38 @@ public class DefaultPartitionedMatFileWriter implements PartitionedMatFileWriter
 		return mWriter;
 	}
 	
+	public void addEfm(EfmOutputCallback cb, EfmOutputEvent evt, long efmIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) throws IOException {
+		if (mWriterThreads > 1) {
+			addEfmConcurrent(cb, evt, efmIndex, originalNetwork, efmProcessor);
+		}
+		else {
+			final MatFileWriter matWriter = getPartMatFileWriter(cb, evt, efmIndex, originalNetwork, efmProcessor);
+			efmProcessor.addEfm(cb, matWriter, evt, efmIndex);
+		}
+	}
+	
 	public void close(EfmOutputCallback cb, EfmOutputEvent evt, long efmCount, EfmProcessor<MatFileWriter> efmProcessor) throws IOException {
-		closeCurrentWriter(cb, evt, efmProcessor);
+		if (mWriterThreads > 1) {
+			closeConcurrent();
+		}
+		else {
+			closeCurrentWriter(cb, evt, efmProcessor);
+		}
+		if (mWriteManifest) {
+			writeManifest(evt);
+		}
 	}
 	
 	private MatFileWriter createAndInitWriter(EfmOutputCallback cb, EfmOutputEvent evt, long efmIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) throws IOException {
-		long nextPartEfmInd	= efmIndex + mMaxEfmCountPerPart;
-		long totalEfmCount	= evt.getEfmCount();//estimateRealEfmCount();
-		int partCount 		= 1 + (int)(Math.max(0, totalEfmCount - 1) / mMaxEfmCountPerPart);
-		
-		long partEfmCount 	= nextPartEfmInd > totalEfmCount ? totalEfmCount % mMaxEfmCountPerPart : mMaxEfmCountPerPart;  
-			
 		int partIndex = (int)(efmIndex / mMaxEfmCountPerPart);
+		return createAndInitWriter(cb, evt, partIndex, originalNetwork, efmProcessor);
+	}
+	private MatFileWriter createAndInitWriter(EfmOutputCallback cb, EfmOutputEvent evt, int partIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) throws IOException {
+		final int partCount 	= getPartCount(evt);
+		final long partEfmCount	= getEfmCountForPart(cb, evt, partIndex);  
 		
 		final File partFile = getPartFile(partIndex);
-		MatFileWriter matWriter = new MatFileWriter(partFile, MatFileOutputCallback.STRUCT_NAME);
+		MatFileWriter matWriter = new MatFileWriter(partFile, MatFileOutputCallback.STRUCT_NAME, mCompressionLevel);
 		
 //		if (partIndex == 0) {
 			MatFileOutputFormatter.writeNetworkFootPrint(originalNetwork, matWriter, getFileNameWithoutEnding(), partFile.getName(), partIndex, partCount);
@@ -127,4 +229,173 @@ public class DefaultPartitionedMatFileWriter implements PartitionedMatFileWriter
 		mWriter.close();
 	}
 	
+	/**
+	 * Writes the manifest file, a tab separated text file with the struct 
+	 * name, part count, total efm count and compression level, followed by a 
+	 * line per part with part index, file name and efm count.
+	 */
+	private void writeManifest(EfmOutputEvent evt) throws IOException {
+		final int partCount = getPartCount(evt);
+		final File file = new File(mFolder, getFileNameWithoutEnding() + MANIFEST_ENDING);
+		final PrintWriter pw = new PrintWriter(new FileWriter(file));
+		try {
+			pw.println("struct\t" + MatFileOutputCallback.STRUCT_NAME);
+			pw.println("parts\t" + partCount);
+			pw.println("efms\t" + evt.getEfmCount());
+			pw.println("compression\t" + mCompressionLevel);
+			pw.println("part\tfile\tefms");
+			for (int i = 0; i < partCount; i++) {
+				pw.println(i + "\t" + getPartFile(i).getName() + "\t" + getEfmCountForPart(null, evt, i));
+			}
+		}
+		finally {
+			pw.close();
+		}
+		if (pw.checkError()) {
+			throw new IOException("error writing manifest file " + file.getAbsolutePath());
+		}
+		LogPkg.LOGGER.info("wrote manifest for " + partCount + " parts: " + file.getAbsolutePath());
+	}
+	
+	//concurrent mode
+	
+	private void openInitialParts(EfmOutputCallback cb, EfmOutputEvent evt, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) {
+		if (mOpenParts == null) {
+			final int partCount	= getPartCount(evt);
+			mOpenParts = new PartWriter[Math.min(mWriterThreads, partCount)];
+			for (int i = 0; i < mOpenParts.length; i++) {
+				mOpenParts[i] = startPart(cb, evt, i, originalNetwork, efmProcessor);
+			}
+			LogPkg.LOGGER.fine("writing " + partCount + " mat file parts using " + mOpenParts.length + " writer threads");
+		}
+	}
+	private PartWriter startPart(EfmOutputCallback cb, EfmOutputEvent evt, int partIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) {
+		final PartWriter part = new PartWriter(cb, evt, partIndex, originalNetwork, efmProcessor);
+		mAllParts.add(part);
+		part.start();
+		return part;
+	}
+	
+	private void addEfmConcurrent(EfmOutputCallback cb, EfmOutputEvent evt, long efmIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) throws IOException {
+		checkAsyncError();
+		openInitialParts(cb, evt, originalNetwork, efmProcessor);
+		//find next open part, round robin
+		PartWriter part = null;
+		for (int i = 0; i < mOpenParts.length && part == null; i++) {
+			part = mOpenParts[mNextSlot];
+			if (part == null) mNextSlot = (mNextSlot + 1) % mOpenParts.length;
+		}
+		if (part == null) {
+			throw new IOException("efm index exceeds efm count: " + efmIndex + " >= " + evt.getEfmCount());
+		}
+		part.put(evt, efmIndex);
+		if (part.isFull()) {
+			//replace with next part, if any
+			final int nextPart = mAllParts.size();
+			mOpenParts[mNextSlot] = nextPart < getPartCount(evt) ? startPart(cb, evt, nextPart, originalNetwork, efmProcessor) : null;
+		}
+		mNextSlot = (mNextSlot + 1) % mOpenParts.length;
+	}
+	
+	private void closeConcurrent() throws IOException {
+		if (mOpenParts == null) return;
+		boolean incomplete = false;
+		for (final PartWriter part : mOpenParts) {
+			if (part != null && !part.isFull()) {
+				incomplete = true;
+				part.interrupt();
+			}
+		}
+		for (final PartWriter part : mAllParts) {
+			try {
+				part.join();
+			}
+			catch (InterruptedException ex) {
+				throw new IOException("interrupted while waiting for part writer " + part.getName(), ex);
+			}
+		}
+		mOpenParts = null;
+		checkAsyncError();
+		if (incomplete) {
+			throw new IOException("not all efms have been written, efm count is smaller than expected");
+		}
+	}
+	
+	private void checkAsyncError() throws IOException {
+		final Throwable err = mAsyncError;
+		if (err != null) {
+			if (err instanceof IOException) throw new IOException(err.getMessage(), err);
+			if (err instanceof RuntimeException) throw (RuntimeException)err;
+			if (err instanceof Error) throw (Error)err;
+			throw new IOException(err.toString(), err);
+		}
+	}
+	
+	/**
+	 * Thread writing a single part. Opens the part file, takes the expected
+	 * number of efms from the queue and closes the file.
+	 */
+	private class PartWriter extends Thread {
+		private final EfmOutputCallback				cb;
+		private final EfmOutputEvent				headerEvt;
+		private final int							partIndex;
+		private final MetabolicNetwork				originalNetwork;
+		private final EfmProcessor<MatFileWriter>	efmProcessor;
+		private final long							efmCount;
+		private final BlockingQueue<Object[]>		queue = new ArrayBlockingQueue<Object[]>(QUEUE_CAPACITY);
+		private long								added;
+		
+		public PartWriter(EfmOutputCallback cb, EfmOutputEvent headerEvt, int partIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) {
+			super("mat-part-" + partIndex);
+			this.cb					= cb;
+			this.headerEvt			= headerEvt;
+			this.partIndex			= partIndex;
+			this.originalNetwork	= originalNetwork;
+			this.efmProcessor		= efmProcessor;
+			this.efmCount			= getEfmCountForPart(cb, headerEvt, partIndex);
+			setDaemon(true);
+		}
+		
+		/** Called by the producer thread only*/
+		public boolean isFull() {
+			return added >= efmCount;
+		}
+		/** Called by the producer thread only*/
+		public void put(EfmOutputEvent evt, long efmIndex) throws IOException {
+			final Object[] item = new Object[] {evt, Long.valueOf(efmIndex)};
+			try {
+				while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+					checkAsyncError();
+					if (!isAlive()) {
+						throw new IOException("writer thread for part " + partIndex + " terminated unexpectedly");
+					}
+				}
+			}
+			catch (InterruptedException ex) {
+				throw new IOException("interrupted while adding efm to part " + partIndex, ex);
+			}
+			added++;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				final MatFileWriter matWriter = createAndInitWriter(cb, headerEvt, partIndex, originalNetwork, efmProcessor);
+				for (long i = 0; i < efmCount; i++) {
+					final Object[] item = queue.take();
+					efmProcessor.addEfm(cb, matWriter, (EfmOutputEvent)item[0], ((Long)item[1]).longValue());
+				}
+				efmProcessor.finalize(cb, matWriter, headerEvt);
+				matWriter.close();
+				LogPkg.LOGGER.finer("part " + partIndex + " written: " + efmCount + " efms");
+			}
+			catch (InterruptedException ex) {
+				//incomplete part, reported by closeConcurrent()
+			}
+			catch (Throwable th) {
+				if (mAsyncError == null) mAsyncError = th;
+			}
+		}
+	}
+	
 }
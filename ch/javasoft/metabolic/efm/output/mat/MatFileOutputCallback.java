@@ -68,6 +68,19 @@ public class MatFileOutputCallback extends AbstractFormattedOutputCallback<Parti
 	public MatFileOutputCallback(OutputMode mode, MetabolicNetwork originalNetwork, File folder, String fileName, long efmsPerPart) throws IOException {
 		this(mode, new MatFileOutputFormatter(originalNetwork), createPartitionedMatFileWriter(originalNetwork, mode, folder, fileName, efmsPerPart));
 	}
+	/**
+	 * Constructor with all options for the partitioned writer, see
+	 * {@link DefaultPartitionedMatFileWriter#DefaultPartitionedMatFileWriter(File, String, String, long, int, int, boolean)}
+	 * 
+	 * @param efmsPerPart		max number of efms per part file, or a value
+	 * 							&le; 0 to use an estimated value
+	 * @param writerThreads		the number of part files written concurrently
+	 * @param compressionLevel	the zlib compression level for the variables
+	 * @param writeManifest		true to write a manifest file listing the parts
+	 */
+	public MatFileOutputCallback(OutputMode mode, MetabolicNetwork originalNetwork, File folder, String fileName, long efmsPerPart, int writerThreads, int compressionLevel, boolean writeManifest) throws IOException {
+		this(mode, new MatFileOutputFormatter(originalNetwork), createPartitionedMatFileWriter(originalNetwork, mode, folder, fileName, efmsPerPart, writerThreads, compressionLevel, writeManifest));
+	}
 	public MatFileOutputCallback(OutputMode mode, EfmOutputFormatter<PartitionedMatFileWriter> formatter, PartitionedMatFileWriter writer) {
 		super(mode, formatter, writer);
 	}	
@@ -86,6 +99,17 @@ public class MatFileOutputCallback extends AbstractFormattedOutputCallback<Parti
 		return new DefaultPartitionedMatFileWriter(folder, fileName, efmsPerPart);
 	}
 	
+	private static PartitionedMatFileWriter createPartitionedMatFileWriter(MetabolicNetwork originalNetwork, OutputMode mode, File folder, String fileName, long efmsPerPart, int writerThreads, int compressionLevel, boolean writeManifest) {
+		if (efmsPerPart > 0) {
+			checkEfmsPerPart(originalNetwork, mode, efmsPerPart);
+		}
+		else {
+			efmsPerPart = estimateEfmsPerPart(originalNetwork, mode);
+			LogPkg.LOGGER.info("estimated efms-per-file: " + efmsPerPart);
+		}
+		return new DefaultPartitionedMatFileWriter(folder, fileName, ".mat", efmsPerPart, writerThreads, compressionLevel, writeManifest);
+	}
+	
 	/** Displays a warning*/
 	private static void checkEfmsPerPart(MetabolicNetwork originalNetwork, OutputMode mode, long efmsPerPart) {
 		final long estimate = estimateEfmsPerPart(originalNetwork, mode);
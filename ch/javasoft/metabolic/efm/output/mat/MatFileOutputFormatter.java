@@ -87,8 +87,7 @@ public class MatFileOutputFormatter implements EfmOutputFormatter<PartitionedMat
 		writer.getPartMatFileWriter(cb, evt, 0L, getOriginalNetwork(cb, evt), mEfmProcessor);
 	}
 	public void formatEfmHeader(EfmOutputCallback cb, PartitionedMatFileWriter writer, EfmOutputEvent evt, long efmIndex) throws IOException {
-		MatFileWriter matWriter = writer.getPartMatFileWriter(cb, evt, efmIndex, getOriginalNetwork(cb, evt), mEfmProcessor);//write initial network stuff
-		mEfmProcessor.addEfm(cb, matWriter, evt, efmIndex);
+		writer.addEfm(cb, evt, efmIndex, getOriginalNetwork(cb, evt), mEfmProcessor);
 	}
 
 	public void formatEfmValue(EfmOutputCallback cb, PartitionedMatFileWriter writer, EfmOutputEvent evt, long efmIndex, int valueIndex, Number value) throws IOException {
@@ -66,6 +66,23 @@ public class MatFileWriter  {
 		mStructName	= structName;
 	}	
 	
+	/**
+	 * Constructor for mat file writer with explicit zlib compression level
+	 * for the written variables.
+	 * 
+	 * @param file				the file to write to
+	 * @param structName		the name of the structure variable
+	 * @param compressionLevel	the compression level, 0-9, 
+	 * 							{@link java.util.zip.Deflater#DEFAULT_COMPRESSION} 
+	 * 							or {@link java.util.zip.Deflater#NO_COMPRESSION}
+	 * 							for uncompressed variables
+	 * @throws IOException		if an i/o exception occurs
+	 */
+	public MatFileWriter(File file, String structName, int compressionLevel) throws IOException {
+		mMatOut 	= new ch.javasoft.jsmat.MatFileWriter(file, compressionLevel);
+		mStructName	= structName;
+	}	
+	
 	public MatFileWriter(OutputStream out, String structName) throws IOException {
 		mMatOut		= new MatOutputStreamWriter(out);
 		mStructName	= structName;
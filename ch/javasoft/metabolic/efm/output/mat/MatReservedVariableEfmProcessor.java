@@ -34,6 +34,8 @@
 package ch.javasoft.metabolic.efm.output.mat;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import ch.javasoft.jsmat.ReservedMatrixWriter;
 import ch.javasoft.jsmat.variable.MatReservedMatrix;
@@ -46,49 +48,54 @@ import ch.javasoft.util.Arrays;
  * The <tt>MatReservedVariableEfmProcessor</tt> uses {@link MatReservedMatrix} to
  * write the elementary modes. A reserved matrix is a memory efficient ways to
  * write large matrices to matlab .mat files.
+ * <p>
+ * The reserved writers are kept per {@link MatFileWriter}, thus, a single
+ * processor instance can be used for multiple parts written concurrently, as
+ * long as every part is written by a single thread.
  */
 public class MatReservedVariableEfmProcessor implements EfmProcessor<MatFileWriter> {
 
-	private ReservedMatrixWriter<double[]> mReservedWriterDbl;
-	private ReservedMatrixWriter<int[]> mReservedWriterInt8;
+	private final ConcurrentMap<MatFileWriter, ReservedMatrixWriter<double[]>> mReservedWritersDbl	= new ConcurrentHashMap<MatFileWriter, ReservedMatrixWriter<double[]>>();
+	private final ConcurrentMap<MatFileWriter, ReservedMatrixWriter<int[]>> mReservedWritersInt8		= new ConcurrentHashMap<MatFileWriter, ReservedMatrixWriter<int[]>>();
 	
 	public int[] initialize(EfmOutputCallback cb, MatFileWriter writer, EfmOutputEvent evt, long efmCount) throws IOException {
 		int reactionCount = evt.getMetabolicNetwork().getReactions().length();
 		if (cb.getGranularity().isBinarySufficient()) {
 			MatReservedMatrix<int[]> mx = MatReservedMatrix.createInt8Matrix(reactionCount, (int)efmCount);
-			mReservedWriterInt8 = writer.createReservedWriter("efms", mx);
+			mReservedWritersInt8.put(writer, writer.createReservedWriter("efms", mx));
 		}
 		else {
 			MatReservedMatrix<double[]> mx = MatReservedMatrix.createDoubleMatrix(reactionCount, (int)efmCount);
-			mReservedWriterDbl = writer.createReservedWriter("efms", mx);
+			mReservedWritersDbl.put(writer, writer.createReservedWriter("efms", mx));
 		}
 		return Arrays.EMPTY_INT;
 	}
 	public int addEfm(EfmOutputCallback cb, MatFileWriter writer, EfmOutputEvent evt, long efmIndex) throws IOException {
-		if (mReservedWriterInt8 == null && mReservedWriterDbl == null) {
-			throw new IOException("reserved writer not initialized, must call initialize()");
-		}
-		if (mReservedWriterDbl != null) {
+		final ReservedMatrixWriter<double[]> reservedWriterDbl = mReservedWritersDbl.get(writer);
+		if (reservedWriterDbl != null) {
 			final double[] values = evt.getEfm().getDoubleRates();
-			mReservedWriterDbl.append(values);
+			reservedWriterDbl.append(values);
+			return 0;//cache size
 		}
-		else {
+		final ReservedMatrixWriter<int[]> reservedWriterInt8 = mReservedWritersInt8.get(writer);
+		if (reservedWriterInt8 != null) {
 			final int[] sgns = new int[evt.getEfm().getSize()];
 			for (int i = 0; i < sgns.length; i++) {
 				sgns[i] = evt.getEfm().getRateSignum(i);
 			}
-			mReservedWriterInt8.append(sgns);
+			reservedWriterInt8.append(sgns);
+			return 0;//cache size
 		}
-		return 0;//cache size
+		throw new IOException("reserved writer not initialized, must call initialize()");
 	}
 	public void finalize(EfmOutputCallback cb, MatFileWriter writer, EfmOutputEvent evt) throws IOException {
-		if (mReservedWriterDbl != null) {
-			mReservedWriterDbl.close();
-			mReservedWriterDbl = null;
+		final ReservedMatrixWriter<double[]> reservedWriterDbl = mReservedWritersDbl.remove(writer);
+		if (reservedWriterDbl != null) {
+			reservedWriterDbl.close();
 		}
-		if (mReservedWriterInt8 != null) {
-			mReservedWriterInt8.close();
-			mReservedWriterInt8 = null;
+		final ReservedMatrixWriter<int[]> reservedWriterInt8 = mReservedWritersInt8.remove(writer);
+		if (reservedWriterInt8 != null) {
+			reservedWriterInt8.close();
 		}
 	}
 
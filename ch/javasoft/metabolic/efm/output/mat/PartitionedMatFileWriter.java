@@ -60,11 +60,30 @@ public interface PartitionedMatFileWriter {
 	 * @param originalNetwork	the original (uncompressed) network
 	 * @param efmProcessor	the efm processor which must probably be initialized
 	 * 						or finalized (may be null)
-	 * @return				the writer for the specified part
+	 * @return				the writer for the specified part, or null if the part
+	 * 						writers are owned by concurrent part writer threads
 	 * @throws IOException	if any io exception occurred
 	 */
 	MatFileWriter getPartMatFileWriter(EfmOutputCallback cb, EfmOutputEvent evt, long efmIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) throws IOException;
 	
+	/**
+	 * Adds the efm of the given output event to the part determined by the efm
+	 * index, using the efm processor. Implementations might write the efm 
+	 * directly or hand it over to a part writer thread, in which case the 
+	 * efm processor is also initialized and finalized by that thread. Any 
+	 * exception occurring asynchronously is thrown by a subsequent call to 
+	 * this method or by 
+	 * {@link #close(EfmOutputCallback, EfmOutputEvent, long, EfmProcessor) close()}.
+	 * 
+	 * @param cb			the efm output callback
+	 * @param evt			the output event containing the efm
+	 * @param efmIndex		the efm index
+	 * @param originalNetwork	the original (uncompressed) network
+	 * @param efmProcessor	the efm processor writing the efm
+	 * @throws IOException	if any io exception occurred
+	 */
+	void addEfm(EfmOutputCallback cb, EfmOutputEvent evt, long efmIndex, MetabolicNetwork originalNetwork, EfmProcessor<MatFileWriter> efmProcessor) throws IOException;
+	
 	/**
 	 * Returns the <tt>MatFileWriter</tt> for the current part. The current part
 	 * is determined by the efm index. If needed, a new part writer is created.
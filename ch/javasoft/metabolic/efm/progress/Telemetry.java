@@ -0,0 +1,362 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.progress;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.javasoft.jbase.IoStatistics;
+
+/**
+ * <tt>Telemetry</tt> collects counters and progress information of a running
+ * computation, for instance the number of tested pairs, adjacent pairs found,
+ * rank tests and out-of-core i/o. The values are accessible as
+ * {@link TelemetryMBean mbean} and as {@link Sample samples} with rates
+ * computed since the previous sample, see {@link TelemetryReporter}.
+ * <p>
+ * A process wide instance is installed with {@link #setShared(Telemetry)}.
+ * The static <tt>count</tt> methods are called by the algorithms and do
+ * nothing if no shared instance is installed.
+ */
+public class Telemetry implements TelemetryMBean {
+	
+	/** The object name used for registration with the platform mbean server*/
+	public static final String OBJECT_NAME = "ch.javasoft.metabolic.efm:type=Telemetry";
+	
+	/**
+	 * Smallest increment of the progress notifiable returned by
+	 * {@link #monitorProgress(ProgressNotifiable)} if no other notifiable is
+	 * given, that is, a resolution of 1/1024
+	 */
+	public static final int PROGRESS_INCREMENT = 10;
+	
+	private static volatile Telemetry shared;
+	
+	private final AtomicLong	pairsTested		= new AtomicLong();
+	private final AtomicLong	adjacentsFound	= new AtomicLong();
+	private final AtomicLong	rankTests		= new AtomicLong();
+	private final long			startTime;
+	
+	private volatile int	iteration;
+	private volatile int	iterationCount;
+	private volatile long	iterationStart;
+	private volatile long	modeCount;
+	private volatile long	candidateCount;
+	private volatile double	progress;
+	
+	private volatile Sample	sample;
+	
+	public Telemetry() {
+		startTime		= System.currentTimeMillis();
+		iterationStart	= startTime;
+		sample			= new Sample(this, null);
+	}
+	
+	/**
+	 * Returns the process wide telemetry, or null if none is installed
+	 */
+	public static Telemetry getShared() {
+		return shared;
+	}
+	/**
+	 * Installs the process wide telemetry, or uninstalls it if 
+	 * {@code telemetry} is null. The previous instance is returned.
+	 */
+	public static Telemetry setShared(Telemetry telemetry) {
+		final Telemetry prev = shared;
+		shared = telemetry;
+		return prev;
+	}
+	
+	/** Adds the given number of tested pairs to the shared telemetry, if any*/
+	public static void countPairsTested(long pairs) {
+		final Telemetry tel = shared;
+		if (tel != null) tel.pairsTested.addAndGet(pairs);
+	}
+	/** Adds the given number of adjacent pairs to the shared telemetry, if any*/
+	public static void countAdjacentsFound(long pairs) {
+		final Telemetry tel = shared;
+		if (tel != null) tel.adjacentsFound.addAndGet(pairs);
+	}
+	/** Counts a rank test with the shared telemetry, if any*/
+	public static void countRankTest() {
+		final Telemetry tel = shared;
+		if (tel != null) tel.rankTests.incrementAndGet();
+	}
+	/**
+	 * Notifies the shared telemetry, if any, that a new iteration has been 
+	 * started.
+	 * 
+	 * @param iteration			the iteration index, starting with 1
+	 * @param iterationCount	the total number of iterations
+	 * @param pos				number of positive modes
+	 * @param zer				number of zero modes
+	 * @param neg				number of negative modes
+	 */
+	public static void iterationStarted(int iteration, int iterationCount, int pos, int zer, int neg) {
+		final Telemetry tel = shared;
+		if (tel != null) {
+			tel.iterationStart	= System.currentTimeMillis();
+			tel.progress		= 0d;
+			tel.modeCount		= ((long)pos) + zer + neg;
+			tel.candidateCount	= ((long)pos) * neg;
+			tel.iterationCount	= iterationCount;
+			tel.iteration		= iteration;
+		}
+	}
+	/**
+	 * Returns a progress notifiable which reports the progress of the current
+	 * iteration to the shared telemetry and forwards it to the given 
+	 * notifiable. Returns {@code prog} itself if no telemetry is installed, or
+	 * if {@code prog} is not a {@link ProgressMonitor}. If {@code prog} is
+	 * null, a notifiable is returned which only reports to the telemetry.
+	 * 
+	 * @param prog	the progress notifiable to wrap, or null for none
+	 */
+	public static ProgressNotifiable monitorProgress(final ProgressNotifiable prog) {
+		final Telemetry tel = shared;
+		if (tel == null || (prog != null && !(prog instanceof ProgressMonitor))) {
+			return prog;
+		}
+		final int inc = prog == null ? PROGRESS_INCREMENT : prog.getSmallestIncrement();
+		return new ProgressMonitor() {
+			private long notified = 0;//in units of the smallest increment
+			public int getSmallestIncrement() {
+				return inc;
+			}
+			public synchronized void notifyProgress(double value) throws IOException {
+				tel.progress = value;
+				if (prog != null) {
+					final long units = (long)(value * (1L << inc));
+					if (units != notified) {
+						notified = units;
+						((ProgressMonitor)prog).notifyProgress(value);
+					}
+				}
+			}
+			public void close() throws IOException {
+				if (prog != null) prog.close();
+			}
+		};
+	}
+	
+	/**
+	 * Takes a new sample and computes rates since the previous sample. The 
+	 * new sample is also returned by {@link #getSample()} until the next 
+	 * sample is taken.
+	 */
+	public synchronized Sample sample() {
+		return sample = new Sample(this, sample);
+	}
+	/** Returns the last sample taken by {@link #sample()}*/
+	public Sample getSample() {
+		return sample;
+	}
+	
+	public int getIteration() {
+		return iteration;
+	}
+	public int getIterationCount() {
+		return iterationCount;
+	}
+	public long getModeCount() {
+		return modeCount;
+	}
+	public long getCandidateCount() {
+		return candidateCount;
+	}
+	public double getIterationProgress() {
+		return progress;
+	}
+	public double getElapsedSeconds() {
+		return (System.currentTimeMillis() - startTime) / 1000d;
+	}
+	public double getIterationSeconds() {
+		return (System.currentTimeMillis() - iterationStart) / 1000d;
+	}
+	public double getIterationSecondsLeft() {
+		return estimateSecondsLeft(getIterationSeconds(), progress);
+	}
+	/**
+	 * Linear estimate of the remaining time: if a fraction {@code progress} 
+	 * took {@code seconds}, the remainder takes proportionally long. Returns
+	 * -1 if no progress has been made yet.
+	 */
+	private static double estimateSecondsLeft(double seconds, double progress) {
+		return progress <= 0d ? -1d : seconds * (1d - Math.min(1d, progress)) / progress;
+	}
+	public long getPairsTested() {
+		return pairsTested.get();
+	}
+	public long getAdjacentsFound() {
+		return adjacentsFound.get();
+	}
+	public long getRankTests() {
+		return rankTests.get();
+	}
+	public long getBytesRead() {
+		return IoStatistics.getBytesRead();
+	}
+	public long getBytesWritten() {
+		return IoStatistics.getBytesWritten();
+	}
+	public double getPairsTestedPerSecond() {
+		return sample.pairsTestedPerSecond;
+	}
+	public double getAdjacentsFoundPerSecond() {
+		return sample.adjacentsFoundPerSecond;
+	}
+	public double getRankTestsPerSecond() {
+		return sample.rankTestsPerSecond;
+	}
+	public double getBytesReadPerSecond() {
+		return sample.bytesReadPerSecond;
+	}
+	public double getBytesWrittenPerSecond() {
+		return sample.bytesWrittenPerSecond;
+	}
+	public long getHeapUsed() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+	public long getHeapMax() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+	}
+	public String getSampleJson() {
+		return sample.toJson();
+	}
+	
+	/**
+	 * A snapshot of all telemetry values at a certain time, with rates 
+	 * computed since the previous sample
+	 */
+	public static class Sample {
+		public final long	time;//millis since epoch
+		public final double	elapsedSeconds;
+		public final int	iteration;
+		public final int	iterationCount;
+		public final long	modeCount;
+		public final long	candidateCount;
+		public final double	iterationProgress;
+		public final double	iterationSeconds;
+		public final double	iterationSecondsLeft;
+		public final long	pairsTested;
+		public final long	adjacentsFound;
+		public final long	rankTests;
+		public final long	bytesRead;
+		public final long	bytesWritten;
+		public final double	pairsTestedPerSecond;
+		public final double	adjacentsFoundPerSecond;
+		public final double	rankTestsPerSecond;
+		public final double	bytesReadPerSecond;
+		public final double	bytesWrittenPerSecond;
+		public final long	heapUsed;
+		public final long	heapCommitted;
+		public final long	heapMax;
+		
+		private Sample(Telemetry tel, Sample prev) {
+			time					= System.currentTimeMillis();
+			elapsedSeconds			= (time - tel.startTime) / 1000d;
+			iteration				= tel.iteration;
+			iterationCount			= tel.iterationCount;
+			modeCount				= tel.modeCount;
+			candidateCount			= tel.candidateCount;
+			iterationProgress		= tel.progress;
+			iterationSeconds		= (time - tel.iterationStart) / 1000d;
+			iterationSecondsLeft	= estimateSecondsLeft(iterationSeconds, iterationProgress);
+			pairsTested				= tel.pairsTested.get();
+			adjacentsFound			= tel.adjacentsFound.get();
+			rankTests				= tel.rankTests.get();
+			bytesRead				= IoStatistics.getBytesRead();
+			bytesWritten			= IoStatistics.getBytesWritten();
+			final double dt = prev == null || time <= prev.time ? 0d : (time - prev.time) / 1000d;
+			pairsTestedPerSecond	= dt == 0d ? 0d : (pairsTested - prev.pairsTested) / dt;
+			adjacentsFoundPerSecond	= dt == 0d ? 0d : (adjacentsFound - prev.adjacentsFound) / dt;
+			rankTestsPerSecond		= dt == 0d ? 0d : (rankTests - prev.rankTests) / dt;
+			bytesReadPerSecond		= dt == 0d ? 0d : (bytesRead - prev.bytesRead) / dt;
+			bytesWrittenPerSecond	= dt == 0d ? 0d : (bytesWritten - prev.bytesWritten) / dt;
+			final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+			heapUsed				= heap.getUsed();
+			heapCommitted			= heap.getCommitted();
+			heapMax					= heap.getMax();
+		}
+		
+		/**
+		 * Returns this sample as json object on a single line
+		 */
+		public String toJson() {
+			final StringBuilder sb = new StringBuilder(512);
+			sb.append('{');
+			append(sb, "time", time).append(',');
+			append(sb, "elapsed_s", elapsedSeconds).append(',');
+			append(sb, "iteration", iteration).append(',');
+			append(sb, "iteration_count", iterationCount).append(',');
+			append(sb, "modes", modeCount).append(',');
+			append(sb, "candidates", candidateCount).append(',');
+			append(sb, "iteration_progress", iterationProgress).append(',');
+			append(sb, "iteration_s", iterationSeconds).append(',');
+			append(sb, "iteration_eta_s", iterationSecondsLeft).append(',');
+			append(sb, "pairs_tested", pairsTested).append(',');
+			append(sb, "adjacents_found", adjacentsFound).append(',');
+			append(sb, "rank_tests", rankTests).append(',');
+			append(sb, "bytes_read", bytesRead).append(',');
+			append(sb, "bytes_written", bytesWritten).append(',');
+			append(sb, "pairs_tested_per_s", pairsTestedPerSecond).append(',');
+			append(sb, "adjacents_found_per_s", adjacentsFoundPerSecond).append(',');
+			append(sb, "rank_tests_per_s", rankTestsPerSecond).append(',');
+			append(sb, "bytes_read_per_s", bytesReadPerSecond).append(',');
+			append(sb, "bytes_written_per_s", bytesWrittenPerSecond).append(',');
+			append(sb, "heap_used", heapUsed).append(',');
+			append(sb, "heap_committed", heapCommitted).append(',');
+			append(sb, "heap_max", heapMax);
+			return sb.append('}').toString();
+		}
+		private static StringBuilder append(StringBuilder sb, String name, long value) {
+			return sb.append('"').append(name).append("\":").append(value);
+		}
+		private static StringBuilder append(StringBuilder sb, String name, double value) {
+			sb.append('"').append(name).append("\":");
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				return sb.append("null");
+			}
+			return sb.append(Math.round(value * 1000d) / 1000d);
+		}
+		@Override
+		public String toString() {
+			return toJson();
+		}
+	}
+
+}
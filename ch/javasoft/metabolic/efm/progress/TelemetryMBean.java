@@ -0,0 +1,88 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.progress;
+
+/**
+ * Management interface of {@link Telemetry}, registered with the platform
+ * mbean server under {@link Telemetry#OBJECT_NAME}. Totals are live values,
+ * rates refer to the interval between the last two samples.
+ */
+public interface TelemetryMBean {
+	/** Index of the current iteration, 0 before the first iteration*/
+	int getIteration();
+	/** Total number of iterations*/
+	int getIterationCount();
+	/** Number of modes at the start of the current iteration*/
+	long getModeCount();
+	/** Number of adjacency candidates (pos x neg) of the current iteration*/
+	long getCandidateCount();
+	/** Progress of the current iteration in [0, 1], 0 if not monitored*/
+	double getIterationProgress();
+	/** Seconds since the computation was started*/
+	double getElapsedSeconds();
+	/** Seconds since the current iteration was started*/
+	double getIterationSeconds();
+	/** Estimated seconds until the current iteration completes, or -1*/
+	double getIterationSecondsLeft();
+	
+	/** Number of tested pairs in total*/
+	long getPairsTested();
+	/** Number of adjacent pairs found in total*/
+	long getAdjacentsFound();
+	/** Number of rank tests in total*/
+	long getRankTests();
+	/** Bytes read from out-of-core memory files in total*/
+	long getBytesRead();
+	/** Bytes written to out-of-core memory files in total*/
+	long getBytesWritten();
+	
+	/** Tested pairs per second*/
+	double getPairsTestedPerSecond();
+	/** Adjacent pairs found per second*/
+	double getAdjacentsFoundPerSecond();
+	/** Rank tests per second*/
+	double getRankTestsPerSecond();
+	/** Bytes read per second*/
+	double getBytesReadPerSecond();
+	/** Bytes written per second*/
+	double getBytesWrittenPerSecond();
+	
+	/** Used heap memory in bytes*/
+	long getHeapUsed();
+	/** Maximum heap memory in bytes, or -1 if undefined*/
+	long getHeapMax();
+	
+	/** The last sample as json object*/
+	String getSampleJson();
+}
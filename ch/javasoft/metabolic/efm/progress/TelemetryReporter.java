@@ -0,0 +1,244 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.progress;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import ch.javasoft.jbase.IoStatistics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The <tt>TelemetryReporter</tt> installs a {@link Telemetry} instance as
+ * shared telemetry and publishes its values while the computation is running.
+ * The values are 
+ * <ul>
+ * <li>sampled periodically and appended as one json object per line to a 
+ * 		file, if a file is given,</li>
+ * <li>served as json object by a http endpoint bound to the loopback 
+ * 		interface, if a port is given,</li>
+ * <li>registered as mbean with the platform mbean server, if desired.</li>
+ * </ul>
+ * Rates are computed between two samples, thus, the sampling interval should
+ * not be too short. Closing the reporter takes a last sample and uninstalls
+ * the telemetry.
+ */
+public class TelemetryReporter {
+	
+	private static final Logger LOG = LogPkg.LOGGER;
+	
+	private final Telemetry					telemetry;
+	private final File						file;
+	private final ScheduledExecutorService	sampler;
+	private final Writer					writer;//null if no file
+	private final HttpServer				httpServer;//null if no http endpoint
+	private final ObjectName				objectName;//null if not registered
+	private final boolean					ioStatisticsEnabled;
+	private final Telemetry					prevShared;
+	
+	/**
+	 * Constructor for a reporter, starts reporting immediately
+	 * 
+	 * @param file			the json lines file, or null for none
+	 * @param intervalMS	the sampling interval in milliseconds
+	 * @param httpPort		the http port, 0 for any free port, or negative
+	 * 						for no http endpoint
+	 * @param jmx			true to register the mbean
+	 * @throws IOException	if the file cannot be created, the http server 
+	 * 						cannot be started or the mbean registration fails
+	 */
+	public TelemetryReporter(File file, long intervalMS, int httpPort, boolean jmx) throws IOException {
+		if (intervalMS <= 0) throw new IllegalArgumentException("interval must be positive: " + intervalMS);
+		this.telemetry				= new Telemetry();
+		this.file					= file;
+		this.writer					= file == null ? null : new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+		this.ioStatisticsEnabled	= IoStatistics.isEnabled();
+		IoStatistics.reset();
+		IoStatistics.setEnabled(true);
+		this.prevShared				= Telemetry.setShared(telemetry);
+		boolean ok = false;
+		try {
+			this.objectName	= jmx ? registerMBean(telemetry) : null;
+			this.httpServer	= httpPort < 0 ? null : startHttpServer(telemetry, httpPort);
+			this.sampler	= Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "telemetry-sampler");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			sampler.scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					sampleAndWrite();
+				}
+			}, intervalMS, intervalMS, TimeUnit.MILLISECONDS);
+			ok = true;
+		}
+		finally {
+			if (!ok) {
+				uninstall();
+				if (writer != null) writer.close();
+			}
+		}
+		if (LOG.isLoggable(Level.INFO)) {
+			LOG.info("telemetry: interval=" + intervalMS + "ms" + 
+				(file == null ? "" : ", file=" + file) + 
+				(httpServer == null ? "" : ", http=http://" + httpServer.getAddress().getHostString() + ":" + httpServer.getAddress().getPort() + "/") + 
+				(objectName == null ? "" : ", jmx=" + objectName));
+		}
+	}
+	
+	private static ObjectName registerMBean(Telemetry telemetry) throws IOException {
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(Telemetry.OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(telemetry, name);
+			return name;
+		}
+		catch (Exception ex) {
+			throw new IOException("cannot register telemetry mbean, e=" + ex, ex);
+		}
+	}
+	private static HttpServer startHttpServer(final Telemetry telemetry, int port) throws IOException {
+		final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					final byte[] body = (telemetry.getSample().toJson() + "\n").getBytes("UTF-8");
+					exchange.getResponseHeaders().set("Content-Type", "application/json");
+					exchange.sendResponseHeaders(200, body.length);
+					final OutputStream out = exchange.getResponseBody();
+					out.write(body);
+					out.close();
+				}
+				finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+		return server;
+	}
+	
+	/**
+	 * Returns the telemetry which is published by this reporter
+	 */
+	public Telemetry getTelemetry() {
+		return telemetry;
+	}
+	/**
+	 * Returns the json lines file, or null if samples are not written to a 
+	 * file
+	 */
+	public File getFile() {
+		return file;
+	}
+	/**
+	 * Returns the port of the http endpoint, or -1 if no endpoint is running
+	 */
+	public int getHttpPort() {
+		return httpServer == null ? -1 : httpServer.getAddress().getPort();
+	}
+	
+	private synchronized void sampleAndWrite() {
+		final Telemetry.Sample sample = telemetry.sample();
+		if (writer != null) {
+			try {
+				writer.write(sample.toJson());
+				writer.write('\n');
+				writer.flush();
+			}
+			catch (IOException ex) {
+				LOG.warning("cannot write telemetry sample to " + file + ", e=" + ex);
+			}
+		}
+	}
+
+	/**
+	 * Takes and writes a last sample, stops the http endpoint, unregisters
+	 * the mbean and uninstalls the telemetry
+	 */
+	public void close() throws IOException {
+		sampler.shutdownNow();
+		try {
+			sampler.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		sampleAndWrite();
+		uninstall();
+		if (writer != null) {
+			writer.close();
+		}
+	}
+	private void uninstall() {
+		if (httpServer != null) {
+			httpServer.stop(0);
+		}
+		if (objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			}
+			catch (Exception ex) {
+				LOG.warning("cannot unregister telemetry mbean, e=" + ex);
+			}
+		}
+		Telemetry.setShared(prevShared);
+		IoStatistics.setEnabled(ioStatisticsEnabled);
+	}
+
+}
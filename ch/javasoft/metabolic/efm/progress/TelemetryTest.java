@@ -0,0 +1,98 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.progress;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class TelemetryTest extends TestCase {
+	
+	public void testCountersAndSample() throws InterruptedException {
+		final Telemetry telemetry = new Telemetry();
+		final Telemetry prev = Telemetry.setShared(telemetry);
+		try {
+			Telemetry.iterationStarted(2, 5, 3, 1, 4);
+			Telemetry.countPairsTested(12);
+			Telemetry.countAdjacentsFound(3);
+			Telemetry.countRankTest();
+			assertEquals(2, telemetry.getIteration());
+			assertEquals(8, telemetry.getModeCount());
+			assertEquals(12, telemetry.getCandidateCount());
+			Thread.sleep(20);
+			final Telemetry.Sample sample = telemetry.sample();
+			assertEquals(12, sample.pairsTested);
+			assertEquals(3, sample.adjacentsFound);
+			assertEquals(1, sample.rankTests);
+			assertTrue(sample.pairsTestedPerSecond > 0d);
+			assertSame(sample, telemetry.getSample());
+			final String json = sample.toJson();
+			assertTrue(json.startsWith("{") && json.endsWith("}"));
+			assertTrue(json.contains("\"pairs_tested\":12"));
+			assertTrue(json.contains("\"iteration_eta_s\":-1.0"));
+		}
+		finally {
+			Telemetry.setShared(prev);
+		}
+		//not counted if not installed
+		Telemetry.countPairsTested(5);
+		assertEquals(12, telemetry.getPairsTested());
+	}
+	
+	public void testMonitorProgress() throws IOException {
+		final Telemetry telemetry = new Telemetry();
+		final Telemetry prev = Telemetry.setShared(telemetry);
+		try {
+			final int[] notified = new int[1];
+			final ProgressMonitor delegate = new ProgressMonitor() {
+				public int getSmallestIncrement() {return 2;}
+				public void notifyProgress(double progress) {notified[0]++;}
+				public void close() {}
+			};
+			final IntProgressAggregator agg = new IntProgressAggregator(Telemetry.monitorProgress(delegate));
+			for (int i = 0; i < 8; i++) {
+				agg.updateProgress(3);
+			}
+			assertEquals(1d, telemetry.getIterationProgress(), 0d);
+			//delegate notified at its own resolution only
+			assertEquals(4, notified[0]);
+			agg.close();
+		}
+		finally {
+			Telemetry.setShared(prev);
+		}
+		assertNull(Telemetry.monitorProgress(null));
+	}
+
+}
@@ -40,6 +40,7 @@ import java.util.Comparator;
 import java.util.Queue;
 import java.util.Random;
 
+import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.job.Job;
 import ch.javasoft.job.MultiJobExecutable;
 import ch.javasoft.metabolic.efm.adj.AbstractAdjEnum;
@@ -51,16 +52,21 @@ import ch.javasoft.metabolic.efm.column.ColumnHome;
 import ch.javasoft.metabolic.efm.concurrent.ConcurrentToken;
 import ch.javasoft.metabolic.efm.config.Config;
 import ch.javasoft.metabolic.efm.dist.DistributedInfo;
+import ch.javasoft.metabolic.efm.dist.PartCostEstimator;
 import ch.javasoft.metabolic.efm.dist.PartIterator;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
+import ch.javasoft.metabolic.efm.memory.outcore.ExternalMergeSort;
+import ch.javasoft.metabolic.efm.memory.outcore.OutOfCoreMemory;
 import ch.javasoft.metabolic.efm.memory.outcore.Recovery;
 import ch.javasoft.metabolic.efm.model.AdjEnumModel;
 import ch.javasoft.metabolic.efm.model.EfmModel;
 import ch.javasoft.metabolic.efm.progress.IntProgressAggregator;
 import ch.javasoft.metabolic.efm.progress.ProgressAggregator;
 import ch.javasoft.metabolic.efm.progress.ProgressNotifiable;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 import ch.javasoft.metabolic.efm.tree.BitPatternTree.Kind;
 import ch.javasoft.metabolic.efm.tree.impl.DefaultTreePairTraverser;
+import ch.javasoft.metabolic.efm.tree.impl.EnforcedFluxAdjacencyPrecondition;
 import ch.javasoft.metabolic.efm.tree.impl.SubtreePairTraverser;
 import ch.javasoft.metabolic.efm.tree.outcore.PersistentBitPatternTree;
 import ch.javasoft.metabolic.efm.util.ColumnUtil;
@@ -71,8 +77,10 @@ import ch.javasoft.util.ExceptionUtil;
  * The <code>TreeMemAdjEnum</code> is the superclass of most adjacency 
  * enumerators which base the enumeration on bit pattern trees.
  */
-abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends AbstractAdjEnum {
+abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends AbstractAdjEnum implements PartCostEstimator {
 
+	private Trees centralizedTrees;//trees created by execCentralized
+	
 	public TreeMemAdjEnum(String name) {
 		super(name);
 	}
@@ -99,8 +107,10 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
                 System.out.println("in TreeMemAdjEnum.adjacentPairs()");
 		
 		final ProgressAggregator progress;
-		final ProgressNotifiable prog = getConfig().getProgressType().createProgressNotifiable(getConfig(), itModel);
-		if (prog == null || getConfig().getProgressPartition() <= 0) {
+		final ProgressNotifiable prog = Telemetry.monitorProgress(
+			getConfig().getProgressPartition() <= 0 ? null : getConfig().getProgressType().createProgressNotifiable(getConfig(), itModel)
+		);
+		if (prog == null) {
 			progress = null;
 		}
 		else {
@@ -109,8 +119,10 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
 		
 		final Thread treeOwner = Thread.currentThread();//we own the trees
 		final Trees trees = createOrRecoverTrees(treeOwner, columnHome, itModel);
-        final TreePairTraverser<T> traverser = createTreeTraverser(columnHome, itModel, trees.getPosTree(), trees.getNegTree(), null);
+		final EnforcedFluxAdjacencyPrecondition<T> enforced = EnforcedFluxAdjacencyPrecondition.createIfApplicable(getConfig(), getEfmModel(), itModel);
+        final TreePairTraverser<T> traverser = createTreeTraverser(columnHome, itModel, trees.getPosTree(), trees.getNegTree(), enforced);
 		traverseTrees(columnHome, itModel, trees, traverser, progress);
+		if (enforced != null) enforced.log();
 		
 		//close trees and erase tree files
 		trees.getPosTree().close();
@@ -119,7 +131,62 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
 	public <Col extends Column, N extends Number> void execCentralized(ColumnHome<N, Col> columnHome, Config config, EfmModel efmModel, AdjEnumModel<Col> itModel) throws IOException {
 		if (itModel.getMemoryPos().getColumnCount() > 0 && itModel.getMemoryNeg().getColumnCount() > 0) {
 			initialize(columnHome, config, efmModel);
-			createOrRecoverTrees(Thread.currentThread(), columnHome, itModel);
+			centralizedTrees = createOrRecoverTrees(Thread.currentThread(), columnHome, itModel);
+		}
+		else {
+			centralizedTrees = null;
+		}
+	}
+	
+	/**
+	 * Estimates the part costs from the trees created by 
+	 * {@link #execCentralized(ColumnHome, Config, EfmModel, AdjEnumModel) execCentralized(...)}.
+	 * The cost of a part is the number of positive columns in the selected
+	 * positive subtree times the number of negative columns in the selected
+	 * negative subtree, see {@link SubtreePairTraverser}. Returns null if no
+	 * trees have been created.
+	 */
+	public double[] estimatePartCosts(int partCount) throws IOException {
+		final Trees trees = centralizedTrees;
+		centralizedTrees = null;
+		if (trees == null) {
+			return null;
+		}
+		int subTreeLevel = 0;//partition count = 4^subTreeLevel
+		while ((1 << (subTreeLevel << 1)) < partCount) {
+			subTreeLevel++;
+		}
+		final long[] posSizes = new long[1 << subTreeLevel];
+		final long[] negSizes = new long[1 << subTreeLevel];
+		addSubtreeSizes(trees.getPosTree().root(), 0, subTreeLevel, 0, posSizes);
+		addSubtreeSizes(trees.getNegTree().root(), 0, subTreeLevel, 0, negSizes);
+		final int oneBits = (1 << subTreeLevel) - 1;
+		final double[] costs = new double[partCount];
+		for (int i = 0; i < partCount; i++) {
+			costs[i] = ((double)posSizes[i & oneBits]) * negSizes[i >>> subTreeLevel];
+		}
+		return costs;
+	}
+	/**
+	 * Adds the number of columns of the subtree with the given path to the 
+	 * sizes array. Leaf nodes above the subtree level belong to the path with
+	 * zero bits for the remaining levels, as in {@link SubtreePairTraverser}.
+	 */
+	private static void addSubtreeSizes(Node node, int depth, int bits, int path, long[] sizes) {
+		if (depth < bits && node instanceof InterNode) {
+			final InterNode inter = (InterNode)node;
+			addSubtreeSizes(inter.left(), depth + 1, bits, path, sizes);
+			addSubtreeSizes(inter.right(), depth + 1, bits, path | (1 << depth), sizes);
+		}
+		else {
+			//columns of a subtree are stored contiguously in the tree memory
+			Node first = node;
+			while (first instanceof InterNode) first = ((InterNode)first).left();
+			Node last = node;
+			while (last instanceof InterNode) last = ((InterNode)last).right();
+			if (first instanceof LeafNode && last instanceof LeafNode) {
+				sizes[path] += Math.max(0, ((LeafNode)last).getLeafColumnEnd() - ((LeafNode)first).getLeafColumnStart());
+			}
 		}
 	}
 
@@ -137,13 +204,15 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
 			
 			final Thread treeOwner = null /*we are not owners of the trees*/;
 			final Trees trees = openTrees(treeOwner, columnHome, itModel);
+			final EnforcedFluxAdjacencyPrecondition<T> enforced = EnforcedFluxAdjacencyPrecondition.createIfApplicable(config, efmModel, itModel);
 			
 			do {
-		        final TreePairTraverser<T> traverser = createTreeTraverser(columnHome, itModel, trees.getPosTree(), trees.getNegTree(), null);
+		        final TreePairTraverser<T> traverser = createTreeTraverser(columnHome, itModel, trees.getPosTree(), trees.getNegTree(), enforced);
 				traverseTrees(columnHome, itModel, trees, new SubtreePairTraverser<T>(subTreeLevel, subTreeIndex, traverser), progress);
 				subTreeIndex = partIterator.getNextPart();
 			}
 			while (subTreeIndex >= 0);	
+			if (enforced != null) enforced.log();
 
 			//close trees, but do not erase tree files since they're possibly 
 			//still read by other processes
@@ -189,8 +258,7 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
 	}
 	
 	private <Col extends Column, N extends Number> Trees createOrRecoverTrees(final Thread treeOwner, final ColumnHome<N, Col> columnHome, final AdjEnumModel<Col> itModel) throws IOException {
-		final Recovery recovery = Recovery.getRecovery(getConfig().getFlag());
-		if (recovery != null && recovery.isTreeRecovery()) {
+		if (getRecoveredTreeFolder(itModel) != null) {
 			return openTrees(treeOwner, columnHome, itModel);
 		}
 		else {
@@ -212,6 +280,11 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
 		final SortableMemory<Col> mem = kind == BitPatternTree.Kind.Pos ? itModel.getMemoryPos() : itModel.getMemoryNeg();
 		return new Job<BitPatternTree>() {
 			public BitPatternTree run() throws IOException {
+				if (mem instanceof OutOfCoreMemory && itModel.getCheckpoint() == null) {
+					//sorting on disk, presort by selective bits to avoid random swaps
+					//not for recoverable iterations, writing back is not atomic
+					ExternalMergeSort.sort(columnHome, (OutOfCoreMemory<Col>)mem, selectiveBits, getConfig().getMaxThreads());
+				}
 				final BitPatternTree tree = createTree(treeOwner, columnHome, itModel, kind, selectiveBits, mem);
 				mem.close(false /*erase*/);
 				if (treeOwner != Thread.currentThread()) {
@@ -258,16 +331,25 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
 	 * @see ch.javasoft.metabolic.efm.tree.outcore.PersistentBitPatternTree#open(Thread, File, ColumnHome, EfmModel, AdjEnumModel, BitPatternTree.Kind)
 	 */
 	protected <Col extends Column, N extends Number> BitPatternTree openTree(Thread treeOwner, ColumnHome<N, Col> columnHome, AdjEnumModel<Col> itModel, BitPatternTree.Kind kind) throws IOException {
+		final File recovered = getRecoveredTreeFolder(itModel);
+		final File folder = recovered == null ? getConfig().getTempDir().getPersonalizedDir() : recovered;
+		return PersistentBitPatternTree.open(treeOwner, folder, columnHome, getEfmModel(), itModel, kind);
+	}
+	/**
+	 * Returns the recovery folder if trees are recovered and the tree files of
+	 * the current iteration exist in this folder, and null otherwise. Trees 
+	 * are only recovered for the first iteration of a recovered computation, 
+	 * later iterations create new trees.
+	 */
+	private File getRecoveredTreeFolder(AdjEnumModel<?> itModel) {
 		final Recovery recovery = Recovery.getRecovery(getConfig().getFlag());
-		
-		final File folder;
 		if (recovery != null && recovery.isTreeRecovery()) {
-			folder = recovery.getRecoveryFolder();
-		}
-		else {
-			folder = getConfig().getTempDir().getPersonalizedDir();
+			final File folder = recovery.getRecoveryFolder();
+			if (PersistentBitPatternTree.exists(folder, getEfmModel(), itModel, Kind.Pos)) {
+				return folder;
+			}
 		}
-		return PersistentBitPatternTree.open(treeOwner, folder, columnHome, getEfmModel(), itModel, kind);
+		return null;
 	}
 	
 	/**
@@ -283,7 +365,10 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
 	 * 
 	 * @param 	precondition might be null, if not, it can be combined with 
 	 * 			additional conditions using 
-	 * 			{@link PreconditionUtil#and(AdjacencyPrecondition, AdjacencyPrecondition)}
+	 * 			{@link PreconditionUtil#and(AdjacencyPrecondition, AdjacencyPrecondition)}.
+	 * 			It should be the second factor since it might be expensive, 
+	 * 			e.g. merging the columns for enforced reactions, while the
+	 * 			combinatorial conditions of the subclass are cheap.
 	 * 						
 	 */
 	abstract protected <Col extends Column, N extends Number> TreePairTraverser<T> createTreeTraverser(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> itModel, BitPatternTree posTree, BitPatternTree negTree, AdjacencyPrecondition<T> precondition) throws IOException;
@@ -351,11 +436,11 @@ abstract public class TreeMemAdjEnum<T extends ConcurrentToken> extends Abstract
 	private static void updateCount(SortableMemory<? extends Column> columns, int[][] cnt, final int bitCount, final Random rnd) throws IOException {
 		final int count = columns.getColumnCount();
 		for (int i = 0; i < 1024 /*random sample size*/; i++) {
-			final Column col0 = columns.getColumn(rnd.nextInt(count));
-			final Column col1 = columns.getColumn(rnd.nextInt(count));
+			final IBitSet bits0 = columns.getBitValues(rnd.nextInt(count));
+			final IBitSet bits1 = columns.getBitValues(rnd.nextInt(count));
 			for (int bit = 0; bit < cnt.length; bit++) {
-				if (col0.get(bit) != col1.get(bit)) {
-					cnt[bit][0] += col0.bitValues().getXorCardinality(col1.bitValues());
+				if (bits0.get(bit) != bits1.get(bit)) {
+					cnt[bit][0] += bits0.getXorCardinality(bits1);
 					cnt[bit][1] += bitCount;
 				}
 				else {
@@ -43,6 +43,7 @@ import ch.javasoft.metabolic.efm.concurrent.ConcurrentToken;
 import ch.javasoft.metabolic.efm.memory.SortableMemory;
 import ch.javasoft.metabolic.efm.model.AdjEnumModel;
 import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 import ch.javasoft.metabolic.efm.tree.AdjacencyFilter;
 import ch.javasoft.metabolic.efm.tree.AdjacencyPrecondition;
 import ch.javasoft.metabolic.efm.tree.InterNode;
@@ -115,6 +116,7 @@ public class DefaultTreePairTraverser<T extends ConcurrentToken> extends Abstrac
 		final AdjCandidates<Col> adjCandidates = new AdjCandidates<Col>(
 			iterationModel.getMemoryPos(), iterationModel.getMemoryNeg(),
 			(meE - meS) * (otE - otS));
+		Telemetry.countPairsTested((meE - meS) * (otE - otS));
 		
 		IBitSet commonPattern = null;
 		for (int i = meS; i < meE; i++) {
@@ -127,8 +129,8 @@ public class DefaultTreePairTraverser<T extends ConcurrentToken> extends Abstrac
 					//seems to be a bit faster with the following test
 					//adjacent if |Z(r1)\Z(r2)| = 1 or |Z(r2)\Z(r1)| = 1
 					final int icard = inter.cardinality();
-					final int pcard = adjCandidates.getColumnPos(index).bitValues().cardinality();
-					final int ncard = adjCandidates.getColumnNeg(index).bitValues().cardinality();
+					final int pcard = adjCandidates.getBitValuesPos(index).cardinality();
+					final int ncard = adjCandidates.getBitValuesNeg(index).cardinality();
 					if (pcard - icard == 1 || ncard - icard == 1) {
 						adjCandidates.appendLastColumn(columnHome, efmModel, iterationModel);
 					}
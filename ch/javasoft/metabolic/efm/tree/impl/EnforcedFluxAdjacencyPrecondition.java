@@ -0,0 +1,167 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.tree.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.metabolic.efm.column.filter.CompiledColumnFilter;
+import ch.javasoft.metabolic.efm.column.filter.EnforcedFluxColumnFilter;
+import ch.javasoft.metabolic.efm.concurrent.ConcurrentToken;
+import ch.javasoft.metabolic.efm.config.Config;
+import ch.javasoft.metabolic.efm.model.AdjEnumModel;
+import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.model.NetworkEfmModel;
+import ch.javasoft.metabolic.efm.tree.AdjacencyPrecondition;
+import ch.javasoft.metabolic.efm.tree.Node;
+import ch.javasoft.metabolic.efm.util.ReactionMapping;
+
+/**
+ * The <code>EnforcedFluxAdjacencyPrecondition</code> skips candidate pairs in
+ * the last iteration if the resulting mode would be removed by the
+ * {@link EnforcedFluxColumnFilter enforced flux filter} anyway.
+ * <p>
+ * Enforced reactions are not processed within the iteration loop, see
+ * {@link ReactionMapping#getExpandedReactionCountOutOfIterationLoop()}, and 
+ * intermediary modes without flux for an enforced reaction are still needed
+ * to build valid modes and to test adjacency. Only in the last iteration, the
+ * new modes are not combined any further. Thus, the merged column is computed
+ * and checked with the filter, including the split parts of reversible 
+ * enforced reactions. The (expensive) adjacency test is only performed for 
+ * pairs passing the filter.
+ * <p>
+ * Merging is not for free, this precondition should be combined as last
+ * factor, after the cheap combinatorial preconditions. Tested pairs are then
+ * only those which passed the other preconditions.
+ */
+public class EnforcedFluxAdjacencyPrecondition<T extends ConcurrentToken> implements AdjacencyPrecondition<T> {
+	
+	private final Config					config;
+	private final NetworkEfmModel			model;
+	private final ReactionMapping			rmap;
+	private final EnforcedFluxColumnFilter	filter = new EnforcedFluxColumnFilter();
+	private volatile CompiledColumnFilter	compiled;
+	private final AtomicLong				tested 	= new AtomicLong();
+	private final AtomicLong				avoided	= new AtomicLong();
+
+	private EnforcedFluxAdjacencyPrecondition(Config config, NetworkEfmModel model) {
+		this.config = config;
+		this.model	= model;
+		this.rmap	= new ReactionMapping(config, model.getMetabolicNetwork(), model.getReactionSorting());
+	}
+	
+	/**
+	 * Returns a new precondition instance if reactions are enforced and if
+	 * the given iteration is the last one, and null otherwise
+	 */
+	public static <T extends ConcurrentToken> EnforcedFluxAdjacencyPrecondition<T> createIfApplicable(Config config, EfmModel efmModel, AdjEnumModel<?> iterationModel) {
+		if (config.getReactionsToEnforce().isEmpty() || !(efmModel instanceof NetworkEfmModel)) {
+			return null;
+		}
+		final NetworkEfmModel model = (NetworkEfmModel)efmModel;
+		if (iterationModel.getIterationIndex() < model.getIterationCount()) {
+			return null;
+		}
+		return new EnforcedFluxAdjacencyPrecondition<T>(config, model);
+	}
+
+	public <Col extends Column, N extends Number> boolean enterIfMet(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, T token, int myDepth, int otherDepth, boolean meIsPos, Node me, Node other) {
+		return true;
+	}
+	
+	public <Col extends Column, N extends Number> void leave(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, T token, int myDepth, int otherDepth, boolean meIsPos, Node me, Node other) {
+		// no resources to free
+	}
+	
+	public <Col extends Column, N extends Number> boolean isMet(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, T token, int posColIndex, int negColIndex) throws IOException {
+		final Col pos = iterationModel.getMemoryPos().getColumn(posColIndex);
+		final Col neg = iterationModel.getMemoryNeg().getColumn(negColIndex);
+		return keepMerged(pos.mergeWith(columnHome, model, neg, iterationModel));
+	}
+	
+	/**
+	 * Returns true if the given merged column passes the enforced flux filter.
+	 * Used directly by adjacency enumerators which do not support 
+	 * preconditions, the column is then dropped before it is stored.
+	 */
+	public boolean keepMerged(Column merged) {
+		tested.incrementAndGet();
+		if (getCompiled(merged).keepColumn(merged)) {
+			return true;
+		}
+		avoided.incrementAndGet();
+		return false;
+	}
+	
+	private CompiledColumnFilter getCompiled(Column template) {
+		CompiledColumnFilter cf = compiled;
+		if (cf == null || !cf.isCompiledFor(template)) {
+			synchronized (filter) {
+				cf = compiled;
+				if (cf == null || !cf.isCompiledFor(template)) {
+					cf = CompiledColumnFilter.compile(filter, config, rmap, template);
+					compiled = cf;
+				}
+			}
+		}
+		return cf;
+	}
+	
+	/**
+	 * Logs the number of avoided pairs
+	 */
+	public void log() {
+		if (LogPkg.LOGGER.isLoggable(Level.INFO)) {
+			LogPkg.LOGGER.info("enforced reactions: " + getAvoidedPairs() + " of " + getTestedPairs() + " candidate pairs avoided");
+		}
+	}
+	
+	/**
+	 * Returns the number of candidate pairs which have been checked, i.e. 
+	 * which passed the preconditions combined before this one
+	 */
+	public long getTestedPairs() {
+		return tested.get();
+	}
+	/**
+	 * Returns the number of candidate pairs which have been skipped since the
+	 * resulting mode has no (or negative) flux for some enforced reaction
+	 */
+	public long getAvoidedPairs() {
+		return avoided.get();
+	}
+}
@@ -57,7 +57,7 @@ public class MinCardinalityAdjacencyPrecondition implements AdjacencyPreconditio
 	}
 
 	public <Col extends Column, N extends Number> boolean enterIfMet(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, ConcurrentToken token, int myDepth, int otherDepth, boolean meIsPos, Node me, Node other) {
-		return me.unionPattern().getAndCardinality(other.unionPattern()) >= requiredCardinality;
+		return me.unionPattern().hasAndCardinalityAtLeast(other.unionPattern(), requiredCardinality);
 	}
 	
 	public <Col extends Column, N extends Number> void leave(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, ConcurrentToken token, int myDepth, int otherDepth, boolean meIsPos, Node me, Node other) {
@@ -69,15 +69,15 @@ public class MinCardinalityAdjacencyPrecondition implements AdjacencyPreconditio
 	 * met, and null otherwise;
 	 */
 	public <Col extends Column, N extends Number> IBitSet getUnionCutIfMet(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, ConcurrentToken token, boolean meIsPos, Node me, Node other) {
-		if (me.unionPattern().getAndCardinality(other.unionPattern()) >= requiredCardinality) {
+		if (me.unionPattern().hasAndCardinalityAtLeast(other.unionPattern(), requiredCardinality)) {
 			return me.unionPattern().getAnd(other.unionPattern());
 		}
 		return null;
 	}
 
 	public <Col extends Column, N extends Number> boolean isMet(ColumnHome<N,Col> columnHome, AdjEnumModel<Col> iterationModel, ConcurrentToken token, int posColIndex, int negColIndex) throws IOException {
-		final Col posCol = iterationModel.getMemoryPos().getColumn(posColIndex);
-		final Col negCol = iterationModel.getMemoryNeg().getColumn(negColIndex);
-		return posCol.bitValues().getAndCardinality(negCol.bitValues()) >= requiredCardinality;		
+		final IBitSet posBits = iterationModel.getMemoryPos().getBitValues(posColIndex);
+		final IBitSet negBits = iterationModel.getMemoryNeg().getBitValues(negColIndex);
+		return posBits.hasAndCardinalityAtLeast(negBits, requiredCardinality);		
 	};
 }
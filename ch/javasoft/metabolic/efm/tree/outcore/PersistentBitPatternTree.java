@@ -149,6 +149,13 @@ public class PersistentBitPatternTree implements BitPatternTree {
 		return new PersistentBitPatternTree(owner, folder, columnHome, efmModel, itModel, kind, selectiveBits, columns);
 	}
 	
+	/**
+	 * Returns true if the tree file for the given iteration and tree kind 
+	 * exists in the specified folder
+	 */
+	public static boolean exists(File folder, EfmModel efmModel, AdjEnumModel<? extends Column> itModel, Kind kind) {
+		return getTreeFile(folder, efmModel.getConfig(), efmModel, itModel, kind).exists();
+	}
 	private static File getTreeFile(File folder, Config config, EfmModel model, AdjEnumModel<? extends Column> iterationModel, Kind kind) {
 		return new File(folder, "bstree-" + iterationModel.getIterationIndex() + "-" + kind.toChar() + ".tbl");
 	}
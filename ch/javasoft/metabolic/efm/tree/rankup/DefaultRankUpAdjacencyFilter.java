@@ -42,6 +42,7 @@ import ch.javasoft.metabolic.efm.column.ColumnHome;
 import ch.javasoft.metabolic.efm.concurrent.RankUpdateToken;
 import ch.javasoft.metabolic.efm.model.AdjEnumModel;
 import ch.javasoft.metabolic.efm.model.EfmModel;
+import ch.javasoft.metabolic.efm.progress.Telemetry;
 import ch.javasoft.metabolic.efm.rankup.PreprocessableMatrix;
 import ch.javasoft.metabolic.efm.rankup.PreprocessedMatrixFactory;
 import ch.javasoft.metabolic.efm.tree.AdjacencyFilter;
@@ -100,6 +101,7 @@ public class DefaultRankUpAdjacencyFilter<T extends RankUpdateToken> implements
 
 	protected boolean hasRequiredRank(T token, IBitSet nodePattern, IBitSet intersectionSet) {
 		final PreprocessableMatrix mx = token.getRankMatrix();
+		Telemetry.countRankTest();
 		return mx.hasRequiredRank(token, efmModel, factory, intersectionSet);
 	}
 
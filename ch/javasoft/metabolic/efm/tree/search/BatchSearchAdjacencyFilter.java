@@ -0,0 +1,117 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.tree.search;
+
+import java.io.IOException;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.metabolic.efm.column.AdjCandidates;
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.metabolic.efm.concurrent.ConcurrentToken;
+import ch.javasoft.metabolic.efm.model.AdjEnumModel;
+import ch.javasoft.metabolic.efm.tree.AdjacencyFilter;
+import ch.javasoft.metabolic.efm.tree.BitPatternTree;
+
+/**
+ * Batched version of the {@link DefaultSearchAdjacencyFilter}. Candidates are
+ * tested in blocks of up to {@link BatchSuperSetSearch#MAX_QUERIES}, each 
+ * tree is traversed only once per block using a {@link BatchSuperSetSearch}.
+ * Candidates from the same node pair usually have similar intersection sets, 
+ * thus, the subtrees pruned for one query are mostly pruned for the others, 
+ * too.
+ */
+public class BatchSearchAdjacencyFilter<T extends ConcurrentToken> implements AdjacencyFilter<T> {
+	
+	private final BitPatternTree treePos, treeNeg, treeZer;
+	
+	public BatchSearchAdjacencyFilter(BitPatternTree treePos, BitPatternTree treeNeg, BitPatternTree treeZer) {
+		this.treePos	= treePos;
+		this.treeNeg	= treeNeg;
+		this.treeZer	= treeZer;
+	}
+
+	public <Col extends Column, N extends Number> boolean filter(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, T token, AdjCandidates<Col> candidates, IBitSet commonPattern) throws IOException {
+		final IBitSet[] inters = new IBitSet[BatchSuperSetSearch.MAX_QUERIES];
+		final int[] ignore = new int[BatchSuperSetSearch.MAX_QUERIES];
+		int ind = 0;
+		int len = candidates.size();
+		while (ind < len) {
+			final int cnt = Math.min(len - ind, BatchSuperSetSearch.MAX_QUERIES);
+			for (int i = 0; i < cnt; i++) {
+				inters[i] = candidates.getIntersection(ind + i);
+			}
+			final BatchSuperSetSearch<T> search = new BatchSuperSetSearch<T>(inters, cnt);
+			search.traverse(columnHome, iterationModel, token, treeZer);
+			if (!search.isAllResolved()) {
+				for (int i = 0; i < cnt; i++) {
+					ignore[i] = candidates.getColumnIndexPos(ind + i);
+				}
+				search.setIgnoreColumns(ignore);
+				search.traverse(columnHome, iterationModel, token, treePos);
+			}
+			if (!search.isAllResolved()) {
+				for (int i = 0; i < cnt; i++) {
+					ignore[i] = candidates.getColumnIndexNeg(ind + i);
+				}
+				search.setIgnoreColumns(ignore);
+				search.traverse(columnHome, iterationModel, token, treeNeg);
+			}
+			long remove = search.getResolved(cnt);
+			
+			//move kept candidates to the front of the block
+			int kept = 0;
+			for (int i = 0; i < cnt; i++) {
+				if ((remove & (1L << i)) == 0) {
+					if (i != kept) {
+						candidates.swap(ind + i, ind + kept);
+						remove = (remove | (1L << i)) & ~(1L << kept);
+					}
+					kept++;
+				}
+			}
+			//remove block tail, unprocessed candidates are moved into the gap
+			for (int i = cnt - 1; i >= kept; i--) {
+				len--;
+				if (ind + i != len) {
+					candidates.swap(ind + i, len);
+				}
+				candidates.removeLast();
+			}
+			ind += kept;
+		}
+		return candidates.size() != 0;
+	}
+
+}
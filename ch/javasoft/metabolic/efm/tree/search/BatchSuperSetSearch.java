@@ -0,0 +1,241 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.tree.search;
+
+import java.io.IOException;
+
+import ch.javasoft.bitset.IBitSet;
+import ch.javasoft.bitset.FixedBitSet;
+import ch.javasoft.bitset.LongBitSet;
+import ch.javasoft.metabolic.efm.column.Column;
+import ch.javasoft.metabolic.efm.column.ColumnHome;
+import ch.javasoft.metabolic.efm.memory.PartId;
+import ch.javasoft.metabolic.efm.memory.SortableMemory;
+import ch.javasoft.metabolic.efm.model.AdjEnumModel;
+import ch.javasoft.metabolic.efm.tree.BitPatternTree;
+import ch.javasoft.metabolic.efm.tree.InterNode;
+import ch.javasoft.metabolic.efm.tree.LeafNode;
+import ch.javasoft.metabolic.efm.tree.impl.AbstractTreeTraverser;
+
+/**
+ * The <code>BatchSuperSetSearch</code> performs the combinatorial test for up
+ * to {@link #MAX_QUERIES} intersection sets in a single tree traversal. Like 
+ * for {@link SuperSetSearch}, a subtree is only entered if its union pattern 
+ * is a superset of an intersection set. The set of queries which are still 
+ * unresolved and might have a superset in the current subtree is carried
+ * through the recursion as a bit mask. Subtrees are pruned if no query is 
+ * left in the mask, and the traversal stops if a superset has been found for
+ * every query.
+ * <p>
+ * If the intersection sets are {@link LongBitSet long} or 
+ * {@link FixedBitSet fixed} bit sets, they are packed into a single long 
+ * array and tested against union patterns and superset candidates with 
+ * {@link LongBitSet#getSubSetMask(long[], int, long)} or
+ * {@link FixedBitSet#getSubSetMask(long[], int, long)}, without creating 
+ * objects.
+ * <p>
+ * An instance is not thread safe, but it can be used for multiple trees, e.g.
+ * with {@link #setIgnoreColumns(int[]) different columns to ignore}.
+ */
+public class BatchSuperSetSearch<T> extends AbstractTreeTraverser<T> {
+	
+	/** Maximum number of queries, the length of the query bit mask*/
+	public static final int MAX_QUERIES = 64;
+	
+	private final IBitSet[]	intersectionSets;
+	private final IBitSet	commonSet;
+	private final long[]	packedSets;//null if not all sets are long or fixed bit sets
+	private final int		packedWords;
+	private int[] 			ignoreColumns;
+	
+	private PartId	memoryPartId;
+	private long	unresolved;
+	private long	mask;
+	
+	/**
+	 * Constructor for <code>BatchSuperSetSearch</code> with the intersection
+	 * sets of adjacency candidate zero sets.
+	 *  
+	 * @param intersectionSets	the intersection sets of the adjacency 
+	 * 							candidate zero sets, at most 
+	 * 							{@link #MAX_QUERIES} sets
+	 * @param count				the number of sets to use from the given array
+	 */
+	public BatchSuperSetSearch(IBitSet[] intersectionSets, int count) {
+		if (count > MAX_QUERIES) {
+			throw new IllegalArgumentException("too many queries: " + count + " > " + MAX_QUERIES);
+		}
+		this.intersectionSets	= intersectionSets;
+		this.unresolved			= count == MAX_QUERIES ? -1L : (1L << count) - 1;
+		IBitSet common = null;
+		for (int i = 0; i < count; i++) {
+			if (common == null) common = intersectionSets[i].clone();
+			else common.and(intersectionSets[i]);
+		}
+		this.commonSet = common;
+		int words = 0;
+		for (int i = 0; i < count && words >= 0; i++) {
+			if (intersectionSets[i] instanceof FixedBitSet) {
+				words = Math.max(words, ((FixedBitSet)intersectionSets[i]).unitCount());
+			}
+			else if (intersectionSets[i] instanceof LongBitSet) {
+				words = Math.max(words, (intersectionSets[i].length() + Long.SIZE - 1) / Long.SIZE);
+			}
+			else {
+				words = -1;
+			}
+		}
+		if (words > 0) {
+			packedWords	= words;
+			packedSets	= new long[count * words];
+			for (int i = 0; i < count; i++) {
+				if (intersectionSets[i] instanceof FixedBitSet) {
+					((FixedBitSet)intersectionSets[i]).toLongArray(packedSets, i * words);
+				}
+				else {
+					((LongBitSet)intersectionSets[i]).toLongArray(packedSets, i * words);
+				}
+			}
+		}
+		else {
+			packedWords	= 0;
+			packedSets	= null;
+		}
+	}
+	
+	/**
+	 * Sets the column indices to ignore for the next traversal, one per query,
+	 * or null if no column is to be ignored. For the 
+	 * {@link BitPatternTree.Kind#Pos Pos} and the 
+	 * {@link BitPatternTree.Kind#Neg Neg} tree, these are the indices of the 
+	 * ancestor columns of the adjacency candidates.
+	 */
+	public void setIgnoreColumns(int[] ignoreColumns) {
+		this.ignoreColumns = ignoreColumns;
+	}
+
+	/**
+	 * Returns the bit mask of queries for which a superset has been found
+	 */
+	public long getResolved(int count) {
+		final long all = count == MAX_QUERIES ? -1L : (1L << count) - 1;
+		return all & ~unresolved;
+	}
+	/**
+	 * Returns true if a superset has been found for every query
+	 */
+	public boolean isAllResolved() {
+		return unresolved == 0;
+	}
+	
+	@Override
+	public <Col extends Column, N extends Number> void traverse(ColumnHome<N,Col> columnHome, AdjEnumModel<Col> iterationModel, T token, BitPatternTree tree) throws IOException {
+		if (unresolved != 0) {
+			memoryPartId	= tree.kind().toPartId();
+			mask			= unresolved;
+			super.traverse(columnHome, iterationModel, token, tree);
+		}
+	}
+	@Override
+	public <Col extends Column, N extends Number> boolean traverseI(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, T token, InterNode node) throws IOException {
+		final long parentMask = mask;
+		final long nodeMask = filterMask(parentMask & unresolved, node.unionPattern());
+		if (nodeMask == 0) {
+			return true;
+		}
+		mask = nodeMask;
+		try {
+			return super.traverseI(columnHome, iterationModel, token, node);
+		}
+		finally {
+			mask = parentMask;
+		}
+	}
+	public <Col extends Column, N extends Number> boolean traverseL(ColumnHome<N, Col> columnHome, AdjEnumModel<Col> iterationModel, T token, LeafNode node) throws IOException {
+		long leafMask = filterMask(mask & unresolved, node.unionPattern());
+		if (leafMask != 0) {
+			final int start = node.getLeafColumnStart();
+			final int end = node.getLeafColumnEnd();
+			final SortableMemory<Col> mem = iterationModel.getMemory(memoryPartId);
+			for (int i = start; i < end && leafMask != 0; i++) {
+				long found = subSetMask(leafMask, mem.getBitValues(i));
+				if (ignoreColumns != null) {
+					for (long m = found; m != 0; m &= m - 1) {
+						final int q = Long.numberOfTrailingZeros(m);
+						if (ignoreColumns[q] == i) {
+							found &= ~(1L << q);
+						}
+					}
+				}
+				leafMask	&= ~found;
+				unresolved	&= ~found;
+			}
+		}
+		return unresolved != 0;
+	}
+	
+	/**
+	 * Returns the queries from the given mask which are subsets of the union
+	 * pattern, that is, which might have a superset in the subtree
+	 */
+	private long filterMask(long queries, IBitSet unionPattern) {
+		if (queries == 0 || !commonSet.isSubSetOf(unionPattern)) {
+			return 0;
+		}
+		return subSetMask(queries, unionPattern);
+	}
+	/**
+	 * Returns the queries from the given mask which are subsets of the given
+	 * superset candidate
+	 */
+	private long subSetMask(long queries, IBitSet superCandidate) {
+		if (packedSets != null) {
+			if (superCandidate instanceof FixedBitSet) {
+				return ((FixedBitSet)superCandidate).getSubSetMask(packedSets, packedWords, queries);
+			}
+			if (superCandidate instanceof LongBitSet) {
+				return ((LongBitSet)superCandidate).getSubSetMask(packedSets, packedWords, queries);
+			}
+		}
+		long res = 0;
+		for (long m = queries; m != 0; m &= m - 1) {
+			final int q = Long.numberOfTrailingZeros(m);
+			if (intersectionSets[q].isSubSetOf(superCandidate)) {
+				res |= (1L << q);
+			}
+		}
+		return res;
+	}
+
+}
@@ -117,7 +117,7 @@ public class SuperSetSearch<T> extends AbstractTreeTraverser<T> {
 			final SortableMemory<Col> mem = iterationModel.getMemory(memoryPartId);
 			for (int i = start; i < end; i++) {
 				if (i != ignoreColumn) {
-					final IBitSet superCandidate = mem.getColumn(i).bitValues();
+					final IBitSet superCandidate = mem.getBitValues(i);
 					if (intersectionSet.isSubSetOf(superCandidate)) {
 						superSetFound = true;
 						return false;
@@ -38,6 +38,8 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import ch.javasoft.bitset.BitSetFactory;
+import ch.javasoft.bitset.FixedBitSet;
+import ch.javasoft.bitset.FixedBitSet.FixedBitSetFactory;
 import ch.javasoft.bitset.IBitSet;
 import ch.javasoft.bitset.LongBitSet;
 
@@ -46,6 +48,9 @@ import ch.javasoft.bitset.LongBitSet;
  */
 public class BitSetUtil {
 	
+	private static volatile int				sPatternCapacity	= 0;
+	private static volatile BitSetFactory	sPatternFactory		= LongBitSet.FACTORY;
+	
 	/**
 	 * Returns the factory for bit set instantiation
 	 */
@@ -56,6 +61,35 @@ public class BitSetUtil {
 //		return DefaultBitSet.FACTORY;//slow
 	}
 	
+	/**
+	 * Returns the factory for the bit patterns of the columns. After
+	 * {@link #initPatternFactory(int)} has been called, this is the factory 
+	 * of the {@link FixedBitSet} class for the maximum boolean size, such 
+	 * that all column patterns are instances of the same fixed size class. 
+	 * Otherwise, or if the patterns are too large for fixed bit sets, the
+	 * {@link #factory() default factory} is returned.
+	 */
+	public static BitSetFactory patternFactory() {
+		return sPatternFactory;
+	}
+	/**
+	 * Initializes the {@link #patternFactory() pattern factory} for columns 
+	 * with at most {@code maxBooleanSize} bits. The capacity never shrinks, 
+	 * previously created patterns remain valid if this method is called 
+	 * again, e.g. for another computation in the same virtual machine.
+	 * 
+	 * @param maxBooleanSize	the maximum boolean size of the columns over
+	 * 							all iterations
+	 */
+	public static synchronized void initPatternFactory(int maxBooleanSize) {
+		if (maxBooleanSize > sPatternCapacity) {
+			sPatternCapacity	= maxBooleanSize;
+			sPatternFactory		= maxBooleanSize > FixedBitSet.MAX_CAPACITY ? 
+				factory() : FixedBitSet.factory(maxBooleanSize);
+			LogPkg.LOGGER.fine("bit pattern class: " + sPatternFactory.getBitSetClass().getSimpleName() + " for " + maxBooleanSize + " bits");
+		}
+	}
+	
 	/**
 	 * Returns the number of longs needed to store a {@link IBitSet}
 	 * of the given bit capacity. Capacity here is the same as the boolean size 
@@ -84,14 +118,17 @@ public class BitSetUtil {
 	 * @return the array with the bits in raw form
 	 */
 	public static long[] toLongArray(IBitSet bitSet) {
+		if (bitSet instanceof FixedBitSet) {
+			return ((FixedBitSet)bitSet).toLongArray();
+		}
 		return LongBitSet.FACTORY.convert(bitSet).toLongArray();
 	}
 	
 	/**
 	 * Returns a new bit set instance based on the given long array containing
 	 * the bits. If {@code cloneArray} is true, the long array is cloned. The
-	 * {@link #factory() factory} is used to get an instance of the current bit 
-	 * set type.
+	 * {@link #patternFactory() pattern factory} is used to get an instance of 
+	 * the current bit set type.
 	 * <p>
 	 * This method is the opponent to {@link #toLongArray(IBitSet)}
 	 * 
@@ -100,7 +137,11 @@ public class BitSetUtil {
 	 * @return the new bit set instance
 	 */
 	public static IBitSet fromLongArray(long[] longs, boolean cloneArray) {
-		return factory().convert(new LongBitSet(longs, cloneArray));
+		final BitSetFactory fac = patternFactory();
+		if (fac instanceof FixedBitSetFactory && longs.length * Long.SIZE <= ((FixedBitSetFactory)fac).getCapacity()) {
+			return ((FixedBitSetFactory)fac).create(longs, 0);
+		}
+		return fac.convert(new LongBitSet(longs, cloneArray));
 	}
 	
 	/**
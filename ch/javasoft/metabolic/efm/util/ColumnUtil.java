@@ -34,8 +34,20 @@
 package ch.javasoft.metabolic.efm.util;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
 import ch.javasoft.bitset.IBitSet;
@@ -51,6 +63,7 @@ import ch.javasoft.metabolic.efm.model.IterationStateModel;
 import ch.javasoft.metabolic.efm.model.IterationStepModel;
 import ch.javasoft.metabolic.efm.model.NetworkEfmModel;
 import ch.javasoft.metabolic.efm.tree.Partition;
+import ch.javasoft.util.numeric.IntegerUtil;
 
 /**
  * The <code>ColumnUtil</code> contains static helper methods related to
@@ -58,6 +71,18 @@ import ch.javasoft.metabolic.efm.tree.Partition;
  */
 public class ColumnUtil {
 	private static final Logger LOG = LogPkg.LOGGER;
+	
+	/**
+	 * Number of columns per chunk for concurrent partitioning
+	 */
+	private static final int PARTITION_CHUNK_SIZE = 1024;
+	
+	/**
+	 * Worker pools for concurrent partitioning, one per number of threads and
+	 * shared by all partition calls. Pools are never shut down since running
+	 * partitions might still submit chunks to them.
+	 */
+	private static final Map<Integer, ExecutorService> partitionExecutors = new HashMap<Integer, ExecutorService>();
 
 	/**
 	 * Returns the number of columns in this iterable. If the iterable is not
@@ -100,6 +125,10 @@ public class ColumnUtil {
 	 * invoked for every column before moving it to the new partition.
 	 * <p>
 	 * Note that the source memory is closed after the operation in any case.
+	 * <p>
+	 * If multiple threads are configured and the source is large, conversion
+	 * and sign computation are performed concurrently for chunks of columns,
+	 * but the columns are appended in the same order as sequentially.
 	 * 
 	 * @see Column#getHyperplaneSign(EfmModel, IterationStateModel)
 	 * 
@@ -125,27 +154,130 @@ public class ColumnUtil {
 	public static <N extends Number, Col extends Column> void partition(ColumnHome<N, Col> columnHome, NetworkEfmModel model, IterableMemory<Col> src, AppendableMemory<Col> pos, AppendableMemory<Col> zer, AppendableMemory<Col> neg, IterationStepModel iteration, boolean convert) throws IOException {
 
 		int removed_cols = 0;
-		for (Col col : src) {
+		final int threads = model.getConfig() == null ? 1 : model.getConfig().getMaxThreads();
+		if (threads > 1 && src.getColumnCount() >= 2 * PARTITION_CHUNK_SIZE) {
+			partitionConcurrently(columnHome, model, src, pos, zer, neg, iteration, convert, threads);
+		}
+		else {
+			for (Col col : src) {
+				if (convert) {
+					col = col.convert(columnHome, model, iteration, false /*clone*/);
+				}
+				final int sgn = col.getHyperplaneSign(model, iteration.getNextState());
+				if (sgn < 0) {
+					neg.appendColumn(col);
+				}
+				else if (sgn > 0) {
+					pos.appendColumn(col);
+				}
+				else {
+					zer.appendColumn(col);
+				}
+			}
+		}
+
+		LOG.finest("ColumnUtil.partion(): removed_cols=" + removed_cols);
+		// System.out.println("ColumnUtil.partion(): leaving");
+		src.close(true /*erase*/);
+	}
+	
+	/**
+	 * Partitions the columns concurrently. The source is read sequentially by
+	 * the current thread, in chunks of {@link #PARTITION_CHUNK_SIZE} columns.
+	 * Worker threads convert the columns and compute the hyperplane signs, 
+	 * collecting the columns in chunk-local pos/zero/neg lists. The chunks are
+	 * appended to the destination memories in their original order, thus, the
+	 * result is the same as for sequential partitioning.
+	 */
+	private static <N extends Number, Col extends Column> void partitionConcurrently(final ColumnHome<N, Col> columnHome, final NetworkEfmModel model, IterableMemory<Col> src, AppendableMemory<Col> pos, AppendableMemory<Col> zer, AppendableMemory<Col> neg, final IterationStepModel iteration, final boolean convert, int threads) throws IOException {
+		final ExecutorService executor = getPartitionExecutor(threads);
+		final Queue<Future<ChunkParts<Col>>> pending = new ArrayDeque<Future<ChunkParts<Col>>>();
+		try {
+			final Iterator<Col> it = src.iterator();
+			while (it.hasNext()) {
+				final List<Col> chunk = new ArrayList<Col>(PARTITION_CHUNK_SIZE);
+				while (chunk.size() < PARTITION_CHUNK_SIZE && it.hasNext()) {
+					chunk.add(it.next());
+				}
+				pending.add(executor.submit(new Callable<ChunkParts<Col>>() {
+					public ChunkParts<Col> call() {
+						return partitionChunk(columnHome, model, chunk, iteration, convert);
+					}
+				}));
+				//limit the number of chunks in memory
+				if (pending.size() >= 2 * threads) {
+					appendChunk(pending.remove(), pos, zer, neg);
+				}
+			}
+			while (!pending.isEmpty()) {
+				appendChunk(pending.remove(), pos, zer, neg);
+			}
+		}
+		finally {
+			//only left if an exception occurred
+			for (final Future<ChunkParts<Col>> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+	private static synchronized ExecutorService getPartitionExecutor(int threads) {
+		ExecutorService executor = partitionExecutors.get(Integer.valueOf(threads));
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "column-partition");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			partitionExecutors.put(Integer.valueOf(threads), executor);
+		}
+		return executor;
+	}
+	/**
+	 * The columns of a chunk, partitioned by their hyperplane sign
+	 */
+	private static class ChunkParts<Col extends Column> {
+		final List<Col> pos = new ArrayList<Col>();
+		final List<Col> zer = new ArrayList<Col>();
+		final List<Col> neg = new ArrayList<Col>();
+	}
+	private static <N extends Number, Col extends Column> ChunkParts<Col> partitionChunk(ColumnHome<N, Col> columnHome, NetworkEfmModel model, List<Col> chunk, IterationStepModel iteration, boolean convert) {
+		final ChunkParts<Col> parts = new ChunkParts<Col>();
+		for (Col col : chunk) {
 			if (convert) {
 				col = col.convert(columnHome, model, iteration, false /*clone*/);
 			}
 			final int sgn = col.getHyperplaneSign(model, iteration.getNextState());
-
-
 			if (sgn < 0) {
-				neg.appendColumn(col);
+				parts.neg.add(col);
 			}
 			else if (sgn > 0) {
-				pos.appendColumn(col);
+				parts.pos.add(col);
 			}
 			else {
-				zer.appendColumn(col);
+				parts.zer.add(col);
 			}
 		}
-
-		LOG.finest("ColumnUtil.partion(): removed_cols=" + removed_cols);
-		// System.out.println("ColumnUtil.partion(): leaving");
-		src.close(true /*erase*/);
+		return parts;
+	}
+	private static <Col extends Column> void appendChunk(Future<ChunkParts<Col>> future, AppendableMemory<Col> pos, AppendableMemory<Col> zer, AppendableMemory<Col> neg) throws IOException {
+		final ChunkParts<Col> parts;
+		try {
+			parts = future.get();
+		}
+		catch (InterruptedException ex) {
+			throw new IOException("interrupted while partitioning columns", ex);
+		}
+		catch (ExecutionException ex) {
+			final Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IOException(cause);
+		}
+		if (!parts.pos.isEmpty()) pos.appendColumns(parts.pos);
+		if (!parts.zer.isEmpty()) zer.appendColumns(parts.zer);
+		if (!parts.neg.isEmpty()) neg.appendColumns(parts.neg);
 	}
 	/**
 	 * Partitions the columns with respect to the criteria reflected by the 
@@ -361,6 +493,9 @@ public class ColumnUtil {
 	 * <pre>
 	 *   newval[i] = mulPos * posval[i+1] - mulNeg * negval[i+1]
 	 * </pre>
+	 * <p>
+	 * Values within the zero tolerance of the model are set to zero. The
+	 * computation is performed by {@link MergeKernels}.
 	 * 
 	 * @param model				the model, e.g. for precision stuff
 	 * @param mulCol1			the multiplier for the values of column 1
@@ -381,19 +516,89 @@ public class ColumnUtil {
 			if (mulCol2 < 0) {
 				final int boolInc = num2bool ? 1 : 0;
 
-				final double sum = mulCol1 - mulCol2;
 				//numeric part
 				final double[] values = new double[numericValsCol1.length - boolInc];		
-				for (int ii = 0; ii < values.length; ii++) {
-					final double prodA = numericValsCol1[ii + boolInc] * mulCol1;
-					final double prodB = numericValsCol2[ii + boolInc] * mulCol2;			
-					values[ii] = (prodA - prodB) / sum;
-				}
+				MergeKernels.merge(mulCol1, numericValsCol1, mulCol2, numericValsCol2, boolInc, model == null ? null : model.zero(), values, 0, values.length);
+				return values;
+			}
+		}
+		throw new RuntimeException("multipliers must have opposite sign: " + mulCol1 + " / " + mulCol2);
+	}
+
+	/**
+	 * Merges the given long values from two columns. Each value of the first
+	 * column is multiplied with <tt>mulCol1</tt>, each of the second column
+	 * with <tt>mulCol2</tt>. The product resulting from the negative multiplier
+	 * is subtracted from the that with the positive multiplier, resulting in 
+	 * the values of the new column. The resulting vector is divided by the 
+	 * greatest common divisor of its values.
+	 * <p>
+	 * Shortly, this means:
+	 * <pre>
+	 *   newval[i] = (mulPos * posval[i] - mulNeg * negval[i]) / gcd
+	 * </pre>
+	 * <p>
+	 * If <tt>num2bool</tt> is true, the first value is cut off, i.e.
+	 * <pre>
+	 *   newval[i] = (mulPos * posval[i+1] - mulNeg * negval[i+1]) / gcd
+	 * </pre>
+	 * 
+	 * @param model				the model, e.g. for precision stuff
+	 * @param mulCol1			the multiplier for the values of column 1
+	 * @param numericValsCol1	the numeric values of column 1
+	 * @param mulCol2			the multiplier for the values of column 2
+	 * @param numericValsCol2	the numeric values of column 2
+	 * @param num2bool			if true, the first numeric value is removed, 
+	 * 							since it is always 0 and converted to binary
+	 * @return the numeric values of the newly born column
+	 * @throws ArithmeticException	if an intermediary value overflows a long
+	 */
+	public static long[] mergeNumeric(EfmModel model, long mulCol1, long[] numericValsCol1, long mulCol2, long[] numericValsCol2, boolean num2bool) throws ArithmeticException {
+		if (mulCol1 < 0) {
+			if (mulCol2 > 0) {//perform this check to avoid infinite recursing
+				return mergeNumeric(model, mulCol2, numericValsCol2, mulCol1, numericValsCol1, num2bool);
+			}
+		}
+		else {
+			if (mulCol2 < 0) {
+				final int boolInc = num2bool ? 1 : 0;
+
+				//numeric part
+				final long[] values = new long[numericValsCol1.length - boolInc];
+				MergeKernels.merge(mulCol1, numericValsCol1, mulCol2, numericValsCol2, boolInc, values, 0, values.length);
 				return values;
 			}
 		}
 		throw new RuntimeException("multipliers must have opposite sign: " + mulCol1 + " / " + mulCol2);
 	}
+	
+	/**
+	 * Divides all values by the given gcd, if it is greater than 1
+	 */
+	private static long[] reduceVector(long[] values, long gcd) {
+		if (gcd > 1) {
+			for (int ii = 0; ii < values.length; ii++) {
+				values[ii] /= gcd;
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Divides the values by their greatest common divisor
+	 * 
+	 * @param values	the values to reduce, changed in place
+	 * @return the reduced values, the same instance as passed to the method
+	 */
+	public static long[] reduceVector(long[] values) {
+		long gcd = 0;
+		for (int ii = 0; ii < values.length && gcd != 1; ii++) {
+			if (values[ii] != 0) {
+				gcd = IntegerUtil.gcd(gcd, values[ii]);
+			}
+		}
+		return reduceVector(values, gcd);
+	}
 
 	//no instances
 	private ColumnUtil() {}
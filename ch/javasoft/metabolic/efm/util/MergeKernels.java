@@ -0,0 +1,164 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.util;
+
+import ch.javasoft.util.numeric.IntegerUtil;
+import ch.javasoft.util.numeric.Zero;
+
+/**
+ * Merge kernels for the numeric values of double and long columns. The 
+ * kernels write into a caller supplied buffer, and they combine scaling,
+ * subtraction, zero snapping or normalization in simple loops over primitive
+ * arrays without virtual calls, such that the JIT compiler can vectorize 
+ * them.
+ * <p>
+ * Both kernels compute
+ * <pre>
+ *   dst[dstOffset + i] = mulPos * valsPos[srcOffset + i] - mulNeg * valsNeg[srcOffset + i]
+ * </pre>
+ * for {@code 0 <= i < len}, where {@code mulPos >= 0} and {@code mulNeg < 0}.
+ * The double values are divided by {@code mulPos - mulNeg}, the long values
+ * by the greatest common divisor of the resulting values.
+ * 
+ * @see MergeKernelsBenchmark
+ */
+public class MergeKernels {
+	
+	/**
+	 * Merges double values, see {@link MergeKernels class comment}. Values 
+	 * within the zero tolerance are set to 0. If {@code zero} is null or the 
+	 * {@link Zero#isTrueZero() true zero}, no snapping is performed.
+	 * 
+	 * @param mulPos	the nonnegative multiplier for {@code valsPos}
+	 * @param valsPos	the values to multiply with {@code mulPos}
+	 * @param mulNeg	the negative multiplier for {@code valsNeg}
+	 * @param valsNeg	the values to multiply with {@code mulNeg}
+	 * @param srcOffset	the first index to use in the source arrays
+	 * @param zero		zero tolerance for snapping, or null
+	 * @param dst		the destination buffer
+	 * @param dstOffset	the first index to write in the destination buffer
+	 * @param len		the number of values to merge
+	 */
+	public static void merge(double mulPos, double[] valsPos, double mulNeg, double[] valsNeg, int srcOffset, Zero zero, double[] dst, int dstOffset, int len) {
+		final double sum = mulPos - mulNeg;
+		if (zero == null || zero.isTrueZero()) {
+			for (int i = 0; i < len; i++) {
+				dst[dstOffset + i] = (valsPos[srcOffset + i] * mulPos - valsNeg[srcOffset + i] * mulNeg) / sum;
+			}
+		}
+		else {
+			//the tolerance is symmetric, a single comparison keeps the loop vectorizable
+			final double zeroPos = zero.mZeroPos;
+			for (int i = 0; i < len; i++) {
+				final double val = (valsPos[srcOffset + i] * mulPos - valsNeg[srcOffset + i] * mulNeg) / sum;
+				dst[dstOffset + i] = Math.abs(val) <= zeroPos ? 0d : val;
+			}
+		}
+	}
+	
+	/**
+	 * Merges long values, see {@link MergeKernels class comment}. The merged
+	 * values are divided by their greatest common divisor. If the range of the
+	 * input values cannot cause an overflow, the values are computed in a 
+	 * loop without overflow checks, otherwise, every operation is checked.
+	 * 
+	 * @param mulPos	the nonnegative multiplier for {@code valsPos}
+	 * @param valsPos	the values to multiply with {@code mulPos}
+	 * @param mulNeg	the negative multiplier for {@code valsNeg}
+	 * @param valsNeg	the values to multiply with {@code mulNeg}
+	 * @param srcOffset	the first index to use in the source arrays
+	 * @param dst		the destination buffer
+	 * @param dstOffset	the first index to write in the destination buffer
+	 * @param len		the number of values to merge
+	 * @throws ArithmeticException	if an intermediary value overflows a long
+	 */
+	public static void merge(long mulPos, long[] valsPos, long mulNeg, long[] valsNeg, int srcOffset, long[] dst, int dstOffset, int len) throws ArithmeticException {
+		if (isOverflowFree(mulPos, valsPos, mulNeg, valsNeg, srcOffset, len)) {
+			for (int i = 0; i < len; i++) {
+				dst[dstOffset + i] = valsPos[srcOffset + i] * mulPos - valsNeg[srcOffset + i] * mulNeg;
+			}
+		}
+		else {
+			for (int i = 0; i < len; i++) {
+				final long prodA = IntegerUtil.multiplyExact(valsPos[srcOffset + i], mulPos);
+				final long prodB = IntegerUtil.multiplyExact(valsNeg[srcOffset + i], mulNeg);
+				dst[dstOffset + i] = IntegerUtil.subtractExact(prodA, prodB);
+			}
+		}
+		long gcd = 0;
+		for (int i = 0; i < len && gcd != 1; i++) {
+			final long val = dst[dstOffset + i];
+			if (val != 0) {
+				gcd = IntegerUtil.gcd(gcd, val);
+			}
+		}
+		if (gcd > 1) {
+			for (int i = 0; i < len; i++) {
+				dst[dstOffset + i] /= gcd;
+			}
+		}
+	}
+	
+	/**
+	 * Returns true if {@code |mulPos| * max|valsPos| + |mulNeg| * max|valsNeg|}
+	 * is within the long range
+	 */
+	private static boolean isOverflowFree(long mulPos, long[] valsPos, long mulNeg, long[] valsNeg, int srcOffset, int len) {
+		final long absPos = Math.abs(mulPos);
+		final long absNeg = Math.abs(mulNeg);
+		if (absPos < 0 || absNeg < 0) return false;//MIN_VALUE
+		final long maxPos = maxAbs(valsPos, srcOffset, len);
+		final long maxNeg = maxAbs(valsNeg, srcOffset, len);
+		if (maxPos < 0 || maxNeg < 0) return false;//MIN_VALUE
+		if (absPos != 0 && maxPos > Long.MAX_VALUE / absPos) return false;
+		if (absNeg != 0 && maxNeg > Long.MAX_VALUE / absNeg) return false;
+		return maxPos * absPos <= Long.MAX_VALUE - maxNeg * absNeg;
+	}
+	/**
+	 * Returns the maximum absolute value, or a negative value if the array 
+	 * contains {@link Long#MIN_VALUE}
+	 */
+	private static long maxAbs(long[] vals, int offset, int len) {
+		long max = 0;
+		for (int i = 0; i < len; i++) {
+			final long abs = Math.abs(vals[offset + i]);
+			if (abs < 0) return abs;
+			max = Math.max(max, abs);
+		}
+		return max;
+	}
+
+	//no instances
+	private MergeKernels() {}
+}
@@ -0,0 +1,190 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.metabolic.efm.util;
+
+import java.util.Random;
+
+import ch.javasoft.math.ops.DoubleOperations;
+import ch.javasoft.math.ops.LongOperations;
+import ch.javasoft.util.numeric.Zero;
+
+/**
+ * Micro benchmark comparing the {@link MergeKernels merge kernels} with the
+ * generic {@link ColumnUtil#mergeNumeric(ch.javasoft.metabolic.efm.model.EfmModel, ch.javasoft.math.NumberOperations, Number, Number[], Number, Number[], boolean) mergeNumeric}
+ * using {@link ch.javasoft.math.NumberOperations number operations}, and 
+ * with the allocating primitive version. Typical column widths are measured,
+ * the time per merge is written to standard out.
+ * <p>
+ * Usage: {@code java ch.javasoft.metabolic.efm.util.MergeKernelsBenchmark [rounds]} 
+ */
+public class MergeKernelsBenchmark {
+	
+	private static final int[]	WIDTHS	= {16, 32, 64, 128, 256};
+	private static final int	POOL	= 256;//number of columns per width
+	private static final int	WARMUP	= 200000;//merges before measuring
+	
+	private static volatile long sink;//prevents dead code elimination
+
+	public static void main(String[] args) {
+		final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		final Random rnd = new Random(4711);
+		System.out.println("width    generic-double  alloc-double  kernel-double    generic-long    alloc-long   kernel-long   [ns/merge]");
+		for (final int width : WIDTHS) {
+			final double[][] dbl = new double[POOL][width];
+			final Double[][] dblBoxed = new Double[POOL][width];
+			final long[][] lng = new long[POOL][width];
+			final Long[][] lngBoxed = new Long[POOL][width];
+			for (int i = 0; i < POOL; i++) {
+				for (int j = 0; j < width; j++) {
+					lng[i][j] = rnd.nextInt(7) - 3;
+					lngBoxed[i][j] = Long.valueOf(lng[i][j]);
+					dbl[i][j] = rnd.nextDouble() - 0.5;
+					dblBoxed[i][j] = Double.valueOf(dbl[i][j]);
+				}
+			}
+			final StringBuilder sb = new StringBuilder();
+			sb.append(pad(String.valueOf(width), 5));
+			sb.append(pad(format(genericDouble(dblBoxed, WARMUP, rounds)), 18));
+			sb.append(pad(format(allocDouble(dbl, WARMUP, rounds)), 14));
+			sb.append(pad(format(kernelDouble(dbl, width, WARMUP, rounds)), 15));
+			sb.append(pad(format(genericLong(lngBoxed, WARMUP, rounds)), 16));
+			sb.append(pad(format(allocLong(lng, WARMUP, rounds)), 14));
+			sb.append(pad(format(kernelLong(lng, width, WARMUP, rounds)), 14));
+			System.out.println(sb);
+		}
+	}
+	
+	private static double genericDouble(Double[][] cols, int warmup, int rounds) {
+		final DoubleOperations ops = DoubleOperations.instance();
+		run(cols, warmup, ops);
+		final long start = System.nanoTime();
+		run(cols, rounds, ops);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void run(Double[][] cols, int rounds, DoubleOperations ops) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			final Double[] res = ColumnUtil.mergeNumeric(null, ops, Double.valueOf(0.75), cols[r % POOL], Double.valueOf(-0.5), cols[(r * 7 + 1) % POOL], true);
+			sum += res.length;
+		}
+		sink = sum;
+	}
+	private static double allocDouble(double[][] cols, int warmup, int rounds) {
+		run(cols, warmup);
+		final long start = System.nanoTime();
+		run(cols, rounds);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void run(double[][] cols, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			final double[] res = ColumnUtil.mergeNumeric(null, 0.75, cols[r % POOL], -0.5, cols[(r * 7 + 1) % POOL], true);
+			sum += res.length;
+		}
+		sink = sum;
+	}
+	private static double kernelDouble(double[][] cols, int width, int warmup, int rounds) {
+		final double[] buf = new double[width - 1];
+		final Zero zero = new Zero();
+		run(cols, buf, zero, warmup);
+		final long start = System.nanoTime();
+		run(cols, buf, zero, rounds);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void run(double[][] cols, double[] buf, Zero zero, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			MergeKernels.merge(0.75, cols[r % POOL], -0.5, cols[(r * 7 + 1) % POOL], 1, zero, buf, 0, buf.length);
+			sum += buf[0] > 0 ? 1 : 0;
+		}
+		sink = sum;
+	}
+
+	private static double genericLong(Long[][] cols, int warmup, int rounds) {
+		final LongOperations ops = LongOperations.instance();
+		run(cols, warmup, ops);
+		final long start = System.nanoTime();
+		run(cols, rounds, ops);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void run(Long[][] cols, int rounds, LongOperations ops) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			final Long[] res = ColumnUtil.mergeNumeric(null, ops, Long.valueOf(3), cols[r % POOL], Long.valueOf(-2), cols[(r * 7 + 1) % POOL], true);
+			sum += res.length;
+		}
+		sink = sum;
+	}
+	private static double allocLong(long[][] cols, int warmup, int rounds) {
+		run(cols, warmup);
+		final long start = System.nanoTime();
+		run(cols, rounds);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void run(long[][] cols, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			final long[] res = ColumnUtil.mergeNumeric(null, 3L, cols[r % POOL], -2L, cols[(r * 7 + 1) % POOL], true);
+			sum += res.length;
+		}
+		sink = sum;
+	}
+	private static double kernelLong(long[][] cols, int width, int warmup, int rounds) {
+		final long[] buf = new long[width - 1];
+		run(cols, buf, warmup);
+		final long start = System.nanoTime();
+		run(cols, buf, rounds);
+		return (System.nanoTime() - start) / (double)rounds;
+	}
+	private static void run(long[][] cols, long[] buf, int rounds) {
+		long sum = 0;
+		for (int r = 0; r < rounds; r++) {
+			MergeKernels.merge(3L, cols[r % POOL], -2L, cols[(r * 7 + 1) % POOL], 1, buf, 0, buf.length);
+			sum += buf[0];
+		}
+		sink = sum;
+	}
+	
+	private static String format(double nanos) {
+		return String.format("%.1f", Double.valueOf(nanos));
+	}
+	private static String pad(String str, int len) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = str.length(); i < len; i++) sb.append(' ');
+		return sb.append(str).toString();
+	}
+	
+	//no instances
+	private MergeKernelsBenchmark() {}
+}
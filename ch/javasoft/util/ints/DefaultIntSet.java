@@ -165,7 +165,7 @@ public class DefaultIntSet extends AbstractSortedIntSet implements Cloneable, Se
 	public boolean removeInt(int value) {
 		final int index = values.binarySearchInt(value);
 		if (index >= 0) {
-			values.remove(value);
+			values.removeIntAt(index);
 			mod++;
 			return true;
 		}
@@ -0,0 +1,506 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.util.ints;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <code>OpenIntIntMap</code> is a mutable hash map from int to int using open
+ * addressing with linear probing. Keys and values are stored in two parallel 
+ * int arrays, no objects are created per entry. Removed entries are not 
+ * marked as deleted, the following entries of the probe sequence are shifted
+ * back instead, thus, lookups never traverse tombstones.
+ * <p>
+ * The primitive methods {@link #getInt(int, int)}, {@link #putInt(int, int)},
+ * {@link #putAll(int[], int[])} and {@link #forEach(IntIntVisitor)} avoid 
+ * boxing completely. The iteration order is unspecified.
+ * <p>
+ * The views returned by {@link #keySet()}, {@link #values()} and 
+ * {@link #intIntEntrySet()} iterate over a snapshot of the map. Removing
+ * elements through the key set or entry set removes them from the map.
+ */
+public class OpenIntIntMap extends AbstractIntIntMap implements Serializable, Cloneable {
+	
+	private static final long serialVersionUID = 6618283101565931877L;
+
+	/**
+	 * Callback for {@link OpenIntIntMap#forEach(IntIntVisitor)}
+	 */
+	public static interface IntIntVisitor {
+		/**
+		 * Called for every key/value pair of the map
+		 */
+		void visit(int key, int value);
+	}
+	
+	private static final int	FREE			= 0;//key 0 is stored separately
+	private static final float	LOAD_FACTOR		= 0.5f;
+	private static final int	MIN_CAPACITY	= 4;
+	
+	private int[]	keys;
+	private int[]	vals;
+	private int		mask;
+	private int		size;//excluding free key
+	private int		threshold;
+	private boolean	hasFreeKey;
+	private int		freeVal;
+	
+	/**
+	 * Constructor for a new empty map
+	 */
+	public OpenIntIntMap() {
+		this(8);
+	}
+	/**
+	 * Constructor for a new empty map with capacity for the given number of
+	 * entries without rehashing
+	 */
+	public OpenIntIntMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("negative size: " + expectedSize);
+		}
+		allocate(capacityFor(expectedSize));
+	}
+	/**
+	 * Constructor for a copy of the given map
+	 */
+	public OpenIntIntMap(Map<Integer, Integer> map) {
+		this(map.size());
+		putAll(map);
+	}
+	
+	private static int capacityFor(int size) {
+		final long min = (long)Math.ceil(size / LOAD_FACTOR) + 1;
+		int cap = MIN_CAPACITY;
+		while (cap < min) {
+			if (cap >= (1 << 30)) {
+				throw new IllegalArgumentException("map too large: " + size);
+			}
+			cap <<= 1;
+		}
+		return cap;
+	}
+	private void allocate(int capacity) {
+		keys		= new int[capacity];
+		vals		= new int[capacity];
+		mask		= capacity - 1;
+		threshold	= (int)(capacity * LOAD_FACTOR);
+	}
+	
+	/**
+	 * Fibonacci hashing, spreads consecutive reaction or metabolite indices
+	 * over the table
+	 */
+	private int slot(int key) {
+		final int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+	/**
+	 * Returns the slot of the key, or -1 if the key is not contained
+	 */
+	private int find(int key) {
+		int i = slot(key);
+		while (true) {
+			final int k = keys[i];
+			if (k == key) return i;
+			if (k == FREE) return -1;
+			i = (i + 1) & mask;
+		}
+	}
+	
+	public int getInt(int key) {
+		if (key == FREE) {
+			if (hasFreeKey) return freeVal;
+		}
+		else {
+			final int i = find(key);
+			if (i >= 0) return vals[i];
+		}
+		throw new NoSuchElementException("no such key: " + key);
+	}
+	/**
+	 * Returns the value for the given key, or <code>defaultValue</code> if 
+	 * the key is not contained in the map 
+	 */
+	public int getInt(int key, int defaultValue) {
+		if (key == FREE) {
+			return hasFreeKey ? freeVal : defaultValue;
+		}
+		final int i = find(key);
+		return i >= 0 ? vals[i] : defaultValue;
+	}
+	
+	@Override
+	public Integer get(int key) {
+		if (key == FREE) {
+			return hasFreeKey ? Integer.valueOf(freeVal) : null;
+		}
+		final int i = find(key);
+		return i >= 0 ? Integer.valueOf(vals[i]) : null;
+	}
+	
+	@Override
+	public boolean containsKey(int key) {
+		return key == FREE ? hasFreeKey : find(key) >= 0;
+	}
+	
+	public boolean containsValue(int value) {
+		if (hasFreeKey && freeVal == value) return true;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE && vals[i] == value) return true;
+		}
+		return false;
+	}
+	
+	public Integer put(int key, int value) {
+		if (key == FREE) {
+			final Integer old = hasFreeKey ? Integer.valueOf(freeVal) : null;
+			hasFreeKey	= true;
+			freeVal		= value;
+			return old;
+		}
+		int i = slot(key);
+		while (true) {
+			final int k = keys[i];
+			if (k == key) {
+				final int old = vals[i];
+				vals[i] = value;
+				return Integer.valueOf(old);
+			}
+			if (k == FREE) {
+				insertAt(i, key, value);
+				return null;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+	/**
+	 * Associates the value with the given key without boxing, returns true
+	 * if the key was not contained in the map before
+	 */
+	public boolean putInt(int key, int value) {
+		if (key == FREE) {
+			final boolean added = !hasFreeKey;
+			hasFreeKey	= true;
+			freeVal		= value;
+			return added;
+		}
+		int i = slot(key);
+		while (true) {
+			final int k = keys[i];
+			if (k == key) {
+				vals[i] = value;
+				return false;
+			}
+			if (k == FREE) {
+				insertAt(i, key, value);
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+	private void insertAt(int i, int key, int value) {
+		keys[i] = key;
+		vals[i] = value;
+		size++;
+		if (size > threshold) {
+			rehash(keys.length << 1);
+		}
+	}
+	private void rehash(int capacity) {
+		final int[] oldKeys = keys;
+		final int[] oldVals = vals;
+		allocate(capacity);
+		for (int j = 0; j < oldKeys.length; j++) {
+			final int key = oldKeys[j];
+			if (key != FREE) {
+				int i = slot(key);
+				while (keys[i] != FREE) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = key;
+				vals[i] = oldVals[j];
+			}
+		}
+	}
+	
+	/**
+	 * Associates <code>values[i]</code> with <code>keys[i]</code> for all i. 
+	 * The table is resized at most once.
+	 */
+	public void putAll(int[] keys, int[] values) {
+		if (keys.length != values.length) {
+			throw new IllegalArgumentException("key and value arrays have different length: " + keys.length + " != " + values.length);
+		}
+		final int capacity = capacityFor(size + keys.length);
+		if (capacity > this.keys.length) {
+			rehash(capacity);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			putInt(keys[i], values[i]);
+		}
+	}
+	@Override
+	public void putAll(IntIntMap map) {
+		if (map instanceof OpenIntIntMap) {
+			final OpenIntIntMap other = (OpenIntIntMap)map;
+			final int capacity = capacityFor(size + other.size());
+			if (capacity > keys.length) {
+				rehash(capacity);
+			}
+			other.forEach(new IntIntVisitor() {
+				public void visit(int key, int value) {
+					putInt(key, value);
+				}
+			});
+		}
+		else {
+			super.putAll(map);
+		}
+	}
+	
+	/**
+	 * Calls the visitor for every entry of the map, without boxing
+	 */
+	public void forEach(IntIntVisitor visitor) {
+		if (hasFreeKey) {
+			visitor.visit(FREE, freeVal);
+		}
+		final int[] ks = keys;
+		final int[] vs = vals;
+		for (int i = 0; i < ks.length; i++) {
+			if (ks[i] != FREE) {
+				visitor.visit(ks[i], vs[i]);
+			}
+		}
+	}
+	
+	public Integer remove(int key) {
+		if (key == FREE) {
+			if (!hasFreeKey) return null;
+			hasFreeKey = false;
+			return Integer.valueOf(freeVal);
+		}
+		final int i = find(key);
+		if (i < 0) return null;
+		final int old = vals[i];
+		removeAt(i);
+		return Integer.valueOf(old);
+	}
+	/**
+	 * Removes the given key without boxing, returns true if the key was 
+	 * contained in the map
+	 */
+	public boolean removeInt(int key) {
+		if (key == FREE) {
+			final boolean had = hasFreeKey;
+			hasFreeKey = false;
+			return had;
+		}
+		final int i = find(key);
+		if (i < 0) return false;
+		removeAt(i);
+		return true;
+	}
+	/**
+	 * Removes the entry at the given slot and shifts back the following 
+	 * entries of the probe sequence which may fill the gap
+	 */
+	private void removeAt(int gap) {
+		int i = (gap + 1) & mask;
+		while (keys[i] != FREE) {
+			final int home = slot(keys[i]);
+			//move if home is not cyclically within (gap, i]
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				vals[gap] = vals[i];
+				gap = i;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[gap] = FREE;
+		vals[gap] = 0;
+		size--;
+	}
+	
+	@Override
+	public int size() {
+		return hasFreeKey ? size + 1 : size;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	
+	@Override
+	public void clear() {
+		java.util.Arrays.fill(keys, FREE);
+		java.util.Arrays.fill(vals, 0);
+		size		= 0;
+		hasFreeKey	= false;
+	}
+	
+	/**
+	 * Returns the keys of this map in a new array, in iteration order
+	 */
+	public int[] toKeyArray() {
+		final int[] res = new int[size()];
+		int index = 0;
+		if (hasFreeKey) res[index++] = FREE;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) res[index++] = keys[i];
+		}
+		return res;
+	}
+	/**
+	 * Returns the values of this map in a new array, in iteration order
+	 */
+	public int[] toValueArray() {
+		final int[] res = new int[size()];
+		int index = 0;
+		if (hasFreeKey) res[index++] = freeVal;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) res[index++] = vals[i];
+		}
+		return res;
+	}
+	
+	@Override
+	public IntSet keySet() {
+		return new DefaultIntSet(toKeyArray()) {
+			private static final long serialVersionUID = -6520513924384411096L;
+			@Override
+			public boolean removeInt(int value) {
+				if (!super.removeInt(value)) return false;
+				OpenIntIntMap.this.removeInt(value);
+				return true;
+			}
+			@Override
+			public void clear() {
+				super.clear();
+				OpenIntIntMap.this.clear();
+			}
+			@Override
+			public boolean addInt(int value) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	@Override
+	public IntCollection values() {
+		return new DefaultIntList(toValueArray()) {
+			private static final long serialVersionUID = 2209317744416624624L;
+			@Override
+			public boolean addInt(int value) {
+				throw new UnsupportedOperationException();
+			}
+			@Override
+			public boolean removeInt(int value) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	public Set<IntIntMap.IntIntEntry> intIntEntrySet() {
+		return new AbstractSet<IntIntMap.IntIntEntry>() {
+			@Override
+			public Iterator<IntIntMap.IntIntEntry> iterator() {
+				final int[] ks = toKeyArray();
+				final int[] vs = toValueArray();
+				return new Iterator<IntIntMap.IntIntEntry>() {
+					int index = 0;
+					boolean canRemove = false;
+					public boolean hasNext() {
+						return index < ks.length;
+					}
+					public IntIntMap.IntIntEntry next() {
+						if (index >= ks.length) throw new NoSuchElementException();
+						canRemove = true;
+						final int cur = index++;
+						return new SimpleIntIntEntry(ks[cur], vs[cur]);
+					}
+					public void remove() {
+						if (!canRemove) {
+							throw new IllegalStateException("value already removed, or next() not called yet");
+						}
+						OpenIntIntMap.this.removeInt(ks[index - 1]);
+						canRemove = false;
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return OpenIntIntMap.this.size();
+			}
+			@Override
+			public void clear() {
+				OpenIntIntMap.this.clear();
+			}
+			@Override
+			public boolean contains(Object o) {
+				if (o instanceof Map.Entry) {
+					final Map.Entry<?, ?> entry = (Map.Entry<?, ?>)o;
+					final Object key = entry.getKey();
+					final Object val = entry.getValue();
+					if (key instanceof Integer && val instanceof Integer) {
+						final int ikey = ((Integer)key).intValue();
+						return containsKey(ikey) && getInt(ikey) == ((Integer)val).intValue();
+					}
+				}
+				return false;
+			}
+		};
+	}
+	
+	@Override
+	public OpenIntIntMap clone() {
+		try {
+			final OpenIntIntMap clone = (OpenIntIntMap)super.clone();
+			clone.keys = keys.clone();
+			clone.vals = vals.clone();
+			return clone;
+		}
+		catch (CloneNotSupportedException ex) {
+			//should not happen since we are cloneable
+			throw new RuntimeException(ex);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.util.ints;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Micro benchmark comparing {@link OpenIntIntMap} with the sorted
+ * {@link DefaultIntIntMap}, the chained {@link IntHashMap} and 
+ * {@link HashMap}. Dense keys mimic reaction or metabolite indices, sparse 
+ * keys mimic compressed or original indices. For every map, the time to 
+ * build the map and the time per lookup (half of them misses) is written to
+ * standard out.
+ * <p>
+ * Usage: {@code java ch.javasoft.util.ints.OpenIntIntMapBenchmark [rounds]} 
+ */
+public class OpenIntIntMapBenchmark {
+	
+	private static final int[]	SIZES	= {16, 256, 4096};
+	private static final int	PROBES	= 1 << 16;//lookups per pass
+	private static final int	WARMUP	= 1 << 20;//operations before measuring
+	
+	private static volatile long sink;//prevents dead code elimination
+	
+	private static abstract class Candidate {
+		final String name;
+		Candidate(String name) {
+			this.name = name;
+		}
+		abstract void build(int[] keys);
+		abstract long lookup(int[] probes);
+	}
+	
+	public static void main(String[] args) {
+		final int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		final Random rnd = new Random(4711);
+		final Candidate[] candidates = createCandidates();
+		final StringBuilder head = new StringBuilder("keys      size");
+		for (final Candidate cand : candidates) {
+			head.append(pad(cand.name + "-put", 18)).append(pad(cand.name + "-get", 18));
+		}
+		System.out.println(head.append("   [ns/op]"));
+		for (final boolean dense : new boolean[] {true, false}) {
+			for (final int size : SIZES) {
+				final int[] keys = new int[size];
+				for (int i = 0; i < size; i++) {
+					keys[i] = dense ? i : rnd.nextInt(Integer.MAX_VALUE);
+				}
+				final int[] probes = new int[PROBES];
+				for (int i = 0; i < PROBES; i++) {
+					probes[i] = rnd.nextBoolean() ? keys[rnd.nextInt(size)] : (dense ? size + rnd.nextInt(size) : rnd.nextInt(Integer.MAX_VALUE));
+				}
+				final StringBuilder sb = new StringBuilder();
+				sb.append(pad(dense ? "dense" : "sparse", 6)).append(pad(String.valueOf(size), 8));
+				for (final Candidate cand : candidates) {
+					sb.append(pad(format(build(cand, keys, rounds)), 18));
+					sb.append(pad(format(lookup(cand, keys, probes, rounds)), 18));
+				}
+				System.out.println(sb);
+			}
+		}
+	}
+	
+	private static Candidate[] createCandidates() {
+		return new Candidate[] {
+			new Candidate("open") {
+				OpenIntIntMap map;
+				@Override
+				void build(int[] keys) {
+					map = new OpenIntIntMap();
+					for (int i = 0; i < keys.length; i++) map.putInt(keys[i], i);
+				}
+				@Override
+				long lookup(int[] probes) {
+					long sum = 0;
+					for (int i = 0; i < probes.length; i++) sum += map.getInt(probes[i], -1);
+					return sum;
+				}
+			},
+			new Candidate("sorted") {
+				DefaultIntIntMap map;
+				@Override
+				void build(int[] keys) {
+					map = new DefaultIntIntMap();
+					for (int i = 0; i < keys.length; i++) map.put(keys[i], i);
+				}
+				@Override
+				long lookup(int[] probes) {
+					long sum = 0;
+					for (int i = 0; i < probes.length; i++) sum += map.containsKey(probes[i]) ? map.getInt(probes[i]) : -1;
+					return sum;
+				}
+			},
+			new Candidate("chained") {
+				IntHashMap<Integer> map;
+				@Override
+				void build(int[] keys) {
+					map = new IntHashMap<Integer>();
+					for (int i = 0; i < keys.length; i++) map.put(keys[i], Integer.valueOf(i));
+				}
+				@Override
+				long lookup(int[] probes) {
+					long sum = 0;
+					for (int i = 0; i < probes.length; i++) {
+						final Integer val = map.get(probes[i]);
+						sum += val == null ? -1 : val.intValue();
+					}
+					return sum;
+				}
+			},
+			new Candidate("jdk") {
+				Map<Integer, Integer> map;
+				@Override
+				void build(int[] keys) {
+					map = new HashMap<Integer, Integer>();
+					for (int i = 0; i < keys.length; i++) map.put(Integer.valueOf(keys[i]), Integer.valueOf(i));
+				}
+				@Override
+				long lookup(int[] probes) {
+					long sum = 0;
+					for (int i = 0; i < probes.length; i++) {
+						final Integer val = map.get(Integer.valueOf(probes[i]));
+						sum += val == null ? -1 : val.intValue();
+					}
+					return sum;
+				}
+			}
+		};
+	}
+	
+	private static double build(Candidate cand, int[] keys, int rounds) {
+		for (int r = 0; r < WARMUP / keys.length; r++) cand.build(keys);
+		final long start = System.nanoTime();
+		for (int r = 0; r < rounds; r++) cand.build(keys);
+		return (System.nanoTime() - start) / ((double)rounds * keys.length);
+	}
+	private static double lookup(Candidate cand, int[] keys, int[] probes, int rounds) {
+		cand.build(keys);
+		long sum = 0;
+		for (int r = 0; r < WARMUP / probes.length; r++) sum += cand.lookup(probes);
+		final long start = System.nanoTime();
+		for (int r = 0; r < rounds; r++) sum += cand.lookup(probes);
+		sink = sum;
+		return (System.nanoTime() - start) / ((double)rounds * probes.length);
+	}
+	
+	private static String format(double nanos) {
+		return String.format("%.1f", Double.valueOf(nanos));
+	}
+	private static String pad(String str, int len) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = str.length(); i < len; i++) sb.append(' ');
+		return sb.append(str).toString();
+	}
+	
+	//no instances
+	private OpenIntIntMapBenchmark() {}
+}
@@ -0,0 +1,265 @@
+/*
+ * =============================================================================
+ * Simplified BSD License, see http://www.opensource.org/licenses/
+ * -----------------------------------------------------------------------------
+ * Copyright (c) 2008-2009, Marco Terzer, Zurich, Switzerland
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ *     * Redistributions of source code must retain the above copyright notice, 
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright 
+ *       notice, this list of conditions and the following disclaimer in the 
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the Swiss Federal Institute of Technology Zurich 
+ *       nor the names of its contributors may be used to endorse or promote 
+ *       products derived from this software without specific prior written 
+ *       permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" 
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE 
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE 
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE 
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR 
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF 
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS 
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN 
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) 
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE 
+ * POSSIBILITY OF SUCH DAMAGE.
+ * =============================================================================
+ */
+package ch.javasoft.util.ints;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares {@link OpenIntIntMap} with {@link HashMap} for random put/remove
+ * sequences, and checks the linear probing corner cases explicitly: key 0,
+ * probe clusters wrapping around the table end, backward shift on removal
+ * and rehashing.
+ */
+public class OpenIntIntMapTest extends TestCase {
+	
+	private static final int	ROUNDS	= 200;
+	private static final int	OPS		= 2000;
+	
+	private final Random rnd = new Random(4711);
+	
+	public void testRandomAgainstHashMap() {
+		for (int r = 0; r < ROUNDS; r++) {
+			//small key ranges produce long clusters and many hits
+			final int range = 1 + rnd.nextInt(r % 2 == 0 ? 16 : 1024);
+			final OpenIntIntMap map = new OpenIntIntMap(rnd.nextInt(8));
+			final Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+			for (int op = 0; op < OPS; op++) {
+				final int key = rnd.nextInt(range) - range / 4;
+				final int val = rnd.nextInt();
+				switch (rnd.nextInt(4)) {
+					case 0:
+						assertEquals(ref.put(Integer.valueOf(key), Integer.valueOf(val)), map.put(key, val));
+						break;
+					case 1:
+						assertEquals(ref.put(Integer.valueOf(key), Integer.valueOf(val)) == null, map.putInt(key, val));
+						break;
+					case 2:
+						assertEquals(ref.remove(Integer.valueOf(key)), map.remove(key));
+						break;
+					default:
+						assertEquals(ref.remove(Integer.valueOf(key)) != null, map.removeInt(key));
+						break;
+				}
+				assertEquals(ref.size(), map.size());
+			}
+			assertEqualMaps(ref, map);
+			for (int key = -range / 4 - 1; key <= range; key++) {
+				assertEquals(ref.containsKey(Integer.valueOf(key)), map.containsKey(key));
+			}
+		}
+	}
+	
+	public void testFreeKey() {
+		final OpenIntIntMap map = new OpenIntIntMap();
+		assertFalse(map.containsKey(0));
+		assertEquals(-1, map.getInt(0, -1));
+		assertNull(map.put(0, 5));
+		assertFalse(map.putInt(0, 6));
+		assertTrue(map.containsKey(0));
+		assertTrue(map.containsValue(6));
+		assertEquals(6, map.getInt(0));
+		assertEquals(1, map.size());
+		assertEquals(0, map.toKeyArray()[0]);
+		assertEquals(Integer.valueOf(6), map.remove(0));
+		assertFalse(map.removeInt(0));
+		assertTrue(map.isEmpty());
+		try {
+			map.getInt(0);
+			fail("NoSuchElementException expected");
+		}
+		catch (java.util.NoSuchElementException ex) {
+			//expected
+		}
+	}
+	
+	public void testWrapAroundCluster() {
+		//capacity 16, no rehash for up to 8 entries
+		final int capacity = 16;
+		final int[] last = keysWithSlot(capacity, capacity - 1, 5);
+		final int[] first = keysWithSlot(capacity, 0, 2);
+		for (int perm = 0; perm < ROUNDS; perm++) {
+			final OpenIntIntMap map = new OpenIntIntMap(7);
+			final Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+			//the cluster starts at the last slot and wraps to slots 0..6
+			for (final int key : last) put(map, ref, key);
+			for (final int key : first) put(map, ref, key);
+			assertEqualMaps(ref, map);
+			//remove in random order, backward shift must keep all remaining 
+			//keys reachable across the table end
+			final List<Integer> order = new ArrayList<Integer>(ref.keySet());
+			java.util.Collections.shuffle(order, rnd);
+			for (final Integer key : order) {
+				assertEquals(ref.remove(key), map.remove(key.intValue()));
+				assertEqualMaps(ref, map);
+				if (rnd.nextBoolean()) {
+					//re-insertion after a shift must not duplicate the key
+					put(map, ref, first[rnd.nextInt(first.length)]);
+					assertEqualMaps(ref, map);
+				}
+			}
+		}
+	}
+	
+	public void testRehash() {
+		final OpenIntIntMap map = new OpenIntIntMap(0);
+		final Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+		for (int i = 0; i < 10000; i++) {
+			put(map, ref, i * 16);
+		}
+		assertEqualMaps(ref, map);
+		for (int i = 0; i < 10000; i += 2) {
+			assertEquals(ref.remove(Integer.valueOf(i * 16)), map.remove(i * 16));
+		}
+		assertEqualMaps(ref, map);
+	}
+	
+	public void testPutAllArrays() {
+		final OpenIntIntMap map = new OpenIntIntMap(0);
+		final Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+		put(map, ref, 3);
+		final int[] keys = new int[1000];
+		final int[] vals = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i]	= rnd.nextInt(2000) - 10;
+			vals[i]	= rnd.nextInt();
+			ref.put(Integer.valueOf(keys[i]), Integer.valueOf(vals[i]));
+		}
+		map.putAll(keys, vals);
+		assertEqualMaps(ref, map);
+		
+		final OpenIntIntMap copy = new OpenIntIntMap();
+		copy.putAll((IntIntMap)map);
+		assertEqualMaps(ref, copy);
+		
+		try {
+			map.putAll(new int[] {1, 2}, new int[] {1});
+			fail("IllegalArgumentException expected");
+		}
+		catch (IllegalArgumentException ex) {
+			//expected
+		}
+		assertEqualMaps(ref, map);
+	}
+	
+	public void testRemovalViews() {
+		final OpenIntIntMap map = new OpenIntIntMap();
+		final Map<Integer, Integer> ref = new HashMap<Integer, Integer>();
+		for (int i = -50; i < 50; i++) {
+			put(map, ref, i * 7);
+		}
+		final OpenIntIntMap clone = map.clone();
+		
+		//key set view
+		final IntSet keySet = map.keySet();
+		for (int i = -50; i < 50; i += 3) {
+			assertTrue(keySet.removeInt(i * 7));
+			assertFalse(keySet.removeInt(i * 7));
+			ref.remove(Integer.valueOf(i * 7));
+		}
+		assertEqualMaps(ref, map);
+		
+		//entry set iterator
+		final Iterator<IntIntMap.IntIntEntry> it = map.intIntEntrySet().iterator();
+		while (it.hasNext()) {
+			final IntIntMap.IntIntEntry entry = it.next();
+			assertEquals(ref.get(entry.getKey()).intValue(), entry.getIntValue());
+			if (entry.getIntKey() % 2 == 0) {
+				it.remove();
+				ref.remove(entry.getKey());
+				try {
+					it.remove();
+					fail("IllegalStateException expected");
+				}
+				catch (IllegalStateException ex) {
+					//expected
+				}
+			}
+		}
+		assertEqualMaps(ref, map);
+		
+		//clone is not affected by removals, clear empties both views
+		assertEquals(100, clone.size());
+		keySet.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(0));
+		assertEquals(100, clone.size());
+		clone.clear();
+		assertTrue(clone.isEmpty());
+		assertEquals(0, clone.toKeyArray().length);
+	}
+	
+	private static void put(OpenIntIntMap map, Map<Integer, Integer> ref, int key) {
+		final int val = key * 31 + 1;
+		assertEquals(ref.put(Integer.valueOf(key), Integer.valueOf(val)), map.put(key, val));
+	}
+	
+	/**
+	 * Returns count non-zero keys hashing to the given slot, replicates
+	 * {@link OpenIntIntMap}'s slot function
+	 */
+	private static int[] keysWithSlot(int capacity, int slot, int count) {
+		final int[] res = new int[count];
+		int index = 0;
+		for (int key = 1; index < count; key++) {
+			final int h = key * 0x9E3779B9;
+			if (((h ^ (h >>> 16)) & (capacity - 1)) == slot) {
+				res[index++] = key;
+			}
+		}
+		return res;
+	}
+	
+	private static void assertEqualMaps(Map<Integer, Integer> ref, OpenIntIntMap map) {
+		assertEquals(ref.size(), map.size());
+		for (final Map.Entry<Integer, Integer> e : ref.entrySet()) {
+			final int key = e.getKey().intValue();
+			assertTrue(map.containsKey(key));
+			assertEquals(e.getValue().intValue(), map.getInt(key));
+		}
+		final int[] keys = map.toKeyArray();
+		final int[] vals = map.toValueArray();
+		assertEquals(ref.size(), keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(ref.get(Integer.valueOf(keys[i])).intValue(), vals[i]);
+		}
+	}
+
+}
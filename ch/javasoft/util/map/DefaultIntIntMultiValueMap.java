@@ -51,6 +51,7 @@ import ch.javasoft.util.ints.IntIterator;
 import ch.javasoft.util.ints.IntList;
 import ch.javasoft.util.ints.IntMap;
 import ch.javasoft.util.ints.IntSet;
+import ch.javasoft.util.ints.OpenIntIntMap;
 
 /**
  * The <code>IntIntMultiValueMap</code> is a mutable multi value map for int
@@ -404,7 +405,7 @@ public class DefaultIntIntMultiValueMap extends AbstractMutableMultiValueMap<Int
 		return map;
 	}
 	/**
-	 * Implementation returns an {@link IntHashMap} containing 
+	 * Implementation returns an {@link OpenIntIntMap} containing 
 	 * the single values.
 	 * <p>
 	 * Changing the returned map does not affect this multi value map.
@@ -413,11 +414,12 @@ public class DefaultIntIntMultiValueMap extends AbstractMutableMultiValueMap<Int
 	 */
 	@Override
 	public IntMap<Integer> asSingleValueMap() {
-		final IntHashMap<Integer> map = new IntHashMap<Integer>();
-		final IntIterator keyIt = keySet().iterator();
+		final IntSet keys = keySet();
+		final OpenIntIntMap map = new OpenIntIntMap(keys.size());
+		final IntIterator keyIt = keys.iterator();
 		while (keyIt.hasNext()) {
 			final int key = keyIt.nextInt();
-			map.put(key, get(key).iterator().next());
+			map.putInt(key, get(key).iterator().nextInt());
 		}
 		return map;
 	}